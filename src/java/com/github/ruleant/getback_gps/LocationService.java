@@ -24,8 +24,10 @@ package com.github.ruleant.getback_gps;
 
 import android.Manifest;
 import android.app.Service;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.location.Criteria;
@@ -43,12 +45,23 @@ import android.widget.Toast;
 
 import androidx.core.content.ContextCompat;
 
+import java.io.File;
+import java.io.IOException;
+
 import com.github.ruleant.getback_gps.lib.AriadneLocation;
 import com.github.ruleant.getback_gps.lib.DebugLevel;
+import com.github.ruleant.getback_gps.lib.DeclinationGrid;
+import com.github.ruleant.getback_gps.lib.FieldStrengthGrid;
+import com.github.ruleant.getback_gps.lib.FieldStrengthModel;
+import com.github.ruleant.getback_gps.lib.GeomagneticDeclination;
+import com.github.ruleant.getback_gps.lib.GeomagneticFieldStrength;
 import com.github.ruleant.getback_gps.lib.Navigator;
+import com.github.ruleant.getback_gps.lib.NearestWaypoints;
 import com.github.ruleant.getback_gps.lib.SensorOrientation;
 import com.github.ruleant.getback_gps.lib.StoredDestination;
 import com.github.ruleant.getback_gps.lib.StoredLocation;
+import com.github.ruleant.getback_gps.lib.Tools;
+import com.github.ruleant.getback_gps.lib.WaypointStore;
 
 /**
  * Location Service provides the current location.
@@ -62,9 +75,26 @@ public class LocationService extends Service
         implements SensorOrientation.OrientationEventListener {
     /**
      * SharedPreferences location for StoredDestination.
+     * Only used to migrate the destination to the waypoint store.
      */
     public static final String PREFS_STORE_DEST = "stored_destination";
 
+    /**
+     * Directory of the waypoint store, relative to the files directory.
+     */
+    public static final String WAYPOINTS_DIR = "waypoints";
+
+    /**
+     * File of the sensor event recording, relative to the files directory.
+     */
+    public static final String SENSOR_RECORDING = "sensors.rec";
+
+    /**
+     * Maximum size of the sensor event recording in bytes,
+     * about 8 minutes of fused sensor events.
+     */
+    public static final long SENSOR_RECORDING_MAX_SIZE = 1048576;
+
     /**
      * SharedPreferences location for last known good location.
      */
@@ -75,6 +105,13 @@ public class LocationService extends Service
      */
     public static final String PREFS_PREV_LOC = "prev_location";
 
+    /**
+     * Minimum time between orientation updates broadcast to clients,
+     * 100 milliseconds in nanoseconds.
+     */
+    private static final long ORIENTATION_BROADCAST_INTERVAL
+            = 100 * Tools.MILLI_IN_NANO;
+
     /**
      * Binder given to clients.
      */
@@ -112,6 +149,11 @@ public class LocationService extends Service
      * SensorOrientation class.
      */
     private SensorOrientation mSensorOrientation = null;
+    /**
+     * Expected magnetic field strength, to detect magnetic interference.
+     */
+    private final FieldStrengthModel mFieldStrength
+            = new FieldStrengthGrid(new GeomagneticFieldStrength());
     /**
      * Last known good location.
      */
@@ -121,9 +163,18 @@ public class LocationService extends Service
      */
     private StoredLocation mPrevLocation = null;
     /**
-     * Stored location/destination.
+     * Stored waypoints, the active waypoint is the destination.
+     */
+    private WaypointStore mWaypointStore = null;
+    /**
+     * Copy of the destination, used to recreate a corrupt waypoint store
+     * and as destination storage when the waypoint store can't be used.
      */
     private StoredDestination mStoredDestination = null;
+    /**
+     * Whether the user was told that the waypoints are not saved.
+     */
+    private boolean mWaypointStoreErrorReported = false;
 
     @Override
     public final void onCreate() {
@@ -140,6 +191,8 @@ public class LocationService extends Service
 
         mSensorOrientation = new SensorOrientation(this);
         mNavigator = new Navigator(mSensorOrientation);
+        mNavigator.setDeclinationModel(
+                new DeclinationGrid(new GeomagneticDeclination()));
 
         // retrieve last known good location
         mLastLocation = new StoredLocation(
@@ -150,9 +203,9 @@ public class LocationService extends Service
         mPrevLocation = new StoredLocation(this, PREFS_PREV_LOC);
         mNavigator.setPreviousLocation(mPrevLocation.getLocation());
 
-        // retrieve stored destination
+        // retrieve stored waypoints and destination
         mStoredDestination = new StoredDestination(this, PREFS_STORE_DEST);
-        setDestination(mStoredDestination.getLocation());
+        openWaypointStore();
 
         // mProviderName is set by updateLocationProvider
         updateLocationProvider();
@@ -162,8 +215,26 @@ public class LocationService extends Service
         // Subscribe to sensor events
         if (mSensorOrientation.hasSensors()
                 && mSensorOrientation.isSensorsEnabled()) {
-            mSensorOrientation.addEventListener(this);
+            mSensorOrientation.addEventListener(
+                    this, ORIENTATION_BROADCAST_INTERVAL);
+
+            // record sensor events, to replay them in tests
+            if (isSensorRecordingEnabled()) {
+                try {
+                    mSensorOrientation.startRecording(
+                            new File(getFilesDir(), SENSOR_RECORDING),
+                            SENSOR_RECORDING_MAX_SIZE);
+                } catch (IOException e) {
+                    Toast.makeText(this, "sensor recording failed : "
+                            + e.getMessage(), Toast.LENGTH_SHORT).show();
+                }
+            }
         }
+
+        // batch sensor events while the screen is off
+        IntentFilter screenFilter = new IntentFilter(Intent.ACTION_SCREEN_OFF);
+        screenFilter.addAction(Intent.ACTION_SCREEN_ON);
+        registerReceiver(mScreenReceiver, screenFilter);
     }
 
     @Override
@@ -176,19 +247,38 @@ public class LocationService extends Service
         // unsubscribe from LocationManager updates
         mLocationManager.removeUpdates(mListener);
 
-        // unsubscribe from SensorOrientation sensor events
+        // unsubscribe from screen and SensorOrientation sensor events
+        unregisterReceiver(mScreenReceiver);
         mSensorOrientation.removeEventListener(this);
+        long recordedEvents = 0;
+        try {
+            recordedEvents = mSensorOrientation.stopRecording();
+        } catch (IOException e) {
+            // recording is incomplete
+        }
+        if (recordedEvents > 0) {
+            Toast.makeText(this, recordedEvents + " sensor events"
+                    + " recorded", Toast.LENGTH_SHORT).show();
+        }
+        if (mDebug != null
+                && mDebug.checkDebugLevel(DebugLevel.DEBUG_LEVEL_HIGH)) {
+            String report = mSensorOrientation.getPerformanceReport();
+            if (report.length() > 0) {
+                Toast.makeText(this, report, Toast.LENGTH_LONG).show();
+            }
+        }
 
         // save stored locations
         mLastLocation.save();
         mPrevLocation.setLocation(mNavigator.getPreviousLocation());
         mPrevLocation.save();
-        mStoredDestination.save();
+        closeWaypointStore();
 
         // cleanup class properties
         mProviderName = "";
         mLocationManager = null;
         mLastLocation = null;
+        mWaypointStore = null;
         mStoredDestination = null;
         mSensorOrientation = null;
         mNavigator = null;
@@ -201,6 +291,114 @@ public class LocationService extends Service
         mDebug = null;
     }
 
+    /**
+     * Checks if recording sensor events is enabled in the debug settings.
+     *
+     * @return true if sensor events should be recorded
+     */
+    private boolean isSensorRecordingEnabled() {
+        return BuildConfig.DEBUG
+                && PreferenceManager.getDefaultSharedPreferences(this)
+                .getBoolean(SettingsActivity.KEY_PREF_RECORD_SENSORS,
+                        SettingsActivity.DEFAULT_PREF_RECORD_SENSORS);
+    }
+
+    /**
+     * Open the waypoint store and set the active waypoint as destination.
+     * The stored destination is added when the store is created,
+     * this migrates the destination stored by previous versions
+     * and restores the destination when a corrupt store is recreated.
+     * If the store can't be opened, the stored destination is used
+     * for this session.
+     */
+    private void openWaypointStore() {
+        File directory = new File(getFilesDir(), WAYPOINTS_DIR);
+        mWaypointStore = new WaypointStore(directory);
+        try {
+            try {
+                mWaypointStore.open();
+            } catch (WaypointStore.CorruptException e) {
+                // keep the corrupt files, and start with an empty store
+                mWaypointStore.moveFilesAside();
+                mWaypointStore = new WaypointStore(directory);
+                mWaypointStore.open();
+                Toast.makeText(this, R.string.waypoints_corrupt,
+                        Toast.LENGTH_LONG).show();
+            }
+        } catch (IOException e) {
+            // use the stored destination
+            mWaypointStore = null;
+            setDestination(mStoredDestination.getLocation());
+            Toast.makeText(this, R.string.waypoints_not_available,
+                    Toast.LENGTH_LONG).show();
+            return;
+        }
+
+        if (mWaypointStore.getSequence() == 0) {
+            AriadneLocation destination = mStoredDestination.getLocation();
+            if (destination != null) {
+                String name = destination.getName();
+                if (name == null) {
+                    name = "";
+                }
+                mWaypointStore.setActive(
+                        mWaypointStore.add(name, destination));
+            }
+        }
+
+        mNavigator.setNearestWaypoints(
+                new NearestWaypoints(mWaypointStore.getIndex()));
+        setDestination(
+                mWaypointStore.getLocation(mWaypointStore.getActive()));
+    }
+
+    /**
+     * Close the waypoint store, waiting until all changes are written.
+     */
+    private void closeWaypointStore() {
+        if (mWaypointStore == null) {
+            return;
+        }
+
+        try {
+            mWaypointStore.close();
+        } catch (IOException e) {
+            reportWaypointStoreError();
+            if (mDebug != null
+                    && mDebug.checkDebugLevel(DebugLevel.DEBUG_LEVEL_HIGH)) {
+                Toast.makeText(this, "waypoints not saved : "
+                        + e.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        }
+    }
+
+    /**
+     * Tells the user, once, that waypoints are not saved anymore
+     * because writing the waypoint store failed.
+     * From then on, the destination is saved as StoredDestination.
+     */
+    private void reportWaypointStoreError() {
+        if (mWaypointStore == null || mWaypointStoreErrorReported
+                || mWaypointStore.getWriteError() == null) {
+            return;
+        }
+
+        mWaypointStoreErrorReported = true;
+        Toast.makeText(this, R.string.waypoints_not_saved,
+                Toast.LENGTH_LONG).show();
+    }
+
+    /**
+     * Checks if changes to the destination are saved in the waypoint store.
+     * If not, the destination is saved as StoredDestination.
+     *
+     * @return true if the waypoint store is opened and writing didn't fail
+     */
+    private boolean isWaypointStoreWritable() {
+        return mWaypointStore != null
+                && mWaypointStore.getWriteError() == null;
+    }
+
     @Override
     public final int onStartCommand(
             final Intent intent, final int flags, final int startId) {
@@ -282,6 +480,13 @@ public class LocationService extends Service
             mNavigator.setLocation(location);
         }
 
+        // expected field strength, to detect magnetic interference
+        if (mSensorOrientation != null) {
+            mSensorOrientation.setExpectedFieldStrength(
+                    mFieldStrength.getFieldStrength(
+                            location.getLatitude(), location.getLongitude()));
+        }
+
         // save current location
         if (mLastLocation != null) {
             mLastLocation.setLocation(location);
@@ -474,8 +679,22 @@ public class LocationService extends Service
                 );
             }
 
-            mStoredDestination.save(location);
-            setDestination(mStoredDestination.getLocation());
+            if (mWaypointStore != null) {
+                String name = location.getName();
+                if (name == null) {
+                    name = "";
+                }
+                mWaypointStore.setActive(mWaypointStore.add(name, location));
+                reportWaypointStoreError();
+            }
+            if (!isWaypointStoreWritable()) {
+                // the waypoint store doesn't save the destination
+                mStoredDestination.save(location);
+            }
+            // copy the location with its details, it can be the current one
+            AriadneLocation destination = new AriadneLocation(location);
+            destination.setName(location.getName());
+            setDestination(destination);
             Toast.makeText(
                     this,
                     locationStoredMessage,
@@ -509,16 +728,30 @@ public class LocationService extends Service
                         Toast.LENGTH_SHORT
                 ).show();
             } else {
-                AriadneLocation location = mStoredDestination.getLocation();
-                if (location != null) {
-                    location.setName(locationName);
+                AriadneLocation location = null;
+                if (mWaypointStore != null) {
+                    int waypointId = mWaypointStore.getActive();
+                    if (mWaypointStore.rename(waypointId, locationName)) {
+                        location = mWaypointStore.getLocation(waypointId);
+                    }
+                    reportWaypointStoreError();
+                } else {
+                    location = mStoredDestination.getLocation();
+                    if (location != null) {
+                        location.setName(locationName);
+                    }
+                }
 
+                if (location != null) {
                     // set message to show when location is stored
                     locationStoredMessage = getResources().getString(
                             R.string.destination_renamed);
 
-                    mStoredDestination.save(location);
-                    setDestination(mStoredDestination.getLocation());
+                    if (!isWaypointStoreWritable()) {
+                        // the waypoint store doesn't save the destination
+                        mStoredDestination.save(location);
+                    }
+                    setDestination(location);
                     Toast.makeText(
                             this,
                             locationStoredMessage,
@@ -661,6 +894,10 @@ public class LocationService extends Service
             // When new location update is received, update current location
             setLocation(location);
 
+            // writing waypoints is done in the background,
+            // check regularly if it still works
+            reportWaypointStoreError();
+
             // display message on update
             if (mDebug != null
                     && mDebug.checkDebugLevel(DebugLevel.DEBUG_LEVEL_MEDIUM)
@@ -703,6 +940,21 @@ public class LocationService extends Service
         }
     };
 
+    /**
+     * Receiver of screen on and off events,
+     * switches sensor low power mode.
+     */
+    private final BroadcastReceiver mScreenReceiver
+            = new BroadcastReceiver() {
+        @Override
+        public void onReceive(final Context context, final Intent intent) {
+            if (mSensorOrientation != null) {
+                mSensorOrientation.setLowPower(
+                        Intent.ACTION_SCREEN_OFF.equals(intent.getAction()));
+            }
+        }
+    };
+
     /**
      * Called when the orientation value changes.
      */
@@ -283,7 +283,7 @@ public class MainActivity extends AbstractGetBackGpsActivity
         // update views
         nvToDestination.setNavigationMode(nvNavigationMode);
         nvToDestination.setOrientationMode(nvOrientationMode);
-        nvToDestination.invalidate();
+        nvToDestination.invalidateIfChanged();
 
         return true;
     }
@@ -25,18 +25,24 @@ import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.Path;
 import android.os.Build;
 import android.util.AttributeSet;
+import android.view.Choreographer;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 
+import com.github.ruleant.getback_gps.lib.AngleAnimator;
 import com.github.ruleant.getback_gps.lib.Coordinate;
 import com.github.ruleant.getback_gps.lib.CoordinateRotation;
-import com.github.ruleant.getback_gps.lib.Coordinates;
 import com.github.ruleant.getback_gps.lib.FormatUtils;
+import com.github.ruleant.getback_gps.lib.GeometryBuffer;
+import com.github.ruleant.getback_gps.lib.PerformanceCounter;
+import com.github.ruleant.getback_gps.lib.RedrawThreshold;
 
 import de.keyboardsurfer.android.widget.crouton.Style;
 
@@ -61,6 +67,12 @@ public class NavigationView extends ImageView {
      */
     private final Paint mPaintRoseSolidNorth = new Paint();
 
+    /**
+     * Paint used for drawing the cached compass rose, filtering the
+     * bitmap when it is rotated.
+     */
+    private final Paint mPaintRoseCache = new Paint(Paint.FILTER_BITMAP_FLAG);
+
     /**
      * Paint used for drawing lines.
      */
@@ -79,35 +91,35 @@ public class NavigationView extends ImageView {
     /**
      * Arrow indicating direction (lines).
      */
-    private final Coordinates mArrowLines = new Coordinates();
+    private final GeometryBuffer mArrowLines
+            = new GeometryBuffer();
 
     /**
      * Arrow indicating direction (solid right part).
      */
-    private final Coordinates mArrowBodyRight = new Coordinates();
+    private final GeometryBuffer mArrowBodyRight
+            = new GeometryBuffer();
 
     /**
      * Arrow indicating direction (solid left part).
      */
-    private final Coordinates mArrowBodyLeft = new Coordinates();
+    private final GeometryBuffer mArrowBodyLeft
+            = new GeometryBuffer();
 
     /**
      * Compass rose.
      */
-    private final Coordinates mCompassRose = new Coordinates();
+    private final GeometryBuffer mCompassRose
+            = new GeometryBuffer();
 
     /**
      * Compass rose solid body.
      */
-    private final Coordinates mCompassRoseBody = new Coordinates();
-
-    /**
-     * Compass rose rotation converter.
-     */
-    private CoordinateRotation mRoseRotationConverter;
+    private final GeometryBuffer mCompassRoseBody
+            = new GeometryBuffer();
 
     /**
-     * Arrow indicating direction.
+     * Converts the shapes to device coordinates, without rotation.
      */
     private CoordinateRotation mRotationConverter;
 
@@ -116,6 +128,63 @@ public class NavigationView extends ImageView {
      */
     private Coordinate mRotationCenter;
 
+    /**
+     * Compass rose lines in device coordinates, pointing north.
+     */
+    private float[] mCompassRoseLinesCache = null;
+
+    /**
+     * Compass rose solid body in device coordinates, pointing north.
+     */
+    private final Path mCompassRoseBodyCache = new Path();
+
+    /**
+     * Arrow lines in device coordinates, pointing north.
+     */
+    private float[] mArrowLinesCache = null;
+
+    /**
+     * Arrow solid right part in device coordinates, pointing north.
+     */
+    private final Path mArrowBodyRightCache = new Path();
+
+    /**
+     * Arrow solid left part in device coordinates, pointing north.
+     */
+    private final Path mArrowBodyLeftCache = new Path();
+
+    /**
+     * Compass rose rendered pointing north, null if it isn't rendered.
+     */
+    private Bitmap mCompassRoseBitmap = null;
+
+    /**
+     * Screen density the line thickness was calculated for.
+     */
+    private float mDensity = 0;
+
+    /**
+     * Counts the compass rose renders and the time spent rendering.
+     */
+    private final PerformanceCounter mRoseRenderCounter
+            = new PerformanceCounter("compass rose renders");
+
+    /**
+     * View width the cached shapes were converted for.
+     */
+    private int mCacheWidth = -1;
+
+    /**
+     * View height the cached shapes were converted for.
+     */
+    private int mCacheHeight = -1;
+
+    /**
+     * Counts the frames drawn and the time spent drawing them.
+     */
+    private final PerformanceCounter mDrawCounter
+            = new PerformanceCounter("frames");
+
     /**
      * Direction to destination.
      */
@@ -126,6 +195,91 @@ public class NavigationView extends ImageView {
      */
     private double mAzimuth = 0;
 
+    /**
+     * Animates the displayed direction toward the direction to destination.
+     */
+    private final AngleAnimator mDirectionAnimator = new AngleAnimator();
+
+    /**
+     * Animates the displayed azimuth toward the azimuth.
+     */
+    private final AngleAnimator mAzimuthAnimator = new AngleAnimator();
+
+    /**
+     * Whether an animation frame is scheduled.
+     */
+    private boolean mAnimating = false;
+
+    /**
+     * Timestamp of the previous animation frame in nanoseconds,
+     * in the System.nanoTime() time base.
+     */
+    private long mLastFrameTime = 0;
+
+    /**
+     * Whether the next animation frame is the first one of an animation.
+     */
+    private boolean mFirstFrame = true;
+
+    /**
+     * Vsync frame callback, used on Jelly Bean and higher.
+     */
+    private AnimationFrameCallback mFrameCallback = null;
+
+    /**
+     * Delayed frame, used before Jelly Bean.
+     */
+    private final Runnable mFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            doAnimationFrame(System.nanoTime());
+        }
+    };
+
+    /**
+     * Counts the time between animation frames (frame pacing).
+     */
+    private final PerformanceCounter mFrameIntervalCounter
+            = new PerformanceCounter("frame interval");
+
+    /**
+     * Number of animation frames.
+     */
+    private long mAnimationFrames = 0;
+
+    /**
+     * Number of animation frames that didn't visibly move the arrow
+     * or the compass rose.
+     */
+    private long mIdleFrames = 0;
+
+    /**
+     * Decides if a new direction or azimuth is visible,
+     * and counts the redraws avoided.
+     */
+    private final RedrawThreshold mRedrawThreshold
+            = new RedrawThreshold(REDRAW_THRESHOLD);
+
+    /**
+     * Direction of the last drawn frame.
+     */
+    private double mDrawnDirection = 0;
+
+    /**
+     * Azimuth of the last drawn frame.
+     */
+    private double mDrawnAzimuth = 0;
+
+    /**
+     * Navigation mode of the last drawn frame, null if nothing was drawn.
+     */
+    private Mode mDrawnNavigationMode = null;
+
+    /**
+     * Orientation mode of the last drawn frame, null if nothing was drawn.
+     */
+    private Mode mDrawnOrientationMode = null;
+
     /**
      * Navigation mode enum.
      */
@@ -199,6 +353,21 @@ public class NavigationView extends ImageView {
      */
     private static final double INTERSECTION_ANGLE = 45.0;
 
+    /**
+     * Number of quadrants in the compass rose.
+     */
+    private static final int QUADRANTS = 4;
+
+    /**
+     * Delay between animation frames before Jelly Bean, in milliseconds.
+     */
+    private static final long FRAME_DELAY = 16;
+
+    /**
+     * Minimum displacement of the shapes to redraw them, in pixels.
+     */
+    private static final double REDRAW_THRESHOLD = 0.5;
+
     /**
      * Constructor.
      *
@@ -248,6 +417,7 @@ public class NavigationView extends ImageView {
      */
     public final void setDirection(final double direction) {
         this.mDirection = FormatUtils.normalizeAngle(direction);
+        updateAnimationTargets();
     }
 
     /**
@@ -270,6 +440,7 @@ public class NavigationView extends ImageView {
      */
     public final void setAzimuth(final double azimuth) {
         this.mAzimuth = FormatUtils.normalizeAngle(-1 * azimuth);
+        updateAnimationTargets();
     }
 
     /**
@@ -328,6 +499,8 @@ public class NavigationView extends ImageView {
                 }
                 break;
         }
+
+        updateAnimationTargets();
     }
 
     /**
@@ -345,6 +518,8 @@ public class NavigationView extends ImageView {
      * @param mode Orientation mode : DISABLED, INACCURATE, ACCURATE
      */
     public final void setOrientationMode(final Mode mode) {
+        Mode previousMode = mOrientationMode;
+
         switch (mode) {
             default:
             case Disabled:
@@ -357,6 +532,13 @@ public class NavigationView extends ImageView {
                 this.mOrientationMode = mode;
                 break;
         }
+
+        // the compass rose is only drawn in accurate mode
+        if (mOrientationMode != previousMode) {
+            releaseCompassRoseBitmap();
+        }
+
+        updateAnimationTargets();
     }
 
     /**
@@ -368,8 +550,218 @@ public class NavigationView extends ImageView {
         return mOrientationMode;
     }
 
+    /**
+     * Get the counter with the number of frames drawn
+     * and the time spent drawing them.
+     *
+     * @return frame draw counter
+     */
+    public final PerformanceCounter getDrawCounter() {
+        return mDrawCounter;
+    }
+
+    /**
+     * Get the counter with the time between animation frames.
+     *
+     * @return frame interval counter
+     */
+    public final PerformanceCounter getFrameIntervalCounter() {
+        return mFrameIntervalCounter;
+    }
+
+    /**
+     * Get the number of animation frames.
+     *
+     * @return number of animation frames
+     */
+    public final long getAnimationFrameCount() {
+        return mAnimationFrames;
+    }
+
+    /**
+     * Get the number of animation frames that didn't visibly move
+     * the arrow or the compass rose.
+     *
+     * @return number of idle animation frames
+     */
+    public final long getIdleFrameCount() {
+        return mIdleFrames;
+    }
+
+    /**
+     * Get the counter with the number of times the compass rose was
+     * rendered into its bitmap, and the time spent rendering it.
+     *
+     * @return compass rose render counter
+     */
+    public final PerformanceCounter getRoseRenderCounter() {
+        return mRoseRenderCounter;
+    }
+
+    /**
+     * Get the counter with the redraws requested and avoided.
+     *
+     * @return redraw counter
+     */
+    public final RedrawThreshold getRedrawCounter() {
+        return mRedrawThreshold;
+    }
+
+    /**
+     * Invalidates the view, but only if a mode changed or the new
+     * direction or azimuth moves the shapes more than a fraction
+     * of a pixel, compared to the last drawn frame.
+     *
+     * @return true if the view was invalidated
+     */
+    public final boolean invalidateIfChanged() {
+        if (mRedrawThreshold.record(hasVisibleChange(), System.nanoTime())) {
+            invalidate();
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks if the view would look different from the last drawn frame.
+     *
+     * @return true if a mode, the size, the direction or azimuth changed
+     */
+    private boolean hasVisibleChange() {
+        if (mDrawnNavigationMode != getNavigationMode()
+                || mDrawnOrientationMode != getOrientationMode()
+                || mCacheWidth != getWidth()
+                || mCacheHeight != getHeight()) {
+            return true;
+        }
+
+        // compass rose arms are the longest shapes
+        double radius = ((double) getHeight() / 2) * ROSE_LENGTH;
+
+        return mRedrawThreshold.isVisible(radius,
+                mDrawnDirection, mDirectionAnimator.getValue())
+                || (getOrientationMode() == Mode.Accurate
+                && mRedrawThreshold.isVisible(radius,
+                mDrawnAzimuth, mAzimuthAnimator.getValue()));
+    }
+
+    /**
+     * Sets the animation targets to the direction and azimuth,
+     * and starts animating if they changed.
+     */
+    private void updateAnimationTargets() {
+        mDirectionAnimator.setTarget(getDirection());
+        mAzimuthAnimator.setTarget(getAzimuth());
+
+        if (!mDirectionAnimator.isSettled()
+                || !mAzimuthAnimator.isSettled()) {
+            startAnimation();
+        }
+    }
+
+    /**
+     * Starts scheduling animation frames, if they aren't scheduled yet.
+     */
+    private void startAnimation() {
+        if (mAnimating) {
+            return;
+        }
+
+        mAnimating = true;
+        mFirstFrame = true;
+        mLastFrameTime = System.nanoTime();
+        scheduleAnimationFrame();
+    }
+
+    /**
+     * Stops scheduling animation frames.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void stopAnimation() {
+        mAnimating = false;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            if (mFrameCallback != null) {
+                Choreographer.getInstance()
+                        .removeFrameCallback(mFrameCallback);
+            }
+        } else {
+            removeCallbacks(mFrameRunnable);
+        }
+    }
+
+    /**
+     * Schedules the next animation frame, on the next vsync if available.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void scheduleAnimationFrame() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            if (mFrameCallback == null) {
+                mFrameCallback = new AnimationFrameCallback();
+            }
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+        } else {
+            postDelayed(mFrameRunnable, FRAME_DELAY);
+        }
+    }
+
+    /**
+     * Moves the displayed direction and azimuth toward their targets,
+     * and schedules the next frame until both are settled.
+     *
+     * @param frameTime Timestamp of the frame in nanoseconds,
+     *                  in the System.nanoTime() time base
+     */
+    private void doAnimationFrame(final long frameTime) {
+        if (!mAnimating) {
+            return;
+        }
+
+        long step = frameTime - mLastFrameTime;
+        if (!mFirstFrame) {
+            mFrameIntervalCounter.add(step);
+        }
+        mFirstFrame = false;
+        mLastFrameTime = frameTime;
+
+        double previousDirection = mDirectionAnimator.getValue();
+        double previousAzimuth = mAzimuthAnimator.getValue();
+
+        boolean animating = mDirectionAnimator.update(step);
+        animating = mAzimuthAnimator.update(step) || animating;
+
+        mAnimationFrames++;
+        if (Math.abs(mDirectionAnimator.getValue() - previousDirection)
+                < AngleAnimator.SETTLED_ANGLE
+                && Math.abs(mAzimuthAnimator.getValue() - previousAzimuth)
+                < AngleAnimator.SETTLED_ANGLE) {
+            mIdleFrames++;
+        }
+
+        invalidateIfChanged();
+
+        if (animating) {
+            scheduleAnimationFrame();
+        } else {
+            mAnimating = false;
+        }
+    }
+
+    @Override
+    protected final void onDetachedFromWindow() {
+        releaseCompassRoseBitmap();
+        stopAnimation();
+        mDirectionAnimator.jumpTo(mDirectionAnimator.getTarget());
+        mAzimuthAnimator.jumpTo(mAzimuthAnimator.getTarget());
+
+        super.onDetachedFromWindow();
+    }
+
     @Override
     public final void onDraw(final Canvas canvas) {
+        long start = System.nanoTime();
+
         // scale View if it is not square
         if (getWidth() != getHeight()) {
             ViewGroup.LayoutParams layoutParams = getLayoutParams();
@@ -385,49 +777,129 @@ public class NavigationView extends ImageView {
             setLayoutParams(layoutParams);
         }
 
-        // Set up rotation converter
-        mRotationCenter.setCartesianCoordinate(getWidth() / 2, getHeight() / 2);
-        double mRoseRotation = getAzimuth();
-        mRoseRotationConverter.setScaleRadius((double) getHeight() / 2);
-        mRotationConverter.setRotationAngle(getDirection());
-        mRotationConverter.setScaleRadius((double) getHeight() / 2);
-        // no need to reassign mRotationCenter to mRotationConverter,
-        // and mRotationConverter to mArrowLines, mArrowBodyLeft/Right,
-        // the instances were assigned in init().
+        // line thickness depends on the screen density
+        if (getResources().getDisplayMetrics().density != mDensity) {
+            updateLineThickness();
+        }
+
+        // shapes only need to be converted when the view size changes
+        if (getWidth() != mCacheWidth || getHeight() != mCacheHeight) {
+            updateCache();
+        }
+
+        float centerX = mRotationCenter.getCartesianX();
+        float centerY = mRotationCenter.getCartesianY();
+
+        mDrawnDirection = mDirectionAnimator.getValue();
+        mDrawnAzimuth = mAzimuthAnimator.getValue();
+        mDrawnNavigationMode = getNavigationMode();
+        mDrawnOrientationMode = getOrientationMode();
 
         // draw circle with diameter scaled to length of compass rose arrow
         canvas.drawCircle(
-                mRotationCenter.getCartesianX(),
-                mRotationCenter.getCartesianY(),
+                centerX,
+                centerY,
                 ((float) getHeight() / 2) * (float) ROSE_LENGTH,
                 mPaintRoseLines);
 
-        // draw compass rose
-        if (getOrientationMode() == Mode.Accurate) {
-            mRoseRotationConverter.setRotationAngle(mRoseRotation);
-            canvas.drawPath(mCompassRoseBody.toPath(), mPaintRoseSolidNorth);
-            canvas.drawLines(mCompassRose.toLinesArray(), mPaintRoseLines);
-
-            mRoseRotationConverter.setRotationAngle(
-                    FormatUtils.CIRCLE_1Q + mRoseRotation);
-            canvas.drawPath(mCompassRoseBody.toPath(), mPaintRoseSolids);
-            canvas.drawLines(mCompassRose.toLinesArray(), mPaintRoseLines);
-
-            mRoseRotationConverter.setRotationAngle(
-                    FormatUtils.CIRCLE_HALF + mRoseRotation);
-            canvas.drawPath(mCompassRoseBody.toPath(), mPaintRoseSolids);
-            canvas.drawLines(mCompassRose.toLinesArray(), mPaintRoseLines);
-
-            mRoseRotationConverter.setRotationAngle(
-                    FormatUtils.CIRCLE_3Q + mRoseRotation);
-            canvas.drawPath(mCompassRoseBody.toPath(), mPaintRoseSolids);
-            canvas.drawLines(mCompassRose.toLinesArray(), mPaintRoseLines);
+        // draw rendered compass rose, rotated to the azimuth
+        if (getOrientationMode() == Mode.Accurate
+                && mCacheWidth > 0 && mCacheHeight > 0) {
+            if (mCompassRoseBitmap == null) {
+                renderCompassRose();
+            }
+
+            canvas.save();
+            canvas.rotate((float) mAzimuthAnimator.getValue(),
+                    centerX, centerY);
+            canvas.drawBitmap(mCompassRoseBitmap, 0, 0, mPaintRoseCache);
+            canvas.restore();
         }
 
         // draw arrow to destination
-        canvas.drawPath(mArrowBodyRight.toPath(), mPaintSolids);
-        canvas.drawPath(mArrowBodyLeft.toPath(), mPaintArrowSolidWhite);
-        canvas.drawLines(mArrowLines.toLinesArray(), mPaintLines);
+        canvas.save();
+        canvas.rotate((float) mDirectionAnimator.getValue(),
+                centerX, centerY);
+        canvas.drawPath(mArrowBodyRightCache, mPaintSolids);
+        canvas.drawPath(mArrowBodyLeftCache, mPaintArrowSolidWhite);
+        canvas.drawLines(mArrowLinesCache, mPaintLines);
+        canvas.restore();
+
+        mDrawCounter.add(System.nanoTime() - start);
+    }
+
+    /**
+     * Renders the compass rose pointing north into a bitmap,
+     * rotating the bitmap canvas for every quadrant.
+     */
+    private void renderCompassRose() {
+        long start = System.nanoTime();
+
+        mCompassRoseBitmap = Bitmap.createBitmap(
+                mCacheWidth, mCacheHeight, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(mCompassRoseBitmap);
+        float centerX = mRotationCenter.getCartesianX();
+        float centerY = mRotationCenter.getCartesianY();
+
+        canvas.drawPath(mCompassRoseBodyCache, mPaintRoseSolidNorth);
+        canvas.drawLines(mCompassRoseLinesCache, mPaintRoseLines);
+
+        for (int i = 1; i < QUADRANTS; i++) {
+            canvas.rotate(FormatUtils.CIRCLE_1Q, centerX, centerY);
+            canvas.drawPath(mCompassRoseBodyCache, mPaintRoseSolids);
+            canvas.drawLines(mCompassRoseLinesCache, mPaintRoseLines);
+        }
+
+        mRoseRenderCounter.add(System.nanoTime() - start);
+    }
+
+    /**
+     * Releases the rendered compass rose,
+     * it is rendered again the next time it is drawn.
+     */
+    private void releaseCompassRoseBitmap() {
+        if (mCompassRoseBitmap != null) {
+            mCompassRoseBitmap.recycle();
+            mCompassRoseBitmap = null;
+        }
+    }
+
+    /**
+     * Converts the line thickness to pixels, based on the screen density.
+     */
+    private void updateLineThickness() {
+        mDensity = getResources().getDisplayMetrics().density;
+
+        mPaintRoseLines.setStrokeWidth(Math.round(LINE_THICKNESS * mDensity));
+        mPaintLines.setStrokeWidth(Math.round(LINE_THICKNESS * mDensity));
+
+        releaseCompassRoseBitmap();
+    }
+
+    /**
+     * Converts the compass rose and arrow shapes to device coordinates,
+     * pointing north and scaled to the current view size.
+     * Rotation is applied when drawing, by rotating the canvas.
+     */
+    private void updateCache() {
+        mCacheWidth = getWidth();
+        mCacheHeight = getHeight();
+
+        mRotationCenter.setCartesianCoordinate(
+                mCacheWidth / 2, mCacheHeight / 2);
+        mRotationConverter.setScaleRadius((double) mCacheHeight / 2);
+        // no need to reassign mRotationCenter to mRotationConverter,
+        // the instance was assigned in init().
+
+        mCompassRoseLinesCache = mCompassRose.toLinesArray(
+                mCompassRoseLinesCache, mRotationConverter);
+        mCompassRoseBody.toPath(mCompassRoseBodyCache, mRotationConverter);
+        mArrowLinesCache = mArrowLines.toLinesArray(
+                mArrowLinesCache, mRotationConverter);
+        mArrowBodyRight.toPath(mArrowBodyRightCache, mRotationConverter);
+        mArrowBodyLeft.toPath(mArrowBodyLeftCache, mRotationConverter);
+
+        releaseCompassRoseBitmap();
     }
 
     /**
@@ -437,13 +909,9 @@ public class NavigationView extends ImageView {
     private void init() {
         Resources res = getResources();
 
-        // Get the screen's density scale
-        final float scale = res.getDisplayMetrics().density;
-
         // Convert the line thickness to pixels, based on density scale
-        mPaintRoseLines.setStrokeWidth(Math.round(LINE_THICKNESS * scale));
+        updateLineThickness();
         mPaintRoseLines.setStyle(Paint.Style.STROKE);
-        mPaintLines.setStrokeWidth(Math.round(LINE_THICKNESS * scale));
 
         // initialise paint color
         mPaintRoseLines.setColor(Color.DKGRAY);
@@ -463,29 +931,22 @@ public class NavigationView extends ImageView {
         // initialise rotationConverter
         mRotationCenter = new Coordinate(0, 0);
         mRotationConverter = new CoordinateRotation(mRotationCenter, 0.0, 1.0);
-        mRoseRotationConverter
-                = new CoordinateRotation(mRotationCenter, 0.0, 1.0);
-        mCompassRose.setCoordinateConverter(mRoseRotationConverter);
-        mCompassRoseBody.setCoordinateConverter(mRoseRotationConverter);
-        mArrowLines.setCoordinateConverter(mRotationConverter);
-        mArrowBodyRight.setCoordinateConverter(mRotationConverter);
-        mArrowBodyLeft.setCoordinateConverter(mRotationConverter);
 
         // draw compass rose
 
         // left side/outline in lines
-        mCompassRose.addCoordinate(ROSE_LENGTH, 0);
-        mCompassRose.addCoordinate(0, 0);
-        mCompassRose.addCoordinate(ROSE_INTER_LENGTH, INTERSECTION_ANGLE);
-        mCompassRose.addCoordinate(ROSE_LENGTH, 0);
-        mCompassRose.addCoordinate(ROSE_INTER_LENGTH, -1 * INTERSECTION_ANGLE);
+        mCompassRose.addPolar(ROSE_LENGTH, 0);
+        mCompassRose.addPolar(0, 0);
+        mCompassRose.addPolar(ROSE_INTER_LENGTH, INTERSECTION_ANGLE);
+        mCompassRose.addPolar(ROSE_LENGTH, 0);
+        mCompassRose.addPolar(ROSE_INTER_LENGTH, -1 * INTERSECTION_ANGLE);
         // don't close line
         mCompassRose.setCloseLine(false);
 
         // right side filled body
-        mCompassRoseBody.addCoordinate(0, 0);
-        mCompassRoseBody.addCoordinate(ROSE_LENGTH, 0);
-        mCompassRoseBody.addCoordinate(ROSE_INTER_LENGTH,
+        mCompassRoseBody.addPolar(0, 0);
+        mCompassRoseBody.addPolar(ROSE_LENGTH, 0);
+        mCompassRoseBody.addPolar(ROSE_INTER_LENGTH,
                 -1 * INTERSECTION_ANGLE);
 
         // draw arrow
@@ -495,23 +956,35 @@ public class NavigationView extends ImageView {
         double arrowLengthTail = -1 * D_40PCT;
 
         // left side/outline in lines
-        mArrowLines.addCoordinate(arrowLength, 0);
-        mArrowLines.addCoordinate(arrowLengthTail, -1 * ARROW_ANGLE);
-        mArrowLines.addCoordinate(arrowLengthDivide, 0);
-        mArrowLines.addCoordinate(arrowLengthTail, ARROW_ANGLE);
-        mArrowLines.addCoordinate(arrowLength, 0);
-        mArrowLines.addCoordinate(arrowLengthDivide, 0);
+        mArrowLines.addPolar(arrowLength, 0);
+        mArrowLines.addPolar(arrowLengthTail, -1 * ARROW_ANGLE);
+        mArrowLines.addPolar(arrowLengthDivide, 0);
+        mArrowLines.addPolar(arrowLengthTail, ARROW_ANGLE);
+        mArrowLines.addPolar(arrowLength, 0);
+        mArrowLines.addPolar(arrowLengthDivide, 0);
         // don't close line
         mArrowLines.setCloseLine(false);
 
         // right side of the filled arrow body
-        mArrowBodyRight.addCoordinate(arrowLength, 0);
-        mArrowBodyRight.addCoordinate(arrowLengthTail, -1 * ARROW_ANGLE);
-        mArrowBodyRight.addCoordinate(arrowLengthDivide, 0);
+        mArrowBodyRight.addPolar(arrowLength, 0);
+        mArrowBodyRight.addPolar(arrowLengthTail, -1 * ARROW_ANGLE);
+        mArrowBodyRight.addPolar(arrowLengthDivide, 0);
 
         // left side of the filled arrow body
-        mArrowBodyLeft.addCoordinate(arrowLength, 0);
-        mArrowBodyLeft.addCoordinate(arrowLengthTail, ARROW_ANGLE);
-        mArrowBodyLeft.addCoordinate(arrowLengthDivide, 0);
+        mArrowBodyLeft.addPolar(arrowLength, 0);
+        mArrowBodyLeft.addPolar(arrowLengthTail, ARROW_ANGLE);
+        mArrowBodyLeft.addPolar(arrowLengthDivide, 0);
+    }
+
+    /**
+     * Vsync frame callback, calling doAnimationFrame.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private class AnimationFrameCallback
+            implements Choreographer.FrameCallback {
+        @Override
+        public void doFrame(final long frameTimeNanos) {
+            doAnimationFrame(frameTimeNanos);
+        }
     }
 }
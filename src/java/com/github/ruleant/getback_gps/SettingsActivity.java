@@ -101,12 +101,32 @@ public class SettingsActivity extends PreferenceActivity {
      */
     public static final int GEO_ORIENTATION_SENSOR_CALCULATED = 2;
 
+    /**
+     * Geo orientation sensor value : raw sensors fused with gyroscope.
+     */
+    public static final int GEO_ORIENTATION_SENSOR_FUSION = 3;
+
+    /**
+     * Geo orientation sensor value : rotation vector sensor.
+     */
+    public static final int GEO_ORIENTATION_SENSOR_ROTATION_VECTOR = 4;
+
     /**
      * Default value of preference Default geo orientation sensor :
      * automatic.
      */
     public static final String DEFAULT_PREF_GEO_ORIENTATION_SENSOR = "0";
 
+    /**
+     * Key of debug preference Record sensor events.
+     */
+    public static final String KEY_PREF_RECORD_SENSORS = "record_sensors";
+
+    /**
+     * Default value of debug preference Record sensor events.
+     */
+    public static final boolean DEFAULT_PREF_RECORD_SENSORS = false;
+
     /**
      * 60 seconds.
      */
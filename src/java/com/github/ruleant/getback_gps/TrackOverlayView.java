@@ -0,0 +1,240 @@
+/**
+ * Track Overlay View
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+import com.github.ruleant.getback_gps.lib.PerformanceCounter;
+import com.github.ruleant.getback_gps.lib.TrackGeometry;
+
+/**
+ * Track overlay view draws the recorded track (breadcrumbs)
+ * around the current location, rotated to the heading.
+ *
+ * @author Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class TrackOverlayView extends View {
+    /**
+     * Paint used for drawing the track.
+     */
+    private final Paint mPaintTrack = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    /**
+     * Paint used for drawing the current location.
+     */
+    private final Paint mPaintLocation = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    /**
+     * Track geometry, null if there is no track.
+     */
+    private TrackGeometry mTrack = null;
+
+    /**
+     * Latitude of the current location in degrees.
+     */
+    private double mLatitude = 0;
+
+    /**
+     * Longitude of the current location in degrees.
+     */
+    private double mLongitude = 0;
+
+    /**
+     * Heading in degrees, pointing up.
+     */
+    private double mHeading = 0;
+
+    /**
+     * Scale in pixels per meter.
+     */
+    private double mPixelsPerMeter = DEFAULT_SCALE;
+
+    /**
+     * Screen density scale.
+     */
+    private float mDensity = 1;
+
+    /**
+     * Counts the frames drawn and the time spent drawing them.
+     */
+    private final PerformanceCounter mDrawCounter
+            = new PerformanceCounter("frames");
+
+    /**
+     * Default scale in pixels per meter.
+     */
+    public static final double DEFAULT_SCALE = 1;
+
+    /**
+     * Line thickness.
+     */
+    private static final float LINE_THICKNESS = 2;
+
+    /**
+     * Radius of the current location marker.
+     */
+    private static final float LOCATION_RADIUS = 4;
+
+    /**
+     * Constructor.
+     *
+     * @param context App context
+     */
+    public TrackOverlayView(final Context context) {
+        super(context);
+
+        init();
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param context App context
+     * @param attributes View Attributes
+     */
+    public TrackOverlayView(final Context context,
+                            final AttributeSet attributes) {
+        super(context, attributes);
+
+        init();
+    }
+
+    /**
+     * Sets the track.
+     *
+     * @param track Track geometry, null to clear the track
+     */
+    public final void setTrack(final TrackGeometry track) {
+        mTrack = track;
+        invalidate();
+    }
+
+    /**
+     * Gets the track.
+     *
+     * @return track geometry, null if there is no track
+     */
+    public final TrackGeometry getTrack() {
+        return mTrack;
+    }
+
+    /**
+     * Sets the current location, in the center of the view.
+     *
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     */
+    public final void setLocation(final double latitude,
+                                  final double longitude) {
+        mLatitude = latitude;
+        mLongitude = longitude;
+        invalidate();
+    }
+
+    /**
+     * Sets the heading, the track is rotated so the heading points up.
+     *
+     * @param heading Heading in degrees
+     */
+    public final void setHeading(final double heading) {
+        mHeading = heading;
+        invalidate();
+    }
+
+    /**
+     * Sets the scale (zoom).
+     *
+     * @param pixelsPerMeter Scale in pixels per meter
+     * @throws IllegalArgumentException if pixelsPerMeter is not positive
+     */
+    public final void setScale(final double pixelsPerMeter) {
+        if (!(pixelsPerMeter > 0)) {
+            throw new IllegalArgumentException(
+                    "pixelsPerMeter should be positive");
+        }
+
+        mPixelsPerMeter = pixelsPerMeter;
+        invalidate();
+    }
+
+    /**
+     * Gets the scale (zoom).
+     *
+     * @return scale in pixels per meter
+     */
+    public final double getScale() {
+        return mPixelsPerMeter;
+    }
+
+    /**
+     * Get the counter with the number of frames drawn
+     * and the time spent drawing them.
+     *
+     * @return frame draw counter
+     */
+    public final PerformanceCounter getDrawCounter() {
+        return mDrawCounter;
+    }
+
+    @Override
+    public final void onDraw(final Canvas canvas) {
+        long start = System.nanoTime();
+
+        long centerX = getWidth() / 2;
+        long centerY = getHeight() / 2;
+
+        if (mTrack != null) {
+            // distance from the center to the corners
+            double viewRadius = Math.hypot(centerX, centerY);
+
+            int count = mTrack.toLines(mLatitude, mLongitude, mHeading,
+                    mPixelsPerMeter, centerX, centerY, viewRadius);
+            canvas.drawLines(mTrack.getLines(), 0, count, mPaintTrack);
+        }
+
+        canvas.drawCircle(centerX, centerY, LOCATION_RADIUS * mDensity,
+                mPaintLocation);
+
+        mDrawCounter.add(System.nanoTime() - start);
+    }
+
+    /**
+     * Initialise TrackOverlayView.
+     */
+    private void init() {
+        Resources res = getResources();
+
+        // Get the screen's density scale
+        mDensity = res.getDisplayMetrics().density;
+
+        // Convert the line thickness to pixels, based on density scale
+        mPaintTrack.setStrokeWidth(Math.round(LINE_THICKNESS * mDensity));
+        mPaintTrack.setColor(Color.GRAY);
+        mPaintLocation.setColor(Color.RED);
+    }
+}
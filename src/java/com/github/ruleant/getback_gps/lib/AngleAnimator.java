@@ -0,0 +1,206 @@
+/**
+ * Animates an angle toward a target with a critically damped spring.
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+/**
+ * Animates an angle toward a target with a critically damped spring.
+ *
+ * The angle follows the shortest arc to the target, without overshoot.
+ * The spring is solved exactly for every step, so it is stable for
+ * any frame time. When the angle is close enough to the target
+ * and hardly moving, it snaps to the target and is settled,
+ * no more steps are needed until the target changes.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class AngleAnimator {
+    /**
+     * Default natural frequency in radians/second,
+     * settling in about half a second.
+     */
+    public static final double DEFAULT_FREQUENCY = 10;
+
+    /**
+     * Maximum angle difference of a settled angle, in degrees.
+     */
+    public static final double SETTLED_ANGLE = 0.05;
+
+    /**
+     * Maximum velocity of a settled angle, in degrees/second.
+     */
+    public static final double SETTLED_VELOCITY = 0.5;
+
+    /**
+     * Maximum time step in nanoseconds, longer steps (eg. after the
+     * animation was paused) are limited to it.
+     */
+    private static final long MAX_STEP = 100 * Tools.MILLI_IN_NANO;
+
+    /**
+     * Nanoseconds in a second.
+     */
+    private static final double SECOND_IN_NANO = 1e9;
+
+    /**
+     * Natural frequency in radians/second.
+     */
+    private final double mFrequency;
+
+    /**
+     * Current angle in degrees (0°-360°).
+     */
+    private double mValue = 0;
+
+    /**
+     * Target angle in degrees (0°-360°).
+     */
+    private double mTarget = 0;
+
+    /**
+     * Current velocity in degrees/second.
+     */
+    private double mVelocity = 0;
+
+    /**
+     * Whether the angle reached the target.
+     */
+    private boolean mSettled = true;
+
+    /**
+     * Constructor, using the default frequency.
+     */
+    public AngleAnimator() {
+        this(DEFAULT_FREQUENCY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param frequency Natural frequency in radians/second,
+     *                  higher is faster
+     * @throws IllegalArgumentException if frequency is not positive
+     */
+    public AngleAnimator(final double frequency) {
+        if (!(frequency > 0)) {
+            throw new IllegalArgumentException(
+                    "frequency should be positive");
+        }
+
+        mFrequency = frequency;
+    }
+
+    /**
+     * Sets the target angle, the angle starts moving toward it.
+     *
+     * @param target Target angle in degrees
+     */
+    public final void setTarget(final double target) {
+        double normalized = FormatUtils.normalizeAngle(target);
+
+        if (normalized != mTarget) {
+            mTarget = normalized;
+            mSettled = false;
+        }
+    }
+
+    /**
+     * Sets the angle and target, without animation.
+     *
+     * @param angle Angle in degrees
+     */
+    public final void jumpTo(final double angle) {
+        mValue = FormatUtils.normalizeAngle(angle);
+        mTarget = mValue;
+        mVelocity = 0;
+        mSettled = true;
+    }
+
+    /**
+     * Moves the angle toward the target.
+     *
+     * @param step Time step in nanoseconds
+     * @return true if the angle is still animating, false if it settled
+     */
+    public final boolean update(final long step) {
+        if (mSettled) {
+            return false;
+        }
+
+        double time = Math.min(Math.max(step, 0), MAX_STEP) / SECOND_IN_NANO;
+
+        // shortest rotation to the target, range -180°-180°
+        double error = FormatUtils.normalizeAngle(
+                mValue - mTarget + FormatUtils.CIRCLE_HALF)
+                - FormatUtils.CIRCLE_HALF;
+
+        // exact solution of x'' = -w^2 x - 2 w x' over the time step
+        double decay = Math.exp(-mFrequency * time);
+        double temp = (mVelocity + mFrequency * error) * time;
+        error = (error + temp) * decay;
+        mVelocity = (mVelocity - mFrequency * temp) * decay;
+
+        if (Math.abs(error) < SETTLED_ANGLE
+                && Math.abs(mVelocity) < SETTLED_VELOCITY) {
+            jumpTo(mTarget);
+            return false;
+        }
+
+        mValue = FormatUtils.normalizeAngle(mTarget + error);
+        return true;
+    }
+
+    /**
+     * Gets the current angle.
+     *
+     * @return angle in degrees (0°-360°)
+     */
+    public final double getValue() {
+        return mValue;
+    }
+
+    /**
+     * Gets the target angle.
+     *
+     * @return target angle in degrees (0°-360°)
+     */
+    public final double getTarget() {
+        return mTarget;
+    }
+
+    /**
+     * Gets the current velocity.
+     *
+     * @return velocity in degrees/second
+     */
+    public final double getVelocity() {
+        return mVelocity;
+    }
+
+    /**
+     * Checks if the angle reached the target.
+     *
+     * @return true if the angle is settled
+     */
+    public final boolean isSettled() {
+        return mSettled;
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Filter for angles.
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+/**
+ * Filters angles (in degrees) with another filter,
+ * taking the crossing of 0°/360° into account.
+ *
+ * The angles are unwrapped into a continuous signal before filtering,
+ * eg. 350°, 10° becomes 350°, 370°, and the filtered value
+ * is normalized to the range 0°-360°.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class CircularFilter implements SignalFilter {
+    /**
+     * Filter of the unwrapped angles.
+     */
+    private final SignalFilter mFilter;
+
+    /**
+     * Last unwrapped angle.
+     */
+    private float mUnwrapped = 0;
+
+    /**
+     * Whether a value was filtered since the last reset.
+     */
+    private boolean mHasValue = false;
+
+    /**
+     * Constructor.
+     *
+     * @param filter Filter of the unwrapped angles
+     * @throws IllegalArgumentException if filter is null
+     */
+    public CircularFilter(final SignalFilter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException(
+                    "Parameter filter should not be null");
+        }
+
+        mFilter = filter;
+    }
+
+    /**
+     * Filters a new angle.
+     *
+     * @param value New angle in degrees
+     * @param timestamp Timestamp of the value in nanoseconds
+     * @return filtered angle in degrees (0°-360°)
+     */
+    @Override
+    public final float filter(final float value, final long timestamp) {
+        if (mHasValue) {
+            // shortest rotation from previous angle, range -180°-180°
+            float delta = (float) FormatUtils.normalizeAngle(
+                    value - mUnwrapped + FormatUtils.CIRCLE_HALF)
+                    - FormatUtils.CIRCLE_HALF;
+            mUnwrapped += delta;
+        } else {
+            mUnwrapped = (float) FormatUtils.normalizeAngle(value);
+            mHasValue = true;
+        }
+
+        return (float) FormatUtils.normalizeAngle(
+                mFilter.filter(mUnwrapped, timestamp));
+    }
+
+    @Override
+    public final void reset() {
+        mFilter.reset();
+        mUnwrapped = 0;
+        mHasValue = false;
+    }
+
+    @Override
+    public final SignalFilter newInstance() {
+        return new CircularFilter(mFilter.newInstance());
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ * Windowed statistics of circular values
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+/**
+ * Windowed statistics of circular values, eg. headings.
+ *
+ * The sine and cosine of the last values are kept in a ring buffer,
+ * with running sums, so adding a value and getting the circular mean,
+ * resultant length or circular variance is O(1).
+ * The sums are recalculated when the ring buffer wraps around,
+ * to prevent accumulating rounding errors,
+ * which keeps adding a value O(1) on average.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class CircularStatistics {
+    /**
+     * Resultant length below which the mean is undefined.
+     */
+    private static final double MIN_RESULTANT_LENGTH = 1e-9;
+
+    /**
+     * Sines of the values in the window.
+     */
+    private final double[] mSin;
+
+    /**
+     * Cosines of the values in the window.
+     */
+    private final double[] mCos;
+
+    /**
+     * Sum of the sines in the window.
+     */
+    private double mSumSin = 0;
+
+    /**
+     * Sum of the cosines in the window.
+     */
+    private double mSumCos = 0;
+
+    /**
+     * Index of the next value in the ring buffer.
+     */
+    private int mIndex = 0;
+
+    /**
+     * Number of values in the window.
+     */
+    private int mCount = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param windowSize Number of values in the window
+     * @throws IllegalArgumentException if windowSize is not positive
+     */
+    public CircularStatistics(final int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException(
+                    "windowSize should be a non-zero positive value");
+        }
+
+        mSin = new double[windowSize];
+        mCos = new double[windowSize];
+    }
+
+    /**
+     * Adds a value, replacing the oldest value if the window is full.
+     *
+     * @param angle Angle in degrees
+     */
+    public final void add(final double angle) {
+        final double radians = Math.toRadians(angle);
+        final double sin = Math.sin(radians);
+        final double cos = Math.cos(radians);
+
+        mSumSin += sin - mSin[mIndex];
+        mSumCos += cos - mCos[mIndex];
+        mSin[mIndex] = sin;
+        mCos[mIndex] = cos;
+
+        mIndex++;
+        if (mIndex == mSin.length) {
+            mIndex = 0;
+            resum();
+        }
+        if (mCount < mSin.length) {
+            mCount++;
+        }
+    }
+
+    /**
+     * Gets the number of values in the window.
+     *
+     * @return number of values
+     */
+    public final int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Checks if the window is full.
+     *
+     * @return true if the window is full
+     */
+    public final boolean isFull() {
+        return mCount == mSin.length;
+    }
+
+    /**
+     * Gets the circular mean of the values in the window.
+     *
+     * @return mean in degrees (0-360), Double.NaN if the window is empty
+     *  or the values cancel each other out
+     */
+    public final double getMean() {
+        if (getResultantLength() < MIN_RESULTANT_LENGTH) {
+            return Double.NaN;
+        }
+
+        return FormatUtils.normalizeAngle(
+                Math.toDegrees(Math.atan2(mSumSin, mSumCos)));
+    }
+
+    /**
+     * Gets the mean resultant length of the values in the window,
+     * 1 if all values are equal, 0 if they are spread evenly.
+     *
+     * @return resultant length (0-1), 0 if the window is empty
+     */
+    public final double getResultantLength() {
+        if (mCount == 0) {
+            return 0;
+        }
+
+        return Math.min(1,
+                Math.sqrt(mSumSin * mSumSin + mSumCos * mSumCos) / mCount);
+    }
+
+    /**
+     * Gets the circular variance of the values in the window,
+     * 0 if all values are equal, 1 if they are spread evenly.
+     *
+     * @return circular variance (0-1), 1 if the window is empty
+     */
+    public final double getVariance() {
+        return 1 - getResultantLength();
+    }
+
+    /**
+     * Removes all values.
+     */
+    public final void reset() {
+        for (int i = 0; i < mSin.length; i++) {
+            mSin[i] = 0;
+            mCos[i] = 0;
+        }
+        mSumSin = 0;
+        mSumCos = 0;
+        mIndex = 0;
+        mCount = 0;
+    }
+
+    /**
+     * Recalculates the running sums.
+     */
+    private void resum() {
+        double sumSin = 0;
+        double sumCos = 0;
+        for (int i = 0; i < mSin.length; i++) {
+            sumSin += mSin[i];
+            sumCos += mCos[i];
+        }
+        mSumSin = sumSin;
+        mSumCos = sumCos;
+    }
+}
@@ -0,0 +1,253 @@
+/**
+ * Estimates the quality of the compass heading
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import android.hardware.SensorManager;
+
+/**
+ * Estimates the quality of the compass heading.
+ *
+ * The magnitude of the measured magnetic field is compared to the
+ * expected field strength of the Earth at the current location :
+ * a magnet or metal nearby changes the magnitude,
+ * moving past it makes the magnitude vary.
+ * The mean and variance of the magnitude are tracked with exponential
+ * moving averages, so adding a value is O(1).
+ * Together with the accuracy reported by the sensor
+ * this gives a heading confidence score.
+ * The magnetic field sensor is also sampled, at a low rate,
+ * when the heading comes from the rotation vector sensor.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class CompassQuality {
+    /**
+     * Default expected field strength in µT,
+     * when the location is unknown.
+     */
+    public static final float DEFAULT_FIELD_STRENGTH = 50;
+
+    /**
+     * Confidence below which the compass is disturbed.
+     */
+    public static final double MIN_CONFIDENCE = 0.5;
+
+    /**
+     * Weight of a new magnitude in the moving averages.
+     */
+    private static final double ALPHA = 0.1;
+
+    /**
+     * Number of values before the magnitude is used.
+     */
+    private static final int MIN_VALUES = 10;
+
+    /**
+     * Relative deviation of the mean magnitude
+     * from the expected field strength, without confidence loss.
+     */
+    private static final double MAGNITUDE_TOLERANCE = 0.1;
+
+    /**
+     * Relative deviation of the mean magnitude
+     * from the expected field strength, without confidence.
+     */
+    private static final double MAGNITUDE_LIMIT = 0.4;
+
+    /**
+     * Relative standard deviation of the magnitude,
+     * without confidence loss.
+     */
+    private static final double VARIATION_TOLERANCE = 0.03;
+
+    /**
+     * Relative standard deviation of the magnitude, without confidence.
+     */
+    private static final double VARIATION_LIMIT = 0.15;
+
+    /**
+     * Confidence per sensor accuracy status :
+     * unreliable, low, medium, high.
+     */
+    private static final double[] ACCURACY_CONFIDENCE = {0, 0.5, 0.8, 1};
+
+    /**
+     * Expected field strength in µT.
+     */
+    private double mExpectedStrength = DEFAULT_FIELD_STRENGTH;
+
+    /**
+     * Moving average of the magnitude in µT.
+     */
+    private double mMean = 0;
+
+    /**
+     * Moving variance of the magnitude in µT².
+     */
+    private double mVariance = 0;
+
+    /**
+     * Number of values, up to MIN_VALUES.
+     */
+    private int mValues = 0;
+
+    /**
+     * Accuracy status reported by the sensor,
+     * SensorManager.SENSOR_STATUS_ACCURACY_HIGH if not reported.
+     */
+    private int mAccuracy = SensorManager.SENSOR_STATUS_ACCURACY_HIGH;
+
+    /**
+     * Sets the expected field strength at the current location.
+     *
+     * @param strength Field strength in µT
+     * @throws IllegalArgumentException if strength is not positive
+     */
+    public final void setExpectedFieldStrength(final double strength) {
+        if (strength <= 0) {
+            throw new IllegalArgumentException(
+                    "strength should be a non-zero positive value");
+        }
+
+        mExpectedStrength = strength;
+    }
+
+    /**
+     * Gets the expected field strength.
+     *
+     * @return field strength in µT
+     */
+    public final double getExpectedFieldStrength() {
+        return mExpectedStrength;
+    }
+
+    /**
+     * Adds magnetic field values.
+     *
+     * @param values Magnetic field values (x, y, z) in µT
+     */
+    public final void addMagneticField(final float[] values) {
+        final double magnitude = Math.sqrt(values[0] * values[0]
+                + values[1] * values[1] + values[2] * values[2]);
+
+        if (mValues == 0) {
+            mMean = magnitude;
+            mVariance = 0;
+        } else {
+            final double difference = magnitude - mMean;
+            mMean += ALPHA * difference;
+            mVariance = (1 - ALPHA)
+                    * (mVariance + ALPHA * difference * difference);
+        }
+        if (mValues < MIN_VALUES) {
+            mValues++;
+        }
+    }
+
+    /**
+     * Sets the accuracy status reported by the sensor.
+     *
+     * @param accuracy One of the SensorManager.SENSOR_STATUS_* values
+     */
+    public final void setAccuracy(final int accuracy) {
+        mAccuracy = Math.max(SensorManager.SENSOR_STATUS_UNRELIABLE,
+                Math.min(SensorManager.SENSOR_STATUS_ACCURACY_HIGH,
+                        accuracy));
+    }
+
+    /**
+     * Gets the moving average of the magnitude.
+     *
+     * @return magnitude in µT
+     */
+    public final double getMagnitude() {
+        return mMean;
+    }
+
+    /**
+     * Gets the moving standard deviation of the magnitude.
+     *
+     * @return standard deviation in µT
+     */
+    public final double getMagnitudeDeviation() {
+        return Math.sqrt(mVariance);
+    }
+
+    /**
+     * Gets the heading confidence score, from the sensor accuracy,
+     * the deviation of the magnitude from the expected field strength
+     * and the variation of the magnitude.
+     *
+     * @return confidence (0-1), 1 is fully confident
+     */
+    public final double getConfidence() {
+        double confidence = ACCURACY_CONFIDENCE[mAccuracy];
+        if (mValues >= MIN_VALUES) {
+            confidence *= score(
+                    Math.abs(mMean - mExpectedStrength) / mExpectedStrength,
+                    MAGNITUDE_TOLERANCE, MAGNITUDE_LIMIT);
+            confidence *= score(
+                    Math.sqrt(mVariance) / mExpectedStrength,
+                    VARIATION_TOLERANCE, VARIATION_LIMIT);
+        }
+
+        return confidence;
+    }
+
+    /**
+     * Checks if the compass is disturbed,
+     * if the confidence is below MIN_CONFIDENCE.
+     *
+     * @return true if disturbed
+     */
+    public final boolean isDisturbed() {
+        return getConfidence() < MIN_CONFIDENCE;
+    }
+
+    /**
+     * Forgets the magnetic field values and the accuracy.
+     */
+    public final void reset() {
+        mValues = 0;
+        mMean = 0;
+        mVariance = 0;
+        mAccuracy = SensorManager.SENSOR_STATUS_ACCURACY_HIGH;
+    }
+
+    /**
+     * Scores a relative error, decreasing linearly
+     * from 1 at the tolerance to 0 at the limit.
+     *
+     * @param error Relative error
+     * @param tolerance Error without loss
+     * @param limit Error with score 0
+     * @return score (0-1)
+     */
+    private static double score(final double error, final double tolerance,
+                                final double limit) {
+        if (error <= tolerance) {
+            return 1;
+        }
+
+        return Math.max(0, (limit - error) / (limit - tolerance));
+    }
+}
@@ -34,4 +34,16 @@ public interface CoordinateConverterInterface {
      * @return Converted coordinate
      */
     Coordinate getConvertedCoordinate(Coordinate coordinate);
+
+    /**
+     * Converts a set of coordinates in place.
+     *
+     * The coordinates are stored as x,y pairs, using the same axes as
+     * Coordinate. Converted values are not rounded.
+     *
+     * @param coordinates Coordinates, as x,y pairs
+     * @param offset Index of the first coordinate (pair) to convert
+     * @param count Number of coordinates (pairs) to convert
+     */
+    void convertCoordinates(double[] coordinates, int offset, int count);
 }
@@ -42,6 +42,16 @@ public class CoordinateRotation  implements CoordinateConverterInterface {
      */
     private double mScaleRadius;
 
+    /**
+     * Sine of the rotation angle, multiplied by the radius scale ratio.
+     */
+    private double mScaledSin;
+
+    /**
+     * Cosine of the rotation angle, multiplied by the radius scale ratio.
+     */
+    private double mScaledCos;
+
     /**
      * Constructor.
      *
@@ -63,6 +73,7 @@ public class CoordinateRotation  implements CoordinateConverterInterface {
      */
     public final void setRotationAngle(final double angle) {
         mAngle = Math.toRadians(FormatUtils.normalizeAngle(angle));
+        updateRotation();
     }
 
     /**
@@ -94,6 +105,16 @@ public class CoordinateRotation  implements CoordinateConverterInterface {
      */
     public final void setScaleRadius(final double scaleRadius) {
         mScaleRadius = scaleRadius;
+        updateRotation();
+    }
+
+    /**
+     * Precalculates the sine and cosine of the rotation angle,
+     * used by convertCoordinates.
+     */
+    private void updateRotation() {
+        mScaledSin = Math.sin(mAngle) * mScaleRadius;
+        mScaledCos = Math.cos(mAngle) * mScaleRadius;
     }
 
     /**
@@ -120,4 +141,49 @@ public class CoordinateRotation  implements CoordinateConverterInterface {
                 mCenter.getCartesianX() + Math.round(Math.sin(angle) * radius),
                 mCenter.getCartesianY() - Math.round(Math.cos(angle) * radius));
     }
+
+    /**
+     * Rotate a set of coordinates with an angle, around a center.
+     *
+     * The same transformation as getConvertedCoordinate() is applied,
+     * using the Cartesian coordinates :
+     * X = center X + x * sin(a) + y * cos(a)
+     * Y = center Y - x * cos(a) + y * sin(a)
+     * The sine and cosine are calculated when the angle or scale is set,
+     * the center is only converted once per call.
+     *
+     * @param coordinates Coordinates, as x,y pairs
+     * @param offset Index of the first coordinate (pair) to convert
+     * @param count Number of coordinates (pairs) to convert
+     * @throws IllegalArgumentException if coordinates is null
+     * @throws IndexOutOfBoundsException if offset or count is out of range
+     */
+    public final void convertCoordinates(final double[] coordinates,
+                                         final int offset, final int count) {
+        if (coordinates == null) {
+            throw new IllegalArgumentException(
+                    "Parameter coordinates should not be null");
+        }
+
+        int end = (offset + count) * GeometryBuffer.NUM_COORD_POINT;
+        if (offset < 0 || count < 0 || end > coordinates.length) {
+            throw new IndexOutOfBoundsException(
+                    "coordinates " + offset + " .. " + (offset + count - 1)
+                            + " are not in range");
+        }
+
+        double centerX = mCenter.getCartesianX();
+        double centerY = mCenter.getCartesianY();
+        double sin = mScaledSin;
+        double cos = mScaledCos;
+
+        for (int i = offset * GeometryBuffer.NUM_COORD_POINT; i < end;
+                i += GeometryBuffer.NUM_COORD_POINT) {
+            double x = coordinates[i + Coordinate.X];
+            double y = coordinates[i + Coordinate.Y];
+
+            coordinates[i + Coordinate.X] = centerX + x * sin + y * cos;
+            coordinates[i + Coordinate.Y] = centerY - x * cos + y * sin;
+        }
+    }
 }
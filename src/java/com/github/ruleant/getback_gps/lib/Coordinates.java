@@ -24,7 +24,6 @@ package com.github.ruleant.getback_gps.lib;
 import android.graphics.Path;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 
 /**
  * Coordinates is a container that can contain
@@ -38,20 +37,15 @@ public class Coordinates {
      */
     private final ArrayList<Coordinate> mCoordinates;
 
-    /**
-     * Iterator for Coordinates collection.
-     */
-    private Iterator<Coordinate> mCoordinateIterator;
-
     /**
      * Coordinate converter.
      */
-    private CoordinateConverterInterface mCoordinateConverter;
+    private volatile CoordinateConverterInterface mCoordinateConverter;
 
     /**
      * Close line when exporting sets of coordinates.
      */
-    private boolean mCloseLine = true;
+    private volatile boolean mCloseLine = true;
 
     /**
      * Number of coordinates per line : x,y of start and end point.
@@ -126,7 +120,9 @@ public class Coordinates {
                     "Parameter coordinate should not be null");
         }
 
-        mCoordinates.add(coordinate);
+        synchronized (mCoordinates) {
+            mCoordinates.add(coordinate);
+        }
     }
 
     /**
@@ -161,7 +157,9 @@ public class Coordinates {
      * @return number of Coordinate instances
      */
     public final int getSize() {
-        return mCoordinates.size();
+        synchronized (mCoordinates) {
+            return mCoordinates.size();
+        }
     }
 
     /**
@@ -170,168 +168,76 @@ public class Coordinates {
      * @return array with Coordinate instances
      */
     public final Object[] toArray() {
-        return mCoordinates.toArray();
-    }
-
-    /**
-     * Return Coordinates as Path.
-     *
-     * @return coordinates as Path instance
-     */
-    public final Path toPath() {
-        Path path = new Path();
-
-        // 2 points or more are required to draw a line
-        if (getSize() <= 1) {
-            return path;
+        synchronized (mCoordinates) {
+            return mCoordinates.toArray();
         }
-
-        long[] firstPoint = getFirstCoordinateCartesian();
-        // skip point if it is null
-        while (firstPoint == null) {
-            firstPoint = getNextCoordinateCartesian();
-        }
-
-        path.moveTo(firstPoint[Coordinate.X], firstPoint[Coordinate.Y]);
-
-        long[] currentPoint;
-        while (mCoordinateIterator.hasNext()) {
-            currentPoint = getNextCoordinateCartesian();
-
-            // skip point if it is null
-            if (currentPoint != null) {
-                path.lineTo(currentPoint[Coordinate.X],
-                        currentPoint[Coordinate.Y]);
-            }
-        }
-
-        if (mCloseLine) {
-            path.close();
-        }
-
-        return path;
     }
 
     /**
-     * Return Coordinates as Canvas.DrawLines array.
+     * Converts the coordinates and returns them as an immutable set.
      *
-     * @return coordinates as array
-     */
-    public final float[] toLinesArray() {
-        int totalPoints = getSize();
-
-        // 2 points or more are required to draw a line
-        if (totalPoints <= 1) {
-            return new float[0];
-        }
-
-        int arrayLength;
-
-        // only 1 line between 2 points (no need to close),
-        // else use class property mCloseLine
-        boolean closeLine = totalPoints != 2 && mCloseLine;
-
-        if (closeLine) {
-            // calculate array length, based on number of coordinates
-            // length = #points * 4 (=number of coordinates needed to draw
-            // a line between 2 points)
-            arrayLength = totalPoints * NUM_COORD_LINE;
-        } else {
-            // when not closing, one set of coordinates less is needed.
-            arrayLength = (totalPoints - 1) * NUM_COORD_LINE;
-        }
-
-        float[] array = new float[arrayLength];
-
-        long[] firstPoint = getFirstCoordinateCartesian();
-        // skip point if it is null
-        while (firstPoint == null) {
-            firstPoint = getNextCoordinateCartesian();
-        }
-
-        long[] previousPoint = firstPoint;
-        long[] currentPoint;
-        int arrayPosition = 0;
-
-        while (mCoordinateIterator.hasNext()) {
-            currentPoint = getNextCoordinateCartesian();
-
-            // skip point if it is null
-            if (currentPoint == null) {
-                continue;
-            }
-
-            // prevent overfilling array in case the
-            // coordinates collection changes
-            if (arrayPosition >= arrayLength) {
-                return array;
-            }
-
-            // add next line
-            array[arrayPosition + POS_START_X] = previousPoint[Coordinate.X];
-            array[arrayPosition + POS_START_Y] = previousPoint[Coordinate.Y];
-            array[arrayPosition + POS_END_X] = currentPoint[Coordinate.X];
-            array[arrayPosition + POS_END_Y] = currentPoint[Coordinate.Y];
-
-            arrayPosition += NUM_COORD_LINE;
-            previousPoint = currentPoint;
-        }
-
-        // prevent overfilling array in case the
-        // coordinates collection changes
-        // or when line doesn't need to be closed
-        if (!closeLine || arrayPosition >= arrayLength) {
-            return array;
+     * The coordinates are copied before they are converted, so coordinates
+     * can be added on another thread while the frozen set is created.
+     * The returned instance can be cached and shared between threads,
+     * for example to build the geometry off the UI thread.
+     *
+     * @return converted coordinates
+     */
+    public final FrozenCoordinates freeze() {
+        Object[] coordinates = toArray();
+        CoordinateConverterInterface converter = mCoordinateConverter;
+        boolean closeLine = mCloseLine;
+
+        float[] points = new float[
+                coordinates.length * GeometryBuffer.NUM_COORD_POINT];
+        int position = 0;
+        for (Object coordinate : coordinates) {
+            long[] point = convertCoordinate(converter,
+                    (Coordinate) coordinate).getCartesianCoordinate();
+            points[position + Coordinate.X] = point[Coordinate.X];
+            points[position + Coordinate.Y] = point[Coordinate.Y];
+            position += GeometryBuffer.NUM_COORD_POINT;
         }
 
-        // close figure
-        array[arrayPosition + POS_START_X] = previousPoint[Coordinate.X];
-        array[arrayPosition + POS_START_Y] = previousPoint[Coordinate.Y];
-        array[arrayPosition + POS_END_X] = firstPoint[Coordinate.X];
-        array[arrayPosition + POS_END_Y] = firstPoint[Coordinate.Y];
-
-        return array;
+        return new FrozenCoordinates(points, closeLine);
     }
 
     /**
-     * Get first Coordinate and return it as Cartesian coordinate array.
+     * Return Coordinates as Path.
      *
-     * @return Cartesian coordinate array
+     * @return coordinates as Path instance
      */
-    private long[] getFirstCoordinateCartesian() {
-        mCoordinateIterator = mCoordinates.iterator();
-        return getNextCoordinateCartesian();
+    public final Path toPath() {
+        return freeze().toPath();
     }
 
     /**
-     * Get next Coordinate and return it as Cartesian coordinate array.
+     * Return Coordinates as Canvas.DrawLines array.
      *
-     * @return Cartesian coordinate array
+     * @return coordinates as array
      */
-    private long[] getNextCoordinateCartesian() {
-        if (mCoordinateIterator != null && mCoordinateIterator.hasNext()) {
-            return convertCoordinate(mCoordinateIterator.next())
-                    .getCartesianCoordinate();
-        }
-
-        return null;
+    public final float[] toLinesArray() {
+        return freeze().toLinesArray();
     }
 
     /**
-     * Converts a Coordinate using the defined CoordinateConverter class,
+     * Converts a Coordinate using a CoordinateConverter class,
      * it returns an unconverted Coordinate if the CoordinateConverter class
      * is not set.
      *
+     * @param converter CoordinateConverter class, can be null
      * @param coordinate Unconverted coordinate
      * @return Converted coordinate
      */
-    private Coordinate convertCoordinate(final Coordinate coordinate) {
+    private static Coordinate convertCoordinate(
+            final CoordinateConverterInterface converter,
+            final Coordinate coordinate) {
         // if CoordinateConverter is not set, return coordinate unconverted
-        if (mCoordinateConverter == null) {
+        if (converter == null) {
             return coordinate;
         }
 
         // convert Coordinate using defined CoordinateConverter
-        return mCoordinateConverter.getConvertedCoordinate(coordinate);
+        return converter.getConvertedCoordinate(coordinate);
     }
 }
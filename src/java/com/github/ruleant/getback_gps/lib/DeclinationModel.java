@@ -0,0 +1,40 @@
+/**
+ * Model of the magnetic declination
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+/**
+ * Model of the magnetic declination, the angle between
+ * magnetic north and true north.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public interface DeclinationModel {
+    /**
+     * Gets the magnetic declination at a location,
+     * positive if magnetic north is east of true north.
+     *
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @return declination in degrees
+     */
+    double getDeclination(double latitude, double longitude);
+}
@@ -0,0 +1,95 @@
+/**
+ * Exponential smoothing filter.
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+/**
+ * Exponential smoothing (low pass) filter.
+ *
+ * The first value is passed unfiltered,
+ * next values are filtered with LowPassFilter.filterValue().
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class ExponentialFilter implements SignalFilter {
+    /**
+     * Alpha value of the filter.
+     */
+    private final float mAlpha;
+
+    /**
+     * Current filtered value.
+     */
+    private float mValue = 0;
+
+    /**
+     * Whether a value was filtered since the last reset.
+     */
+    private boolean mHasValue = false;
+
+    /**
+     * Constructor.
+     *
+     * @param alpha Alpha value of the filter (valid range : 0-1),
+     *              0 ignores new values, 1 doesn't filter
+     * @throws IllegalArgumentException if alpha is out of range
+     */
+    public ExponentialFilter(final float alpha) {
+        if (alpha > 1 || alpha < 0) {
+            throw new IllegalArgumentException(
+                    "parameter alpha is not in range 0.0 .. 1.0");
+        }
+
+        mAlpha = alpha;
+    }
+
+    @Override
+    public final float filter(final float value, final long timestamp) {
+        if (mHasValue) {
+            mValue = LowPassFilter.filterValue(mValue, value, mAlpha);
+        } else {
+            mValue = value;
+            mHasValue = true;
+        }
+
+        return mValue;
+    }
+
+    @Override
+    public final void reset() {
+        mValue = 0;
+        mHasValue = false;
+    }
+
+    @Override
+    public final SignalFilter newInstance() {
+        return new ExponentialFilter(mAlpha);
+    }
+
+    /**
+     * Gets the alpha value of the filter.
+     *
+     * @return alpha value
+     */
+    public final float getAlpha() {
+        return mAlpha;
+    }
+}
@@ -0,0 +1,218 @@
+/**
+ * Grid of cached magnetic field strength values
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import java.util.Arrays;
+
+/**
+ * Grid of cached magnetic field strength values.
+ *
+ * The field strength of a model is evaluated at the nodes of a coarse
+ * latitude/longitude grid, when a cell is used for the first time,
+ * and interpolated bilinearly inside a cell.
+ * The corners of the last used cell are kept,
+ * so a location in the same cell costs a few multiplications.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class FieldStrengthGrid implements FieldStrengthModel {
+    /**
+     * Default grid cell size in degrees.
+     */
+    public static final double DEFAULT_CELL_SIZE = 5;
+
+    /**
+     * Minimum latitude in degrees.
+     */
+    private static final double MIN_LATITUDE = -90;
+
+    /**
+     * Minimum longitude in degrees.
+     */
+    private static final double MIN_LONGITUDE = -180;
+
+    /**
+     * Model evaluated at the grid nodes.
+     */
+    private final FieldStrengthModel mModel;
+
+    /**
+     * Grid cell size in degrees.
+     */
+    private final double mCellSize;
+
+    /**
+     * Number of latitude rows of the grid.
+     */
+    private final int mRows;
+
+    /**
+     * Number of longitude columns of the grid.
+     */
+    private final int mColumns;
+
+    /**
+     * Field strength at the grid nodes, NaN if not evaluated.
+     */
+    private final float[] mNodes;
+
+    /**
+     * Row of the last used cell, -1 if none.
+     */
+    private int mCellRow = -1;
+
+    /**
+     * Column of the last used cell.
+     */
+    private int mCellColumn = -1;
+
+    /**
+     * Field strength at the south west corner of the last used cell.
+     */
+    private double mSouthWest;
+
+    /**
+     * Field strength at the south east corner of the last used cell.
+     */
+    private double mSouthEast;
+
+    /**
+     * Field strength at the north west corner of the last used cell.
+     */
+    private double mNorthWest;
+
+    /**
+     * Field strength at the north east corner of the last used cell.
+     */
+    private double mNorthEast;
+
+    /**
+     * Number of model evaluations.
+     */
+    private int mEvaluations = 0;
+
+    /**
+     * Constructor, with the default cell size.
+     *
+     * @param model Model evaluated at the grid nodes
+     * @throws IllegalArgumentException if model is null
+     */
+    public FieldStrengthGrid(final FieldStrengthModel model) {
+        this(model, DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param model Model evaluated at the grid nodes
+     * @param cellSize Grid cell size in degrees,
+     *                 should divide 180° in whole cells
+     * @throws IllegalArgumentException if model is null
+     *  or cellSize is invalid
+     */
+    public FieldStrengthGrid(final FieldStrengthModel model,
+                             final double cellSize) {
+        if (model == null) {
+            throw new IllegalArgumentException(
+                    "Parameter model should not be null");
+        }
+        if (cellSize <= 0 || cellSize > FormatUtils.CIRCLE_HALF
+                || FormatUtils.CIRCLE_HALF % cellSize != 0) {
+            throw new IllegalArgumentException(
+                    "cellSize should divide 180° in whole cells");
+        }
+
+        mModel = model;
+        mCellSize = cellSize;
+        mRows = (int) (FormatUtils.CIRCLE_HALF / cellSize) + 1;
+        mColumns = (int) (FormatUtils.CIRCLE_FULL / cellSize) + 1;
+        mNodes = new float[mRows * mColumns];
+        Arrays.fill(mNodes, Float.NaN);
+    }
+
+    @Override
+    public final double getFieldStrength(final double latitude,
+                                         final double longitude) {
+        final double y = (Math.max(MIN_LATITUDE, Math.min(-MIN_LATITUDE,
+                latitude)) - MIN_LATITUDE) / mCellSize;
+        final double x = FormatUtils.normalizeAngle(
+                longitude - MIN_LONGITUDE) / mCellSize;
+
+        // the last row and column are only used as corners
+        final int row = Math.min((int) y, mRows - 2);
+        final int column = Math.min((int) x, mColumns - 2);
+        if (row != mCellRow || column != mCellColumn) {
+            loadCell(row, column);
+        }
+
+        final double fy = y - row;
+        final double fx = x - column;
+        final double south = mSouthWest + (mSouthEast - mSouthWest) * fx;
+        final double north = mNorthWest + (mNorthEast - mNorthWest) * fx;
+
+        return south + (north - south) * fy;
+    }
+
+    /**
+     * Gets the number of model evaluations.
+     *
+     * @return number of evaluations
+     */
+    public final int getEvaluations() {
+        return mEvaluations;
+    }
+
+    /**
+     * Loads the corners of a cell, evaluating the model if needed.
+     *
+     * @param row Row of the cell
+     * @param column Column of the cell
+     */
+    private void loadCell(final int row, final int column) {
+        mSouthWest = getNode(row, column);
+        mSouthEast = getNode(row, column + 1);
+        mNorthWest = getNode(row + 1, column);
+        mNorthEast = getNode(row + 1, column + 1);
+        mCellRow = row;
+        mCellColumn = column;
+    }
+
+    /**
+     * Gets the field strength at a grid node,
+     * evaluating the model if needed.
+     *
+     * @param row Row of the node
+     * @param column Column of the node
+     * @return field strength in microtesla
+     */
+    private double getNode(final int row, final int column) {
+        final int index = row * mColumns + column;
+        if (Float.isNaN(mNodes[index])) {
+            mNodes[index] = (float) mModel.getFieldStrength(
+                    MIN_LATITUDE + row * mCellSize,
+                    MIN_LONGITUDE + column * mCellSize);
+            mEvaluations++;
+        }
+
+        return mNodes[index];
+    }
+}
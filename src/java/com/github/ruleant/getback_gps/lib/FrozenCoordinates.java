@@ -0,0 +1,255 @@
+/**
+ * Immutable set of converted coordinates.
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import android.graphics.Path;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of converted coordinates, created by Coordinates.freeze().
+ *
+ * The coordinates are converted and the lines are calculated once,
+ * when the instance is created. The instance can't be changed afterwards,
+ * so it can be created on any thread and shared between threads and views.
+ * Rendering methods only use local state.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public final class FrozenCoordinates {
+    /**
+     * Converted points, as x,y pairs.
+     */
+    private final float[] mPoints;
+
+    /**
+     * Lines in Canvas.drawLines format.
+     */
+    private final float[] mLines;
+
+    /**
+     * Close line (add a line from last to first point).
+     */
+    private final boolean mCloseLine;
+
+    /**
+     * Constructor.
+     *
+     * @param points Converted points, as x,y pairs,
+     *               the array is owned by the new instance
+     * @param closeLine Close line (add a line from last to first point)
+     */
+    FrozenCoordinates(final float[] points, final boolean closeLine) {
+        mPoints = points;
+        mCloseLine = closeLine;
+        mLines = createLines();
+    }
+
+    /**
+     * Get number of points.
+     *
+     * @return number of points
+     */
+    public int getSize() {
+        return mPoints.length / GeometryBuffer.NUM_COORD_POINT;
+    }
+
+    /**
+     * Gets the converted X coordinate of a point.
+     *
+     * @param index Point index
+     * @return X coordinate
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public float getX(final int index) {
+        checkIndex(index);
+
+        return mPoints[index * GeometryBuffer.NUM_COORD_POINT + Coordinate.X];
+    }
+
+    /**
+     * Gets the converted Y coordinate of a point.
+     *
+     * @param index Point index
+     * @return Y coordinate
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public float getY(final int index) {
+        checkIndex(index);
+
+        return mPoints[index * GeometryBuffer.NUM_COORD_POINT + Coordinate.Y];
+    }
+
+    /**
+     * Gets the number of values in the lines array.
+     *
+     * @return number of values, 4 per line
+     */
+    public int getLinesLength() {
+        return mLines.length;
+    }
+
+    /**
+     * Return coordinates as Canvas.DrawLines array.
+     *
+     * @return copy of the lines array
+     */
+    public float[] toLinesArray() {
+        return mLines.clone();
+    }
+
+    /**
+     * Copies the lines in Canvas.drawLines format into an array.
+     *
+     * The array is reused if it is large enough, the values after
+     * getLinesLength() are left untouched, so draw the lines with
+     * Canvas.drawLines(lines, 0, getLinesLength(), paint).
+     *
+     * @param lines Array to reuse, a new array is created if it is null
+     *              or too small
+     * @return array with the lines
+     */
+    public float[] copyLinesTo(final float[] lines) {
+        if (lines == null || lines.length < mLines.length) {
+            return toLinesArray();
+        }
+
+        System.arraycopy(mLines, 0, lines, 0, mLines.length);
+        return lines;
+    }
+
+    /**
+     * Return coordinates as Path.
+     *
+     * @return coordinates as new Path instance
+     */
+    public Path toPath() {
+        Path path = new Path();
+        toPath(path);
+
+        return path;
+    }
+
+    /**
+     * Adds the coordinates to a Path.
+     *
+     * The path is reset before adding the points.
+     *
+     * @param path Path to reuse
+     * @throws IllegalArgumentException if path is null
+     */
+    public void toPath(final Path path) {
+        if (path == null) {
+            throw new IllegalArgumentException(
+                    "Parameter path should not be null");
+        }
+
+        path.rewind();
+
+        // 2 points or more are required to draw a line
+        if (getSize() <= 1) {
+            return;
+        }
+
+        path.moveTo(mPoints[Coordinate.X], mPoints[Coordinate.Y]);
+        for (int i = GeometryBuffer.NUM_COORD_POINT; i < mPoints.length;
+                i += GeometryBuffer.NUM_COORD_POINT) {
+            path.lineTo(mPoints[i + Coordinate.X], mPoints[i + Coordinate.Y]);
+        }
+
+        if (mCloseLine) {
+            path.close();
+        }
+    }
+
+    /**
+     * Calculates the lines between the points.
+     *
+     * @return lines in Canvas.drawLines format
+     */
+    private float[] createLines() {
+        int totalPoints = getSize();
+
+        // 2 points or more are required to draw a line
+        if (totalPoints <= 1) {
+            return new float[0];
+        }
+
+        // only 1 line between 2 points (no need to close),
+        // else use class property mCloseLine
+        boolean closeLine = totalPoints != 2 && mCloseLine;
+        int lines = closeLine ? totalPoints : totalPoints - 1;
+        float[] array = new float[lines * Coordinates.NUM_COORD_LINE];
+
+        for (int line = 0; line < lines; line++) {
+            int start = line * GeometryBuffer.NUM_COORD_POINT;
+            // the closing line ends in the first point
+            int end = ((line + 1) % totalPoints)
+                    * GeometryBuffer.NUM_COORD_POINT;
+            int position = line * Coordinates.NUM_COORD_LINE;
+
+            array[position + Coordinates.POS_START_X]
+                    = mPoints[start + Coordinate.X];
+            array[position + Coordinates.POS_START_Y]
+                    = mPoints[start + Coordinate.Y];
+            array[position + Coordinates.POS_END_X]
+                    = mPoints[end + Coordinate.X];
+            array[position + Coordinates.POS_END_Y]
+                    = mPoints[end + Coordinate.Y];
+        }
+
+        return array;
+    }
+
+    /**
+     * Checks if an index is in range.
+     *
+     * @param index Point index
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= getSize()) {
+            throw new IndexOutOfBoundsException(
+                    "index " + index + " is not in range 0 .. "
+                            + (getSize() - 1));
+        }
+    }
+
+    @Override
+    public boolean equals(final Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof FrozenCoordinates)) {
+            return false;
+        }
+
+        FrozenCoordinates other = (FrozenCoordinates) object;
+        return mCloseLine == other.mCloseLine
+                && Arrays.equals(mPoints, other.mPoints);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(mPoints) * 2 + (mCloseLine ? 1 : 0);
+    }
+}
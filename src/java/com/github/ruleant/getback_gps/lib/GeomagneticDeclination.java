@@ -0,0 +1,65 @@
+/**
+ * Magnetic declination of the World Magnetic Model
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import android.hardware.GeomagneticField;
+
+/**
+ * Magnetic declination of the World Magnetic Model,
+ * as evaluated by GeomagneticField, at sea level.
+ *
+ * Every call evaluates the spherical harmonic model,
+ * use a DeclinationGrid to cache the values.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class GeomagneticDeclination implements DeclinationModel {
+    /**
+     * Time the model is evaluated at,
+     * in milliseconds since the epoch.
+     */
+    private final long mTime;
+
+    /**
+     * Constructor, evaluating the model at the current time.
+     */
+    public GeomagneticDeclination() {
+        this(System.currentTimeMillis());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param time Time the model is evaluated at,
+     *             in milliseconds since the epoch
+     */
+    public GeomagneticDeclination(final long time) {
+        mTime = time;
+    }
+
+    @Override
+    public final double getDeclination(final double latitude,
+                                       final double longitude) {
+        return new GeomagneticField((float) latitude, (float) longitude,
+                0, mTime).getDeclination();
+    }
+}
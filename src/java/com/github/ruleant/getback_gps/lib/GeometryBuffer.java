@@ -0,0 +1,364 @@
+/**
+ * Packed buffer of 2D points, transformed in batch.
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import android.graphics.Path;
+
+import java.util.Arrays;
+
+/**
+ * Packed buffer of 2D points, transformed in batch.
+ *
+ * Points are stored as Cartesian coordinates in one double array,
+ * using the same axes as Coordinate. They are converted all at once
+ * by a CoordinateConverterInterface class, fe. CoordinateRotation,
+ * writing into a reusable array for Canvas.drawLines or a reusable Path.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class GeometryBuffer {
+    /**
+     * Number of values per point : x and y.
+     */
+    public static final int NUM_COORD_POINT = 2;
+
+    /**
+     * Default initial capacity, in points.
+     */
+    private static final int DEFAULT_CAPACITY = 8;
+
+    /**
+     * Points, as x,y pairs.
+     */
+    private double[] mPoints;
+
+    /**
+     * Converted points, reused between conversions.
+     */
+    private double[] mConverted = new double[0];
+
+    /**
+     * Number of points.
+     */
+    private int mSize = 0;
+
+    /**
+     * Close line (add a line from last to first point).
+     */
+    private boolean mCloseLine = true;
+
+    /**
+     * Constructor, using the default capacity.
+     */
+    public GeometryBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param capacity Initial capacity, in points
+     * @throws IllegalArgumentException if capacity is negative
+     */
+    public GeometryBuffer(final int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity can't be negative");
+        }
+
+        mPoints = new double[capacity * NUM_COORD_POINT];
+    }
+
+    /**
+     * Number of points.
+     *
+     * @return number of points
+     */
+    public final int getSize() {
+        return mSize;
+    }
+
+    /**
+     * Adds a point in Cartesian format.
+     *
+     * @param x X coordinate
+     * @param y Y coordinate
+     * @return index of the added point
+     */
+    public final int add(final double x, final double y) {
+        ensureCapacity(mSize + 1);
+
+        int index = mSize++;
+        mPoints[index * NUM_COORD_POINT + Coordinate.X] = x;
+        mPoints[index * NUM_COORD_POINT + Coordinate.Y] = y;
+
+        return index;
+    }
+
+    /**
+     * Adds a point in polar format.
+     *
+     * @param radius Radius coordinate
+     * @param angle Angle coordinate in degrees
+     * @return index of the added point
+     */
+    public final int addPolar(final double radius, final double angle) {
+        double radians = Math.toRadians(angle);
+
+        return add(Math.cos(radians) * radius, Math.sin(radians) * radius);
+    }
+
+    /**
+     * Adds all points of a Coordinates collection.
+     *
+     * @param coordinates Coordinates to add
+     * @throws IllegalArgumentException if coordinates is null
+     */
+    public final void add(final Coordinates coordinates) {
+        if (coordinates == null) {
+            throw new IllegalArgumentException(
+                    "Parameter coordinates should not be null");
+        }
+
+        ensureCapacity(mSize + coordinates.getSize());
+        for (Object coordinate : coordinates.toArray()) {
+            addPolar(((Coordinate) coordinate).getPolarRadius(),
+                    ((Coordinate) coordinate).getPolarAngle());
+        }
+    }
+
+    /**
+     * Gets the X coordinate of a point.
+     *
+     * @param index Point index
+     * @return X coordinate
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public final double getX(final int index) {
+        checkIndex(index);
+
+        return mPoints[index * NUM_COORD_POINT + Coordinate.X];
+    }
+
+    /**
+     * Gets the Y coordinate of a point.
+     *
+     * @param index Point index
+     * @return Y coordinate
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public final double getY(final int index) {
+        checkIndex(index);
+
+        return mPoints[index * NUM_COORD_POINT + Coordinate.Y];
+    }
+
+    /**
+     * Removes all points.
+     */
+    public final void clear() {
+        mSize = 0;
+    }
+
+    /**
+     * Reduces the capacity to the number of points.
+     */
+    public final void trimToSize() {
+        mPoints = Arrays.copyOf(mPoints, mSize * NUM_COORD_POINT);
+        mConverted = new double[0];
+    }
+
+    /**
+     * Close line (add a line from last to first point)
+     * when exporting the points.
+     * By default, the line is closed.
+     *
+     * @param close set to true to close the line
+     */
+    public final void setCloseLine(final boolean close) {
+        mCloseLine = close;
+    }
+
+    /**
+     * Gets the number of values toLinesArray() writes.
+     *
+     * @return number of values, 4 per line
+     */
+    public final int getLinesLength() {
+        // 2 points or more are required to draw a line
+        if (mSize <= 1) {
+            return 0;
+        }
+
+        // only 1 line between 2 points (no need to close)
+        if (mSize != 2 && mCloseLine) {
+            return mSize * Coordinates.NUM_COORD_LINE;
+        } else {
+            return (mSize - 1) * Coordinates.NUM_COORD_LINE;
+        }
+    }
+
+    /**
+     * Converts the points to lines, in Canvas.drawLines format.
+     *
+     * The array is reused if it is large enough, the values after
+     * getLinesLength() are left untouched, so draw the lines with
+     * Canvas.drawLines(lines, 0, getLinesLength(), paint).
+     *
+     * @param lines Array to reuse, a new array is created if it is null
+     *              or too small
+     * @param converter Coordinate converter, points are not converted
+     *                  if it is null
+     * @return array with the lines
+     */
+    public final float[] toLinesArray(
+            final float[] lines, final CoordinateConverterInterface converter) {
+        int length = getLinesLength();
+        float[] array = lines;
+        if (array == null || array.length < length) {
+            array = new float[length];
+        }
+
+        if (length == 0) {
+            return array;
+        }
+
+        double[] points = convert(converter);
+        int position = 0;
+
+        for (int i = NUM_COORD_POINT; i < mSize * NUM_COORD_POINT;
+                i += NUM_COORD_POINT) {
+            array[position + Coordinates.POS_START_X]
+                    = (float) points[i - NUM_COORD_POINT + Coordinate.X];
+            array[position + Coordinates.POS_START_Y]
+                    = (float) points[i - NUM_COORD_POINT + Coordinate.Y];
+            array[position + Coordinates.POS_END_X]
+                    = (float) points[i + Coordinate.X];
+            array[position + Coordinates.POS_END_Y]
+                    = (float) points[i + Coordinate.Y];
+
+            position += Coordinates.NUM_COORD_LINE;
+        }
+
+        // close figure
+        if (position < length) {
+            int last = (mSize - 1) * NUM_COORD_POINT;
+            array[position + Coordinates.POS_START_X]
+                    = (float) points[last + Coordinate.X];
+            array[position + Coordinates.POS_START_Y]
+                    = (float) points[last + Coordinate.Y];
+            array[position + Coordinates.POS_END_X]
+                    = (float) points[Coordinate.X];
+            array[position + Coordinates.POS_END_Y]
+                    = (float) points[Coordinate.Y];
+        }
+
+        return array;
+    }
+
+    /**
+     * Converts the points to a Path.
+     *
+     * The path is reset before adding the points.
+     *
+     * @param path Path to reuse
+     * @param converter Coordinate converter, points are not converted
+     *                  if it is null
+     * @throws IllegalArgumentException if path is null
+     */
+    public final void toPath(final Path path,
+                             final CoordinateConverterInterface converter) {
+        if (path == null) {
+            throw new IllegalArgumentException(
+                    "Parameter path should not be null");
+        }
+
+        path.rewind();
+
+        // 2 points or more are required to draw a line
+        if (mSize <= 1) {
+            return;
+        }
+
+        double[] points = convert(converter);
+
+        path.moveTo((float) points[Coordinate.X],
+                (float) points[Coordinate.Y]);
+        for (int i = NUM_COORD_POINT; i < mSize * NUM_COORD_POINT;
+                i += NUM_COORD_POINT) {
+            path.lineTo((float) points[i + Coordinate.X],
+                    (float) points[i + Coordinate.Y]);
+        }
+
+        if (mCloseLine) {
+            path.close();
+        }
+    }
+
+    /**
+     * Converts all points, into a reused array.
+     *
+     * @param converter Coordinate converter, points are not converted
+     *                  if it is null
+     * @return converted points, the array can be larger than the points
+     */
+    private double[] convert(final CoordinateConverterInterface converter) {
+        if (converter == null) {
+            return mPoints;
+        }
+
+        if (mConverted.length < mSize * NUM_COORD_POINT) {
+            mConverted = new double[mPoints.length];
+        }
+        System.arraycopy(mPoints, 0, mConverted, 0, mSize * NUM_COORD_POINT);
+        converter.convertCoordinates(mConverted, 0, mSize);
+
+        return mConverted;
+    }
+
+    /**
+     * Checks if an index is in range.
+     *
+     * @param index Point index
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException(
+                    "index " + index + " is not in range 0 .. "
+                            + (mSize - 1));
+        }
+    }
+
+    /**
+     * Grows the array.
+     *
+     * @param minCapacity Minimal capacity, in points
+     */
+    private void ensureCapacity(final int minCapacity) {
+        if (minCapacity * NUM_COORD_POINT <= mPoints.length) {
+            return;
+        }
+
+        mPoints = Arrays.copyOf(mPoints, Math.max(
+                minCapacity * NUM_COORD_POINT, mPoints.length * 2));
+    }
+}
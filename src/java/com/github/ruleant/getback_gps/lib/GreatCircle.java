@@ -0,0 +1,226 @@
+/**
+ * Great circle distance and bearing calculations.
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+/**
+ * Provides methods to calculate the distance and bearing between
+ * two points on a sphere with the mean radius of the earth,
+ * without requiring an android.location.Location instance.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class GreatCircle {
+    /**
+     * Mean earth radius in meters.
+     */
+    public static final double EARTH_RADIUS = 6371008.8;
+
+    /**
+     * Length of one degree of latitude in meters.
+     */
+    public static final double METERS_PER_DEGREE
+            = EARTH_RADIUS * Math.PI / FormatUtils.CIRCLE_HALF;
+
+    /**
+     * Number of fixed point units in one degree (1e-7° resolution,
+     * about 1.1 cm).
+     */
+    public static final double FIXED_POINT_SCALE = 1e7;
+
+    /**
+     * Number of fixed point units in a full circle.
+     */
+    private static final long FIXED_POINT_CIRCLE
+            = (long) (FormatUtils.CIRCLE_FULL * FIXED_POINT_SCALE);
+
+    /**
+     * Radians in one fixed point unit.
+     */
+    private static final double RADIANS_PER_FIXED_POINT
+            = Math.PI / FormatUtils.CIRCLE_HALF / FIXED_POINT_SCALE;
+
+    /**
+     * Hidden constructor, to prevent instantiating.
+     */
+    protected GreatCircle() {
+        // prevents calls from subclass
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Calculates the great circle distance between two points,
+     * using the haversine formula.
+     *
+     * @param latitude1 latitude of first point in degrees
+     * @param longitude1 longitude of first point in degrees
+     * @param latitude2 latitude of second point in degrees
+     * @param longitude2 longitude of second point in degrees
+     * @return distance in meters
+     */
+    public static double distance(
+            final double latitude1, final double longitude1,
+            final double latitude2, final double longitude2) {
+        return distanceRadians(Math.toRadians(latitude1),
+                Math.toRadians(latitude2),
+                Math.toRadians(longitude2 - longitude1));
+    }
+
+    /**
+     * Calculates the initial bearing (forward azimuth) from the first
+     * to the second point.
+     *
+     * @param latitude1 latitude of first point in degrees
+     * @param longitude1 longitude of first point in degrees
+     * @param latitude2 latitude of second point in degrees
+     * @param longitude2 longitude of second point in degrees
+     * @return bearing in ° relative to the North (0-360°)
+     */
+    public static double bearing(
+            final double latitude1, final double longitude1,
+            final double latitude2, final double longitude2) {
+        return bearingRadians(Math.toRadians(latitude1),
+                Math.toRadians(latitude2),
+                Math.toRadians(longitude2 - longitude1));
+    }
+
+    /**
+     * Converts degrees to a fixed point value (1e-7°).
+     *
+     * @param degrees angle in degrees
+     * @return fixed point value
+     */
+    public static int toFixedPoint(final double degrees) {
+        return (int) Math.round(degrees * FIXED_POINT_SCALE);
+    }
+
+    /**
+     * Converts a fixed point value (1e-7°) to degrees.
+     *
+     * @param fixedPoint fixed point value
+     * @return angle in degrees
+     */
+    public static double fromFixedPoint(final int fixedPoint) {
+        return fixedPoint / FIXED_POINT_SCALE;
+    }
+
+    /**
+     * Calculates the great circle distance between two points
+     * with fixed point coordinates (1e-7°), using the haversine formula.
+     *
+     * @param latitude1 latitude of first point
+     * @param longitude1 longitude of first point
+     * @param latitude2 latitude of second point
+     * @param longitude2 longitude of second point
+     * @return distance in meters
+     */
+    public static double distanceFixedPoint(
+            final int latitude1, final int longitude1,
+            final int latitude2, final int longitude2) {
+        return distanceRadians(latitude1 * RADIANS_PER_FIXED_POINT,
+                latitude2 * RADIANS_PER_FIXED_POINT,
+                deltaFixedPoint(longitude1, longitude2)
+                        * RADIANS_PER_FIXED_POINT);
+    }
+
+    /**
+     * Calculates the initial bearing (forward azimuth) from the first
+     * to the second point with fixed point coordinates (1e-7°).
+     *
+     * @param latitude1 latitude of first point
+     * @param longitude1 longitude of first point
+     * @param latitude2 latitude of second point
+     * @param longitude2 longitude of second point
+     * @return bearing in ° relative to the North (0-360°)
+     */
+    public static double bearingFixedPoint(
+            final int latitude1, final int longitude1,
+            final int latitude2, final int longitude2) {
+        return bearingRadians(latitude1 * RADIANS_PER_FIXED_POINT,
+                latitude2 * RADIANS_PER_FIXED_POINT,
+                deltaFixedPoint(longitude1, longitude2)
+                        * RADIANS_PER_FIXED_POINT);
+    }
+
+    /**
+     * Calculates the difference between two fixed point longitudes,
+     * wrapped to the shortest direction, without integer overflow.
+     *
+     * @param longitude1 first longitude
+     * @param longitude2 second longitude
+     * @return difference (-180°..180°), in fixed point units
+     */
+    private static long deltaFixedPoint(final int longitude1,
+                                        final int longitude2) {
+        long delta = (long) longitude2 - longitude1;
+
+        if (delta > FIXED_POINT_CIRCLE / 2) {
+            delta -= FIXED_POINT_CIRCLE;
+        } else if (delta < -FIXED_POINT_CIRCLE / 2) {
+            delta += FIXED_POINT_CIRCLE;
+        }
+
+        return delta;
+    }
+
+    /**
+     * Calculates the great circle distance using the haversine formula.
+     *
+     * @param lat1 latitude of first point in radians
+     * @param lat2 latitude of second point in radians
+     * @param deltaLon longitude difference in radians
+     * @return distance in meters
+     */
+    private static double distanceRadians(final double lat1,
+                                          final double lat2,
+                                          final double deltaLon) {
+        double sinDeltaLat = Math.sin((lat2 - lat1) / 2);
+        double sinDeltaLon = Math.sin(deltaLon / 2);
+
+        double a = sinDeltaLat * sinDeltaLat
+                + Math.cos(lat1) * Math.cos(lat2) * sinDeltaLon * sinDeltaLon;
+
+        // limit rounding errors for antipodal points
+        if (a > 1) {
+            a = 1;
+        }
+
+        return 2 * EARTH_RADIUS * Math.asin(Math.sqrt(a));
+    }
+
+    /**
+     * Calculates the initial bearing.
+     *
+     * @param lat1 latitude of first point in radians
+     * @param lat2 latitude of second point in radians
+     * @param deltaLon longitude difference in radians
+     * @return bearing in ° relative to the North (0-360°)
+     */
+    private static double bearingRadians(final double lat1,
+                                         final double lat2,
+                                         final double deltaLon) {
+        double y = Math.sin(deltaLon) * Math.cos(lat2);
+        double x = Math.cos(lat1) * Math.sin(lat2)
+                - Math.sin(lat1) * Math.cos(lat2) * Math.cos(deltaLon);
+
+        return FormatUtils.normalizeAngle(Math.toDegrees(Math.atan2(y, x)));
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * Throttles heading change notifications
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import java.util.Locale;
+
+/**
+ * Throttles heading change notifications.
+ *
+ * A notification is sent when the heading changed more than a deadband
+ * since the last notification, but not sooner than a minimum interval,
+ * changes within that interval are coalesced into the next notification.
+ * When the maximum interval passed, a notification is sent
+ * even if the heading didn't change, so listeners know it is current.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class HeadingThrottle {
+    /**
+     * Minute in nanoseconds.
+     */
+    private static final double MINUTE_IN_NANO = 60e9;
+
+    /**
+     * Minimum heading change in degrees.
+     */
+    private final double mDeadband;
+
+    /**
+     * Minimum time between notifications in nanoseconds.
+     */
+    private final long mMinInterval;
+
+    /**
+     * Maximum time between notifications in nanoseconds.
+     */
+    private final long mMaxInterval;
+
+    /**
+     * Heading of the last notification in degrees.
+     */
+    private double mHeading = 0;
+
+    /**
+     * Timestamp of the last notification in nanoseconds.
+     */
+    private long mTimestamp = 0;
+
+    /**
+     * Whether a notification was sent since the last reset.
+     */
+    private boolean mHasNotified = false;
+
+    /**
+     * Number of heading updates.
+     */
+    private long mUpdates = 0;
+
+    /**
+     * Number of notifications.
+     */
+    private long mNotifications = 0;
+
+    /**
+     * Timestamp of the first update in nanoseconds.
+     */
+    private long mFirstTimestamp = 0;
+
+    /**
+     * Timestamp of the last update in nanoseconds.
+     */
+    private long mLastTimestamp = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param deadband Minimum heading change in degrees
+     * @param minInterval Minimum time between notifications
+     *                    in nanoseconds
+     * @param maxInterval Maximum time between notifications
+     *                    in nanoseconds
+     * @throws IllegalArgumentException if a parameter is out of range
+     */
+    public HeadingThrottle(final double deadband, final long minInterval,
+                           final long maxInterval) {
+        if (deadband < 0 || deadband >= FormatUtils.CIRCLE_HALF) {
+            throw new IllegalArgumentException(
+                    "deadband should be in range [0, 180[");
+        }
+        if (minInterval < 0 || maxInterval < minInterval) {
+            throw new IllegalArgumentException(
+                    "intervals should be positive, minInterval <= maxInterval");
+        }
+
+        mDeadband = deadband;
+        mMinInterval = minInterval;
+        mMaxInterval = maxInterval;
+    }
+
+    /**
+     * Checks if a heading update should be notified.
+     *
+     * @param heading Heading in degrees
+     * @param timestamp Timestamp in nanoseconds
+     * @return true if listeners should be notified
+     */
+    public final boolean update(final double heading, final long timestamp) {
+        if (mUpdates == 0) {
+            mFirstTimestamp = timestamp;
+        }
+        mUpdates++;
+        mLastTimestamp = timestamp;
+
+        if (mHasNotified && timestamp >= mTimestamp) {
+            final long interval = timestamp - mTimestamp;
+            final double change = Math.abs(FormatUtils.normalizeAngle(
+                    heading - mHeading + FormatUtils.CIRCLE_HALF)
+                    - FormatUtils.CIRCLE_HALF);
+
+            if (interval < mMinInterval
+                    || interval < mMaxInterval && change <= mDeadband) {
+                return false;
+            }
+        }
+
+        mHasNotified = true;
+        mHeading = heading;
+        mTimestamp = timestamp;
+        mNotifications++;
+
+        return true;
+    }
+
+    /**
+     * Gets the number of heading updates.
+     *
+     * @return number of updates
+     */
+    public final long getUpdates() {
+        return mUpdates;
+    }
+
+    /**
+     * Gets the number of notifications.
+     *
+     * @return number of notifications
+     */
+    public final long getNotifications() {
+        return mNotifications;
+    }
+
+    /**
+     * Gets the number of heading updates per minute.
+     *
+     * @return updates per minute, 0 if less than 2 updates
+     */
+    public final double getUpdatesPerMinute() {
+        return perMinute(mUpdates);
+    }
+
+    /**
+     * Gets the number of notifications per minute.
+     *
+     * @return notifications per minute, 0 if less than 2 updates
+     */
+    public final double getNotificationsPerMinute() {
+        return perMinute(mNotifications);
+    }
+
+    /**
+     * Converts a count to a rate, over the time between
+     * the first and the last update.
+     *
+     * @param count Count
+     * @return count per minute
+     */
+    private double perMinute(final long count) {
+        final long period = mLastTimestamp - mFirstTimestamp;
+        if (period <= 0) {
+            return 0;
+        }
+
+        return count * MINUTE_IN_NANO / period;
+    }
+
+    /**
+     * Resets, the next update is notified.
+     */
+    public final void reset() {
+        mHasNotified = false;
+    }
+
+    @Override
+    public final String toString() {
+        return String.format(Locale.US,
+                "notifications : %d of %d updates, %.0f/min of %.0f/min",
+                mNotifications, mUpdates, getNotificationsPerMinute(),
+                getUpdatesPerMinute());
+    }
+}
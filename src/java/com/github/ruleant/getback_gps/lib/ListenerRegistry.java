@@ -0,0 +1,316 @@
+/**
+ * Registry of event listeners
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import java.util.EventListener;
+
+/**
+ * Thread safe registry of event listeners,
+ * with a maximum delivery rate per listener.
+ *
+ * Adding and removing listeners replaces the array of registrations
+ * (copy-on-write), so dispatching iterates a snapshot without locking
+ * and without allocating memory, while listeners are added or removed
+ * on another thread.
+ * A listener is registered only once.
+ *
+ * Events are delivered to a listener at most once per minimum interval,
+ * the events in between are skipped : listeners get the current value
+ * with the next delivery, instead of every value.
+ * A skipped event is marked pending, dispatchPending() delivers it
+ * when the interval expires, so the last value isn't lost
+ * if no new event arrives.
+ *
+ * @param <L> Event listener type
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class ListenerRegistry<L extends EventListener> {
+    /**
+     * Pending time if no event is pending.
+     */
+    public static final long NO_PENDING = Long.MAX_VALUE;
+
+    /**
+     * Empty array of registrations.
+     */
+    private static final Registration[] EMPTY = new Registration[0];
+
+    /**
+     * Registered listeners, replaced when a listener is added or removed.
+     */
+    private volatile Registration[] mRegistrations = EMPTY;
+
+    /**
+     * Delivers an event to a listener.
+     *
+     * @param <L> Event listener type
+     */
+    public interface Dispatcher<L> {
+        /**
+         * Delivers an event to a listener.
+         *
+         * @param listener Event listener
+         */
+        void dispatch(L listener);
+    }
+
+    /**
+     * Registration of a listener.
+     */
+    private static final class Registration {
+        /**
+         * Event listener.
+         */
+        private final EventListener mListener;
+
+        /**
+         * Minimum time between deliveries in nanoseconds.
+         */
+        private final long mMinInterval;
+
+        /**
+         * Timestamp of the last delivery in nanoseconds.
+         */
+        private volatile long mTimestamp;
+
+        /**
+         * Whether an event was delivered.
+         */
+        private volatile boolean mDelivered = false;
+
+        /**
+         * Whether an event was skipped since the last delivery.
+         */
+        private volatile boolean mPending = false;
+
+        /**
+         * Constructor.
+         *
+         * @param listener Event listener
+         * @param minInterval Minimum time between deliveries
+         *                    in nanoseconds
+         */
+        private Registration(final EventListener listener,
+                             final long minInterval) {
+            mListener = listener;
+            mMinInterval = minInterval;
+        }
+
+        /**
+         * Checks if an event should be delivered, and marks it delivered.
+         *
+         * @param timestamp Timestamp of the event in nanoseconds
+         * @return true if the event should be delivered
+         */
+        private boolean accept(final long timestamp) {
+            if (mDelivered && timestamp >= mTimestamp
+                    && timestamp - mTimestamp < mMinInterval) {
+                mPending = true;
+                return false;
+            }
+
+            mDelivered = true;
+            mPending = false;
+            mTimestamp = timestamp;
+            return true;
+        }
+    }
+
+    /**
+     * Adds a listener, without rate limit.
+     *
+     * @param listener Event listener
+     * @return true if the listener was added,
+     *  false if it was already registered
+     * @throws IllegalArgumentException if listener is null
+     */
+    public final boolean add(final L listener) {
+        return add(listener, 0);
+    }
+
+    /**
+     * Adds a listener with a maximum delivery rate.
+     *
+     * @param listener Event listener
+     * @param minInterval Minimum time between deliveries in nanoseconds
+     * @return true if the listener was added,
+     *  false if it was already registered
+     * @throws IllegalArgumentException if listener is null
+     *  or minInterval is negative
+     */
+    public final synchronized boolean add(final L listener,
+                                          final long minInterval) {
+        if (listener == null) {
+            throw new IllegalArgumentException(
+                    "Parameter listener should not be null");
+        }
+        if (minInterval < 0) {
+            throw new IllegalArgumentException(
+                    "minInterval should not be negative");
+        }
+
+        final Registration[] registrations = mRegistrations;
+        if (indexOf(registrations, listener) >= 0) {
+            return false;
+        }
+
+        Registration[] copy = new Registration[registrations.length + 1];
+        System.arraycopy(registrations, 0, copy, 0, registrations.length);
+        copy[registrations.length] = new Registration(listener, minInterval);
+        mRegistrations = copy;
+
+        return true;
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener Event listener
+     * @return true if the listener was removed,
+     *  false if it wasn't registered
+     */
+    public final synchronized boolean remove(final L listener) {
+        final Registration[] registrations = mRegistrations;
+        final int index = indexOf(registrations, listener);
+        if (index < 0) {
+            return false;
+        }
+
+        if (registrations.length == 1) {
+            mRegistrations = EMPTY;
+            return true;
+        }
+
+        Registration[] copy = new Registration[registrations.length - 1];
+        System.arraycopy(registrations, 0, copy, 0, index);
+        System.arraycopy(registrations, index + 1, copy, index,
+                copy.length - index);
+        mRegistrations = copy;
+
+        return true;
+    }
+
+    /**
+     * Checks if a listener is registered.
+     *
+     * @param listener Event listener
+     * @return true if registered
+     */
+    public final boolean contains(final L listener) {
+        return indexOf(mRegistrations, listener) >= 0;
+    }
+
+    /**
+     * Gets the number of registered listeners.
+     *
+     * @return number of listeners
+     */
+    public final int size() {
+        return mRegistrations.length;
+    }
+
+    /**
+     * Delivers an event to the registered listeners,
+     * that didn't receive an event within their minimum interval.
+     *
+     * Listeners added or removed during dispatching
+     * are taken into account with the next event.
+     *
+     * @param timestamp Timestamp of the event in nanoseconds
+     * @param dispatcher Delivers the event to a listener
+     * @return number of listeners the event was delivered to
+     */
+    @SuppressWarnings("unchecked")
+    public final int dispatch(final long timestamp,
+                              final Dispatcher<L> dispatcher) {
+        final Registration[] registrations = mRegistrations;
+        int delivered = 0;
+        for (Registration registration : registrations) {
+            if (registration.accept(timestamp)) {
+                dispatcher.dispatch((L) registration.mListener);
+                delivered++;
+            }
+        }
+
+        return delivered;
+    }
+
+    /**
+     * Delivers skipped events to the listeners
+     * whose minimum interval expired.
+     *
+     * @param timestamp Current time in nanoseconds,
+     *                  in the same time base as the event timestamps
+     * @param dispatcher Delivers the event to a listener
+     * @return number of listeners the event was delivered to
+     */
+    @SuppressWarnings("unchecked")
+    public final int dispatchPending(final long timestamp,
+                                     final Dispatcher<L> dispatcher) {
+        final Registration[] registrations = mRegistrations;
+        int delivered = 0;
+        for (Registration registration : registrations) {
+            if (registration.mPending && registration.accept(timestamp)) {
+                dispatcher.dispatch((L) registration.mListener);
+                delivered++;
+            }
+        }
+
+        return delivered;
+    }
+
+    /**
+     * Gets the time the first pending event can be delivered.
+     *
+     * @return timestamp in nanoseconds, NO_PENDING if no event is pending
+     */
+    public final long getPendingTime() {
+        final Registration[] registrations = mRegistrations;
+        long pendingTime = NO_PENDING;
+        for (Registration registration : registrations) {
+            if (registration.mPending) {
+                pendingTime = Math.min(pendingTime,
+                        registration.mTimestamp + registration.mMinInterval);
+            }
+        }
+
+        return pendingTime;
+    }
+
+    /**
+     * Finds a listener in an array of registrations.
+     *
+     * @param registrations Registrations
+     * @param listener Event listener
+     * @return index of the listener, -1 if not found
+     */
+    private static int indexOf(final Registration[] registrations,
+                               final EventListener listener) {
+        for (int i = 0; i < registrations.length; i++) {
+            if (registrations[i].mListener == listener) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Median filter.
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+/**
+ * Median filter, the median of the last N values.
+ *
+ * Removes spikes from a signal without smoothing the edges.
+ * The last values are kept in order of arrival and sorted,
+ * a new value replaces the oldest one in the sorted window
+ * with an insertion step, so no sorting is needed per value.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class MedianFilter implements SignalFilter {
+    /**
+     * Last values, ring buffer in order of arrival.
+     */
+    private final float[] mValues;
+
+    /**
+     * Last values, sorted.
+     */
+    private final float[] mSorted;
+
+    /**
+     * Index where the next value is stored.
+     */
+    private int mNext = 0;
+
+    /**
+     * Number of values in the buffer.
+     */
+    private int mCount = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param size Number of values to take the median of
+     * @throws IllegalArgumentException if size is smaller than 1
+     */
+    public MedianFilter(final int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException(
+                    "Parameter size should be at least 1");
+        }
+
+        mValues = new float[size];
+        mSorted = new float[size];
+    }
+
+    @Override
+    public final float filter(final float value, final long timestamp) {
+        int position;
+        if (mCount == mValues.length) {
+            // replace oldest value in sorted window
+            position = indexOf(mValues[mNext]);
+        } else {
+            position = mCount;
+            mCount++;
+        }
+        mValues[mNext] = value;
+        mNext = (mNext + 1) % mValues.length;
+
+        // move new value to its sorted position
+        while (position > 0 && mSorted[position - 1] > value) {
+            mSorted[position] = mSorted[position - 1];
+            position--;
+        }
+        while (position < mCount - 1 && mSorted[position + 1] < value) {
+            mSorted[position] = mSorted[position + 1];
+            position++;
+        }
+        mSorted[position] = value;
+
+        int middle = mCount / 2;
+        if (mCount % 2 == 1) {
+            return mSorted[middle];
+        }
+        return (mSorted[middle - 1] + mSorted[middle]) / 2;
+    }
+
+    @Override
+    public final void reset() {
+        mNext = 0;
+        mCount = 0;
+    }
+
+    @Override
+    public final SignalFilter newInstance() {
+        return new MedianFilter(mValues.length);
+    }
+
+    /**
+     * Gets the number of values to take the median of.
+     *
+     * @return size
+     */
+    public final int getSize() {
+        return mValues.length;
+    }
+
+    /**
+     * Finds a value in the sorted window.
+     *
+     * @param value Value to find
+     * @return index of value
+     */
+    private int indexOf(final float value) {
+        for (int i = 0; i < mCount; i++) {
+            if (Float.compare(mSorted[i], value) == 0) {
+                return i;
+            }
+        }
+        // should not happen, replace the last value
+        return mCount - 1;
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Moving average filter.
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+/**
+ * Moving average filter, the mean of the last N values.
+ *
+ * The values are kept in a ring buffer with a running sum,
+ * so filtering a value takes constant time.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class MovingAverageFilter implements SignalFilter {
+    /**
+     * Last values, ring buffer.
+     */
+    private final float[] mValues;
+
+    /**
+     * Index where the next value is stored.
+     */
+    private int mNext = 0;
+
+    /**
+     * Number of values in the buffer.
+     */
+    private int mCount = 0;
+
+    /**
+     * Sum of the values in the buffer.
+     */
+    private double mSum = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param size Number of values to average
+     * @throws IllegalArgumentException if size is smaller than 1
+     */
+    public MovingAverageFilter(final int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException(
+                    "Parameter size should be at least 1");
+        }
+
+        mValues = new float[size];
+    }
+
+    @Override
+    public final float filter(final float value, final long timestamp) {
+        if (mCount == mValues.length) {
+            mSum -= mValues[mNext];
+        } else {
+            mCount++;
+        }
+        mValues[mNext] = value;
+        mSum += value;
+        mNext = (mNext + 1) % mValues.length;
+
+        return (float) (mSum / mCount);
+    }
+
+    @Override
+    public final void reset() {
+        mNext = 0;
+        mCount = 0;
+        mSum = 0;
+    }
+
+    @Override
+    public final SignalFilter newInstance() {
+        return new MovingAverageFilter(mValues.length);
+    }
+
+    /**
+     * Gets the number of values that are averaged.
+     *
+     * @return size
+     */
+    public final int getSize() {
+        return mValues.length;
+    }
+}
@@ -99,11 +99,27 @@ public class Navigator {
      */
     private double mSensorBearingOffset = 0;
 
+    /**
+     * Model of the magnetic declination, null if not corrected.
+     */
+    private DeclinationModel mDeclinationModel = null;
+
+    /**
+     * Magnetic declination at the current location in degrees,
+     * added to the sensor based bearing to get a bearing to true north.
+     */
+    private double mDeclination = 0;
+
     /**
      * Detected travel direction.
      */
     private TravelDirection mTravelDirection = TravelDirection.Unknown;
 
+    /**
+     * Nearest waypoints to the current location.
+     */
+    private NearestWaypoints mNearestWaypoints = null;
+
     /**
      * Constructor.
      */
@@ -133,7 +149,43 @@ public class Navigator {
         mPreviousLocation = mCurrentLocation;
         mCurrentLocation = location;
 
+        updateDeclination();
         calculateSensorBearingOffset();
+        updateNearestWaypoints();
+    }
+
+    /**
+     * Sets the model of the magnetic declination,
+     * to correct the sensor based bearing (magnetic north)
+     * to true north.
+     *
+     * @param model Declination model, null to disable correction
+     */
+    public final void setDeclinationModel(final DeclinationModel model) {
+        mDeclinationModel = model;
+        mDeclination = 0;
+        updateDeclination();
+    }
+
+    /**
+     * Gets the magnetic declination at the current location.
+     *
+     * @return declination in degrees, 0 if not corrected
+     */
+    public final double getDeclination() {
+        return mDeclination;
+    }
+
+    /**
+     * Updates the magnetic declination for the current location,
+     * the previous value is kept if there is no location.
+     */
+    private void updateDeclination() {
+        if (mDeclinationModel != null && mCurrentLocation != null) {
+            mDeclination = mDeclinationModel.getDeclination(
+                    mCurrentLocation.getLatitude(),
+                    mCurrentLocation.getLongitude());
+        }
     }
 
     /**
@@ -185,6 +237,37 @@ public class Navigator {
         return mDestination;
     }
 
+    /**
+     * Set nearest waypoints tracker,
+     * it is updated every time the location is set.
+     *
+     * @param nearestWaypoints Nearest waypoints tracker, null to disable
+     */
+    public final void setNearestWaypoints(
+            final NearestWaypoints nearestWaypoints) {
+        mNearestWaypoints = nearestWaypoints;
+        updateNearestWaypoints();
+    }
+
+    /**
+     * Get nearest waypoints to the current location.
+     *
+     * @return Nearest waypoints tracker, null if not set
+     */
+    public final NearestWaypoints getNearestWaypoints() {
+        return mNearestWaypoints;
+    }
+
+    /**
+     * Update nearest waypoints with the current location.
+     */
+    private void updateNearestWaypoints() {
+        if (mNearestWaypoints != null && mCurrentLocation != null) {
+            mNearestWaypoints.update(mCurrentLocation.getLatitude(),
+                    mCurrentLocation.getLongitude());
+        }
+    }
+
     /**
      * Calculate distance to current destination.
      *
@@ -330,7 +413,7 @@ public class Navigator {
         double currentBearing;
         if (isSensorBearingAccurate()) {
             currentBearing = mSensorOrientation.getOrientation()
-                    - mSensorBearingOffset;
+                    + mDeclination - mSensorBearingOffset;
         } else {
             currentBearing = getLocationBearing();
         }
@@ -385,13 +468,27 @@ public class Navigator {
     }
 
     /**
-     * Determines if sensor based bearing is accurate.
+     * Determines if sensor based bearing is accurate,
+     * if it was recently updated and the compass isn't disturbed.
+     * If not, the location based bearing is used.
      *
      * @return true if sensor based bearing is accurate
      */
     public final boolean isSensorBearingAccurate() {
         return  mSensorOrientation != null
-                && mSensorOrientation.hasOrientation();
+                && mSensorOrientation.hasOrientation()
+                && !mSensorOrientation.isCompassDisturbed();
+    }
+
+    /**
+     * Determines if sensor based bearing is stable :
+     * it is accurate and didn't vary much recently.
+     *
+     * @return true if sensor based bearing is stable
+     */
+    public final boolean isSensorBearingStable() {
+        return isSensorBearingAccurate()
+                && mSensorOrientation.isOrientationStable();
     }
 
     /**
@@ -415,13 +512,19 @@ public class Navigator {
     /**
      * Calculate offset between bearing provided by sensors
      * and bearing provided by geolocation.
+     * The previous offset is kept while the sensor based bearing
+     * is not stable, eg. when the device is swinging.
      */
     public final void calculateSensorBearingOffset() {
         if (isSensorBearingAccurate()
             && (mCurrentLocation != null && mCurrentLocation.hasBearing()
             || isLocationBearingAccurate())) {
+            if (!isSensorBearingStable()) {
+                return;
+            }
 
-            double bearing = mSensorOrientation.getOrientation();
+            double bearing = mSensorOrientation.getOrientation()
+                    + mDeclination;
 
             // Calculate offset
             mSensorBearingOffset = bearing - getLocationBearing();
@@ -0,0 +1,206 @@
+/**
+ * Bounded heap keeping the nearest items.
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+/**
+ * Keeps the items with the smallest distance out of a stream of items.
+ *
+ * Items are stored as an int id with a double distance in primitive arrays,
+ * the item with the largest distance is kept at the root of the heap,
+ * so it can be replaced when a nearer item is offered.
+ * Once created, the heap doesn't allocate memory.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class NearestHeap {
+    /**
+     * Item ids.
+     */
+    private final int[] mIds;
+
+    /**
+     * Item distances.
+     */
+    private final double[] mDistances;
+
+    /**
+     * Number of items in the heap.
+     */
+    private int mSize = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity Maximum number of items to keep
+     * @throws IllegalArgumentException if capacity is not a positive value
+     */
+    public NearestHeap(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException(
+                    "capacity should be a non-zero positive value");
+        }
+
+        mIds = new int[capacity];
+        mDistances = new double[capacity];
+    }
+
+    /**
+     * Removes all items.
+     */
+    public final void clear() {
+        mSize = 0;
+    }
+
+    /**
+     * Maximum number of items in the heap.
+     *
+     * @return capacity
+     */
+    public final int getCapacity() {
+        return mIds.length;
+    }
+
+    /**
+     * Number of items in the heap.
+     *
+     * @return number of items
+     */
+    public final int getSize() {
+        return mSize;
+    }
+
+    /**
+     * Checks if the maximum number of items is reached.
+     *
+     * @return true if heap is full
+     */
+    public final boolean isFull() {
+        return mSize == mIds.length;
+    }
+
+    /**
+     * Largest distance in the heap.
+     *
+     * @return largest distance,
+     *  or Double.POSITIVE_INFINITY if the heap is not full yet
+     */
+    public final double getMaxDistance() {
+        if (!isFull()) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        return mDistances[0];
+    }
+
+    /**
+     * Offers an item, it is kept if the heap is not full,
+     * or if it is nearer than the furthest item in the heap.
+     *
+     * @param id Item id
+     * @param distance Item distance
+     * @return true if the item was added
+     */
+    public final boolean offer(final int id, final double distance) {
+        if (mSize < mIds.length) {
+            // add item at the end and move it up
+            int position = mSize++;
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (mDistances[parent] >= distance) {
+                    break;
+                }
+                mIds[position] = mIds[parent];
+                mDistances[position] = mDistances[parent];
+                position = parent;
+            }
+            mIds[position] = id;
+            mDistances[position] = distance;
+
+            return true;
+        }
+
+        if (distance >= mDistances[0]) {
+            return false;
+        }
+
+        siftDown(id, distance, mSize);
+
+        return true;
+    }
+
+    /**
+     * Empties the heap into arrays, sorted from nearest to furthest item.
+     *
+     * @param ids Array to store item ids in
+     * @param distances Array to store item distances in, can be null
+     * @return number of items stored in the arrays
+     */
+    public final int drainSorted(final int[] ids, final double[] distances) {
+        int count = mSize;
+
+        // repeatedly move the furthest item to the end of the arrays
+        for (int i = count - 1; i >= 0; i--) {
+            ids[i] = mIds[0];
+            if (distances != null) {
+                distances[i] = mDistances[0];
+            }
+
+            mSize--;
+            if (mSize > 0) {
+                siftDown(mIds[mSize], mDistances[mSize], mSize);
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Puts an item at the root of the heap and moves it down
+     * to restore the heap order.
+     *
+     * @param id Item id
+     * @param distance Item distance
+     * @param size Number of items in the heap
+     */
+    private void siftDown(final int id, final double distance,
+                          final int size) {
+        int position = 0;
+        int half = size >>> 1;
+
+        while (position < half) {
+            int child = 2 * position + 1;
+            int right = child + 1;
+            if (right < size && mDistances[right] > mDistances[child]) {
+                child = right;
+            }
+            if (distance >= mDistances[child]) {
+                break;
+            }
+            mIds[position] = mIds[child];
+            mDistances[position] = mDistances[child];
+            position = child;
+        }
+
+        mIds[position] = id;
+        mDistances[position] = distance;
+    }
+}
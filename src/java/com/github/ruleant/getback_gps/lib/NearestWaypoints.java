@@ -0,0 +1,358 @@
+/**
+ * Nearest waypoints to the current location.
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+/**
+ * Keeps track of the waypoints nearest to a moving location.
+ *
+ * When the spatial index is queried, a larger set of candidate waypoints
+ * is retrieved. As long as the location moved less than the requery distance
+ * and the candidates are guaranteed to contain the nearest waypoints,
+ * an update only recalculates the distance to the candidates,
+ * without allocating memory.
+ *
+ * The result is sorted from nearest to furthest waypoint,
+ * the version changes every time the waypoints or their order change.
+ *
+ * This class is not thread safe.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class NearestWaypoints {
+    /**
+     * Default number of nearest waypoints.
+     */
+    public static final int DEFAULT_COUNT = 5;
+
+    /**
+     * Default distance in meters after which the index is queried again.
+     */
+    public static final double DEFAULT_REQUERY_DISTANCE = 250;
+
+    /**
+     * Number of candidates retrieved per requested waypoint.
+     */
+    private static final int CANDIDATE_FACTOR = 3;
+
+    /**
+     * Spatial index with waypoints.
+     */
+    private final WaypointIndex mIndex;
+
+    /**
+     * Distance in meters after which the index is queried again.
+     */
+    private final double mRequeryDistance;
+
+    /**
+     * Heap to collect candidates from the index.
+     */
+    private final NearestHeap mCandidateHeap;
+
+    /**
+     * Candidate ids, sorted by distance to the query location.
+     */
+    private final int[] mCandidateIds;
+
+    /**
+     * Number of candidates.
+     */
+    private int mCandidateCount = 0;
+
+    /**
+     * Distance between the query location and the furthest candidate,
+     * every waypoint that is not a candidate is at least this far away.
+     */
+    private double mCandidateRadius = 0;
+
+    /**
+     * Heap to select the nearest candidates.
+     */
+    private final NearestHeap mResultHeap;
+
+    /**
+     * Nearest waypoint ids.
+     */
+    private final int[] mIds;
+
+    /**
+     * Distance to the nearest waypoints.
+     */
+    private final double[] mDistances;
+
+    /**
+     * Nearest waypoint ids of the previous update.
+     */
+    private final int[] mPreviousIds;
+
+    /**
+     * Number of nearest waypoints.
+     */
+    private int mSize = 0;
+
+    /**
+     * Result version.
+     */
+    private long mVersion = 0;
+
+    /**
+     * Whether the index was queried.
+     */
+    private boolean mHasQuery = false;
+
+    /**
+     * Latitude of the location used to query the index.
+     */
+    private double mQueryLatitude;
+
+    /**
+     * Longitude of the location used to query the index.
+     */
+    private double mQueryLongitude;
+
+    /**
+     * Modification count of the index when it was queried.
+     */
+    private long mIndexModificationCount;
+
+    /**
+     * Number of times the index was queried.
+     */
+    private long mQueryCount = 0;
+
+    /**
+     * Constructor, using default values.
+     *
+     * @param index Spatial index with waypoints
+     */
+    public NearestWaypoints(final WaypointIndex index) {
+        this(index, DEFAULT_COUNT, DEFAULT_REQUERY_DISTANCE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param index Spatial index with waypoints
+     * @param count Number of nearest waypoints
+     * @param requeryDistance Distance in meters after which the index
+     *                        is queried again
+     * @throws IllegalArgumentException if a parameter is out of range
+     */
+    public NearestWaypoints(final WaypointIndex index, final int count,
+                            final double requeryDistance) {
+        if (index == null) {
+            throw new IllegalArgumentException(
+                    "Parameter index should not be null");
+        }
+        if (count <= 0) {
+            throw new IllegalArgumentException(
+                    "count should be a non-zero positive value");
+        }
+        if (requeryDistance < 0) {
+            throw new IllegalArgumentException(
+                    "requeryDistance can't be negative");
+        }
+
+        mIndex = index;
+        mRequeryDistance = requeryDistance;
+
+        mCandidateHeap = new NearestHeap(count * CANDIDATE_FACTOR);
+        mCandidateIds = new int[count * CANDIDATE_FACTOR];
+        mResultHeap = new NearestHeap(count);
+        mIds = new int[count];
+        mDistances = new double[count];
+        mPreviousIds = new int[count];
+    }
+
+    /**
+     * Updates the nearest waypoints for a new location.
+     *
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @return true if the nearest waypoints or their order changed
+     */
+    public final boolean update(final double latitude,
+                                final double longitude) {
+        int previousSize = mSize;
+        System.arraycopy(mIds, 0, mPreviousIds, 0, mSize);
+
+        if (!mHasQuery
+                || mIndexModificationCount != mIndex.getModificationCount()
+                || !updateFromCandidates(latitude, longitude)) {
+            query(latitude, longitude);
+        }
+
+        // check if the result changed
+        boolean changed = previousSize != mSize;
+        for (int i = 0; !changed && i < mSize; i++) {
+            changed = mIds[i] != mPreviousIds[i];
+        }
+
+        if (changed) {
+            mVersion++;
+        }
+
+        return changed;
+    }
+
+    /**
+     * Invalidates the candidates, the index is queried on the next update.
+     */
+    public final void reset() {
+        mHasQuery = false;
+    }
+
+    /**
+     * Number of nearest waypoints.
+     *
+     * @return number of waypoints, less than requested
+     *  if the index contains less waypoints
+     */
+    public final int getSize() {
+        return mSize;
+    }
+
+    /**
+     * Gets the id of a nearest waypoint.
+     *
+     * @param position Position in the result, 0 is the nearest waypoint
+     * @return waypoint id
+     * @throws IndexOutOfBoundsException if position is out of range
+     */
+    public final int getId(final int position) {
+        checkPosition(position);
+        return mIds[position];
+    }
+
+    /**
+     * Gets the distance to a nearest waypoint.
+     *
+     * @param position Position in the result, 0 is the nearest waypoint
+     * @return distance in meters
+     * @throws IndexOutOfBoundsException if position is out of range
+     */
+    public final double getDistance(final int position) {
+        checkPosition(position);
+        return mDistances[position];
+    }
+
+    /**
+     * Result version, it changes every time the nearest waypoints
+     * or their order change.
+     *
+     * @return version
+     */
+    public final long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Number of times the spatial index was queried.
+     *
+     * @return query count
+     */
+    public final long getQueryCount() {
+        return mQueryCount;
+    }
+
+    /**
+     * Selects the nearest waypoints from the candidates,
+     * if they are guaranteed to contain the nearest waypoints.
+     *
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @return false if the index should be queried
+     */
+    private boolean updateFromCandidates(final double latitude,
+                                         final double longitude) {
+        double moved = GreatCircle.distance(
+                mQueryLatitude, mQueryLongitude, latitude, longitude);
+
+        if (moved > mRequeryDistance) {
+            return false;
+        }
+
+        mResultHeap.clear();
+        for (int i = 0; i < mCandidateCount; i++) {
+            int id = mCandidateIds[i];
+            mResultHeap.offer(id, mIndex.distanceTo(id, latitude, longitude));
+        }
+        int size = mResultHeap.drainSorted(mIds, mDistances);
+
+        // Waypoints that are not a candidate are at least
+        // mCandidateRadius - moved away from the current location.
+        if (size > 0
+                && mDistances[size - 1] > mCandidateRadius - moved) {
+            return false;
+        }
+
+        mSize = size;
+
+        return true;
+    }
+
+    /**
+     * Queries the index for candidates, and selects the nearest waypoints.
+     *
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     */
+    private void query(final double latitude, final double longitude) {
+        mCandidateCount = mIndex.findNearest(
+                latitude, longitude, mCandidateHeap);
+
+        if (mCandidateCount < mCandidateIds.length) {
+            // all waypoints in the index are a candidate
+            mCandidateRadius = Double.POSITIVE_INFINITY;
+        } else {
+            mCandidateRadius = mCandidateHeap.getMaxDistance();
+        }
+
+        mCandidateHeap.drainSorted(mCandidateIds, null);
+
+        mSize = Math.min(mCandidateCount, mIds.length);
+        for (int i = 0; i < mSize; i++) {
+            mIds[i] = mCandidateIds[i];
+            mDistances[i] = mIndex.distanceTo(mIds[i], latitude, longitude);
+        }
+
+        mQueryLatitude = latitude;
+        mQueryLongitude = longitude;
+        mIndexModificationCount = mIndex.getModificationCount();
+        mHasQuery = true;
+        mQueryCount++;
+    }
+
+    /**
+     * Checks if a position is in the result range.
+     *
+     * @param position Position in the result
+     * @throws IndexOutOfBoundsException if position is out of range
+     */
+    private void checkPosition(final int position) {
+        if (position < 0 || position >= mSize) {
+            throw new IndexOutOfBoundsException(
+                    "position " + position + " is not in range 0 .. "
+                            + (mSize - 1));
+        }
+    }
+}
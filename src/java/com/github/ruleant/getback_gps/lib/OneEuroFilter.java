@@ -0,0 +1,167 @@
+/**
+ * One Euro filter.
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+/**
+ * One Euro filter, an adaptive low pass filter.
+ *
+ * The cutoff frequency increases with the rate of change of the signal :
+ * a slowly changing signal is smoothed well (less jitter),
+ * a fast changing signal is followed closely (less lag).
+ *
+ * Based on : Casiez, Roussel, Vogel,
+ * "1 Euro Filter: A Simple Speed-based Low-pass Filter
+ * for Noisy Input in Interactive Systems", CHI 2012.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class OneEuroFilter implements SignalFilter {
+    /**
+     * Nanoseconds in a second.
+     */
+    private static final double SECOND_IN_NANO = 1e9;
+
+    /**
+     * Minimum cutoff frequency in Hz.
+     */
+    private final double mMinCutoff;
+
+    /**
+     * Increase of the cutoff frequency per unit of rate of change.
+     */
+    private final double mBeta;
+
+    /**
+     * Cutoff frequency of the rate of change filter in Hz.
+     */
+    private final double mDerivativeCutoff;
+
+    /**
+     * Current filtered value.
+     */
+    private double mValue = 0;
+
+    /**
+     * Current filtered rate of change, per second.
+     */
+    private double mDerivative = 0;
+
+    /**
+     * Timestamp of the last value in nanoseconds.
+     */
+    private long mTimestamp = 0;
+
+    /**
+     * Whether a value was filtered since the last reset.
+     */
+    private boolean mHasValue = false;
+
+    /**
+     * Constructor.
+     *
+     * @param minCutoff Minimum cutoff frequency in Hz,
+     *                  lower values reduce jitter of a slow signal
+     * @param beta Increase of the cutoff frequency per unit of
+     *             rate of change (per second), higher values
+     *             reduce lag of a fast signal
+     * @param derivativeCutoff Cutoff frequency of the rate of change
+     *                         filter in Hz
+     * @throws IllegalArgumentException if a parameter is out of range
+     */
+    public OneEuroFilter(final double minCutoff, final double beta,
+                         final double derivativeCutoff) {
+        if (minCutoff <= 0 || derivativeCutoff <= 0) {
+            throw new IllegalArgumentException(
+                    "cutoff frequency should be a non-zero positive value");
+        }
+        if (beta < 0) {
+            throw new IllegalArgumentException(
+                    "Parameter beta should not be negative");
+        }
+
+        mMinCutoff = minCutoff;
+        mBeta = beta;
+        mDerivativeCutoff = derivativeCutoff;
+    }
+
+    /**
+     * Filters a new value.
+     *
+     * A value with a timestamp that isn't more recent than the previous
+     * value can't be filtered, the current value is returned.
+     *
+     * @param value New value
+     * @param timestamp Timestamp of the value in nanoseconds
+     * @return filtered value
+     */
+    @Override
+    public final float filter(final float value, final long timestamp) {
+        if (!mHasValue) {
+            mValue = value;
+            mDerivative = 0;
+            mTimestamp = timestamp;
+            mHasValue = true;
+            return value;
+        }
+
+        if (timestamp <= mTimestamp) {
+            return (float) mValue;
+        }
+
+        double period = (timestamp - mTimestamp) / SECOND_IN_NANO;
+        mTimestamp = timestamp;
+
+        double derivative = (value - mValue) / period;
+        mDerivative += getAlpha(mDerivativeCutoff, period)
+                * (derivative - mDerivative);
+
+        double cutoff = mMinCutoff + mBeta * Math.abs(mDerivative);
+        mValue += getAlpha(cutoff, period) * (value - mValue);
+
+        return (float) mValue;
+    }
+
+    @Override
+    public final void reset() {
+        mValue = 0;
+        mDerivative = 0;
+        mTimestamp = 0;
+        mHasValue = false;
+    }
+
+    @Override
+    public final SignalFilter newInstance() {
+        return new OneEuroFilter(mMinCutoff, mBeta, mDerivativeCutoff);
+    }
+
+    /**
+     * Calculates the smoothing factor of a low pass filter.
+     *
+     * @param cutoff Cutoff frequency in Hz
+     * @param period Time since previous value in seconds
+     * @return smoothing factor (0-1)
+     */
+    private static double getAlpha(final double cutoff, final double period) {
+        double tau = 1.0 / (2 * Math.PI * cutoff);
+        return 1.0 / (1.0 + tau / period);
+    }
+}
@@ -0,0 +1,662 @@
+/**
+ * Calculates orientation from sensor values.
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+/**
+ * Calculates the orientation (azimuth) from accelerometer
+ * and magnetic field sensor values, or from an orientation sensor.
+ *
+ * Sensor values that arrive sooner than the update rate are rejected,
+ * accepted values are passed through a filter per sensor
+ * into preallocated buffers, so processing a sensor event
+ * doesn't allocate memory.
+ * The calculated azimuth is passed through another filter.
+ *
+ * If sensor fusion is enabled, gyroscope values are integrated
+ * and the accelerometer and magnetic field values correct the drift,
+ * sensor values and the azimuth aren't filtered,
+ * filtering the drift correction would delay it
+ * and pull the orientation back after a fast turn.
+ *
+ * If the calculation is deferred, sensor values are filtered
+ * when they arrive, but the orientation is only calculated
+ * when calculate() is called, eg. once per batch of sensor events.
+ *
+ * The azimuth is calculated in the same way as
+ * SensorManager.getRotationMatrix() and SensorManager.getOrientation(),
+ * without the rotation matrix and orientation arrays.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class OrientationCalculator {
+    /**
+     * Number of sensor value components.
+     */
+    public static final int SENSOR_VALUES_SIZE = 3;
+
+    /**
+     * Standard gravity in m/s².
+     */
+    private static final float STANDARD_GRAVITY = 9.80665f;
+
+    /**
+     * Squared acceleration below which the device is considered
+     * to be in free fall (10% of gravity).
+     */
+    private static final float FREE_FALL_GRAVITY_SQUARED
+            = 0.01f * STANDARD_GRAVITY * STANDARD_GRAVITY;
+
+    /**
+     * Minimum magnitude of the horizontal field vector,
+     * below it the device is close to free fall, in space,
+     * or close to the magnetic north pole.
+     */
+    private static final float MIN_HORIZONTAL_FIELD = 0.1f;
+
+    /**
+     * Minimum time between accepted sensor values in nanoseconds.
+     */
+    private long mUpdateRate;
+
+    /**
+     * Filter of accelerometer values.
+     */
+    private final VectorFilter mAccelerometerFilter;
+
+    /**
+     * Filter of magnetic field values.
+     */
+    private final VectorFilter mMagneticFieldFilter;
+
+    /**
+     * Filter of calculated orientation values.
+     */
+    private final SignalFilter mOrientationFilter;
+
+    /**
+     * Filtered accelerometer values.
+     */
+    private final float[] mAccelerometerValues
+            = new float[SENSOR_VALUES_SIZE];
+
+    /**
+     * Whether accelerometer values were received.
+     */
+    private boolean mHasAccelerometerValues = false;
+
+    /**
+     * Accelerometer values timestamp in nanoseconds.
+     */
+    private long mAccelerometerTimestamp = 0;
+
+    /**
+     * Filtered magnetic field values.
+     */
+    private final float[] mMagneticFieldValues
+            = new float[SENSOR_VALUES_SIZE];
+
+    /**
+     * Whether magnetic field values were received.
+     */
+    private boolean mHasMagneticFieldValues = false;
+
+    /**
+     * Magnetic field values timestamp in nanoseconds.
+     */
+    private long mMagneticFieldTimestamp = 0;
+
+    /**
+     * Sensor fusion, null if disabled.
+     */
+    private OrientationFusion mFusion = null;
+
+    /**
+     * Timestamp in nanoseconds of the last reported gyroscope update.
+     */
+    private long mGyroscopeTimestamp = 0;
+
+    /**
+     * Timestamp in nanoseconds of the last sensor fusion correction.
+     */
+    private long mCorrectionTimestamp = 0;
+
+    /**
+     * Rotation vector sensor values (x, y, z, w).
+     */
+    private final float[] mRotationVector
+            = new float[SENSOR_VALUES_SIZE + 1];
+
+    /**
+     * Rotation vector values timestamp in nanoseconds.
+     */
+    private long mRotationVectorTimestamp = 0;
+
+    /**
+     * Whether calculating the orientation is deferred until calculate().
+     */
+    private boolean mDeferred = false;
+
+    /**
+     * Whether accelerometer or magnetic field values arrived
+     * since the orientation was calculated.
+     */
+    private boolean mPendingCalculation = false;
+
+    /**
+     * Whether rotation vector values arrived
+     * since the orientation was calculated.
+     */
+    private boolean mPendingRotationVector = false;
+
+    /**
+     * Whether the orientation changed since calculate() was called.
+     */
+    private boolean mPending = false;
+
+    /**
+     * Current orientation in degrees.
+     */
+    private double mOrientation = 0;
+
+    /**
+     * Timestamp in nanoseconds of the current orientation.
+     */
+    private long mOrientationTimestamp = 0;
+
+    /**
+     * Constructor, using exponential filters.
+     *
+     * @param updateRate Minimum time between accepted sensor values
+     *                   in nanoseconds
+     * @param lowPassAlpha Low pass filter alpha of sensor values (0-1)
+     * @param averageAlpha Alpha of circular average
+     *                     of calculated orientation values (0-1)
+     * @throws IllegalArgumentException if a parameter is out of range
+     */
+    public OrientationCalculator(final long updateRate,
+                                 final float lowPassAlpha,
+                                 final float averageAlpha) {
+        this(updateRate, new ExponentialFilter(lowPassAlpha),
+                new ExponentialFilter(lowPassAlpha),
+                new CircularFilter(new ExponentialFilter(averageAlpha)));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param updateRate Minimum time between accepted sensor values
+     *                   in nanoseconds
+     * @param accelerometerFilter Filter configuration
+     *                            of accelerometer values
+     * @param magneticFieldFilter Filter configuration
+     *                            of magnetic field values
+     * @param orientationFilter Filter of calculated orientation values,
+     *                          in degrees, use a CircularFilter
+     * @throws IllegalArgumentException if a parameter is out of range
+     */
+    public OrientationCalculator(final long updateRate,
+                                 final SignalFilter accelerometerFilter,
+                                 final SignalFilter magneticFieldFilter,
+                                 final SignalFilter orientationFilter) {
+        if (updateRate <= 0) {
+            throw new IllegalArgumentException(
+                    "updateRate should be a non-zero positive value");
+        }
+        if (orientationFilter == null) {
+            throw new IllegalArgumentException(
+                    "Parameter orientationFilter should not be null");
+        }
+
+        mUpdateRate = updateRate;
+        mAccelerometerFilter
+                = new VectorFilter(accelerometerFilter, SENSOR_VALUES_SIZE);
+        mMagneticFieldFilter
+                = new VectorFilter(magneticFieldFilter, SENSOR_VALUES_SIZE);
+        mOrientationFilter = orientationFilter;
+    }
+
+    /**
+     * Sets accelerometer values,
+     * and recalculates the orientation.
+     *
+     * @param values Accelerometer values (x, y, z)
+     * @param timestamp Timestamp in nanoseconds
+     * @return false if the values were rejected
+     */
+    public final boolean setAcceleration(final float[] values,
+                                         final long timestamp) {
+        if (values == null || values.length != SENSOR_VALUES_SIZE
+                || isTooSoon(timestamp, mAccelerometerTimestamp,
+                        mHasAccelerometerValues)) {
+            return false;
+        }
+
+        filter(mAccelerometerFilter, values, timestamp, mAccelerometerValues);
+        mHasAccelerometerValues = true;
+        mAccelerometerTimestamp = timestamp;
+
+        if (mDeferred) {
+            mPendingCalculation = true;
+            mPending = true;
+        } else {
+            calculateOrientation();
+        }
+
+        return true;
+    }
+
+    /**
+     * Sets magnetic field values,
+     * and recalculates the orientation.
+     *
+     * @param values Magnetic field values (x, y, z)
+     * @param timestamp Timestamp in nanoseconds
+     * @return false if the values were rejected
+     */
+    public final boolean setMagneticField(final float[] values,
+                                          final long timestamp) {
+        if (values == null || values.length != SENSOR_VALUES_SIZE
+                || isTooSoon(timestamp, mMagneticFieldTimestamp,
+                        mHasMagneticFieldValues)) {
+            return false;
+        }
+
+        filter(mMagneticFieldFilter, values, timestamp, mMagneticFieldValues);
+        mHasMagneticFieldValues = true;
+        mMagneticFieldTimestamp = timestamp;
+
+        if (mDeferred) {
+            mPendingCalculation = true;
+            mPending = true;
+        } else {
+            calculateOrientation();
+        }
+
+        return true;
+    }
+
+    /**
+     * Sets gyroscope values, and rotates the orientation,
+     * if sensor fusion is enabled.
+     *
+     * All values are integrated, but only an update
+     * after the update rate is reported.
+     *
+     * @param values Rotation rate around x, y, z axis in rad/s
+     * @param timestamp Timestamp in nanoseconds
+     * @return true if the orientation was updated
+     *  and the update should be reported
+     */
+    public final boolean setGyroscope(final float[] values,
+                                      final long timestamp) {
+        if (mFusion == null
+                || values == null || values.length != SENSOR_VALUES_SIZE) {
+            return false;
+        }
+
+        mFusion.rotate(values, timestamp);
+        if (!mFusion.isInitialized()) {
+            return false;
+        }
+        mOrientation = mFusion.getAzimuth();
+        mOrientationTimestamp = timestamp;
+        mPending = true;
+
+        if (isTooSoon(timestamp, mGyroscopeTimestamp,
+                mGyroscopeTimestamp > 0)) {
+            return false;
+        }
+        mGyroscopeTimestamp = timestamp;
+
+        return true;
+    }
+
+    /**
+     * Sets the minimum time between accepted sensor values.
+     *
+     * @param updateRate Update rate in nanoseconds
+     * @throws IllegalArgumentException if updateRate isn't positive
+     */
+    public final void setUpdateRate(final long updateRate) {
+        if (updateRate <= 0) {
+            throw new IllegalArgumentException(
+                    "updateRate should be a non-zero positive value");
+        }
+
+        mUpdateRate = updateRate;
+    }
+
+    /**
+     * Gets the minimum time between accepted sensor values.
+     *
+     * @return update rate in nanoseconds
+     */
+    public final long getUpdateRate() {
+        return mUpdateRate;
+    }
+
+    /**
+     * Enables or disables sensor fusion.
+     *
+     * @param fusion Sensor fusion, null to disable
+     */
+    public final void setFusion(final OrientationFusion fusion) {
+        if (fusion == mFusion) {
+            return;
+        }
+
+        mFusion = fusion;
+        mGyroscopeTimestamp = 0;
+        mCorrectionTimestamp = 0;
+        mAccelerometerFilter.reset();
+        mMagneticFieldFilter.reset();
+        if (mFusion != null) {
+            mFusion.reset();
+        }
+    }
+
+    /**
+     * Checks if sensor fusion is enabled.
+     *
+     * @return true if enabled
+     */
+    public final boolean isFusionEnabled() {
+        return mFusion != null;
+    }
+
+    /**
+     * Sets the orientation from a rotation vector sensor.
+     *
+     * The rotation vector is a unit quaternion (x, y, z[, w]),
+     * if w is missing, it is calculated from x, y and z.
+     * The rotation vector is fused by the sensor, it isn't filtered.
+     *
+     * @param values Rotation vector sensor values
+     * @param timestamp Timestamp in nanoseconds
+     * @return false if the values were rejected
+     */
+    public final boolean setRotationVector(final float[] values,
+                                           final long timestamp) {
+        if (values == null || values.length < SENSOR_VALUES_SIZE
+                || isTooSoon(timestamp, mRotationVectorTimestamp,
+                        mRotationVectorTimestamp > 0)) {
+            return false;
+        }
+
+        final float x = values[0];
+        final float y = values[1];
+        final float z = values[2];
+        mRotationVector[0] = x;
+        mRotationVector[1] = y;
+        mRotationVector[2] = z;
+        if (values.length > SENSOR_VALUES_SIZE) {
+            mRotationVector[SENSOR_VALUES_SIZE] = values[SENSOR_VALUES_SIZE];
+        } else {
+            mRotationVector[SENSOR_VALUES_SIZE] = (float) Math.sqrt(
+                    Math.max(0, 1 - x * x - y * y - z * z));
+        }
+        mRotationVectorTimestamp = timestamp;
+
+        if (mDeferred) {
+            mPendingRotationVector = true;
+            mPending = true;
+        } else {
+            calculateRotationVector();
+        }
+
+        return true;
+    }
+
+    /**
+     * Sets the orientation directly, from an orientation sensor.
+     *
+     * @param orientation Orientation in degrees
+     * @param timestamp Timestamp in nanoseconds
+     * @return false if the value was rejected
+     */
+    public final boolean setOrientation(final float orientation,
+                                        final long timestamp) {
+        if (isTooSoon(timestamp, mOrientationTimestamp,
+                mOrientationTimestamp > 0)) {
+            return false;
+        }
+
+        mOrientation = orientation;
+        mOrientationTimestamp = timestamp;
+        mPending = true;
+
+        return true;
+    }
+
+    /**
+     * Defers calculating the orientation until calculate() is called,
+     * sensor values are still filtered when they are set.
+     *
+     * @param deferred true to defer the calculation
+     */
+    public final void setDeferred(final boolean deferred) {
+        mDeferred = deferred;
+        if (!deferred) {
+            calculate();
+        }
+    }
+
+    /**
+     * Checks if calculating the orientation is deferred.
+     *
+     * @return true if deferred
+     */
+    public final boolean isDeferred() {
+        return mDeferred;
+    }
+
+    /**
+     * Calculates the orientation from the sensor values
+     * that were set since the previous call, if it was deferred.
+     *
+     * @return true if the orientation was updated since the previous call
+     */
+    public final boolean calculate() {
+        if (mPendingCalculation) {
+            mPendingCalculation = false;
+            calculateOrientation();
+        }
+        if (mPendingRotationVector) {
+            mPendingRotationVector = false;
+            calculateRotationVector();
+        }
+
+        final boolean changed = mPending;
+        mPending = false;
+
+        return changed;
+    }
+
+    /**
+     * Gets current orientation.
+     *
+     * @return orientation in degrees
+     */
+    public final double getOrientation() {
+        return mOrientation;
+    }
+
+    /**
+     * Gets timestamp of current orientation.
+     *
+     * @return timestamp in nanoseconds
+     */
+    public final long getOrientationTimestamp() {
+        return mOrientationTimestamp;
+    }
+
+    /**
+     * Calculates the azimuth from gravity and geomagnetic vectors,
+     * as SensorManager.getRotationMatrix() followed by
+     * SensorManager.getOrientation() does.
+     *
+     * @param gravity Gravity vector (x, y, z) in device coordinates
+     * @param geomagnetic Geomagnetic vector (x, y, z) in device coordinates
+     * @return azimuth in radians (-π..π),
+     *  or Double.NaN if the device is in free fall
+     *  or the horizontal field is too weak
+     */
+    public static double getAzimuth(final float[] gravity,
+                                    final float[] geomagnetic) {
+        float ax = gravity[0];
+        float ay = gravity[1];
+        float az = gravity[2];
+
+        final float normSquaredA = ax * ax + ay * ay + az * az;
+        if (normSquaredA < FREE_FALL_GRAVITY_SQUARED) {
+            return Double.NaN;
+        }
+
+        final float ex = geomagnetic[0];
+        final float ey = geomagnetic[1];
+        final float ez = geomagnetic[2];
+
+        // horizontal vector pointing east : H = E x A
+        float hx = ey * az - ez * ay;
+        float hy = ez * ax - ex * az;
+        float hz = ex * ay - ey * ax;
+        final float normH = (float) Math.sqrt(hx * hx + hy * hy + hz * hz);
+        if (normH < MIN_HORIZONTAL_FIELD) {
+            return Double.NaN;
+        }
+
+        final float invH = 1.0f / normH;
+        hx *= invH;
+        hy *= invH;
+        hz *= invH;
+        final float invA = 1.0f / (float) Math.sqrt(normSquaredA);
+        ax *= invA;
+        ay *= invA;
+        az *= invA;
+
+        // horizontal vector pointing north : M = A x H
+        final float my = az * hx - ax * hz;
+
+        return Math.atan2(hy, my);
+    }
+
+    /**
+     * Calculates the azimuth from a unit quaternion, rotating device
+     * coordinates to world coordinates (x : east, y : north, z : up),
+     * as SensorManager.getRotationMatrixFromVector() followed by
+     * SensorManager.getOrientation() does.
+     *
+     * @param w Scalar component
+     * @param x x component
+     * @param y y component
+     * @param z z component
+     * @return azimuth in radians (-π..π)
+     */
+    public static double getAzimuth(final double w, final double x,
+                                    final double y, final double z) {
+        // atan2(R[0][1], R[1][1]) of the rotation matrix
+        return Math.atan2(2 * (x * y - w * z), 1 - 2 * (x * x + z * z));
+    }
+
+    /**
+     * Calculates current orientation, based on
+     * the rotation vector sensor values.
+     */
+    private void calculateRotationVector() {
+        mOrientation = FormatUtils.normalizeAngle(Math.toDegrees(getAzimuth(
+                mRotationVector[SENSOR_VALUES_SIZE], mRotationVector[0],
+                mRotationVector[1], mRotationVector[2])));
+        mOrientationTimestamp = mRotationVectorTimestamp;
+        mPending = true;
+    }
+
+    /**
+     * Calculates current orientation, based on
+     * filtered magnetic field and accelerometer values.
+     */
+    private void calculateOrientation() {
+        if (!mHasAccelerometerValues || !mHasMagneticFieldValues) {
+            return;
+        }
+
+        double azimuth = getAzimuth(
+                mAccelerometerValues, mMagneticFieldValues);
+        if (Double.isNaN(azimuth)) {
+            return;
+        }
+
+        mOrientationTimestamp = Tools.getMax(mMagneticFieldTimestamp,
+                mAccelerometerTimestamp);
+
+        if (mFusion != null) {
+            // correct when both sensors have new values,
+            // a stale value pulls the orientation back while turning
+            if (Math.min(mAccelerometerTimestamp, mMagneticFieldTimestamp)
+                    > mCorrectionTimestamp) {
+                mCorrectionTimestamp = mOrientationTimestamp;
+                mFusion.correct(mAccelerometerValues, mMagneticFieldValues,
+                        mOrientationTimestamp);
+                mOrientation = mFusion.getAzimuth();
+                mPending = true;
+            }
+            return;
+        }
+
+        mOrientation = mOrientationFilter.filter(
+                (float) Math.toDegrees(azimuth), mOrientationTimestamp);
+        mPending = true;
+    }
+
+    /**
+     * Filters new sensor values into a buffer,
+     * or copies them if sensor fusion is enabled.
+     *
+     * @param filter Filter of the sensor values
+     * @param values New sensor values
+     * @param timestamp Timestamp in nanoseconds
+     * @param buffer Buffer for the filtered values
+     */
+    private void filter(final VectorFilter filter, final float[] values,
+                        final long timestamp, final float[] buffer) {
+        if (mFusion != null) {
+            System.arraycopy(values, 0, buffer, 0, SENSOR_VALUES_SIZE);
+        } else {
+            filter.filter(values, timestamp, buffer);
+        }
+    }
+
+    /**
+     * Checks if a sensor value arrives sooner than the update rate.
+     *
+     * @param timestamp Timestamp of new value in nanoseconds
+     * @param previousTimestamp Timestamp of previous value in nanoseconds
+     * @param hasPrevious Whether there is a previous value
+     * @return true if the value should be rejected
+     */
+    private boolean isTooSoon(final long timestamp,
+                              final long previousTimestamp,
+                              final boolean hasPrevious) {
+        return hasPrevious
+                && Tools.isTimestampRecent(timestamp, previousTimestamp,
+                        mUpdateRate);
+    }
+}
@@ -0,0 +1,305 @@
+/**
+ * Gyroscope assisted orientation sensor fusion.
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+/**
+ * Complementary filter fusing gyroscope, accelerometer
+ * and magnetic field sensor values into an orientation.
+ *
+ * The orientation is kept as a quaternion, rotating device coordinates
+ * to world coordinates (x : east, y : north, z : up).
+ * Gyroscope values are integrated for a fast response,
+ * the drift of the integrated orientation is corrected
+ * with the orientation calculated from accelerometer
+ * and magnetic field values, with a time constant.
+ *
+ * Updating the orientation doesn't allocate memory.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class OrientationFusion {
+    /**
+     * Nanoseconds in a second.
+     */
+    private static final double SECOND_IN_NANO = 1e9;
+
+    /**
+     * Maximum time between gyroscope values in seconds,
+     * a longer gap isn't integrated.
+     */
+    private static final double MAX_GYROSCOPE_PERIOD = 0.5;
+
+    /**
+     * Rotation angle (rad) below which a gyroscope value is ignored.
+     */
+    private static final double MIN_ROTATION = 1e-9;
+
+    /**
+     * Time constant of drift correction in seconds.
+     */
+    private final double mTimeConstant;
+
+    /**
+     * Quaternion scalar component.
+     */
+    private double mW = 1;
+
+    /**
+     * Quaternion x component.
+     */
+    private double mX = 0;
+
+    /**
+     * Quaternion y component.
+     */
+    private double mY = 0;
+
+    /**
+     * Quaternion z component.
+     */
+    private double mZ = 0;
+
+    /**
+     * Whether the orientation was initialised
+     * with accelerometer and magnetic field values.
+     */
+    private boolean mInitialized = false;
+
+    /**
+     * Timestamp of the last gyroscope value in nanoseconds.
+     */
+    private long mGyroscopeTimestamp = 0;
+
+    /**
+     * Timestamp of the last correction in nanoseconds.
+     */
+    private long mCorrectionTimestamp = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param timeConstant Time constant of drift correction in seconds,
+     *                     higher values rely more on the gyroscope
+     * @throws IllegalArgumentException if timeConstant is negative
+     */
+    public OrientationFusion(final double timeConstant) {
+        if (timeConstant < 0) {
+            throw new IllegalArgumentException(
+                    "Parameter timeConstant should not be negative");
+        }
+
+        mTimeConstant = timeConstant;
+    }
+
+    /**
+     * Rotates the orientation with a gyroscope value.
+     *
+     * Values are ignored until the orientation is initialised.
+     *
+     * @param values Rotation rate around x, y, z axis in rad/s
+     * @param timestamp Timestamp in nanoseconds
+     */
+    public final void rotate(final float[] values, final long timestamp) {
+        double period = (timestamp - mGyroscopeTimestamp) / SECOND_IN_NANO;
+        boolean hasPrevious = mGyroscopeTimestamp > 0;
+        mGyroscopeTimestamp = timestamp;
+
+        if (!mInitialized || !hasPrevious
+                || period <= 0 || period > MAX_GYROSCOPE_PERIOD) {
+            return;
+        }
+
+        double rateX = values[0];
+        double rateY = values[1];
+        double rateZ = values[2];
+        double rate = Math.sqrt(rateX * rateX + rateY * rateY
+                + rateZ * rateZ);
+        double angle = rate * period;
+        if (angle < MIN_ROTATION) {
+            return;
+        }
+
+        // rotation quaternion of rotation around axis rate/|rate|
+        double sin = Math.sin(angle / 2) / rate;
+        double dw = Math.cos(angle / 2);
+        double dx = rateX * sin;
+        double dy = rateY * sin;
+        double dz = rateZ * sin;
+
+        // q = q * dq : rotation in device coordinates
+        double w = mW * dw - mX * dx - mY * dy - mZ * dz;
+        double x = mW * dx + mX * dw + mY * dz - mZ * dy;
+        double y = mW * dy - mX * dz + mY * dw + mZ * dx;
+        double z = mW * dz + mX * dy - mY * dx + mZ * dw;
+        set(w, x, y, z);
+    }
+
+    /**
+     * Corrects the orientation with accelerometer
+     * and magnetic field values.
+     *
+     * The first values initialise the orientation.
+     *
+     * @param gravity Gravity vector (x, y, z) in device coordinates
+     * @param geomagnetic Geomagnetic vector (x, y, z) in device coordinates
+     * @param timestamp Timestamp in nanoseconds
+     * @return false if the values can't be used (free fall, weak field)
+     */
+    public final boolean correct(final float[] gravity,
+                                 final float[] geomagnetic,
+                                 final long timestamp) {
+        // same limits as the calculated orientation
+        if (Double.isNaN(OrientationCalculator.getAzimuth(
+                gravity, geomagnetic))) {
+            return false;
+        }
+
+        double ax = gravity[0];
+        double ay = gravity[1];
+        double az = gravity[2];
+        double ex = geomagnetic[0];
+        double ey = geomagnetic[1];
+        double ez = geomagnetic[2];
+
+        // horizontal vector pointing east : H = E x A
+        double hx = ey * az - ez * ay;
+        double hy = ez * ax - ex * az;
+        double hz = ex * ay - ey * ax;
+        double normH = Math.sqrt(hx * hx + hy * hy + hz * hz);
+        double normA = Math.sqrt(ax * ax + ay * ay + az * az);
+        hx /= normH;
+        hy /= normH;
+        hz /= normH;
+        ax /= normA;
+        ay /= normA;
+        az /= normA;
+
+        // horizontal vector pointing north : M = A x H
+        double mx = ay * hz - az * hy;
+        double my = az * hx - ax * hz;
+        double mz = ax * hy - ay * hx;
+
+        // quaternion of rotation matrix with rows H, M, A
+        double w;
+        double x;
+        double y;
+        double z;
+        double trace = hx + my + az;
+        if (trace > 0) {
+            double s = Math.sqrt(trace + 1) * 2;
+            w = s / 4;
+            x = (ay - mz) / s;
+            y = (hz - ax) / s;
+            z = (mx - hy) / s;
+        } else if (hx > my && hx > az) {
+            double s = Math.sqrt(1 + hx - my - az) * 2;
+            w = (ay - mz) / s;
+            x = s / 4;
+            y = (hy + mx) / s;
+            z = (hz + ax) / s;
+        } else if (my > az) {
+            double s = Math.sqrt(1 + my - hx - az) * 2;
+            w = (hz - ax) / s;
+            x = (hy + mx) / s;
+            y = s / 4;
+            z = (mz + ay) / s;
+        } else {
+            double s = Math.sqrt(1 + az - hx - my) * 2;
+            w = (mx - hy) / s;
+            x = (hz + ax) / s;
+            y = (mz + ay) / s;
+            z = s / 4;
+        }
+
+        if (!mInitialized) {
+            set(w, x, y, z);
+            mInitialized = true;
+            mCorrectionTimestamp = timestamp;
+            return true;
+        }
+
+        double period = Math.max(0,
+                (timestamp - mCorrectionTimestamp) / SECOND_IN_NANO);
+        mCorrectionTimestamp = timestamp;
+        double weight = 1;
+        if (mTimeConstant > 0) {
+            weight = period / (mTimeConstant + period);
+        }
+
+        // use the shortest path, q and -q are the same rotation
+        if (mW * w + mX * x + mY * y + mZ * z < 0) {
+            weight = -1 * weight;
+        }
+        double keep = 1 - Math.abs(weight);
+        set(mW * keep + w * weight, mX * keep + x * weight,
+                mY * keep + y * weight, mZ * keep + z * weight);
+
+        return true;
+    }
+
+    /**
+     * Checks if the orientation was initialised.
+     *
+     * @return true if initialised
+     */
+    public final boolean isInitialized() {
+        return mInitialized;
+    }
+
+    /**
+     * Gets the azimuth, the angle between the device y axis
+     * projected on the horizontal plane and north.
+     *
+     * @return azimuth in degrees (0°-360°)
+     */
+    public final double getAzimuth() {
+        return FormatUtils.normalizeAngle(Math.toDegrees(
+                OrientationCalculator.getAzimuth(mW, mX, mY, mZ)));
+    }
+
+    /**
+     * Forgets the orientation.
+     */
+    public final void reset() {
+        set(1, 0, 0, 0);
+        mInitialized = false;
+        mGyroscopeTimestamp = 0;
+        mCorrectionTimestamp = 0;
+    }
+
+    /**
+     * Sets the orientation quaternion, normalized.
+     *
+     * @param w scalar component
+     * @param x x component
+     * @param y y component
+     * @param z z component
+     */
+    private void set(final double w, final double x, final double y,
+                     final double z) {
+        double norm = Math.sqrt(w * w + x * x + y * y + z * z);
+        mW = w / norm;
+        mX = x / norm;
+        mY = y / norm;
+        mZ = z / norm;
+    }
+}
@@ -0,0 +1,582 @@
+/**
+ * Compact list of locations.
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import android.location.Location;
+
+import java.util.Arrays;
+
+/**
+ * List of locations stored in primitive arrays,
+ * to keep tracks and waypoint sets in memory
+ * without an android.location.Location instance per location.
+ *
+ * Latitude and longitude are stored as fixed point values (1e-7°),
+ * bearing in tenths of a degree, altitude, accuracy and speed as float.
+ * A location takes about 35 bytes.
+ *
+ * This class is not thread safe.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class PackedLocations {
+    /**
+     * Flag : location has an altitude.
+     */
+    public static final int HAS_ALTITUDE = 1;
+
+    /**
+     * Flag : location has an accuracy.
+     */
+    public static final int HAS_ACCURACY = 2;
+
+    /**
+     * Flag : location has a speed.
+     */
+    public static final int HAS_SPEED = 4;
+
+    /**
+     * Flag : location has a bearing.
+     */
+    public static final int HAS_BEARING = 8;
+
+    /**
+     * Number of bearing units in one degree.
+     */
+    private static final float BEARING_SCALE = 10;
+
+    /**
+     * Number of bearing units in a full circle.
+     */
+    private static final int BEARING_CIRCLE
+            = (int) (FormatUtils.CIRCLE_FULL * BEARING_SCALE);
+
+    /**
+     * Default initial capacity.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Latitudes, in fixed point units (1e-7°).
+     */
+    private int[] mLatitudes;
+
+    /**
+     * Longitudes, in fixed point units (1e-7°).
+     */
+    private int[] mLongitudes;
+
+    /**
+     * Altitudes in meters.
+     */
+    private float[] mAltitudes;
+
+    /**
+     * Accuracies in meters.
+     */
+    private float[] mAccuracies;
+
+    /**
+     * Speeds in meters/second.
+     */
+    private float[] mSpeeds;
+
+    /**
+     * Bearings in tenths of a degree.
+     */
+    private short[] mBearings;
+
+    /**
+     * Timestamps in milliseconds since epoch.
+     */
+    private long[] mTimes;
+
+    /**
+     * Flags, indicating which optional values are set.
+     */
+    private byte[] mFlags;
+
+    /**
+     * Location names, null if no location has a name.
+     */
+    private String[] mNames = null;
+
+    /**
+     * Number of locations.
+     */
+    private int mSize = 0;
+
+    /**
+     * Constructor, using the default capacity.
+     */
+    public PackedLocations() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param capacity Initial capacity
+     * @throws IllegalArgumentException if capacity is negative
+     */
+    public PackedLocations(final int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity can't be negative");
+        }
+
+        mLatitudes = new int[capacity];
+        mLongitudes = new int[capacity];
+        mAltitudes = new float[capacity];
+        mAccuracies = new float[capacity];
+        mSpeeds = new float[capacity];
+        mBearings = new short[capacity];
+        mTimes = new long[capacity];
+        mFlags = new byte[capacity];
+    }
+
+    /**
+     * Number of locations.
+     *
+     * @return number of locations
+     */
+    public final int getSize() {
+        return mSize;
+    }
+
+    /**
+     * Adds a location with only a latitude and longitude.
+     *
+     * @param latitude Latitude in fixed point units (1e-7°)
+     * @param longitude Longitude in fixed point units (1e-7°)
+     * @param time Timestamp in milliseconds since epoch
+     * @return index of the added location
+     */
+    public final int add(final int latitude, final int longitude,
+                         final long time) {
+        ensureCapacity(mSize + 1);
+
+        int index = mSize++;
+        mLatitudes[index] = latitude;
+        mLongitudes[index] = longitude;
+        mTimes[index] = time;
+        mFlags[index] = 0;
+        if (mNames != null) {
+            mNames[index] = null;
+        }
+
+        return index;
+    }
+
+    /**
+     * Adds a location.
+     *
+     * @param location Location to add
+     * @return index of the added location
+     * @throws IllegalArgumentException if location is null
+     */
+    public final int add(final Location location) {
+        if (location == null) {
+            throw new IllegalArgumentException(
+                    "Parameter location should not be null");
+        }
+
+        int index = add(0, 0, 0);
+        set(index, location);
+
+        return index;
+    }
+
+    /**
+     * Replaces a location.
+     *
+     * @param index Location index
+     * @param location New location
+     * @throws IllegalArgumentException if location is null
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public final void set(final int index, final Location location) {
+        checkIndex(index);
+        if (location == null) {
+            throw new IllegalArgumentException(
+                    "Parameter location should not be null");
+        }
+
+        mLatitudes[index] = GreatCircle.toFixedPoint(location.getLatitude());
+        mLongitudes[index]
+                = GreatCircle.toFixedPoint(location.getLongitude());
+        mAltitudes[index] = (float) location.getAltitude();
+        mAccuracies[index] = location.getAccuracy();
+        mSpeeds[index] = location.getSpeed();
+        mBearings[index] = (short) (Math.round(
+                location.getBearing() * BEARING_SCALE) % BEARING_CIRCLE);
+        mTimes[index] = location.getTime();
+
+        int flags = 0;
+        if (location.hasAltitude()) {
+            flags |= HAS_ALTITUDE;
+        }
+        if (location.hasAccuracy()) {
+            flags |= HAS_ACCURACY;
+        }
+        if (location.hasSpeed()) {
+            flags |= HAS_SPEED;
+        }
+        if (location.hasBearing()) {
+            flags |= HAS_BEARING;
+        }
+        mFlags[index] = (byte) flags;
+
+        if (location instanceof AriadneLocation) {
+            setName(index, ((AriadneLocation) location).getName());
+        } else {
+            setName(index, null);
+        }
+    }
+
+    /**
+     * Removes all locations.
+     */
+    public final void clear() {
+        mSize = 0;
+        mNames = null;
+    }
+
+    /**
+     * Reduces the capacity to the number of locations.
+     */
+    public final void trimToSize() {
+        resize(mSize);
+    }
+
+    /**
+     * Gets the latitude of a location.
+     *
+     * @param index Location index
+     * @return latitude in degrees
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public final double getLatitude(final int index) {
+        return GreatCircle.fromFixedPoint(getFixedPointLatitude(index));
+    }
+
+    /**
+     * Gets the longitude of a location.
+     *
+     * @param index Location index
+     * @return longitude in degrees
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public final double getLongitude(final int index) {
+        return GreatCircle.fromFixedPoint(getFixedPointLongitude(index));
+    }
+
+    /**
+     * Gets the latitude of a location in fixed point units.
+     *
+     * @param index Location index
+     * @return latitude in fixed point units (1e-7°)
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public final int getFixedPointLatitude(final int index) {
+        checkIndex(index);
+        return mLatitudes[index];
+    }
+
+    /**
+     * Gets the longitude of a location in fixed point units.
+     *
+     * @param index Location index
+     * @return longitude in fixed point units (1e-7°)
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public final int getFixedPointLongitude(final int index) {
+        checkIndex(index);
+        return mLongitudes[index];
+    }
+
+    /**
+     * Gets the altitude of a location.
+     *
+     * @param index Location index
+     * @return altitude in meters, 0 if the location has no altitude
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public final float getAltitude(final int index) {
+        return hasFlag(index, HAS_ALTITUDE) ? mAltitudes[index] : 0;
+    }
+
+    /**
+     * Gets the accuracy of a location.
+     *
+     * @param index Location index
+     * @return accuracy in meters, 0 if the location has no accuracy
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public final float getAccuracy(final int index) {
+        return hasFlag(index, HAS_ACCURACY) ? mAccuracies[index] : 0;
+    }
+
+    /**
+     * Gets the speed of a location.
+     *
+     * @param index Location index
+     * @return speed in meters/second, 0 if the location has no speed
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public final float getSpeed(final int index) {
+        return hasFlag(index, HAS_SPEED) ? mSpeeds[index] : 0;
+    }
+
+    /**
+     * Gets the bearing of a location, with a resolution of 0.1°.
+     *
+     * @param index Location index
+     * @return bearing in ° (0-360°), 0 if the location has no bearing
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public final float getBearing(final int index) {
+        return hasFlag(index, HAS_BEARING)
+                ? mBearings[index] / BEARING_SCALE : 0;
+    }
+
+    /**
+     * Gets the timestamp of a location.
+     *
+     * @param index Location index
+     * @return timestamp in milliseconds since epoch
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public final long getTime(final int index) {
+        checkIndex(index);
+        return mTimes[index];
+    }
+
+    /**
+     * Checks if an optional value of a location is set.
+     *
+     * @param index Location index
+     * @param flag HAS_ALTITUDE, HAS_ACCURACY, HAS_SPEED or HAS_BEARING
+     * @return true if the value is set
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public final boolean hasFlag(final int index, final int flag) {
+        checkIndex(index);
+        return (mFlags[index] & flag) != 0;
+    }
+
+    /**
+     * Gets the name of a location.
+     *
+     * @param index Location index
+     * @return location name, null if the location has no name
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public final String getName(final int index) {
+        checkIndex(index);
+        if (mNames == null) {
+            return null;
+        }
+        return mNames[index];
+    }
+
+    /**
+     * Sets the name of a location.
+     *
+     * @param index Location index
+     * @param name Location name, null to remove the name
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public final void setName(final int index, final String name) {
+        checkIndex(index);
+        if (mNames == null) {
+            if (name == null) {
+                return;
+            }
+            // names are only allocated when a location has a name,
+            // most track points don't have one.
+            mNames = new String[mLatitudes.length];
+        }
+        mNames[index] = name;
+    }
+
+    /**
+     * Copies a location into an existing Location instance.
+     * Values that are not set are removed from the instance.
+     *
+     * @param index Location index
+     * @param location Location instance to copy to
+     * @throws IllegalArgumentException if location is null
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    @SuppressWarnings("deprecation")
+    public final void copyTo(final int index, final Location location) {
+        checkIndex(index);
+        if (location == null) {
+            throw new IllegalArgumentException(
+                    "Parameter location should not be null");
+        }
+
+        location.setLatitude(getLatitude(index));
+        location.setLongitude(getLongitude(index));
+        location.setTime(mTimes[index]);
+
+        if (hasFlag(index, HAS_ALTITUDE)) {
+            location.setAltitude(mAltitudes[index]);
+        } else {
+            location.removeAltitude();
+        }
+        if (hasFlag(index, HAS_ACCURACY)) {
+            location.setAccuracy(mAccuracies[index]);
+        } else {
+            location.removeAccuracy();
+        }
+        if (hasFlag(index, HAS_SPEED)) {
+            location.setSpeed(mSpeeds[index]);
+        } else {
+            location.removeSpeed();
+        }
+        if (hasFlag(index, HAS_BEARING)) {
+            location.setBearing(getBearing(index));
+        } else {
+            location.removeBearing();
+        }
+
+        if (location instanceof AriadneLocation) {
+            ((AriadneLocation) location).setName(getName(index));
+        }
+    }
+
+    /**
+     * Creates an AriadneLocation instance of a location.
+     *
+     * @param index Location index
+     * @param provider Provider name
+     * @return new AriadneLocation instance
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public final AriadneLocation toAriadneLocation(final int index,
+                                                   final String provider) {
+        checkIndex(index);
+
+        AriadneLocation location = new AriadneLocation(provider);
+        copyTo(index, location);
+
+        return location;
+    }
+
+    /**
+     * Calculates the distance between two locations.
+     *
+     * @param index1 Index of the first location
+     * @param index2 Index of the second location
+     * @return distance in meters
+     * @throws IndexOutOfBoundsException if an index is out of range
+     */
+    public final double distance(final int index1, final int index2) {
+        checkIndex(index1);
+        checkIndex(index2);
+
+        return GreatCircle.distanceFixedPoint(
+                mLatitudes[index1], mLongitudes[index1],
+                mLatitudes[index2], mLongitudes[index2]);
+    }
+
+    /**
+     * Calculates the initial bearing from one location to another.
+     *
+     * @param index1 Index of the first location
+     * @param index2 Index of the second location
+     * @return bearing in ° relative to the North (0-360°)
+     * @throws IndexOutOfBoundsException if an index is out of range
+     */
+    public final double bearing(final int index1, final int index2) {
+        checkIndex(index1);
+        checkIndex(index2);
+
+        return GreatCircle.bearingFixedPoint(
+                mLatitudes[index1], mLongitudes[index1],
+                mLatitudes[index2], mLongitudes[index2]);
+    }
+
+    /**
+     * Calculates the length of the path through all locations.
+     *
+     * @return length in meters
+     */
+    public final double getPathLength() {
+        double length = 0;
+
+        for (int i = 1; i < mSize; i++) {
+            length += GreatCircle.distanceFixedPoint(
+                    mLatitudes[i - 1], mLongitudes[i - 1],
+                    mLatitudes[i], mLongitudes[i]);
+        }
+
+        return length;
+    }
+
+    /**
+     * Checks if an index is in range.
+     *
+     * @param index Location index
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException(
+                    "index " + index + " is not in range 0 .. "
+                            + (mSize - 1));
+        }
+    }
+
+    /**
+     * Grows the arrays.
+     *
+     * @param minCapacity Minimum required capacity
+     */
+    private void ensureCapacity(final int minCapacity) {
+        if (minCapacity <= mLatitudes.length) {
+            return;
+        }
+
+        resize(Math.max(minCapacity, mLatitudes.length * 2));
+    }
+
+    /**
+     * Resizes the arrays.
+     *
+     * @param capacity New capacity
+     */
+    private void resize(final int capacity) {
+        mLatitudes = Arrays.copyOf(mLatitudes, capacity);
+        mLongitudes = Arrays.copyOf(mLongitudes, capacity);
+        mAltitudes = Arrays.copyOf(mAltitudes, capacity);
+        mAccuracies = Arrays.copyOf(mAccuracies, capacity);
+        mSpeeds = Arrays.copyOf(mSpeeds, capacity);
+        mBearings = Arrays.copyOf(mBearings, capacity);
+        mTimes = Arrays.copyOf(mTimes, capacity);
+        mFlags = Arrays.copyOf(mFlags, capacity);
+        if (mNames != null) {
+            mNames = Arrays.copyOf(mNames, capacity);
+        }
+    }
+}
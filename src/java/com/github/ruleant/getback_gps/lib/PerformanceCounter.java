@@ -0,0 +1,161 @@
+/**
+ * Counts the time spent processing events.
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import java.util.Locale;
+
+/**
+ * Counts events and the time spent processing them.
+ *
+ * Adding a measurement doesn't allocate memory.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class PerformanceCounter {
+    /**
+     * Nanoseconds in a microsecond.
+     */
+    private static final double MICRO_IN_NANO = 1000;
+
+    /**
+     * Name of the counter.
+     */
+    private final String mName;
+
+    /**
+     * Number of events.
+     */
+    private long mCount = 0;
+
+    /**
+     * Total time spent in nanoseconds.
+     */
+    private long mTotalTime = 0;
+
+    /**
+     * Maximum time spent on one event in nanoseconds.
+     */
+    private long mMaxTime = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param name Name of the counter
+     * @throws IllegalArgumentException if name is null or empty
+     */
+    public PerformanceCounter(final String name) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException(
+                    "Parameter name should not be empty");
+        }
+
+        mName = name;
+    }
+
+    /**
+     * Adds the time spent processing an event.
+     *
+     * Negative times (eg. when the clock isn't supported) are ignored.
+     *
+     * @param time Time spent in nanoseconds
+     */
+    public final void add(final long time) {
+        if (time < 0) {
+            return;
+        }
+
+        mCount++;
+        mTotalTime += time;
+        mMaxTime = Tools.getMax(mMaxTime, time);
+    }
+
+    /**
+     * Gets the name of the counter.
+     *
+     * @return name
+     */
+    public final String getName() {
+        return mName;
+    }
+
+    /**
+     * Gets the number of events.
+     *
+     * @return number of events
+     */
+    public final long getCount() {
+        return mCount;
+    }
+
+    /**
+     * Gets the total time spent.
+     *
+     * @return total time in nanoseconds
+     */
+    public final long getTotalTime() {
+        return mTotalTime;
+    }
+
+    /**
+     * Gets the maximum time spent on one event.
+     *
+     * @return maximum time in nanoseconds
+     */
+    public final long getMaxTime() {
+        return mMaxTime;
+    }
+
+    /**
+     * Gets the average time spent on an event.
+     *
+     * @return average time in nanoseconds, 0 if there are no events
+     */
+    public final double getAverageTime() {
+        if (mCount == 0) {
+            return 0;
+        }
+
+        return (double) mTotalTime / mCount;
+    }
+
+    /**
+     * Forgets all events.
+     */
+    public final void reset() {
+        mCount = 0;
+        mTotalTime = 0;
+        mMaxTime = 0;
+    }
+
+    /**
+     * Formats the counter, eg. "name : 10 events, avg 1.5 µs, max 3.0 µs".
+     *
+     * @return formatted counter
+     */
+    @Override
+    public final String toString() {
+        return String.format(Locale.US,
+                "%1$s : %2$d events, avg %3$.1f µs, max %4$.1f µs",
+                mName, mCount, getAverageTime() / MICRO_IN_NANO,
+                mMaxTime / MICRO_IN_NANO);
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * Decides if a rotated shape needs to be redrawn.
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import java.util.Locale;
+
+/**
+ * Decides if a rotated shape needs to be redrawn.
+ *
+ * A rotation is visible when the point of the shape furthest from the
+ * rotation center moves more than a threshold, in pixels.
+ * Redraw requests and redraws avoided are counted, to calculate
+ * the number of redraws avoided per minute.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class RedrawThreshold {
+    /**
+     * Minute in nanoseconds.
+     */
+    private static final double MINUTE_IN_NANO = 60e9;
+
+    /**
+     * Minimum displacement to redraw, in pixels.
+     */
+    private final double mThreshold;
+
+    /**
+     * Number of redraw requests.
+     */
+    private long mRequests = 0;
+
+    /**
+     * Number of redraws avoided.
+     */
+    private long mAvoided = 0;
+
+    /**
+     * Timestamp of the first request in nanoseconds.
+     */
+    private long mFirstTimestamp = 0;
+
+    /**
+     * Timestamp of the last request in nanoseconds.
+     */
+    private long mLastTimestamp = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param threshold Minimum displacement to redraw, in pixels
+     * @throws IllegalArgumentException if threshold is negative
+     */
+    public RedrawThreshold(final double threshold) {
+        if (!(threshold >= 0)) {
+            throw new IllegalArgumentException(
+                    "threshold can't be negative");
+        }
+
+        mThreshold = threshold;
+    }
+
+    /**
+     * Calculates the displacement of a point when it is rotated,
+     * the length of the chord between the old and new position.
+     *
+     * @param radius Distance of the point to the rotation center
+     * @param from Old angle in degrees
+     * @param to New angle in degrees
+     * @return displacement, in the same unit as radius
+     */
+    public static double getDisplacement(final double radius,
+                                         final double from,
+                                         final double to) {
+        return Math.abs(2 * radius * Math.sin(Math.toRadians(to - from) / 2));
+    }
+
+    /**
+     * Checks if a rotation is visible.
+     *
+     * @param radius Distance of the furthest point of the shape
+     *               to the rotation center, in pixels
+     * @param from Drawn angle in degrees
+     * @param to New angle in degrees
+     * @return true if the displacement exceeds the threshold
+     */
+    public final boolean isVisible(final double radius, final double from,
+                                   final double to) {
+        return getDisplacement(radius, from, to) > mThreshold;
+    }
+
+    /**
+     * Records a redraw request.
+     *
+     * @param redraw true if the shape is redrawn, false if it is avoided
+     * @param timestamp Timestamp of the request in nanoseconds
+     * @return redraw
+     */
+    public final boolean record(final boolean redraw, final long timestamp) {
+        if (mRequests == 0) {
+            mFirstTimestamp = timestamp;
+        }
+        mLastTimestamp = timestamp;
+        mRequests++;
+
+        if (!redraw) {
+            mAvoided++;
+        }
+
+        return redraw;
+    }
+
+    /**
+     * Gets the number of redraw requests.
+     *
+     * @return number of redraw requests
+     */
+    public final long getRequests() {
+        return mRequests;
+    }
+
+    /**
+     * Gets the number of redraws avoided.
+     *
+     * @return number of redraws avoided
+     */
+    public final long getAvoided() {
+        return mAvoided;
+    }
+
+    /**
+     * Gets the number of redraw requests per minute.
+     *
+     * @return redraw requests per minute, 0 if less than 2 requests
+     */
+    public final double getRequestsPerMinute() {
+        return perMinute(mRequests);
+    }
+
+    /**
+     * Gets the number of redraws avoided per minute.
+     *
+     * @return redraws avoided per minute, 0 if less than 2 requests
+     */
+    public final double getAvoidedPerMinute() {
+        return perMinute(mAvoided);
+    }
+
+    /**
+     * Converts a count to a rate, over the time between
+     * the first and the last request.
+     *
+     * @param count Count
+     * @return count per minute
+     */
+    private double perMinute(final long count) {
+        final long period = mLastTimestamp - mFirstTimestamp;
+        if (period <= 0) {
+            return 0;
+        }
+
+        return count * MINUTE_IN_NANO / period;
+    }
+
+    /**
+     * Forgets all requests.
+     */
+    public final void reset() {
+        mRequests = 0;
+        mAvoided = 0;
+        mFirstTimestamp = 0;
+        mLastTimestamp = 0;
+    }
+
+    @Override
+    public final String toString() {
+        return String.format(Locale.US,
+                "redraws avoided : %d of %d requests, %.0f/min of %.0f/min",
+                mAvoided, mRequests, getAvoidedPerMinute(),
+                getRequestsPerMinute());
+    }
+}
@@ -21,21 +21,33 @@
  */
 package com.github.ruleant.getback_gps.lib;
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.os.Build;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
 import android.preference.PreferenceManager;
 
 import com.github.ruleant.getback_gps.SettingsActivity;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
 import java.util.EventListener;
 
 /**
  * Calculates current orientation from sensors.
  *
+ * In low power mode, sensor events are batched by the sensor hub
+ * (API 19 and higher) and delivered with a delay.
+ * The events of a batch are delivered in one go on the main thread,
+ * they are filtered as they arrive, the orientation is calculated
+ * and listeners are notified once, when the batch is processed.
+ *
  * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
  */
 public class SensorOrientation implements SensorEventListener {
@@ -50,20 +62,29 @@ public class SensorOrientation implements SensorEventListener {
     private Context mContext;
 
     /**
-     * List with subscribed listeners.
+     * Subscribed listeners.
      */
-    private ArrayList<OrientationEventListener> eventListenerList
-            = new ArrayList<OrientationEventListener>();
+    private final ListenerRegistry<OrientationEventListener> mListeners
+            = new ListenerRegistry<OrientationEventListener>();
 
     /**
-     * Current calculated orientation.
+     * Notifies a listener of an orientation change.
      */
-    private double mOrientation = 0;
+    private final ListenerRegistry.Dispatcher<OrientationEventListener>
+            mDispatcher
+            = new ListenerRegistry.Dispatcher<OrientationEventListener>() {
+                @Override
+                public void dispatch(
+                        final OrientationEventListener listener) {
+                    listener.onOrientationChanged();
+                }
+            };
 
     /**
-     * Timestamp in milliseconds when current orientation was calculated.
+     * Calculates the orientation from sensor values.
      */
-    private long mOrientationTimestamp = 0;
+    private final OrientationCalculator mCalculator = createCalculator(
+            SensorRateController.RATE_NORMAL * Tools.MICRO_IN_NANO);
 
     /**
      * Realtime timestamp in nanoseconds when current orientation was updated.
@@ -80,16 +101,6 @@ public class SensorOrientation implements SensorEventListener {
      */
     private Sensor mAccelerometer;
 
-    /**
-     * Accelerometer Sensor values.
-     */
-    private float[] mAccelerometerValues;
-
-    /**
-     * Accelerometer Sensor values timestamp.
-     */
-    private long mAccelerometerTimestamp;
-
     /**
      * Realtime timestamp in nanoseconds when accelerometer sensor was updated.
      */
@@ -101,14 +112,15 @@ public class SensorOrientation implements SensorEventListener {
     private Sensor mMagneticFieldSensor;
 
     /**
-     * Magnetic field sensor values.
+     * Gyroscope sensor.
      */
-    private float[] mMagneticFieldValues;
+    private Sensor mGyroscope;
 
     /**
-     * Magnetic field sensor values timestamp.
+     * Sensor fusion of gyroscope, accelerometer and magnetic field sensor.
      */
-    private long mMagneticFieldTimestamp;
+    private final OrientationFusion mFusion
+            = new OrientationFusion(FUSION_TIME_CONSTANT);
 
     /**
      * Realtime timestamp in nanoseconds when magnetic field sensor was updated.
@@ -116,25 +128,157 @@ public class SensorOrientation implements SensorEventListener {
     private long mMagneticFieldRTTimestamp = 0;
 
     /**
-     * Sensor timestamp expiration,
-     * 5 seconds in nanoseconds (5 * 10^9).
+     * Rotation vector sensor.
      */
-    private static final long TIMESTAMP_EXPIRE = 5000 * Tools.MILLI_IN_NANO;
+    private Sensor mRotationVectorSensor;
+
+    /**
+     * Realtime timestamp in nanoseconds when rotation vector sensor
+     * was updated.
+     */
+    private long mRotationVectorRTTimestamp = 0;
+
+    /**
+     * Adapts the sensor sampling rate to the rotation speed.
+     */
+    private final SensorRateController mRateController
+            = new SensorRateController();
+
+    /**
+     * Whether sensor events are batched to save power.
+     */
+    private boolean mLowPower = false;
+
+    /**
+     * Sampling rate in microseconds the sensors are registered with,
+     * 0 if no sensors are registered.
+     */
+    private int mRegisteredRate = 0;
+
+    /**
+     * Orientation sensor setting, one of the
+     * SettingsActivity.GEO_ORIENTATION_SENSOR_* values,
+     * read when the sensors are registered for the first listener.
+     */
+    private int mSensorSetting = SettingsActivity.GEO_ORIENTATION_SENSOR_AUTO;
+
+    /**
+     * Handler on the main thread, processing a batch of sensor events
+     * after all events of the batch were delivered.
+     */
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Whether processing a batch of sensor events is scheduled.
+     */
+    private boolean mBatchPending = false;
+
+    /**
+     * Number of accepted sensor events in the pending batch.
+     */
+    private int mBatchSize = 0;
+
+    /**
+     * Total number of accepted sensor events in processed batches.
+     */
+    private long mBatchedEvents = 0;
+
+    /**
+     * Processes a batch of sensor events.
+     */
+    private final Runnable mBatchProcessor = new Runnable() {
+        @Override
+        public void run() {
+            processBatch();
+        }
+    };
+
+    /**
+     * Whether notifying listeners of skipped changes is scheduled.
+     */
+    private boolean mNotifyPending = false;
+
+    /**
+     * Timestamp in nanoseconds of the scheduled notification
+     * of skipped changes.
+     */
+    private long mNotifyPendingTimestamp = 0;
+
+    /**
+     * Notifies listeners of changes that were skipped,
+     * because they were within the listener's minimum interval.
+     */
+    private final Runnable mPendingNotifier = new Runnable() {
+        @Override
+        public void run() {
+            notifyPending();
+        }
+    };
+
+    /**
+     * CPU time of processing batches of sensor events,
+     * the number of batches is the number of wakeups.
+     */
+    private final PerformanceCounter mBatchCounter
+            = new PerformanceCounter("batches");
+
+    /**
+     * Throttles notifying listeners of orientation changes.
+     */
+    private final HeadingThrottle mThrottle = new HeadingThrottle(
+            HEADING_DEADBAND, MIN_NOTIFY_INTERVAL, MAX_NOTIFY_INTERVAL);
+
+    /**
+     * Statistics of the last orientation values,
+     * over the stability time at the registered sampling rate.
+     */
+    private CircularStatistics mStatistics = new CircularStatistics(
+            getStabilityWindow(SensorRateController.RATE_NORMAL));
 
     /**
-     * Sensor update rate in microseconds.
+     * Sampling rate in microseconds the statistics window is sized for.
      */
-    private static final int SENSOR_UPDATE_RATE = 200000;
+    private int mStatisticsRate = SensorRateController.RATE_NORMAL;
 
     /**
-     * Number of sensor value components.
+     * Records raw sensor events, null if not recording.
      */
-    private static final int SENSOR_VALUES_SIZE = 3;
+    private volatile SensorRecorder mRecorder = null;
 
     /**
-     * Number of rotation matrix components.
+     * Estimates the quality of the compass heading.
      */
-    private static final int MATRIX_SIZE = 9;
+    private final CompassQuality mCompassQuality = new CompassQuality();
+
+    /**
+     * Orientation sensor setting that is used,
+     * one of the SettingsActivity.GEO_ORIENTATION_SENSOR_* values,
+     * GEO_ORIENTATION_SENSOR_AUTO if no sensors are registered.
+     */
+    private int mActiveSensor = SettingsActivity.GEO_ORIENTATION_SENSOR_AUTO;
+
+    /**
+     * Whether the CPU time of processing sensor events is measured.
+     */
+    private boolean mMeasurePerformance = false;
+
+    /**
+     * CPU time of processing sensor events,
+     * per orientation sensor setting.
+     */
+    private final PerformanceCounter[] mPerformanceCounters = {
+        null,
+        new PerformanceCounter("raw sensors"),
+        new PerformanceCounter("orientation sensor"),
+        new PerformanceCounter("sensor fusion"),
+        new PerformanceCounter("rotation vector"),
+    };
+
+    /**
+     * Sensor timestamp expiration,
+     * 5 seconds in nanoseconds (5 * 10^9).
+     */
+    private static final long TIMESTAMP_EXPIRE = 5000 * Tools.MILLI_IN_NANO;
 
     /**
      * Low pass filter alpha value.
@@ -142,10 +286,111 @@ public class SensorOrientation implements SensorEventListener {
     private static final float LOW_PASS_ALPHA = 0.6f;
 
     /**
-     * Alpha value of circular average
+     * Minimum cutoff frequency (Hz) of the filter
      * of orientation value calculated from sensors.
      */
-    private static final float ALPHA_ORIENTATION_SENSORS = 0.05f;
+    private static final double ORIENTATION_MIN_CUTOFF = 0.3;
+
+    /**
+     * Increase of cutoff frequency per °/s rotation speed
+     * of the filter of orientation value calculated from sensors.
+     */
+    private static final double ORIENTATION_BETA = 0.05;
+
+    /**
+     * Cutoff frequency (Hz) of the rotation speed
+     * of the filter of orientation value calculated from sensors.
+     */
+    private static final double ORIENTATION_DERIVATIVE_CUTOFF = 1;
+
+    /**
+     * Time constant (seconds) of sensor fusion drift correction.
+     */
+    private static final double FUSION_TIME_CONSTANT = 2;
+
+    /**
+     * Maximum delay of batched sensor events in low power mode,
+     * 3 seconds in microseconds, shorter than the timestamp expiration.
+     */
+    private static final int BATCH_REPORT_LATENCY = 3000000;
+
+    /**
+     * Minimum heading change before listeners are notified, in degrees.
+     */
+    private static final double HEADING_DEADBAND = 1;
+
+    /**
+     * Minimum time between notifications,
+     * 50 milliseconds in nanoseconds.
+     */
+    private static final long MIN_NOTIFY_INTERVAL = 50 * Tools.MILLI_IN_NANO;
+
+    /**
+     * Maximum time between notifications, if the heading didn't change,
+     * 2 seconds in nanoseconds.
+     */
+    private static final long MAX_NOTIFY_INTERVAL = 2000 * Tools.MILLI_IN_NANO;
+
+    /**
+     * Time the orientation values are checked over, if it is stable,
+     * 2 seconds in microseconds.
+     */
+    private static final long STABILITY_TIME = 2000000;
+
+    /**
+     * Minimum number of orientation values used to check if it is stable.
+     */
+    private static final int MIN_STABILITY_WINDOW = 3;
+
+    /**
+     * Maximum circular variance of a stable orientation,
+     * a circular standard deviation of about 6°.
+     */
+    private static final double STABLE_VARIANCE = 0.005;
+
+    /**
+     * Number of magnetic field values to take the median of.
+     */
+    private static final int MAGNETIC_FIELD_MEDIAN_SIZE = 3;
+
+    /**
+     * Sampling rate in microseconds of the magnetic field sensor,
+     * when it is only used to estimate the compass quality.
+     */
+    private static final int COMPASS_QUALITY_RATE
+            = SensorRateController.RATE_NORMAL;
+
+    /**
+     * Creates an orientation calculator with the filters
+     * used to calculate the orientation,
+     * tests use it to replay recordings with the same configuration.
+     *
+     * @param updateRate Minimum time between updates in nanoseconds
+     * @return orientation calculator
+     */
+    static OrientationCalculator createCalculator(final long updateRate) {
+        return new OrientationCalculator(
+                updateRate,
+                new ExponentialFilter(LOW_PASS_ALPHA),
+                // remove spikes from magnetic field, eg. passing metal
+                new SignalFilterChain(
+                        new MedianFilter(MAGNETIC_FIELD_MEDIAN_SIZE),
+                        new ExponentialFilter(LOW_PASS_ALPHA)),
+                new CircularFilter(new OneEuroFilter(
+                        ORIENTATION_MIN_CUTOFF, ORIENTATION_BETA,
+                        ORIENTATION_DERIVATIVE_CUTOFF)));
+    }
+
+    /**
+     * Gets the number of orientation values in the stability time,
+     * at a sampling rate.
+     *
+     * @param rate Sampling rate in microseconds
+     * @return number of values
+     */
+    private static int getStabilityWindow(final int rate) {
+        return Math.max(MIN_STABILITY_WINDOW, (int) (STABILITY_TIME / rate));
+    }
 
     /**
      * Constructor.
@@ -169,6 +414,9 @@ public class SensorOrientation implements SensorEventListener {
                     Sensor.TYPE_MAGNETIC_FIELD);
             mOrientationSensor = mSensorManager.getDefaultSensor(
                     Sensor.TYPE_ORIENTATION);
+            mGyroscope = mSensorManager.getDefaultSensor(
+                    Sensor.TYPE_GYROSCOPE);
+            mRotationVectorSensor = getRotationVectorSensor();
         }
     }
 
@@ -176,66 +424,95 @@ public class SensorOrientation implements SensorEventListener {
      * Set acceleration by an event from a TYPE_ACCELERATION sensor.
      *
      * @param event Sensor event from TYPE_ACCELEROMETER sensor
+     * @return true if the orientation was updated
      */
-    public final void setAcceleration(final SensorEvent event) {
+    public final boolean setAcceleration(final SensorEvent event) {
         if (event.sensor.getType() != Sensor.TYPE_ACCELEROMETER
             // reject values that arrive sooner than the update rate
-            || Tools.isTimestampRecent(event.timestamp,
-                mAccelerometerTimestamp,
-                SENSOR_UPDATE_RATE * Tools.MICRO_IN_NANO)) {
-            return;
+            || !mCalculator.setAcceleration(event.values, event.timestamp)) {
+            return false;
         }
-        mAccelerometerValues
-            = LowPassFilter.filterValueSet(mAccelerometerValues,
-                event.values, LOW_PASS_ALPHA);
-        mAccelerometerTimestamp = event.timestamp;
         mAccelerometerRTTimestamp = Tools.getTimestampNano();
 
-        calculateOrientation();
-        onOrientationChange();
+        return true;
     }
 
     /**
      * Set acceleration by an event from a TYPE_MAGNETIC_FIELD sensor.
+     * When the rotation vector sensor is used, the magnetic field
+     * is only used to estimate the compass quality.
      *
      * @param event Sensor event from TYPE_MAGNETIC_FIELD sensor
+     * @return true if the orientation was updated
      */
-    public final void setMagneticField(final SensorEvent event) {
-        if (event.sensor.getType() != Sensor.TYPE_MAGNETIC_FIELD
-            // reject values that arrive sooner than the update rate
-            || Tools.isTimestampRecent(event.timestamp,
-                mMagneticFieldTimestamp,
-                SENSOR_UPDATE_RATE * Tools.MICRO_IN_NANO)) {
-            return;
+    public final boolean setMagneticField(final SensorEvent event) {
+        if (event.sensor.getType() != Sensor.TYPE_MAGNETIC_FIELD) {
+            return false;
+        }
+        // every value is used to estimate interference
+        mCompassQuality.addMagneticField(event.values);
+        if (mActiveSensor
+                == SettingsActivity.GEO_ORIENTATION_SENSOR_ROTATION_VECTOR) {
+            return false;
+        }
+
+        // reject values that arrive sooner than the update rate
+        if (!mCalculator.setMagneticField(event.values, event.timestamp)) {
+            return false;
         }
-        mMagneticFieldValues
-            = LowPassFilter.filterValueSet(mMagneticFieldValues,
-                event.values, LOW_PASS_ALPHA);
-        mMagneticFieldTimestamp = event.timestamp;
         mMagneticFieldRTTimestamp = Tools.getTimestampNano();
 
-        calculateOrientation();
-        onOrientationChange();
+        return true;
+    }
+
+    /**
+     * Set rotation rate by an event from a TYPE_GYROSCOPE sensor.
+     *
+     * @param event Sensor event from TYPE_GYROSCOPE sensor
+     * @return true if the orientation update should be reported
+     */
+    public final boolean setGyroscope(final SensorEvent event) {
+        // report values at the update rate
+        return event.sensor.getType() == Sensor.TYPE_GYROSCOPE
+                && mCalculator.setGyroscope(event.values, event.timestamp);
+    }
+
+    /**
+     * Set orientation by an event from a rotation vector sensor,
+     * TYPE_ROTATION_VECTOR or TYPE_GEOMAGNETIC_ROTATION_VECTOR.
+     *
+     * @param event Sensor event from a rotation vector sensor
+     * @return true if the orientation was updated
+     */
+    public final boolean setRotationVector(final SensorEvent event) {
+        if (mRotationVectorSensor == null
+                || event.sensor.getType() != mRotationVectorSensor.getType()
+                // reject values that arrive sooner than the update rate
+                || !mCalculator.setRotationVector(
+                        event.values, event.timestamp)) {
+            return false;
+        }
+        mRotationVectorRTTimestamp = Tools.getTimestampNano();
+
+        return true;
     }
 
     /**
      * Set orientation by an event from a TYPE_ORIENTATION sensor.
      *
-     * @param event Sensor event from TYPE_ACCELEROMETER sensor
+     * @param event Sensor event from TYPE_ORIENTATION sensor
+     * @return true if the orientation was updated
      */
-    public final void setOrientation(final SensorEvent event) {
+    public final boolean setOrientation(final SensorEvent event) {
         if (event.sensor.getType() != Sensor.TYPE_ORIENTATION
                 // reject values that arrive sooner than the update rate
-                || Tools.isTimestampRecent(event.timestamp,
-                    mOrientationTimestamp,
-                    SENSOR_UPDATE_RATE * Tools.MICRO_IN_NANO)) {
-            return;
+                || !mCalculator.setOrientation(
+                        event.values[0], event.timestamp)) {
+            return false;
         }
-        mOrientation = event.values[0];
-        mOrientationTimestamp = event.timestamp;
         mOrientationRTTimestamp = Tools.getTimestampNano();
 
-        onOrientationChange();
+        return true;
     }
 
     /**
@@ -251,7 +528,30 @@ public class SensorOrientation implements SensorEventListener {
                 && isTimestampRecent(mAccelerometerRTTimestamp)
                 && isTimestampRecent(mMagneticFieldRTTimestamp)
                 || (mOrientationSensor != null
-                && isTimestampRecent(mOrientationRTTimestamp));
+                && isTimestampRecent(mOrientationRTTimestamp))
+                || (mRotationVectorSensor != null
+                && isTimestampRecent(mRotationVectorRTTimestamp));
+    }
+
+    /**
+     * Checks if the orientation is stable : it can be provided
+     * and the orientation values of the last 2 seconds
+     * have a low circular variance.
+     *
+     * @return true if the orientation is stable
+     */
+    public boolean isOrientationStable() {
+        return hasOrientation() && mStatistics.isFull()
+                && mStatistics.getVariance() <= STABLE_VARIANCE;
+    }
+
+    /**
+     * Gets the circular variance of the last orientation values.
+     *
+     * @return circular variance (0-1)
+     */
+    public final double getOrientationVariance() {
+        return mStatistics.getVariance();
     }
 
     /**
@@ -260,13 +560,15 @@ public class SensorOrientation implements SensorEventListener {
      * @return current SensorOrientation
      */
     public double getOrientation() {
-        return mOrientation;
+        return mCalculator.getOrientation();
     }
 
     /**
      * Returns true if the required sensors are available :
      * - TYPE_MAGNETIC_FIELD
-     * - TYPE_ACCELEROMETER.
+     * - TYPE_ACCELEROMETER
+     * or TYPE_ORIENTATION
+     * or TYPE_ROTATION_VECTOR.
      *
      * @return true if required sensors are available
      */
@@ -277,7 +579,29 @@ public class SensorOrientation implements SensorEventListener {
             && mSensorManager.getSensorList(
                 Sensor.TYPE_ACCELEROMETER).size() > 0
             || mSensorManager.getSensorList(
-                Sensor.TYPE_ORIENTATION).size() > 0);
+                Sensor.TYPE_ORIENTATION).size() > 0
+            || mSensorManager.getSensorList(
+                Sensor.TYPE_ROTATION_VECTOR).size() > 0);
+    }
+
+    /**
+     * Gets the rotation vector sensor :
+     * TYPE_ROTATION_VECTOR (uses the gyroscope, if available),
+     * or TYPE_GEOMAGNETIC_ROTATION_VECTOR (API 19 and higher).
+     *
+     * @return rotation vector sensor, null if not available
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private Sensor getRotationVectorSensor() {
+        Sensor sensor = mSensorManager.getDefaultSensor(
+                Sensor.TYPE_ROTATION_VECTOR);
+        if (sensor == null
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            sensor = mSensorManager.getDefaultSensor(
+                    Sensor.TYPE_GEOMAGNETIC_ROTATION_VECTOR);
+        }
+
+        return sensor;
     }
 
     /**
@@ -297,6 +621,8 @@ public class SensorOrientation implements SensorEventListener {
     /**
      * Register for Sensor events of
      * TYPE_ACCELEROMETER and TYPE_MAGNETIC_FIELD.
+     * Reads the sensor settings, they are used until
+     * the sensors are registered again with this method.
      *
      * @param listener SensorEventListener
      */
@@ -305,28 +631,159 @@ public class SensorOrientation implements SensorEventListener {
             return;
         }
 
-        int sensor = Integer.parseInt(
+        mSensorSetting = Integer.parseInt(
                 PreferenceManager.getDefaultSharedPreferences(mContext)
                 .getString(
                         SettingsActivity.KEY_PREF_GEO_ORIENTATION_SENSOR,
                         SettingsActivity.DEFAULT_PREF_GEO_ORIENTATION_SENSOR));
+        mMeasurePerformance = new DebugLevel(mContext)
+                .checkDebugLevel(DebugLevel.DEBUG_LEVEL_HIGH);
+
+        registerSensors(listener);
+    }
+
+    /**
+     * Gets the sampling rate to register the sensors with.
+     *
+     * @return sampling rate in microseconds
+     */
+    private int getRegistrationRate() {
+        if (mLowPower) {
+            // an occasional heading is enough
+            return SensorRateController.RATE_NORMAL;
+        }
+
+        return mRateController.getRate();
+    }
+
+    /**
+     * Registers the sensors of the orientation sensor setting
+     * that was read by registerEvents(), at the current sampling rate.
+     *
+     * @param listener SensorEventListener
+     */
+    private void registerSensors(final SensorEventListener listener) {
+        final int sensor = mSensorSetting;
+        OrientationFusion fusion = null;
+        int rate = getRegistrationRate();
+        mCalculator.setUpdateRate(rate * Tools.MICRO_IN_NANO);
+        mRegisteredRate = rate;
+        // the values are sampled at another rate, start a new window
+        if (rate != mStatisticsRate) {
+            mStatistics = new CircularStatistics(getStabilityWindow(rate));
+            mStatisticsRate = rate;
+        }
 
-        // use calculated orientation by default
-        // (until raw sensor value is stable)
-        if (sensor == SettingsActivity.GEO_ORIENTATION_SENSOR_CALCULATED
+        // rotation vector sensor is fused by the sensor hub,
+        // prefer it by default
+        if ((sensor == SettingsActivity.GEO_ORIENTATION_SENSOR_ROTATION_VECTOR
+                || sensor == SettingsActivity.GEO_ORIENTATION_SENSOR_AUTO)
+                && mRotationVectorSensor != null) {
+            mActiveSensor
+                    = SettingsActivity.GEO_ORIENTATION_SENSOR_ROTATION_VECTOR;
+            registerSensor(listener, mRotationVectorSensor, rate);
+            // the rotation vector doesn't report the field strength,
+            // detect magnetic interference with the magnetic field sensor
+            if (mMagneticFieldSensor != null) {
+                registerSensor(listener, mMagneticFieldSensor,
+                        COMPASS_QUALITY_RATE);
+            }
+        } else if (sensor == SettingsActivity.GEO_ORIENTATION_SENSOR_FUSION
+                && !mLowPower && mGyroscope != null
+                && mAccelerometer != null && mMagneticFieldSensor != null) {
+            mActiveSensor = SettingsActivity.GEO_ORIENTATION_SENSOR_FUSION;
+            fusion = mFusion;
+            registerSensor(listener, mAccelerometer, rate);
+            registerSensor(listener, mMagneticFieldSensor, rate);
+            // integrating rotation needs a higher rate
+            int gyroscopeRate = SensorManager.SENSOR_DELAY_GAME;
+            if (rate == SensorRateController.RATE_SLOW) {
+                gyroscopeRate = SensorManager.SENSOR_DELAY_UI;
+            }
+            mSensorManager.registerListener(
+                    listener, mGyroscope, gyroscopeRate);
+        } else if (sensor
+                == SettingsActivity.GEO_ORIENTATION_SENSOR_CALCULATED
             || sensor == SettingsActivity.GEO_ORIENTATION_SENSOR_AUTO
             && mOrientationSensor != null) {
+            // use calculated orientation by default
+            // (until raw sensor value is stable)
             // orientation sensor is deprecated
-            mSensorManager.registerListener(
-                    listener, mOrientationSensor, SENSOR_UPDATE_RATE);
+            mActiveSensor
+                    = SettingsActivity.GEO_ORIENTATION_SENSOR_CALCULATED;
+            registerSensor(listener, mOrientationSensor, rate);
         } else if (mAccelerometer != null && mMagneticFieldSensor != null) {
+            mActiveSensor = SettingsActivity.GEO_ORIENTATION_SENSOR_RAW;
+            registerSensor(listener, mAccelerometer, rate);
+            registerSensor(listener, mMagneticFieldSensor, rate);
+        }
+
+        mCalculator.setFusion(fusion);
+        // deferring only pays off when events arrive in batches
+        mCalculator.setDeferred(isBatching());
+    }
+
+    /**
+     * Checks if sensor events are batched :
+     * in low power mode, if the device supports it.
+     *
+     * @return true if sensor events are batched
+     */
+    private boolean isBatching() {
+        return mLowPower
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+    }
+
+    /**
+     * Registers for events of a sensor,
+     * batched in low power mode, if the device supports it.
+     *
+     * @param listener SensorEventListener
+     * @param sensor Sensor to register for
+     * @param rate Sampling rate in microseconds
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private void registerSensor(final SensorEventListener listener,
+                                final Sensor sensor, final int rate) {
+        if (isBatching()) {
             mSensorManager.registerListener(
-                    listener, mAccelerometer, SENSOR_UPDATE_RATE);
-            mSensorManager.registerListener(
-                    listener, mMagneticFieldSensor, SENSOR_UPDATE_RATE);
+                    listener, sensor, rate, BATCH_REPORT_LATENCY);
+        } else {
+            mSensorManager.registerListener(listener, sensor, rate);
+        }
+    }
+
+    /**
+     * Enables or disables low power mode, eg. when the screen is off.
+     *
+     * Sensor events are batched, the rate isn't adapted
+     * to the rotation speed and the gyroscope isn't used.
+     *
+     * @param lowPower true to enable low power mode
+     */
+    public final synchronized void setLowPower(final boolean lowPower) {
+        if (lowPower == mLowPower) {
+            return;
+        }
+
+        mLowPower = lowPower;
+        mRateController.reset();
+        // batching, the gyroscope and the rate depend on low power mode
+        if (mRegisteredRate != 0) {
+            unRegisterEvents(this);
+            registerSensors(this);
         }
     }
 
+    /**
+     * Checks if low power mode is enabled.
+     *
+     * @return true if enabled
+     */
+    public final boolean isLowPower() {
+        return mLowPower;
+    }
+
     /**
      * Unregister for Sensor events of
      * TYPE_ACCELEROMETER and TYPE_MAGNETIC_FIELD.
@@ -334,50 +791,23 @@ public class SensorOrientation implements SensorEventListener {
      * @param listener SensorEventListener
      */
     public final void unRegisterEvents(final SensorEventListener listener) {
-        if (mAccelerometer != null && mMagneticFieldSensor != null) {
+        if (mAccelerometer != null) {
             mSensorManager.unregisterListener(listener, mAccelerometer);
+        }
+        if (mMagneticFieldSensor != null) {
             mSensorManager.unregisterListener(listener, mMagneticFieldSensor);
         }
         if (mOrientationSensor != null) {
             mSensorManager.unregisterListener(listener, mOrientationSensor);
         }
-    }
-
-    /**
-     * Calculates current orientation, based on
-     * TYPE_MAGNETIC_FIELD and TYPE_ACCELEROMETER sensor values.
-     *
-     * @return current SensorOrientation
-     */
-    private double calculateOrientation() {
-        if (mAccelerometerValues == null
-                || mAccelerometerValues.length != SENSOR_VALUES_SIZE
-                || mMagneticFieldValues == null
-                || mMagneticFieldValues.length != SENSOR_VALUES_SIZE) {
-            return 0;
+        if (mGyroscope != null) {
+            mSensorManager.unregisterListener(listener, mGyroscope);
         }
-
-        float[] rotationMatrixR = new float[MATRIX_SIZE];
-        float[] orientationValues = new float[SENSOR_VALUES_SIZE];
-
-        if (SensorManager.getRotationMatrix(rotationMatrixR, null,
-                mAccelerometerValues, mMagneticFieldValues)) {
-            orientationValues = SensorManager.getOrientation(rotationMatrixR,
-                    orientationValues);
-
-            if (orientationValues.length == SENSOR_VALUES_SIZE) {
-                mOrientation = CircularAverage.getAverageValue(
-                        (float) mOrientation,
-                        (float) Math.toDegrees(orientationValues[0]),
-                        ALPHA_ORIENTATION_SENSORS);
-                mOrientationTimestamp = Tools.getMax(mMagneticFieldTimestamp,
-                        mAccelerometerTimestamp);
-
-                return mOrientation;
-            }
+        if (mRotationVectorSensor != null) {
+            mSensorManager.unregisterListener(listener, mRotationVectorSensor);
         }
-
-        return 0;
+        mActiveSensor = SettingsActivity.GEO_ORIENTATION_SENSOR_AUTO;
+        mRegisteredRate = 0;
     }
 
     /**
@@ -401,52 +831,143 @@ public class SensorOrientation implements SensorEventListener {
     }
 
     /**
-     * Adds the listener to eventListenerList.
+     * Adds a listener, notified of every orientation change.
      * @param listener SensorOrientation event listener
      */
     public final void addEventListener(
             final OrientationEventListener listener) {
-        eventListenerList.add(listener);
+        addEventListener(listener, 0);
+    }
 
+    /**
+     * Adds a listener, notified at most once per interval,
+     * a listener is only added once.
+     * @param listener SensorOrientation event listener
+     * @param minInterval Minimum time between notifications
+     *                    in nanoseconds
+     */
+    public final synchronized void addEventListener(
+            final OrientationEventListener listener, final long minInterval) {
         // register listening to events when the first listener is added
-        if (eventListenerList.size() == 1) {
+        if (mListeners.add(listener, minInterval) && mListeners.size() == 1) {
             registerEvents(this);
         }
     }
 
     /**
-     * Removes the listener from eventListenerList.
+     * Removes a listener.
      * @param listener SensorOrientation event listener
      */
-    public final void removeEventListener(
+    public final synchronized void removeEventListener(
             final OrientationEventListener listener) {
-        eventListenerList.remove(listener);
-
         // unregister listening to events when the last listener is removed
-        if (eventListenerList.size() == 0) {
+        if (mListeners.remove(listener) && mListeners.size() == 0) {
             unRegisterEvents(this);
+            mRateController.reset();
+            mThrottle.reset();
+            mCompassQuality.reset();
+            mStatistics.reset();
+            mHandler.removeCallbacks(mBatchProcessor);
+            mBatchPending = false;
+            mHandler.removeCallbacks(mPendingNotifier);
+            mNotifyPending = false;
+            mBatchSize = 0;
         }
     }
 
     /**
-     * Notify all event listeners.
+     * Notify all event listeners,
+     * if the heading changed enough or it wasn't notified for a while.
      */
     private void onOrientationChange() {
-        for (OrientationEventListener eventListener : eventListenerList) {
-            eventListener.onOrientationChanged();
+        final long timestamp = mCalculator.getOrientationTimestamp();
+        mStatistics.add(getOrientation());
+        if (mThrottle.update(getOrientation(), timestamp)) {
+            mListeners.dispatch(timestamp, mDispatcher);
+            scheduleNotifyPending(timestamp);
         }
     }
 
     /**
-     * Called when sensor accuracy changes, not implemented.
+     * Schedules notifying listeners that skipped a change,
+     * when their minimum interval expires.
+     *
+     * @param timestamp Current timestamp in nanoseconds
+     */
+    private void scheduleNotifyPending(final long timestamp) {
+        final long pendingTime = mListeners.getPendingTime();
+        if (pendingTime == ListenerRegistry.NO_PENDING
+                || mNotifyPending && mNotifyPendingTimestamp <= pendingTime) {
+            return;
+        }
+
+        mHandler.removeCallbacks(mPendingNotifier);
+        mNotifyPending = true;
+        mNotifyPendingTimestamp = pendingTime;
+        // round up, to be sure the interval expired
+        mHandler.postDelayed(mPendingNotifier,
+                (Math.max(0, pendingTime - timestamp)
+                        + Tools.MILLI_IN_NANO - 1) / Tools.MILLI_IN_NANO);
+    }
+
+    /**
+     * Notifies listeners of the latest orientation,
+     * if they skipped a change.
+     */
+    private void notifyPending() {
+        mNotifyPending = false;
+        final long timestamp = mNotifyPendingTimestamp;
+        mListeners.dispatchPending(timestamp, mDispatcher);
+        scheduleNotifyPending(timestamp);
+    }
+
+    /**
+     * Called when sensor accuracy changes,
+     * the accuracy of the sensor providing the heading is used
+     * to estimate the compass quality.
      *
      * @param sensor Sensor that has a changed accuracy
      * @param accuracy New accuracy
      */
     public final void onAccuracyChanged(final Sensor sensor,
                                         final int accuracy) {
-        // not implemented, but the method should defined
-        // because it is defined by interface SensorEventListener
+        final int type = sensor.getType();
+        if (type == Sensor.TYPE_MAGNETIC_FIELD
+                || type == Sensor.TYPE_ORIENTATION
+                || mRotationVectorSensor != null
+                && type == mRotationVectorSensor.getType()) {
+            mCompassQuality.setAccuracy(accuracy);
+        }
+    }
+
+    /**
+     * Sets the expected magnetic field strength at the current location,
+     * to detect magnetic interference.
+     *
+     * @param strength Field strength in µT
+     */
+    public final void setExpectedFieldStrength(final double strength) {
+        mCompassQuality.setExpectedFieldStrength(strength);
+    }
+
+    /**
+     * Gets the confidence in the heading, based on the sensor accuracy
+     * and magnetic interference.
+     *
+     * @return confidence (0-1), 1 is fully confident
+     */
+    public final double getHeadingConfidence() {
+        return mCompassQuality.getConfidence();
+    }
+
+    /**
+     * Checks if the compass is disturbed, by magnetic interference
+     * or because it needs calibration.
+     *
+     * @return true if the compass is disturbed
+     */
+    public boolean isCompassDisturbed() {
+        return mCompassQuality.isDisturbed();
     }
 
     /**
@@ -455,18 +976,189 @@ public class SensorOrientation implements SensorEventListener {
      * @param event Sensor event
      */
     public final void onSensorChanged(final SensorEvent event) {
+        final SensorRecorder recorder = mRecorder;
+        if (recorder != null) {
+            try {
+                if (!recorder.record(event.sensor.getType(),
+                        event.timestamp, event.values)) {
+                    // maximum size reached, write the recording
+                    recorder.close();
+                }
+            } catch (IOException e) {
+                // stop recording, processing events continues
+                mRecorder = null;
+            }
+        }
+
+        long startTime = 0;
+        if (mMeasurePerformance) {
+            startTime = Debug.threadCpuTimeNanos();
+        }
+
+        boolean changed;
         switch (event.sensor.getType()) {
             case Sensor.TYPE_ACCELEROMETER:
-                setAcceleration(event);
+                changed = setAcceleration(event);
                 break;
             case Sensor.TYPE_MAGNETIC_FIELD:
-                setMagneticField(event);
+                changed = setMagneticField(event);
                 break;
             case Sensor.TYPE_ORIENTATION:
-                setOrientation(event);
+                changed = setOrientation(event);
+                break;
+            case Sensor.TYPE_GYROSCOPE:
+                changed = setGyroscope(event);
                 break;
             default:
+                changed = setRotationVector(event);
                 break;
         }
+
+        // CPU time of processing the event, without notifying listeners
+        if (mMeasurePerformance && startTime >= 0
+                && mPerformanceCounters[mActiveSensor] != null) {
+            mPerformanceCounters[mActiveSensor].add(
+                    Debug.threadCpuTimeNanos() - startTime);
+        }
+
+        if (changed && mCalculator.isDeferred()) {
+            // process the batch after all its events are delivered
+            mBatchSize++;
+            if (!mBatchPending) {
+                mBatchPending = true;
+                mHandler.post(mBatchProcessor);
+            }
+        } else if (changed) {
+            onOrientationChange();
+
+            // re-register sensors when the rotation speed requires
+            // another sampling rate, the rate is fixed in low power mode
+            if (!mLowPower
+                    && mRateController.update(getOrientation(),
+                            event.timestamp)
+                    && getRegistrationRate() != mRegisteredRate) {
+                unRegisterEvents(this);
+                registerSensors(this);
+            }
+        }
+    }
+
+    /**
+     * Calculates the orientation from a batch of sensor events,
+     * and notifies the listeners once.
+     */
+    private void processBatch() {
+        long startTime = 0;
+        if (mMeasurePerformance) {
+            startTime = Debug.threadCpuTimeNanos();
+        }
+
+        mBatchPending = false;
+        final boolean changed = mCalculator.calculate();
+
+        if (mMeasurePerformance && startTime >= 0) {
+            mBatchCounter.add(Debug.threadCpuTimeNanos() - startTime);
+            mBatchedEvents += mBatchSize;
+        }
+        mBatchSize = 0;
+
+        if (changed) {
+            onOrientationChange();
+        }
+    }
+
+    /**
+     * Starts recording raw sensor events to a file,
+     * to replay them with SensorReplay.
+     * A previous recording is stopped.
+     * Recording stops when the file reaches its maximum size.
+     *
+     * @param file Recording file, overwritten if it exists
+     * @param maxSize Maximum file size in bytes
+     * @throws IOException if the file can't be created
+     */
+    public final void startRecording(final File file, final long maxSize)
+            throws IOException {
+        stopRecording();
+        mRecorder = new SensorRecorder(file, maxSize);
+    }
+
+    /**
+     * Stops recording raw sensor events.
+     *
+     * @return number of recorded events
+     * @throws IOException if writing the recording fails
+     */
+    public final long stopRecording() throws IOException {
+        final SensorRecorder recorder = mRecorder;
+        if (recorder == null) {
+            return 0;
+        }
+
+        mRecorder = null;
+        recorder.close();
+        return recorder.getEvents();
+    }
+
+    /**
+     * Gets the current sensor sampling rate.
+     *
+     * @return sampling rate in microseconds
+     */
+    public final int getSensorRate() {
+        return mRateController.getRate();
+    }
+
+    /**
+     * Gets the CPU time spent processing sensor events,
+     * for an orientation sensor setting.
+     *
+     * Only measured if the debug level is high.
+     *
+     * @param sensor One of the SettingsActivity.GEO_ORIENTATION_SENSOR_*
+     *               values, except GEO_ORIENTATION_SENSOR_AUTO
+     * @return performance counter, null if sensor is not valid
+     */
+    public final PerformanceCounter getPerformanceCounter(final int sensor) {
+        if (sensor < 0 || sensor >= mPerformanceCounters.length) {
+            return null;
+        }
+
+        return mPerformanceCounters[sensor];
+    }
+
+    /**
+     * Formats the CPU time spent processing sensor events,
+     * of every orientation sensor setting that was used,
+     * the notification rate and the batches.
+     *
+     * @return performance report, one line per item
+     */
+    public final String getPerformanceReport() {
+        StringBuilder report = new StringBuilder();
+        for (PerformanceCounter counter : mPerformanceCounters) {
+            if (counter != null && counter.getCount() > 0) {
+                if (report.length() > 0) {
+                    report.append('\n');
+                }
+                report.append(counter);
+            }
+        }
+        if (mThrottle.getUpdates() > 0) {
+            if (report.length() > 0) {
+                report.append('\n');
+            }
+            report.append(mThrottle);
+        }
+        if (mBatchCounter.getCount() > 0) {
+            if (report.length() > 0) {
+                report.append('\n');
+            }
+            report.append(mBatchCounter).append(", ")
+                    .append(mBatchedEvents / mBatchCounter.getCount())
+                    .append(" events/batch");
+        }
+
+        return report.toString();
     }
 }
@@ -0,0 +1,293 @@
+/**
+ * Adapts the sensor sampling rate to the motion of the device.
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+/**
+ * Adapts the sensor sampling rate to the rotation speed of the device.
+ *
+ * The rate is raised as soon as the heading changes quickly,
+ * and lowered only after the heading was stable for a while
+ * (hysteresis), so sensor listeners aren't re-registered all the time.
+ *
+ * The rotation speed is measured over a window of at least one second,
+ * so sensor noise of a stationary device isn't seen as rotation.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class SensorRateController {
+    /**
+     * Fast sampling rate in microseconds (20 Hz), while turning.
+     */
+    public static final int RATE_FAST = 50000;
+
+    /**
+     * Normal sampling rate in microseconds (5 Hz).
+     */
+    public static final int RATE_NORMAL = 200000;
+
+    /**
+     * Slow sampling rate in microseconds (1 Hz), while stationary.
+     */
+    public static final int RATE_SLOW = 1000000;
+
+    /**
+     * Nanoseconds in a second.
+     */
+    private static final double SECOND_IN_NANO = 1e9;
+
+    /**
+     * Window over which the rotation speed is measured,
+     * 1 second in nanoseconds.
+     */
+    private static final long SPEED_WINDOW = 1000 * Tools.MILLI_IN_NANO;
+
+    /**
+     * Heading change that switches to the fast rate immediately,
+     * without waiting for the end of the window.
+     */
+    private static final double TURN_ANGLE = 15;
+
+    /**
+     * Rotation speed (°/s) above which the fast rate is used.
+     */
+    private static final double FAST_SPEED = 30;
+
+    /**
+     * Rotation speed (°/s) below which the fast rate
+     * can be lowered to normal.
+     */
+    private static final double FAST_RELEASE_SPEED = 15;
+
+    /**
+     * Rotation speed (°/s) above which the slow rate
+     * is raised to normal.
+     */
+    private static final double MOVING_SPEED = 5;
+
+    /**
+     * Rotation speed (°/s) below which the device is stationary.
+     */
+    private static final double STATIONARY_SPEED = 2;
+
+    /**
+     * Time the rotation speed should stay low before the fast rate
+     * is lowered to normal, 3 seconds in nanoseconds.
+     */
+    private static final long FAST_HOLD_TIME = 3000 * Tools.MILLI_IN_NANO;
+
+    /**
+     * Time the device should be stationary before the slow rate is used,
+     * 10 seconds in nanoseconds.
+     */
+    private static final long STATIONARY_TIME = 10000 * Tools.MILLI_IN_NANO;
+
+    /**
+     * Current sampling rate in microseconds.
+     */
+    private int mRate = RATE_NORMAL;
+
+    /**
+     * Heading at the start of the speed window.
+     */
+    private double mWindowHeading = 0;
+
+    /**
+     * Timestamp of the start of the speed window in nanoseconds.
+     */
+    private long mWindowTimestamp = 0;
+
+    /**
+     * Whether a heading was received since the last reset.
+     */
+    private boolean mHasHeading = false;
+
+    /**
+     * Last measured rotation speed in °/s.
+     */
+    private double mRotationSpeed = 0;
+
+    /**
+     * Timestamp since which the rotation speed is below the threshold
+     * to lower the rate in nanoseconds, 0 if it isn't.
+     */
+    private long mLowSpeedTimestamp = 0;
+
+    /**
+     * Number of rate changes.
+     */
+    private long mRateChanges = 0;
+
+    /**
+     * Updates the rotation speed with a new heading,
+     * and adapts the sampling rate.
+     *
+     * @param heading Heading in degrees
+     * @param timestamp Timestamp in nanoseconds
+     * @return true if the sampling rate changed
+     */
+    public final boolean update(final double heading, final long timestamp) {
+        if (!mHasHeading || timestamp < mWindowTimestamp) {
+            startWindow(heading, timestamp);
+            mHasHeading = true;
+            return false;
+        }
+
+        final double angle = Math.abs(FormatUtils.normalizeAngle(
+                heading - mWindowHeading + FormatUtils.CIRCLE_HALF)
+                - FormatUtils.CIRCLE_HALF);
+        final long period = timestamp - mWindowTimestamp;
+
+        if (angle >= TURN_ANGLE) {
+            // turning, don't wait for the end of the window
+            mRotationSpeed = Math.max(FAST_SPEED,
+                    angle * SECOND_IN_NANO / period);
+        } else if (period >= SPEED_WINDOW) {
+            mRotationSpeed = angle * SECOND_IN_NANO / period;
+        } else {
+            return false;
+        }
+        startWindow(heading, timestamp);
+
+        return setRate(getNewRate(timestamp));
+    }
+
+    /**
+     * Gets the current sampling rate.
+     *
+     * @return sampling rate in microseconds
+     */
+    public final int getRate() {
+        return mRate;
+    }
+
+    /**
+     * Gets the last measured rotation speed.
+     *
+     * @return rotation speed in °/s
+     */
+    public final double getRotationSpeed() {
+        return mRotationSpeed;
+    }
+
+    /**
+     * Gets the number of rate changes.
+     *
+     * @return number of rate changes
+     */
+    public final long getRateChanges() {
+        return mRateChanges;
+    }
+
+    /**
+     * Resets to the normal rate, forgetting the previous headings.
+     */
+    public final void reset() {
+        mRate = RATE_NORMAL;
+        mHasHeading = false;
+        mRotationSpeed = 0;
+        mLowSpeedTimestamp = 0;
+    }
+
+    /**
+     * Determines the sampling rate for the current rotation speed.
+     *
+     * @param timestamp Timestamp in nanoseconds
+     * @return new sampling rate in microseconds
+     */
+    private int getNewRate(final long timestamp) {
+        switch (mRate) {
+            case RATE_SLOW:
+                mLowSpeedTimestamp = 0;
+                if (mRotationSpeed >= FAST_SPEED) {
+                    return RATE_FAST;
+                } else if (mRotationSpeed >= MOVING_SPEED) {
+                    return RATE_NORMAL;
+                }
+                return RATE_SLOW;
+            case RATE_FAST:
+                if (isLowSpeedFor(FAST_RELEASE_SPEED, FAST_HOLD_TIME,
+                        timestamp)) {
+                    return RATE_NORMAL;
+                }
+                return RATE_FAST;
+            default:
+                if (mRotationSpeed >= FAST_SPEED) {
+                    return RATE_FAST;
+                } else if (isLowSpeedFor(STATIONARY_SPEED, STATIONARY_TIME,
+                        timestamp)) {
+                    return RATE_SLOW;
+                }
+                return RATE_NORMAL;
+        }
+    }
+
+    /**
+     * Checks if the rotation speed stayed below a threshold
+     * for some time.
+     *
+     * @param threshold Rotation speed threshold in °/s
+     * @param time Minimum time in nanoseconds
+     * @param timestamp Current timestamp in nanoseconds
+     * @return true if the speed was below the threshold long enough
+     */
+    private boolean isLowSpeedFor(final double threshold, final long time,
+                                  final long timestamp) {
+        if (mRotationSpeed >= threshold) {
+            mLowSpeedTimestamp = 0;
+            return false;
+        }
+        if (mLowSpeedTimestamp == 0) {
+            mLowSpeedTimestamp = timestamp;
+        }
+
+        return timestamp - mLowSpeedTimestamp >= time;
+    }
+
+    /**
+     * Sets the sampling rate.
+     *
+     * @param rate Sampling rate in microseconds
+     * @return true if the rate changed
+     */
+    private boolean setRate(final int rate) {
+        if (rate == mRate) {
+            return false;
+        }
+
+        mRate = rate;
+        mLowSpeedTimestamp = 0;
+        mRateChanges++;
+
+        return true;
+    }
+
+    /**
+     * Starts a new speed window.
+     *
+     * @param heading Heading in degrees
+     * @param timestamp Timestamp in nanoseconds
+     */
+    private void startWindow(final double heading, final long timestamp) {
+        mWindowHeading = heading;
+        mWindowTimestamp = timestamp;
+    }
+}
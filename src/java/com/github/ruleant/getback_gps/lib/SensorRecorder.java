@@ -0,0 +1,218 @@
+/**
+ * Records sensor events to a file
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Records raw sensor events to a compact binary file,
+ * to replay them with SensorReplay.
+ *
+ * File format (big endian) : a header with magic number and version,
+ * followed by the events : sensor type (byte), timestamp in nanoseconds
+ * (long), number of values (byte) and the values (float).
+ *
+ * Events are buffered, recording an event doesn't allocate memory.
+ * Recording stops when the file reaches its maximum size.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class SensorRecorder {
+    /**
+     * Magic number of a recording file : "GBSR".
+     */
+    public static final int MAGIC = 0x47425352;
+
+    /**
+     * Version of the file format.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Maximum number of values of an event.
+     */
+    public static final int MAX_VALUES = 255;
+
+    /**
+     * No maximum file size.
+     */
+    public static final long NO_MAX_SIZE = Long.MAX_VALUE;
+
+    /**
+     * Size of the header in bytes : magic number and version.
+     */
+    private static final int HEADER_SIZE = 5;
+
+    /**
+     * Size of an event without values in bytes :
+     * type, timestamp and number of values.
+     */
+    private static final int EVENT_SIZE = 10;
+
+    /**
+     * Size of the write buffer in bytes.
+     */
+    private static final int BUFFER_SIZE = 65536;
+
+    /**
+     * Maximum file size in bytes.
+     */
+    private final long mMaxSize;
+
+    /**
+     * File size in bytes.
+     */
+    private long mSize = HEADER_SIZE;
+
+    /**
+     * Whether the maximum file size was reached.
+     */
+    private boolean mFull = false;
+
+    /**
+     * Output stream, null if closed.
+     */
+    private DataOutputStream mOut;
+
+    /**
+     * Number of recorded events.
+     */
+    private long mEvents = 0;
+
+    /**
+     * Constructor, creates the file and writes the header,
+     * without maximum file size.
+     *
+     * @param file Recording file, overwritten if it exists
+     * @throws IOException if the file can't be created
+     * @throws IllegalArgumentException if file is null
+     */
+    public SensorRecorder(final File file) throws IOException {
+        this(file, NO_MAX_SIZE);
+    }
+
+    /**
+     * Constructor, creates the file and writes the header.
+     *
+     * @param file Recording file, overwritten if it exists
+     * @param maxSize Maximum file size in bytes
+     * @throws IOException if the file can't be created
+     * @throws IllegalArgumentException if file is null
+     *  or maxSize is smaller than the header
+     */
+    public SensorRecorder(final File file, final long maxSize)
+            throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException(
+                    "Parameter file should not be null");
+        }
+        if (maxSize < HEADER_SIZE) {
+            throw new IllegalArgumentException(
+                    "maxSize should be at least " + HEADER_SIZE + " bytes");
+        }
+
+        mMaxSize = maxSize;
+
+        mOut = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file), BUFFER_SIZE));
+        mOut.writeInt(MAGIC);
+        mOut.writeByte(VERSION);
+    }
+
+    /**
+     * Records a sensor event, if the maximum file size isn't reached.
+     *
+     * @param type Sensor type, one of the Sensor.TYPE_* values
+     * @param timestamp Timestamp of the event in nanoseconds
+     * @param values Sensor values, at most MAX_VALUES are recorded
+     * @return false if the event wasn't recorded,
+     *  because the maximum file size is reached
+     * @throws IOException if writing fails or the recorder is closed
+     */
+    public final synchronized boolean record(final int type,
+                                             final long timestamp,
+                                             final float[] values)
+            throws IOException {
+        if (mFull) {
+            return false;
+        }
+        if (mOut == null) {
+            throw new IOException("Recorder is closed");
+        }
+
+        final int count = Math.min(values.length, MAX_VALUES);
+        final int size = EVENT_SIZE + count * 4;
+        if (mSize + size > mMaxSize) {
+            mFull = true;
+            return false;
+        }
+
+        mOut.writeByte(type);
+        mOut.writeLong(timestamp);
+        mOut.writeByte(count);
+        for (int i = 0; i < count; i++) {
+            mOut.writeFloat(values[i]);
+        }
+        mSize += size;
+        mEvents++;
+
+        return true;
+    }
+
+    /**
+     * Checks if the maximum file size is reached,
+     * no events are recorded anymore.
+     *
+     * @return true if the maximum file size is reached
+     */
+    public final synchronized boolean isFull() {
+        return mFull;
+    }
+
+    /**
+     * Gets the number of recorded events.
+     *
+     * @return number of events
+     */
+    public final synchronized long getEvents() {
+        return mEvents;
+    }
+
+    /**
+     * Writes the buffered events and closes the file.
+     *
+     * @throws IOException if writing fails
+     */
+    public final synchronized void close() throws IOException {
+        if (mOut != null) {
+            try {
+                mOut.close();
+            } finally {
+                mOut = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * Replays recorded sensor events
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import android.hardware.Sensor;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Replays sensor events recorded by SensorRecorder
+ * through an OrientationCalculator, in the same way
+ * SensorOrientation processes sensor events.
+ *
+ * Time is virtual : events are replayed as fast as possible,
+ * using their recorded timestamps.
+ * Only Android constants are used, so recordings can be replayed
+ * on a plain JVM, eg. to compare filters, to measure heading latency
+ * and jitter or in regression tests.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class SensorReplay {
+    /**
+     * Recording file.
+     */
+    private final File mFile;
+
+    /**
+     * Value buffers, per number of values.
+     */
+    private final float[][] mBuffers
+            = new float[SensorRecorder.MAX_VALUES + 1][];
+
+    /**
+     * Listener of replayed orientation updates.
+     */
+    public interface Listener {
+        /**
+         * Called when the orientation was updated by a replayed event.
+         *
+         * @param timestamp Timestamp of the event in nanoseconds
+         * @param orientation Orientation in degrees
+         */
+        void onOrientationChanged(long timestamp, double orientation);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file Recording file
+     * @throws IllegalArgumentException if file is null
+     */
+    public SensorReplay(final File file) {
+        if (file == null) {
+            throw new IllegalArgumentException(
+                    "Parameter file should not be null");
+        }
+
+        mFile = file;
+    }
+
+    /**
+     * Replays the recorded events through a calculator.
+     *
+     * A truncated last event, eg. when recording was interrupted,
+     * is ignored.
+     *
+     * @param calculator Orientation calculator
+     * @param listener Listener of orientation updates, can be null
+     * @return number of replayed events
+     * @throws IOException if the file can't be read
+     *  or isn't a sensor recording
+     * @throws IllegalArgumentException if calculator is null
+     */
+    public final long replay(final OrientationCalculator calculator,
+                             final Listener listener) throws IOException {
+        if (calculator == null) {
+            throw new IllegalArgumentException(
+                    "Parameter calculator should not be null");
+        }
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(mFile)));
+        long events = 0;
+        try {
+            if (in.readInt() != SensorRecorder.MAGIC
+                    || in.readUnsignedByte() != SensorRecorder.VERSION) {
+                throw new IOException("Not a sensor recording : " + mFile);
+            }
+
+            while (true) {
+                final int type;
+                final long timestamp;
+                final float[] values;
+                try {
+                    type = in.readUnsignedByte();
+                    timestamp = in.readLong();
+                    values = getBuffer(in.readUnsignedByte());
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = in.readFloat();
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+
+                events++;
+                if (dispatch(calculator, type, timestamp, values)
+                        && listener != null) {
+                    listener.onOrientationChanged(
+                            timestamp, calculator.getOrientation());
+                }
+            }
+        } finally {
+            in.close();
+        }
+
+        return events;
+    }
+
+    /**
+     * Passes sensor values to the calculator, depending on the sensor type.
+     *
+     * @param calculator Orientation calculator
+     * @param type Sensor type, one of the Sensor.TYPE_* values
+     * @param timestamp Timestamp in nanoseconds
+     * @param values Sensor values
+     * @return true if the orientation was updated
+     */
+    public static boolean dispatch(final OrientationCalculator calculator,
+                                   final int type, final long timestamp,
+                                   final float[] values) {
+        switch (type) {
+            case Sensor.TYPE_ACCELEROMETER:
+                return calculator.setAcceleration(values, timestamp);
+            case Sensor.TYPE_MAGNETIC_FIELD:
+                return calculator.setMagneticField(values, timestamp);
+            case Sensor.TYPE_ORIENTATION:
+                return values.length > 0
+                        && calculator.setOrientation(values[0], timestamp);
+            case Sensor.TYPE_GYROSCOPE:
+                return calculator.setGyroscope(values, timestamp);
+            case Sensor.TYPE_ROTATION_VECTOR:
+            case Sensor.TYPE_GEOMAGNETIC_ROTATION_VECTOR:
+                return calculator.setRotationVector(values, timestamp);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Gets a reusable buffer for a number of values.
+     *
+     * @param size Number of values
+     * @return buffer
+     */
+    private float[] getBuffer(final int size) {
+        if (mBuffers[size] == null) {
+            mBuffers[size] = new float[size];
+        }
+
+        return mBuffers[size];
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Interface for stateful signal filters.
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+/**
+ * Stateful filter of a signal, a series of timestamped values.
+ *
+ * Filters keep the state of the previous values,
+ * use a separate instance for every signal.
+ * Filtering a value shouldn't allocate memory.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public interface SignalFilter {
+    /**
+     * Filters a new value.
+     *
+     * @param value New value
+     * @param timestamp Timestamp of the value in nanoseconds
+     * @return filtered value
+     */
+    float filter(float value, long timestamp);
+
+    /**
+     * Resets the state of the filter, forgetting all previous values.
+     */
+    void reset();
+
+    /**
+     * Creates a new filter with the same configuration,
+     * without the state of this filter.
+     *
+     * @return new filter instance
+     */
+    SignalFilter newInstance();
+}
@@ -0,0 +1,96 @@
+/**
+ * Chain of signal filters.
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+/**
+ * Chain of signal filters, every filter filters the output
+ * of the previous filter.
+ *
+ * Eg. a median filter to remove spikes,
+ * followed by an exponential filter to smooth the signal.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class SignalFilterChain implements SignalFilter {
+    /**
+     * Filters, in order of application.
+     */
+    private final SignalFilter[] mFilters;
+
+    /**
+     * Constructor.
+     *
+     * @param filters Filters, in order of application
+     * @throws IllegalArgumentException if filters is empty
+     *  or contains null
+     */
+    public SignalFilterChain(final SignalFilter... filters) {
+        if (filters == null || filters.length == 0) {
+            throw new IllegalArgumentException(
+                    "Parameter filters should not be empty");
+        }
+        for (SignalFilter filter : filters) {
+            if (filter == null) {
+                throw new IllegalArgumentException(
+                        "Parameter filters should not contain null");
+            }
+        }
+
+        mFilters = filters.clone();
+    }
+
+    @Override
+    public final float filter(final float value, final long timestamp) {
+        float filtered = value;
+        for (SignalFilter filter : mFilters) {
+            filtered = filter.filter(filtered, timestamp);
+        }
+
+        return filtered;
+    }
+
+    @Override
+    public final void reset() {
+        for (SignalFilter filter : mFilters) {
+            filter.reset();
+        }
+    }
+
+    @Override
+    public final SignalFilter newInstance() {
+        SignalFilter[] filters = new SignalFilter[mFilters.length];
+        for (int i = 0; i < mFilters.length; i++) {
+            filters[i] = mFilters[i].newInstance();
+        }
+
+        return new SignalFilterChain(filters);
+    }
+
+    /**
+     * Gets the number of filters in the chain.
+     *
+     * @return number of filters
+     */
+    public final int getSize() {
+        return mFilters.length;
+    }
+}
@@ -0,0 +1,521 @@
+/**
+ * Track geometry with level of detail and viewport culling.
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import java.util.Arrays;
+
+/**
+ * Track geometry with level of detail and viewport culling,
+ * for drawing a recorded track around the current position.
+ *
+ * Locations are projected on a plane around an origin (equirectangular
+ * projection, in meters), stored as x (north) and y (east) coordinates,
+ * the axes CoordinateRotation uses for bearings.
+ *
+ * Every level of detail keeps a point if it is further than the level
+ * tolerance from the previous point it kept (radial distance
+ * simplification), so points can be added while the track is recorded.
+ * Level 0 keeps all points, the tolerance doubles with every level.
+ *
+ * Every level is split in chunks of consecutive points, with a
+ * bounding box per chunk. When the lines are created, only chunks with
+ * a bounding box in the viewport are converted, with one batch
+ * CoordinateRotation conversion per run of visible chunks, into one
+ * reused lines array for Canvas.drawLines.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class TrackGeometry {
+    /**
+     * Number of lines in a chunk.
+     */
+    public static final int CHUNK_SIZE = 64;
+
+    /**
+     * Number of levels of detail.
+     */
+    public static final int LEVELS = 14;
+
+    /**
+     * Tolerance of level 1 in meters, it doubles with every level.
+     */
+    public static final double BASE_TOLERANCE = 0.5;
+
+    /**
+     * Maximum tolerance of the selected level, in pixels.
+     */
+    public static final double LOD_PIXELS = 1;
+
+    /**
+     * Number of values in a bounding box.
+     */
+    private static final int NUM_BOUNDS = 4;
+
+    /**
+     * Position of the minimum X coordinate in a bounding box.
+     */
+    private static final int MIN_X = 0;
+
+    /**
+     * Position of the minimum Y coordinate in a bounding box.
+     */
+    private static final int MIN_Y = 1;
+
+    /**
+     * Position of the maximum X coordinate in a bounding box.
+     */
+    private static final int MAX_X = 2;
+
+    /**
+     * Position of the maximum Y coordinate in a bounding box.
+     */
+    private static final int MAX_Y = 3;
+
+    /**
+     * Latitude of the projection origin in degrees.
+     */
+    private final double mOriginLatitude;
+
+    /**
+     * Longitude of the projection origin in degrees.
+     */
+    private final double mOriginLongitude;
+
+    /**
+     * Meters per degree longitude at the projection origin.
+     */
+    private final double mMetersPerDegreeLongitude;
+
+    /**
+     * Levels of detail.
+     */
+    private final Level[] mLevels = new Level[LEVELS];
+
+    /**
+     * Converts the track to device coordinates.
+     */
+    private final CoordinateRotation mRotation;
+
+    /**
+     * Rotation center, in device coordinates.
+     */
+    private final Coordinate mCenter = new Coordinate(0, 0);
+
+    /**
+     * Points of a run of visible chunks, reused between conversions.
+     */
+    private double[] mConverted = new double[0];
+
+    /**
+     * Lines, in Canvas.drawLines format, reused between conversions.
+     */
+    private float[] mLines = new float[0];
+
+    /**
+     * Level used by the last conversion.
+     */
+    private int mLastLevel = 0;
+
+    /**
+     * Number of points converted by the last conversion.
+     */
+    private int mLastPoints = 0;
+
+    /**
+     * One level of detail.
+     */
+    private static final class Level {
+        /**
+         * Minimum distance between points in meters.
+         */
+        private final double mTolerance;
+
+        /**
+         * Points kept at this level.
+         */
+        private final GeometryBuffer mPoints = new GeometryBuffer();
+
+        /**
+         * Bounding boxes of the chunks.
+         */
+        private double[] mBounds = new double[0];
+
+        /**
+         * Constructor.
+         *
+         * @param tolerance Minimum distance between points in meters
+         */
+        private Level(final double tolerance) {
+            mTolerance = tolerance;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param latitude Latitude of the projection origin in degrees
+     * @param longitude Longitude of the projection origin in degrees
+     */
+    public TrackGeometry(final double latitude, final double longitude) {
+        mOriginLatitude = latitude;
+        mOriginLongitude = longitude;
+        mMetersPerDegreeLongitude = GreatCircle.METERS_PER_DEGREE
+                * Math.cos(Math.toRadians(latitude));
+
+        mLevels[0] = new Level(0);
+        for (int i = 1; i < LEVELS; i++) {
+            mLevels[i] = new Level(BASE_TOLERANCE * (1 << (i - 1)));
+        }
+
+        mRotation = new CoordinateRotation(mCenter, 0, 1);
+    }
+
+    /**
+     * Constructor, using the first location of a track as origin
+     * and adding all locations.
+     *
+     * @param track Recorded track
+     * @throws IllegalArgumentException if track is null or empty
+     */
+    public TrackGeometry(final PackedLocations track) {
+        this(getFirstLatitude(track), track.getLongitude(0));
+
+        for (int i = 0; i < track.getSize(); i++) {
+            add(track.getLatitude(i), track.getLongitude(i));
+        }
+    }
+
+    /**
+     * Gets the latitude of the first location of a track.
+     *
+     * @param track Recorded track
+     * @return latitude in degrees
+     * @throws IllegalArgumentException if track is null or empty
+     */
+    private static double getFirstLatitude(final PackedLocations track) {
+        if (track == null || track.getSize() == 0) {
+            throw new IllegalArgumentException(
+                    "Parameter track should not be empty");
+        }
+
+        return track.getLatitude(0);
+    }
+
+    /**
+     * Projects a latitude.
+     *
+     * @param latitude Latitude in degrees
+     * @return distance north of the origin in meters
+     */
+    public final double toNorth(final double latitude) {
+        return (latitude - mOriginLatitude) * GreatCircle.METERS_PER_DEGREE;
+    }
+
+    /**
+     * Projects a longitude.
+     *
+     * @param longitude Longitude in degrees
+     * @return distance east of the origin in meters
+     */
+    public final double toEast(final double longitude) {
+        // shortest way around, range -180°-180°
+        double delta = FormatUtils.normalizeAngle(
+                longitude - mOriginLongitude + FormatUtils.CIRCLE_HALF)
+                - FormatUtils.CIRCLE_HALF;
+
+        return delta * mMetersPerDegreeLongitude;
+    }
+
+    /**
+     * Adds a location to the end of the track.
+     *
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     */
+    public final void add(final double latitude, final double longitude) {
+        double north = toNorth(latitude);
+        double east = toEast(longitude);
+
+        for (Level level : mLevels) {
+            GeometryBuffer points = level.mPoints;
+            int size = points.getSize();
+
+            if (size > 0 && Math.hypot(north - points.getX(size - 1),
+                    east - points.getY(size - 1)) <= level.mTolerance) {
+                continue;
+            }
+
+            addPoint(level, north, east);
+        }
+    }
+
+    /**
+     * Adds a point to a level, updating the bounding boxes.
+     *
+     * A chunk contains the lines from point chunk * CHUNK_SIZE
+     * up to point (chunk + 1) * CHUNK_SIZE, so the last point of a chunk
+     * is the first point of the next chunk.
+     *
+     * @param level Level of detail
+     * @param north X coordinate in meters
+     * @param east Y coordinate in meters
+     */
+    private void addPoint(final Level level, final double north,
+                          final double east) {
+        int index = level.mPoints.add(north, east);
+        int chunk = index / CHUNK_SIZE;
+
+        if ((chunk + 1) * NUM_BOUNDS > level.mBounds.length) {
+            level.mBounds = Arrays.copyOf(level.mBounds,
+                    Math.max((chunk + 1) * NUM_BOUNDS,
+                            level.mBounds.length * 2));
+        }
+
+        if (index % CHUNK_SIZE == 0) {
+            // first point of a chunk
+            int position = chunk * NUM_BOUNDS;
+            level.mBounds[position + MIN_X] = north;
+            level.mBounds[position + MIN_Y] = east;
+            level.mBounds[position + MAX_X] = north;
+            level.mBounds[position + MAX_Y] = east;
+
+            // last point of the previous chunk
+            if (chunk > 0) {
+                extendBounds(level.mBounds, chunk - 1, north, east);
+            }
+        } else {
+            extendBounds(level.mBounds, chunk, north, east);
+        }
+    }
+
+    /**
+     * Extends the bounding box of a chunk with a point.
+     *
+     * @param bounds Bounding boxes
+     * @param chunk Chunk index
+     * @param north X coordinate in meters
+     * @param east Y coordinate in meters
+     */
+    private static void extendBounds(final double[] bounds, final int chunk,
+                                     final double north, final double east) {
+        int position = chunk * NUM_BOUNDS;
+        bounds[position + MIN_X] = Math.min(bounds[position + MIN_X], north);
+        bounds[position + MIN_Y] = Math.min(bounds[position + MIN_Y], east);
+        bounds[position + MAX_X] = Math.max(bounds[position + MAX_X], north);
+        bounds[position + MAX_Y] = Math.max(bounds[position + MAX_Y], east);
+    }
+
+    /**
+     * Gets the number of points in a level of detail.
+     *
+     * @param level Level of detail
+     * @return number of points
+     * @throws IndexOutOfBoundsException if level is out of range
+     */
+    public final int getSize(final int level) {
+        return mLevels[level].mPoints.getSize();
+    }
+
+    /**
+     * Selects the coarsest level of detail with a tolerance
+     * of no more than LOD_PIXELS at a scale.
+     *
+     * @param pixelsPerMeter Scale in pixels per meter
+     * @return level of detail
+     */
+    public final int getLevel(final double pixelsPerMeter) {
+        int level = 0;
+        while (level + 1 < LEVELS
+                && mLevels[level + 1].mTolerance * pixelsPerMeter
+                <= LOD_PIXELS) {
+            level++;
+        }
+
+        return level;
+    }
+
+    /**
+     * Converts the visible part of the track to lines,
+     * centered on the current location and rotated to the heading.
+     *
+     * The lines are written in the array returned by getLines(),
+     * draw them with Canvas.drawLines(getLines(), 0, count, paint).
+     *
+     * @param latitude Latitude of the current location in degrees
+     * @param longitude Longitude of the current location in degrees
+     * @param heading Heading in degrees, pointing up
+     * @param pixelsPerMeter Scale in pixels per meter
+     * @param centerX X coordinate of the current location on the view
+     * @param centerY Y coordinate of the current location on the view
+     * @param viewRadius Distance from the center to the furthest
+     *                   corner of the view, in pixels
+     * @return number of values written in the lines array
+     * @throws IllegalArgumentException if pixelsPerMeter is not positive
+     */
+    public final int toLines(final double latitude, final double longitude,
+                             final double heading,
+                             final double pixelsPerMeter,
+                             final long centerX, final long centerY,
+                             final double viewRadius) {
+        if (!(pixelsPerMeter > 0)) {
+            throw new IllegalArgumentException(
+                    "pixelsPerMeter should be positive");
+        }
+
+        double north = toNorth(latitude);
+        double east = toEast(longitude);
+        double radius = viewRadius / pixelsPerMeter;
+
+        mCenter.setCartesianCoordinate(centerX, centerY);
+        mRotation.setRotationAngle(-1 * heading);
+        mRotation.setScaleRadius(pixelsPerMeter);
+
+        mLastLevel = getLevel(pixelsPerMeter);
+        mLastPoints = 0;
+        Level level = mLevels[mLastLevel];
+        int size = level.mPoints.getSize();
+        int chunks = size > 1 ? (size - 2) / CHUNK_SIZE + 1 : 0;
+        int count = 0;
+
+        int chunk = 0;
+        while (chunk < chunks) {
+            if (!isVisible(level.mBounds, chunk, north, east, radius)) {
+                chunk++;
+                continue;
+            }
+
+            // run of visible chunks
+            int first = chunk * CHUNK_SIZE;
+            while (chunk < chunks
+                    && isVisible(level.mBounds, chunk, north, east, radius)) {
+                chunk++;
+            }
+            int last = Math.min(chunk * CHUNK_SIZE, size - 1);
+
+            count = addLines(level.mPoints, first, last, north, east, count);
+        }
+
+        return count;
+    }
+
+    /**
+     * Checks if the bounding box of a chunk is in the viewport.
+     *
+     * @param bounds Bounding boxes
+     * @param chunk Chunk index
+     * @param north X coordinate of the viewport center in meters
+     * @param east Y coordinate of the viewport center in meters
+     * @param radius Viewport radius in meters
+     * @return true if the chunk is visible
+     */
+    private static boolean isVisible(final double[] bounds, final int chunk,
+                                     final double north, final double east,
+                                     final double radius) {
+        int position = chunk * NUM_BOUNDS;
+
+        return bounds[position + MIN_X] <= north + radius
+                && bounds[position + MAX_X] >= north - radius
+                && bounds[position + MIN_Y] <= east + radius
+                && bounds[position + MAX_Y] >= east - radius;
+    }
+
+    /**
+     * Converts consecutive points and adds the lines between them.
+     *
+     * @param points Points of a level of detail
+     * @param first Index of the first point
+     * @param last Index of the last point
+     * @param north X coordinate of the current location in meters
+     * @param east Y coordinate of the current location in meters
+     * @param offset Position in the lines array to write to
+     * @return position in the lines array after the added lines
+     */
+    private int addLines(final GeometryBuffer points, final int first,
+                         final int last, final double north,
+                         final double east, final int offset) {
+        int count = last - first + 1;
+        mLastPoints += count;
+
+        if (mConverted.length < count * GeometryBuffer.NUM_COORD_POINT) {
+            mConverted = new double[count * GeometryBuffer.NUM_COORD_POINT];
+        }
+        for (int i = 0; i < count; i++) {
+            mConverted[i * GeometryBuffer.NUM_COORD_POINT + Coordinate.X]
+                    = points.getX(first + i) - north;
+            mConverted[i * GeometryBuffer.NUM_COORD_POINT + Coordinate.Y]
+                    = points.getY(first + i) - east;
+        }
+        mRotation.convertCoordinates(mConverted, 0, count);
+
+        int length = offset + (count - 1) * Coordinates.NUM_COORD_LINE;
+        if (mLines.length < length) {
+            mLines = Arrays.copyOf(mLines, Math.max(length,
+                    mLines.length * 2));
+        }
+
+        int position = offset;
+        for (int i = GeometryBuffer.NUM_COORD_POINT;
+                i < count * GeometryBuffer.NUM_COORD_POINT;
+                i += GeometryBuffer.NUM_COORD_POINT) {
+            mLines[position + Coordinates.POS_START_X] = (float)
+                    mConverted[i - GeometryBuffer.NUM_COORD_POINT
+                            + Coordinate.X];
+            mLines[position + Coordinates.POS_START_Y] = (float)
+                    mConverted[i - GeometryBuffer.NUM_COORD_POINT
+                            + Coordinate.Y];
+            mLines[position + Coordinates.POS_END_X]
+                    = (float) mConverted[i + Coordinate.X];
+            mLines[position + Coordinates.POS_END_Y]
+                    = (float) mConverted[i + Coordinate.Y];
+            position += Coordinates.NUM_COORD_LINE;
+        }
+
+        return position;
+    }
+
+    /**
+     * Gets the lines array, reused by every toLines() call.
+     *
+     * @return lines in Canvas.drawLines format
+     */
+    public final float[] getLines() {
+        return mLines;
+    }
+
+    /**
+     * Gets the level of detail used by the last toLines() call.
+     *
+     * @return level of detail
+     */
+    public final int getLastLevel() {
+        return mLastLevel;
+    }
+
+    /**
+     * Gets the number of points converted by the last toLines() call.
+     *
+     * @return number of points
+     */
+    public final int getLastPoints() {
+        return mLastPoints;
+    }
+}
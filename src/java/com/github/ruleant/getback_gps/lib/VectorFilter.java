@@ -0,0 +1,106 @@
+/**
+ * Filters the components of a vector.
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+/**
+ * Filters the components of a vector, eg. the x, y and z values
+ * of a sensor, every component with its own filter instance.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class VectorFilter {
+    /**
+     * Filter of every component.
+     */
+    private final SignalFilter[] mFilters;
+
+    /**
+     * Constructor.
+     *
+     * @param filter Filter configuration, a new instance is created
+     *               for every component
+     * @param size Number of components
+     * @throws IllegalArgumentException if filter is null
+     *  or size is smaller than 1
+     */
+    public VectorFilter(final SignalFilter filter, final int size) {
+        if (filter == null) {
+            throw new IllegalArgumentException(
+                    "Parameter filter should not be null");
+        }
+        if (size < 1) {
+            throw new IllegalArgumentException(
+                    "Parameter size should be at least 1");
+        }
+
+        mFilters = new SignalFilter[size];
+        for (int i = 0; i < size; i++) {
+            mFilters[i] = filter.newInstance();
+        }
+    }
+
+    /**
+     * Filters new values, storing the result in an existing array.
+     *
+     * The result array can be the same array as values.
+     *
+     * @param values New values
+     * @param timestamp Timestamp of the values in nanoseconds
+     * @param result Array to store the filtered values in
+     * @return result
+     * @throws IllegalArgumentException if the size of values or result
+     *  doesn't match the number of components
+     */
+    public final float[] filter(final float[] values, final long timestamp,
+                                final float[] result) {
+        if (values == null || values.length != mFilters.length
+                || result == null || result.length != mFilters.length) {
+            throw new IllegalArgumentException(
+                    "Parameters values and result should have "
+                    + "the same size as the vector");
+        }
+
+        for (int i = 0; i < mFilters.length; i++) {
+            result[i] = mFilters[i].filter(values[i], timestamp);
+        }
+
+        return result;
+    }
+
+    /**
+     * Resets the filters of all components.
+     */
+    public final void reset() {
+        for (SignalFilter filter : mFilters) {
+            filter.reset();
+        }
+    }
+
+    /**
+     * Gets the number of components.
+     *
+     * @return number of components
+     */
+    public final int getSize() {
+        return mFilters.length;
+    }
+}
@@ -0,0 +1,682 @@
+/**
+ * Spatial index of waypoints.
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * In-memory spatial index of waypoints, to find the nearest waypoints
+ * or all waypoints within a radius without scanning all waypoints.
+ *
+ * Waypoints are identified by a non-negative id, chosen by the caller.
+ * They are put in buckets of a fixed latitude/longitude grid,
+ * a query only visits the buckets that overlap with the search area,
+ * the exact distance is calculated with the great circle distance.
+ *
+ * This class is not thread safe.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class WaypointIndex {
+    /**
+     * Id returned when no waypoint was found.
+     */
+    public static final int NO_WAYPOINT = -1;
+
+    /**
+     * Default grid cell size in degrees (about 1.1 km latitude).
+     */
+    public static final double DEFAULT_CELL_SIZE = 0.01;
+
+    /**
+     * Minimum latitude.
+     */
+    private static final double LATITUDE_MIN = -90;
+
+    /**
+     * Maximum latitude.
+     */
+    private static final double LATITUDE_MAX = 90;
+
+    /**
+     * Minimum longitude.
+     */
+    private static final double LONGITUDE_MIN = -180;
+
+    /**
+     * Maximum longitude.
+     */
+    private static final double LONGITUDE_MAX = 180;
+
+    /**
+     * Initial capacity of the waypoint arrays.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Radius at which the search area covers the whole earth.
+     */
+    private static final double MAX_RADIUS
+            = Math.PI * GreatCircle.EARTH_RADIUS;
+
+    /**
+     * Grid cell size in degrees.
+     */
+    private final double mCellSize;
+
+    /**
+     * Number of grid cells along a parallel.
+     */
+    private final int mLongitudeCells;
+
+    /**
+     * Number of grid cells along a meridian.
+     */
+    private final int mLatitudeCells;
+
+    /**
+     * Buckets with waypoint ids, by grid cell key.
+     */
+    private final HashMap<Long, Bucket> mBuckets = new HashMap<Long, Bucket>();
+
+    /**
+     * Waypoint latitudes, by waypoint id.
+     */
+    private double[] mLatitudes = new double[INITIAL_CAPACITY];
+
+    /**
+     * Waypoint longitudes, by waypoint id.
+     */
+    private double[] mLongitudes = new double[INITIAL_CAPACITY];
+
+    /**
+     * Grid cell key of each waypoint, by waypoint id.
+     */
+    private long[] mCellKeys = new long[INITIAL_CAPACITY];
+
+    /**
+     * Whether a waypoint with the id is in the index.
+     */
+    private boolean[] mPresent = new boolean[INITIAL_CAPACITY];
+
+    /**
+     * Number of waypoints in the index.
+     */
+    private int mSize = 0;
+
+    /**
+     * Number of modifications to the index.
+     */
+    private long mModificationCount = 0;
+
+    /**
+     * Ids found by a radius query.
+     */
+    private int[] mScanIds = new int[INITIAL_CAPACITY];
+
+    /**
+     * Distances of the ids found by a radius query.
+     */
+    private double[] mScanDistances = new double[INITIAL_CAPACITY];
+
+    /**
+     * Number of results of a radius query.
+     */
+    private int mScanCount = 0;
+
+    /**
+     * Constructor, using the default grid cell size.
+     */
+    public WaypointIndex() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param cellSize Grid cell size in degrees
+     * @throws IllegalArgumentException if cell size is out of range
+     */
+    public WaypointIndex(final double cellSize) {
+        if (cellSize <= 0 || cellSize > FormatUtils.CIRCLE_HALF) {
+            throw new IllegalArgumentException(
+                    "cellSize should be in range 0 .. 180");
+        }
+
+        mCellSize = cellSize;
+        mLongitudeCells
+                = (int) Math.ceil(FormatUtils.CIRCLE_FULL / cellSize);
+        mLatitudeCells
+                = (int) Math.ceil(FormatUtils.CIRCLE_HALF / cellSize);
+    }
+
+    /**
+     * Adds a waypoint, or moves it if a waypoint with the id exists.
+     *
+     * @param id Waypoint id (0 or larger)
+     * @param latitude Latitude in degrees (-90°..90°)
+     * @param longitude Longitude in degrees (-180°..180°)
+     * @throws IllegalArgumentException if a parameter is out of range
+     */
+    public final void add(final int id, final double latitude,
+                          final double longitude) {
+        if (id < 0) {
+            throw new IllegalArgumentException("id can't be negative");
+        }
+        checkCoordinates(latitude, longitude);
+
+        if (contains(id)) {
+            removeFromBucket(id);
+        } else {
+            ensureCapacity(id + 1);
+            mPresent[id] = true;
+            mSize++;
+        }
+
+        mLatitudes[id] = latitude;
+        mLongitudes[id] = longitude;
+        mCellKeys[id] = getCellKey(
+                getLatitudeCell(latitude), getLongitudeCell(longitude));
+
+        Bucket bucket = mBuckets.get(mCellKeys[id]);
+        if (bucket == null) {
+            bucket = new Bucket();
+            mBuckets.put(mCellKeys[id], bucket);
+        }
+        bucket.add(id);
+
+        mModificationCount++;
+    }
+
+    /**
+     * Removes a waypoint.
+     *
+     * @param id Waypoint id
+     * @return true if the waypoint was removed
+     */
+    public final boolean remove(final int id) {
+        if (!contains(id)) {
+            return false;
+        }
+
+        removeFromBucket(id);
+        mPresent[id] = false;
+        mSize--;
+        mModificationCount++;
+
+        return true;
+    }
+
+    /**
+     * Removes all waypoints.
+     */
+    public final void clear() {
+        mBuckets.clear();
+        Arrays.fill(mPresent, false);
+        mSize = 0;
+        mModificationCount++;
+    }
+
+    /**
+     * Checks if a waypoint is in the index.
+     *
+     * @param id Waypoint id
+     * @return true if the waypoint is in the index
+     */
+    public final boolean contains(final int id) {
+        return id >= 0 && id < mPresent.length && mPresent[id];
+    }
+
+    /**
+     * Number of waypoints in the index.
+     *
+     * @return number of waypoints
+     */
+    public final int getSize() {
+        return mSize;
+    }
+
+    /**
+     * Number of modifications to the index,
+     * it changes every time a waypoint is added, moved or removed.
+     *
+     * @return modification count
+     */
+    public final long getModificationCount() {
+        return mModificationCount;
+    }
+
+    /**
+     * Gets the latitude of a waypoint.
+     *
+     * @param id Waypoint id
+     * @return latitude in degrees
+     * @throws IllegalArgumentException if waypoint is not in the index
+     */
+    public final double getLatitude(final int id) {
+        checkContains(id);
+        return mLatitudes[id];
+    }
+
+    /**
+     * Gets the longitude of a waypoint.
+     *
+     * @param id Waypoint id
+     * @return longitude in degrees
+     * @throws IllegalArgumentException if waypoint is not in the index
+     */
+    public final double getLongitude(final int id) {
+        checkContains(id);
+        return mLongitudes[id];
+    }
+
+    /**
+     * Calculates the distance from a point to a waypoint.
+     *
+     * @param id Waypoint id
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @return distance in meters
+     * @throws IllegalArgumentException if waypoint is not in the index
+     */
+    public final double distanceTo(final int id, final double latitude,
+                                   final double longitude) {
+        checkContains(id);
+        return GreatCircle.distance(latitude, longitude,
+                mLatitudes[id], mLongitudes[id]);
+    }
+
+    /**
+     * Finds all waypoints within a radius.
+     *
+     * @param latitude Latitude of the center in degrees
+     * @param longitude Longitude of the center in degrees
+     * @param radius Radius in meters
+     * @return waypoint ids, sorted from nearest to furthest
+     * @throws IllegalArgumentException if a parameter is out of range
+     */
+    public final int[] findWithinRadius(final double latitude,
+                                        final double longitude,
+                                        final double radius) {
+        checkCoordinates(latitude, longitude);
+        if (radius < 0) {
+            throw new IllegalArgumentException("radius can't be negative");
+        }
+
+        mScanCount = 0;
+        scan(latitude, longitude, radius, null);
+
+        int[] ids = new int[mScanCount];
+        if (mScanCount == 0) {
+            return ids;
+        }
+
+        // sort results by distance
+        NearestHeap heap = new NearestHeap(mScanCount);
+        for (int i = 0; i < mScanCount; i++) {
+            heap.offer(mScanIds[i], mScanDistances[i]);
+        }
+        heap.drainSorted(ids, null);
+
+        return ids;
+    }
+
+    /**
+     * Finds the nearest waypoint.
+     *
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @return waypoint id, or NO_WAYPOINT if the index is empty
+     */
+    public final int findNearest(final double latitude,
+                                 final double longitude) {
+        int[] ids = findNearest(latitude, longitude, 1);
+
+        if (ids.length == 0) {
+            return NO_WAYPOINT;
+        }
+
+        return ids[0];
+    }
+
+    /**
+     * Finds the nearest waypoints.
+     *
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @param count Maximum number of waypoints to return
+     * @return waypoint ids, sorted from nearest to furthest
+     */
+    public final int[] findNearest(final double latitude,
+                                   final double longitude,
+                                   final int count) {
+        NearestHeap heap = new NearestHeap(count);
+        int found = findNearest(latitude, longitude, heap);
+
+        int[] ids = new int[found];
+        heap.drainSorted(ids, null);
+
+        return ids;
+    }
+
+    /**
+     * Finds the nearest waypoints, the number of waypoints
+     * is determined by the capacity of the heap.
+     * The heap is cleared before searching.
+     *
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @param heap Heap to collect the nearest waypoints in
+     * @return number of waypoints found
+     * @throws IllegalArgumentException if a parameter is out of range
+     */
+    public final int findNearest(final double latitude,
+                                 final double longitude,
+                                 final NearestHeap heap) {
+        checkCoordinates(latitude, longitude);
+        if (heap == null) {
+            throw new IllegalArgumentException(
+                    "Parameter heap should not be null");
+        }
+
+        heap.clear();
+        if (mSize == 0) {
+            return 0;
+        }
+
+        // search in an expanding area, until the area contains
+        // the requested number of waypoints, or the whole earth is searched.
+        double radius = mCellSize * GreatCircle.METERS_PER_DEGREE / 2;
+        while (true) {
+            heap.clear();
+            boolean complete = scan(latitude, longitude, radius, heap);
+
+            if (complete || heap.getMaxDistance() <= radius) {
+                return heap.getSize();
+            }
+
+            radius *= 2;
+        }
+    }
+
+    /**
+     * Visits all waypoints in the grid cells overlapping with a search area.
+     * When a heap is provided, all visited waypoints are offered to the heap,
+     * otherwise waypoints within the radius are stored in the scan buffer.
+     *
+     * @param latitude Latitude of the center in degrees
+     * @param longitude Longitude of the center in degrees
+     * @param radius Radius in meters
+     * @param heap Heap to collect the nearest waypoints in, can be null
+     * @return true if all waypoints were visited
+     */
+    private boolean scan(final double latitude, final double longitude,
+                         final double radius, final NearestHeap heap) {
+        double latitudeSpan = radius / GreatCircle.METERS_PER_DEGREE;
+        double southLatitude = latitude - latitudeSpan;
+        double northLatitude = latitude + latitudeSpan;
+
+        int minLatitudeCell = getLatitudeCell(
+                Math.max(southLatitude, LATITUDE_MIN));
+        int maxLatitudeCell = getLatitudeCell(
+                Math.min(northLatitude, LATITUDE_MAX));
+
+        int minLongitudeCell = 0;
+        int longitudeCellCount = mLongitudeCells;
+
+        // limit longitude range, unless the search area includes a pole
+        if (radius < MAX_RADIUS && southLatitude > LATITUDE_MIN
+                && northLatitude < LATITUDE_MAX) {
+            // largest longitude difference of a point within the radius
+            double longitudeSpan = Math.toDegrees(Math.asin(
+                    Math.sin(radius / GreatCircle.EARTH_RADIUS)
+                    / Math.cos(Math.toRadians(latitude))));
+
+            if (longitudeSpan < FormatUtils.CIRCLE_HALF) {
+                minLongitudeCell = getLongitudeCell(longitude - longitudeSpan);
+                int maxLongitudeCell
+                        = getLongitudeCell(longitude + longitudeSpan);
+                longitudeCellCount = maxLongitudeCell - minLongitudeCell + 1;
+                if (longitudeCellCount <= 0) {
+                    // search area crosses the 180th meridian
+                    longitudeCellCount += mLongitudeCells;
+                }
+                longitudeCellCount
+                        = Math.min(longitudeCellCount, mLongitudeCells);
+            }
+        }
+
+        long cellCount = (long) (maxLatitudeCell - minLatitudeCell + 1)
+                * longitudeCellCount;
+        boolean allCells = longitudeCellCount == mLongitudeCells
+                && minLatitudeCell == 0
+                && maxLatitudeCell == mLatitudeCells - 1;
+
+        // visiting all buckets is faster than looking up many empty cells
+        if (allCells || cellCount > mBuckets.size()) {
+            for (Bucket bucket : mBuckets.values()) {
+                scanBucket(bucket, latitude, longitude, radius, heap);
+            }
+            return true;
+        }
+
+        for (int latitudeCell = minLatitudeCell;
+             latitudeCell <= maxLatitudeCell; latitudeCell++) {
+            for (int i = 0; i < longitudeCellCount; i++) {
+                int longitudeCell
+                        = (minLongitudeCell + i) % mLongitudeCells;
+                Bucket bucket = mBuckets.get(
+                        getCellKey(latitudeCell, longitudeCell));
+                if (bucket != null) {
+                    scanBucket(bucket, latitude, longitude, radius, heap);
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Visits all waypoints in a bucket.
+     *
+     * @param bucket Bucket with waypoint ids
+     * @param latitude Latitude of the center in degrees
+     * @param longitude Longitude of the center in degrees
+     * @param radius Radius in meters
+     * @param heap Heap to collect the nearest waypoints in, can be null
+     */
+    private void scanBucket(final Bucket bucket, final double latitude,
+                            final double longitude, final double radius,
+                            final NearestHeap heap) {
+        for (int i = 0; i < bucket.mSize; i++) {
+            int id = bucket.mIds[i];
+            double distance = GreatCircle.distance(latitude, longitude,
+                    mLatitudes[id], mLongitudes[id]);
+
+            if (heap != null) {
+                heap.offer(id, distance);
+            } else if (distance <= radius) {
+                if (mScanCount == mScanIds.length) {
+                    mScanIds = Arrays.copyOf(mScanIds, mScanCount * 2);
+                    mScanDistances
+                            = Arrays.copyOf(mScanDistances, mScanCount * 2);
+                }
+                mScanIds[mScanCount] = id;
+                mScanDistances[mScanCount] = distance;
+                mScanCount++;
+            }
+        }
+    }
+
+    /**
+     * Removes a waypoint from its bucket,
+     * the bucket is removed when it is empty.
+     *
+     * @param id Waypoint id
+     */
+    private void removeFromBucket(final int id) {
+        Bucket bucket = mBuckets.get(mCellKeys[id]);
+        if (bucket != null) {
+            bucket.remove(id);
+            if (bucket.mSize == 0) {
+                mBuckets.remove(mCellKeys[id]);
+            }
+        }
+    }
+
+    /**
+     * Grows the waypoint arrays.
+     *
+     * @param minCapacity Minimum required capacity
+     */
+    private void ensureCapacity(final int minCapacity) {
+        if (minCapacity <= mPresent.length) {
+            return;
+        }
+
+        int capacity = Math.max(minCapacity, mPresent.length * 2);
+        mLatitudes = Arrays.copyOf(mLatitudes, capacity);
+        mLongitudes = Arrays.copyOf(mLongitudes, capacity);
+        mCellKeys = Arrays.copyOf(mCellKeys, capacity);
+        mPresent = Arrays.copyOf(mPresent, capacity);
+    }
+
+    /**
+     * Gets the grid row of a latitude.
+     *
+     * @param latitude Latitude in degrees
+     * @return grid row
+     */
+    private int getLatitudeCell(final double latitude) {
+        int cell = (int) Math.floor((latitude - LATITUDE_MIN) / mCellSize);
+
+        return Math.max(0, Math.min(cell, mLatitudeCells - 1));
+    }
+
+    /**
+     * Gets the grid column of a longitude,
+     * longitudes outside the -180°..180° range wrap around.
+     *
+     * @param longitude Longitude in degrees
+     * @return grid column
+     */
+    private int getLongitudeCell(final double longitude) {
+        int cell = (int) Math.floor((longitude - LONGITUDE_MIN) / mCellSize)
+                % mLongitudeCells;
+
+        if (cell < 0) {
+            cell += mLongitudeCells;
+        }
+
+        return cell;
+    }
+
+    /**
+     * Gets the key of a grid cell.
+     *
+     * @param latitudeCell grid row
+     * @param longitudeCell grid column
+     * @return cell key
+     */
+    private long getCellKey(final int latitudeCell, final int longitudeCell) {
+        return (long) latitudeCell * mLongitudeCells + longitudeCell;
+    }
+
+    /**
+     * Checks coordinate ranges.
+     *
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @throws IllegalArgumentException if a coordinate is out of range
+     */
+    private static void checkCoordinates(final double latitude,
+                                         final double longitude) {
+        if (!(latitude >= LATITUDE_MIN && latitude <= LATITUDE_MAX)) {
+            throw new IllegalArgumentException(
+                    "latitude is not in range -90 .. 90");
+        }
+        if (!(longitude >= LONGITUDE_MIN && longitude <= LONGITUDE_MAX)) {
+            throw new IllegalArgumentException(
+                    "longitude is not in range -180 .. 180");
+        }
+    }
+
+    /**
+     * Checks if a waypoint is in the index.
+     *
+     * @param id Waypoint id
+     * @throws IllegalArgumentException if waypoint is not in the index
+     */
+    private void checkContains(final int id) {
+        if (!contains(id)) {
+            throw new IllegalArgumentException(
+                    "waypoint " + id + " is not in the index");
+        }
+    }
+
+    /**
+     * Unordered list of waypoint ids in a grid cell.
+     */
+    private static final class Bucket {
+        /**
+         * Initial bucket capacity.
+         */
+        private static final int BUCKET_CAPACITY = 4;
+
+        /**
+         * Waypoint ids.
+         */
+        private int[] mIds = new int[BUCKET_CAPACITY];
+
+        /**
+         * Number of waypoint ids.
+         */
+        private int mSize = 0;
+
+        /**
+         * Adds a waypoint id.
+         *
+         * @param id Waypoint id
+         */
+        private void add(final int id) {
+            if (mSize == mIds.length) {
+                mIds = Arrays.copyOf(mIds, mSize * 2);
+            }
+            mIds[mSize++] = id;
+        }
+
+        /**
+         * Removes a waypoint id, by replacing it with the last id.
+         *
+         * @param id Waypoint id
+         */
+        private void remove(final int id) {
+            for (int i = 0; i < mSize; i++) {
+                if (mIds[i] == id) {
+                    mIds[i] = mIds[--mSize];
+                    return;
+                }
+            }
+        }
+    }
+}
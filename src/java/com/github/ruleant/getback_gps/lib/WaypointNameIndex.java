@@ -0,0 +1,434 @@
+/**
+ * Prefix index of waypoint names.
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * In-memory index of waypoint names, to find waypoints
+ * whose name starts with a prefix, ignoring case and accents.
+ *
+ * Waypoints are identified by the same id as in the spatial index,
+ * matches are ranked by distance to a location.
+ * Names are kept in an array sorted by normalized name,
+ * the matching range is found with a binary search.
+ * The array is kept sorted on every modification : the position
+ * is found with a binary search and the following names are shifted.
+ *
+ * This class is not thread safe.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class WaypointNameIndex {
+    /**
+     * Initial capacity of the name arrays.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Spatial index with waypoint locations.
+     */
+    private final WaypointIndex mLocations;
+
+    /**
+     * Waypoint names, by waypoint id.
+     */
+    private String[] mNames = new String[INITIAL_CAPACITY];
+
+    /**
+     * Normalized waypoint names, by waypoint id.
+     */
+    private String[] mKeys = new String[INITIAL_CAPACITY];
+
+    /**
+     * Number of waypoints in the index.
+     */
+    private int mSize = 0;
+
+    /**
+     * Waypoint ids, sorted by normalized name,
+     * the first mSize positions are used.
+     * Ids with the same name are sorted by id.
+     */
+    private int[] mSortedIds = new int[INITIAL_CAPACITY];
+
+    /**
+     * Normalized names, in the same order as mSortedIds.
+     */
+    private String[] mSortedKeys = new String[INITIAL_CAPACITY];
+
+    /**
+     * Heap used to rank the matches, reused by the next search
+     * with the same capacity.
+     */
+    private NearestHeap mHeap = null;
+
+    /**
+     * Constructor.
+     *
+     * @param locations Spatial index with waypoint locations,
+     *                  used to rank matches by distance
+     * @throws IllegalArgumentException if locations is null
+     */
+    public WaypointNameIndex(final WaypointIndex locations) {
+        if (locations == null) {
+            throw new IllegalArgumentException(
+                    "Parameter locations should not be null");
+        }
+
+        mLocations = locations;
+    }
+
+    /**
+     * Adds a waypoint name, or renames it if a waypoint with the id exists.
+     *
+     * @param id Waypoint id (0 or larger)
+     * @param name Waypoint name
+     * @throws IllegalArgumentException if a parameter is out of range
+     */
+    public final void put(final int id, final String name) {
+        if (id < 0) {
+            throw new IllegalArgumentException("id can't be negative");
+        }
+        if (name == null) {
+            throw new IllegalArgumentException(
+                    "Parameter name should not be null");
+        }
+
+        ensureCapacity(id + 1);
+        String key = normalize(name);
+        if (mNames[id] != null && !key.equals(mKeys[id])) {
+            removeSorted(id);
+        }
+        if (mNames[id] == null || !key.equals(mKeys[id])) {
+            mKeys[id] = key;
+            insertSorted(id);
+        }
+        mNames[id] = name;
+    }
+
+    /**
+     * Removes a waypoint name.
+     *
+     * @param id Waypoint id
+     * @return true if the waypoint was removed
+     */
+    public final boolean remove(final int id) {
+        if (!contains(id)) {
+            return false;
+        }
+
+        removeSorted(id);
+        mNames[id] = null;
+        mKeys[id] = null;
+
+        return true;
+    }
+
+    /**
+     * Removes all waypoint names.
+     */
+    public final void clear() {
+        Arrays.fill(mNames, null);
+        Arrays.fill(mKeys, null);
+        Arrays.fill(mSortedKeys, 0, mSize, null);
+        mSize = 0;
+    }
+
+    /**
+     * Checks if a waypoint is in the index.
+     *
+     * @param id Waypoint id
+     * @return true if the waypoint is in the index
+     */
+    public final boolean contains(final int id) {
+        return id >= 0 && id < mNames.length && mNames[id] != null;
+    }
+
+    /**
+     * Number of waypoints in the index.
+     *
+     * @return number of waypoints
+     */
+    public final int getSize() {
+        return mSize;
+    }
+
+    /**
+     * Gets the name of a waypoint.
+     *
+     * @param id Waypoint id
+     * @return waypoint name, null if the waypoint is not in the index
+     */
+    public final String getName(final int id) {
+        if (!contains(id)) {
+            return null;
+        }
+
+        return mNames[id];
+    }
+
+    /**
+     * Counts the waypoints whose name starts with a prefix.
+     *
+     * @param prefix Name prefix, case and accents are ignored
+     * @return number of matching waypoints
+     * @throws IllegalArgumentException if prefix is null
+     */
+    public final int count(final String prefix) {
+        String key = normalizePrefix(prefix);
+
+        int from = lowerBound(key);
+
+        return upperBound(key, from) - from;
+    }
+
+    /**
+     * Finds the waypoints whose name starts with a prefix,
+     * nearest to a location.
+     * Waypoints without a location in the spatial index are ranked last.
+     *
+     * @param prefix Name prefix, case and accents are ignored
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @param count Maximum number of waypoints
+     * @return waypoint ids, sorted from nearest to furthest
+     * @throws IllegalArgumentException if a parameter is out of range
+     */
+    public final int[] search(final String prefix, final double latitude,
+                              final double longitude, final int count) {
+        String key = normalizePrefix(prefix);
+        if (count <= 0) {
+            throw new IllegalArgumentException(
+                    "count should be a non-zero positive value");
+        }
+
+        int from = lowerBound(key);
+        int to = upperBound(key, from);
+        if (from == to) {
+            return new int[0];
+        }
+
+        // a capacity larger than the number of matches gives the same
+        // result, so the heap can be reused while the count is the same
+        int capacity = Math.min(count, mSize);
+        if (mHeap == null || mHeap.getCapacity() != capacity) {
+            mHeap = new NearestHeap(capacity);
+        }
+        NearestHeap heap = mHeap;
+        heap.clear();
+        for (int i = from; i < to; i++) {
+            int id = mSortedIds[i];
+            double distance = Double.POSITIVE_INFINITY;
+            if (mLocations.contains(id)) {
+                // the latitude difference is a lower bound
+                // of the distance, skip the great circle calculation
+                // if the waypoint can't be nearer than the furthest match
+                double minDistance = GreatCircle.METERS_PER_DEGREE
+                        * Math.abs(mLocations.getLatitude(id) - latitude);
+                if (minDistance >= heap.getMaxDistance()) {
+                    continue;
+                }
+                distance = mLocations.distanceTo(id, latitude, longitude);
+            }
+            heap.offer(id, distance);
+        }
+
+        int[] ids = new int[heap.getSize()];
+        heap.drainSorted(ids, null);
+
+        return ids;
+    }
+
+    /**
+     * Normalizes a name : removes accents, converts to lower case
+     * and removes leading and trailing whitespace.
+     *
+     * @param name Name to normalize
+     * @return normalized name
+     */
+    public static String normalize(final String name) {
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        StringBuilder builder = new StringBuilder(decomposed.length());
+
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            int type = Character.getType(c);
+            if (type != Character.NON_SPACING_MARK
+                    && type != Character.COMBINING_SPACING_MARK
+                    && type != Character.ENCLOSING_MARK) {
+                builder.append(c);
+            }
+        }
+
+        return builder.toString().toLowerCase(Locale.US).trim();
+    }
+
+    /**
+     * Normalizes a search prefix.
+     *
+     * @param prefix Name prefix
+     * @return normalized prefix
+     * @throws IllegalArgumentException if prefix is null
+     */
+    private static String normalizePrefix(final String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException(
+                    "Parameter prefix should not be null");
+        }
+
+        return normalize(prefix);
+    }
+
+    /**
+     * Finds the sorted position of a waypoint.
+     *
+     * @param key Normalized name
+     * @param id Waypoint id
+     * @return sorted position if the waypoint is in the sorted arrays,
+     *  else (-(insertion position) - 1)
+     */
+    private int findSorted(final String key, final int id) {
+        int low = 0;
+        int high = mSize - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int result = mSortedKeys[middle].compareTo(key);
+            if (result == 0) {
+                result = mSortedIds[middle] - id;
+            }
+            if (result < 0) {
+                low = middle + 1;
+            } else if (result > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+
+        return -(low + 1);
+    }
+
+    /**
+     * Inserts a waypoint in the sorted arrays, using its normalized name.
+     *
+     * @param id Waypoint id
+     */
+    private void insertSorted(final int id) {
+        if (mSize == mSortedIds.length) {
+            int capacity = mSortedIds.length * 2;
+            mSortedIds = Arrays.copyOf(mSortedIds, capacity);
+            mSortedKeys = Arrays.copyOf(mSortedKeys, capacity);
+        }
+
+        int position = -findSorted(mKeys[id], id) - 1;
+        System.arraycopy(mSortedIds, position, mSortedIds, position + 1,
+                mSize - position);
+        System.arraycopy(mSortedKeys, position, mSortedKeys, position + 1,
+                mSize - position);
+        mSortedIds[position] = id;
+        mSortedKeys[position] = mKeys[id];
+        mSize++;
+    }
+
+    /**
+     * Removes a waypoint from the sorted arrays,
+     * using its current normalized name.
+     *
+     * @param id Waypoint id
+     */
+    private void removeSorted(final int id) {
+        int position = findSorted(mKeys[id], id);
+        mSize--;
+        System.arraycopy(mSortedIds, position + 1, mSortedIds, position,
+                mSize - position);
+        System.arraycopy(mSortedKeys, position + 1, mSortedKeys, position,
+                mSize - position);
+        mSortedKeys[mSize] = null;
+    }
+
+    /**
+     * Finds the first sorted position with a name that is not smaller
+     * than the prefix.
+     *
+     * @param prefix Normalized prefix
+     * @return sorted position
+     */
+    private int lowerBound(final String prefix) {
+        int low = 0;
+        int high = mSize;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mSortedKeys[middle].compareTo(prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Finds the first sorted position after the names
+     * that start with the prefix.
+     *
+     * @param prefix Normalized prefix
+     * @param from Sorted position of the first name that is not smaller
+     *             than the prefix
+     * @return sorted position
+     */
+    private int upperBound(final String prefix, final int from) {
+        int low = from;
+        int high = mSize;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mSortedKeys[middle].startsWith(prefix)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Grows the name arrays.
+     *
+     * @param minCapacity Minimum required capacity
+     */
+    private void ensureCapacity(final int minCapacity) {
+        if (minCapacity <= mNames.length) {
+            return;
+        }
+
+        int capacity = Math.max(minCapacity, mNames.length * 2);
+        mNames = Arrays.copyOf(mNames, capacity);
+        mKeys = Arrays.copyOf(mKeys, capacity);
+    }
+}
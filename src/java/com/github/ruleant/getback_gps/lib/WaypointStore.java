@@ -0,0 +1,1598 @@
+/**
+ * Persistent store of waypoints.
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps.lib
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import android.annotation.TargetApi;
+import android.location.Location;
+import android.os.Build;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * Stores waypoints in a snapshot file and a write-ahead log.
+ *
+ * Every mutation (add, rename, delete, set active waypoint) is applied
+ * in memory and appended as a small record to the log.
+ * Each record has a sequence number and a checksum.
+ * When the log grows larger than the compaction threshold,
+ * the complete state is written to a new snapshot file,
+ * which replaces the old one with an atomic rename.
+ * The log is only emptied after the directory is synced,
+ * so the rename is stored before the log records are removed.
+ * If the directory can't be synced (before Android 5.0),
+ * the log is renamed to the old log file and a new log is started.
+ * The old log is replayed before the log, and deleted the next time
+ * the store is opened if all its records are included in the snapshot.
+ *
+ * On recovery the snapshot is loaded and the log records with a sequence
+ * number newer than the snapshot are replayed.
+ * Replay stops at the first incomplete or corrupt record
+ * (a write that was interrupted by a crash), the rest of the log is dropped.
+ * A snapshot that can't be decoded, or a log record that passes
+ * the checksum but can't be applied, throws a CorruptException :
+ * the files can be moved aside with moveFilesAside()
+ * to start again with an empty store.
+ *
+ * File writes are done in order on a background thread,
+ * mutations return without waiting for the disk.
+ * After a write fails, nothing is written anymore :
+ * mutations are only applied in memory and are lost when the store
+ * is closed. Check getWriteError() to warn the user.
+ * Mutations and queries are synchronized,
+ * the spatial and name index should only be used on the thread
+ * that modifies the store.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class WaypointStore {
+    /**
+     * Id of no waypoint.
+     */
+    public static final int NO_WAYPOINT = WaypointIndex.NO_WAYPOINT;
+
+    /**
+     * Snapshot file name.
+     */
+    public static final String SNAPSHOT_FILE_NAME = "waypoints.snapshot";
+
+    /**
+     * Log file name.
+     */
+    public static final String LOG_FILE_NAME = "waypoints.log";
+
+    /**
+     * Default log size in bytes that triggers compaction.
+     */
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 32768;
+
+    /**
+     * Log record : add or replace a waypoint, with the altitude only.
+     * Written by older versions.
+     */
+    private static final byte OP_ADD = 1;
+
+    /**
+     * Log record : rename a waypoint.
+     */
+    private static final byte OP_RENAME = 2;
+
+    /**
+     * Log record : delete a waypoint.
+     */
+    private static final byte OP_DELETE = 3;
+
+    /**
+     * Log record : set active waypoint.
+     */
+    private static final byte OP_SET_ACTIVE = 4;
+
+    /**
+     * Log record : add or replace a waypoint, with the location details.
+     * Replaces OP_ADD, which is only read from older logs.
+     */
+    private static final byte OP_ADD_DETAILS = 5;
+
+    /**
+     * Location detail flag : waypoint has an altitude.
+     */
+    private static final int HAS_ALTITUDE = 1;
+
+    /**
+     * Location detail flag : waypoint has an accuracy.
+     */
+    private static final int HAS_ACCURACY = 2;
+
+    /**
+     * Location detail flag : waypoint has a speed.
+     */
+    private static final int HAS_SPEED = 4;
+
+    /**
+     * Location detail flag : waypoint has a bearing.
+     */
+    private static final int HAS_BEARING = 8;
+
+    /**
+     * Snapshot file identifier.
+     */
+    private static final int SNAPSHOT_MAGIC = 0x47425750;
+
+    /**
+     * Snapshot file format version.
+     * Version 2 added the location details, version 1 is still read.
+     */
+    private static final int SNAPSHOT_VERSION = 2;
+
+    /**
+     * Snapshot file format version without the location details.
+     */
+    private static final int SNAPSHOT_VERSION_1 = 1;
+
+    /**
+     * Maximum length of a waypoint name, in bytes of modified UTF-8,
+     * the encoding used in the files.
+     */
+    public static final int MAX_NAME_LENGTH = 65535;
+
+    /**
+     * Maximum length of a location provider name, in bytes of modified UTF-8.
+     * Longer provider names are not stored.
+     */
+    private static final int MAX_PROVIDER_LENGTH = 255;
+
+    /**
+     * Maximum length of a log record, longer records are considered corrupt.
+     * Room for the record fields, the longest name and provider name.
+     */
+    private static final int MAX_RECORD_LENGTH
+            = MAX_NAME_LENGTH + MAX_PROVIDER_LENGTH + 64;
+
+    /**
+     * Suffix of the old log file, the log before the last compaction.
+     */
+    public static final String OLD_SUFFIX = ".old";
+
+    /**
+     * Suffix of temporary files.
+     */
+    private static final String TMP_SUFFIX = ".tmp";
+
+    /**
+     * Suffix of files that were moved aside because they are corrupt.
+     */
+    public static final String CORRUPT_SUFFIX = ".corrupt";
+
+    /**
+     * Initial capacity of the location detail arrays.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Snapshot file.
+     */
+    private final File mSnapshotFile;
+
+    /**
+     * Log file.
+     */
+    private final File mLogFile;
+
+    /**
+     * Old log file, kept after compaction when the directory
+     * can't be synced.
+     */
+    private final File mOldLogFile;
+
+    /**
+     * Log size in bytes that triggers compaction.
+     */
+    private final long mCompactionThreshold;
+
+    /**
+     * Spatial index with waypoint locations.
+     */
+    private final WaypointIndex mIndex = new WaypointIndex();
+
+    /**
+     * Index with waypoint names.
+     */
+    private final WaypointNameIndex mNameIndex
+            = new WaypointNameIndex(mIndex);
+
+    /**
+     * Location detail flags, by waypoint id.
+     */
+    private byte[] mFlags = new byte[INITIAL_CAPACITY];
+
+    /**
+     * Waypoint altitudes in meters, by waypoint id.
+     */
+    private double[] mAltitudes = new double[INITIAL_CAPACITY];
+
+    /**
+     * Waypoint accuracies in meters, by waypoint id.
+     */
+    private float[] mAccuracies = new float[INITIAL_CAPACITY];
+
+    /**
+     * Waypoint speeds in meters per second, by waypoint id.
+     */
+    private float[] mSpeeds = new float[INITIAL_CAPACITY];
+
+    /**
+     * Waypoint bearings in degrees, by waypoint id.
+     */
+    private float[] mBearings = new float[INITIAL_CAPACITY];
+
+    /**
+     * Waypoint location fix times in milliseconds since epoch,
+     * by waypoint id.
+     */
+    private long[] mTimes = new long[INITIAL_CAPACITY];
+
+    /**
+     * Waypoint location providers, by waypoint id.
+     */
+    private String[] mProviders = new String[INITIAL_CAPACITY];
+
+    /**
+     * Id of the active waypoint (destination).
+     */
+    private int mActiveId = NO_WAYPOINT;
+
+    /**
+     * Id of the next added waypoint.
+     */
+    private int mNextId = 0;
+
+    /**
+     * Sequence number of the last mutation.
+     */
+    private long mSequence = 0;
+
+    /**
+     * Whether the store is opened.
+     */
+    private boolean mOpen = false;
+
+    /**
+     * Background thread writing to the files.
+     */
+    private ExecutorService mWriter = null;
+
+    /**
+     * Log output stream, only used on the writer thread.
+     */
+    private FileOutputStream mLogStream = null;
+
+    /**
+     * Log size in bytes, only used on the writer thread.
+     */
+    private long mLogSize = 0;
+
+    /**
+     * Number of compactions.
+     */
+    private volatile long mCompactionCount = 0;
+
+    /**
+     * First error that occurred on the writer thread.
+     */
+    private volatile IOException mWriteError = null;
+
+    /**
+     * Constructor, using the default compaction threshold.
+     *
+     * @param directory Directory to store the files in
+     */
+    public WaypointStore(final File directory) {
+        this(directory, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param directory Directory to store the files in
+     * @param compactionThreshold Log size in bytes that triggers compaction
+     * @throws IllegalArgumentException if a parameter is out of range
+     */
+    public WaypointStore(final File directory,
+                         final long compactionThreshold) {
+        if (directory == null) {
+            throw new IllegalArgumentException(
+                    "Parameter directory should not be null");
+        }
+        if (compactionThreshold <= 0) {
+            throw new IllegalArgumentException(
+                    "compactionThreshold should be a non-zero positive value");
+        }
+
+        mSnapshotFile = new File(directory, SNAPSHOT_FILE_NAME);
+        mLogFile = new File(directory, LOG_FILE_NAME);
+        mOldLogFile = new File(directory, LOG_FILE_NAME + OLD_SUFFIX);
+        mCompactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Opens the store : loads the snapshot and replays the log.
+     *
+     * If opening fails, the in-memory state is incomplete,
+     * use a new instance to open the store again.
+     *
+     * @throws CorruptException if the snapshot or the log is corrupt
+     * @throws IOException if the files can't be read or created
+     */
+    public final synchronized void open() throws IOException {
+        if (mOpen) {
+            return;
+        }
+
+        File directory = mLogFile.getParentFile();
+        if (directory != null && !directory.isDirectory()
+                && !directory.mkdirs()) {
+            throw new IOException("Can't create directory " + directory);
+        }
+
+        if (mSnapshotFile.exists()) {
+            readSnapshot();
+        }
+        // the snapshot that replaced the old log was stored
+        // in a previous session, when all its records are included
+        if (mOldLogFile.exists() && replayLog(mOldLogFile) == 0
+                && !mOldLogFile.delete()) {
+            throw new IOException("Can't delete " + mOldLogFile);
+        }
+        long logSize = 0;
+        if (mLogFile.exists()) {
+            logSize = replayLog(mLogFile);
+        }
+
+        mLogSize = logSize;
+        mLogStream = new FileOutputStream(mLogFile, true);
+        mWriter = Executors.newSingleThreadExecutor();
+        mOpen = true;
+    }
+
+    /**
+     * Moves the files of a store that can't be opened aside,
+     * so a new, empty store can be opened in the same directory.
+     * The files are kept with the corrupt suffix, replacing files
+     * that were moved aside before.
+     *
+     * @throws IOException if a file can't be moved
+     * @throws IllegalStateException if the store is opened
+     */
+    public final synchronized void moveFilesAside() throws IOException {
+        if (mOpen) {
+            throw new IllegalStateException("Waypoint store is opened");
+        }
+
+        moveAside(mSnapshotFile);
+        moveAside(mOldLogFile);
+        moveAside(mLogFile);
+    }
+
+    /**
+     * Waits until all mutations are written and closes the files.
+     *
+     * @throws IOException if writing to the files failed
+     */
+    public final void close() throws IOException {
+        ExecutorService writer;
+        synchronized (this) {
+            if (!mOpen) {
+                return;
+            }
+            mOpen = false;
+            writer = mWriter;
+            mWriter = null;
+        }
+
+        waitFor(writer.submit(new Runnable() {
+            @Override
+            public void run() {
+                closeLog();
+            }
+        }));
+        writer.shutdown();
+
+        checkWriteError();
+    }
+
+    /**
+     * Waits until all mutations are written to the log.
+     *
+     * @throws IOException if writing to the files failed
+     */
+    public final void flush() throws IOException {
+        waitFor(submit(new Runnable() {
+            @Override
+            public void run() {
+                // nothing to do, all previous writes are done
+            }
+        }));
+
+        checkWriteError();
+    }
+
+    /**
+     * Writes a new snapshot and empties the log,
+     * waits until it is done.
+     *
+     * @throws IOException if writing to the files failed
+     */
+    public final void compact() throws IOException {
+        waitFor(submit(new Runnable() {
+            @Override
+            public void run() {
+                writeSnapshot();
+            }
+        }));
+
+        checkWriteError();
+    }
+
+    /**
+     * Adds a waypoint.
+     *
+     * @param name Waypoint name
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @return id of the new waypoint
+     * @throws IllegalArgumentException if a parameter is out of range
+     * @throws IllegalStateException if the store is not opened
+     */
+    public final synchronized int add(final String name,
+                                      final double latitude,
+                                      final double longitude) {
+        return add(name, latitude, longitude, null);
+    }
+
+    /**
+     * Adds a waypoint, with the location and details of a Location :
+     * altitude, accuracy, speed, bearing, time and provider.
+     *
+     * @param name Waypoint name
+     * @param location Waypoint location
+     * @return id of the new waypoint
+     * @throws IllegalArgumentException if a parameter is out of range
+     * @throws IllegalStateException if the store is not opened
+     */
+    public final synchronized int add(final String name,
+                                      final Location location) {
+        if (location == null) {
+            throw new IllegalArgumentException(
+                    "Parameter location should not be null");
+        }
+
+        return add(name, location.getLatitude(), location.getLongitude(),
+                location);
+    }
+
+    /**
+     * Renames a waypoint.
+     *
+     * @param id Waypoint id
+     * @param name New name
+     * @return true if the waypoint was renamed
+     * @throws IllegalArgumentException if name is null
+     * @throws IllegalStateException if the store is not opened
+     */
+    public final synchronized boolean rename(final int id,
+                                             final String name) {
+        checkName(name);
+        checkOpen();
+        if (!contains(id)) {
+            return false;
+        }
+
+        byte[] record = encodeRecord(OP_RENAME, id, 0, 0, name);
+        applyRename(id, name);
+        appendRecord(record);
+
+        return true;
+    }
+
+    /**
+     * Deletes a waypoint.
+     * If it is the active waypoint, no waypoint is active anymore.
+     *
+     * @param id Waypoint id
+     * @return true if the waypoint was deleted
+     * @throws IllegalStateException if the store is not opened
+     */
+    public final synchronized boolean delete(final int id) {
+        checkOpen();
+        if (!contains(id)) {
+            return false;
+        }
+
+        byte[] record = encodeRecord(OP_DELETE, id, 0, 0, null);
+        applyDelete(id);
+        appendRecord(record);
+
+        return true;
+    }
+
+    /**
+     * Sets the active waypoint (destination).
+     *
+     * @param id Waypoint id, NO_WAYPOINT to clear the active waypoint
+     * @return true if the active waypoint was set
+     * @throws IllegalStateException if the store is not opened
+     */
+    public final synchronized boolean setActive(final int id) {
+        checkOpen();
+        if (id != NO_WAYPOINT && !contains(id)) {
+            return false;
+        }
+
+        byte[] record
+                = encodeRecord(OP_SET_ACTIVE, id, 0, 0, null);
+        mActiveId = id;
+        appendRecord(record);
+
+        return true;
+    }
+
+    /**
+     * Gets the active waypoint (destination).
+     *
+     * @return waypoint id, NO_WAYPOINT if no waypoint is active
+     */
+    public final synchronized int getActive() {
+        return mActiveId;
+    }
+
+    /**
+     * Checks if a waypoint is in the store.
+     *
+     * @param id Waypoint id
+     * @return true if the waypoint exists
+     */
+    public final synchronized boolean contains(final int id) {
+        return mIndex.contains(id);
+    }
+
+    /**
+     * Number of waypoints.
+     *
+     * @return number of waypoints
+     */
+    public final synchronized int getSize() {
+        return mIndex.getSize();
+    }
+
+    /**
+     * Gets the name of a waypoint.
+     *
+     * @param id Waypoint id
+     * @return waypoint name, null if the waypoint doesn't exist
+     */
+    public final synchronized String getName(final int id) {
+        return mNameIndex.getName(id);
+    }
+
+    /**
+     * Gets the latitude of a waypoint.
+     *
+     * @param id Waypoint id
+     * @return latitude in degrees
+     * @throws IllegalArgumentException if the waypoint doesn't exist
+     */
+    public final synchronized double getLatitude(final int id) {
+        return mIndex.getLatitude(id);
+    }
+
+    /**
+     * Gets the longitude of a waypoint.
+     *
+     * @param id Waypoint id
+     * @return longitude in degrees
+     * @throws IllegalArgumentException if the waypoint doesn't exist
+     */
+    public final synchronized double getLongitude(final int id) {
+        return mIndex.getLongitude(id);
+    }
+
+    /**
+     * Checks if a waypoint has an altitude.
+     *
+     * @param id Waypoint id
+     * @return true if the waypoint has an altitude
+     */
+    public final synchronized boolean hasAltitude(final int id) {
+        return contains(id) && (mFlags[id] & HAS_ALTITUDE) != 0;
+    }
+
+    /**
+     * Gets the altitude of a waypoint.
+     *
+     * @param id Waypoint id
+     * @return altitude in meters, 0 if the waypoint has no altitude
+     */
+    public final synchronized double getAltitude(final int id) {
+        return hasAltitude(id) ? mAltitudes[id] : 0;
+    }
+
+    /**
+     * Creates an AriadneLocation instance of a waypoint,
+     * with the location details it was added with.
+     *
+     * @param id Waypoint id
+     * @return waypoint location, null if the waypoint doesn't exist
+     */
+    public final synchronized AriadneLocation getLocation(final int id) {
+        if (!contains(id)) {
+            return null;
+        }
+
+        AriadneLocation location = new AriadneLocation(mProviders[id]);
+        location.setName(mNameIndex.getName(id));
+        location.setLatitude(mIndex.getLatitude(id));
+        location.setLongitude(mIndex.getLongitude(id));
+        location.setTime(mTimes[id]);
+        int flags = mFlags[id];
+        if ((flags & HAS_ALTITUDE) != 0) {
+            location.setAltitude(mAltitudes[id]);
+        }
+        if ((flags & HAS_ACCURACY) != 0) {
+            location.setAccuracy(mAccuracies[id]);
+        }
+        if ((flags & HAS_SPEED) != 0) {
+            location.setSpeed(mSpeeds[id]);
+        }
+        if ((flags & HAS_BEARING) != 0) {
+            location.setBearing(mBearings[id]);
+        }
+
+        return location;
+    }
+
+    /**
+     * Finds the waypoints nearest to a location.
+     *
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @param count Maximum number of waypoints
+     * @return waypoint ids, sorted from nearest to furthest
+     */
+    public final synchronized int[] findNearest(final double latitude,
+                                                final double longitude,
+                                                final int count) {
+        return mIndex.findNearest(latitude, longitude, count);
+    }
+
+    /**
+     * Finds the waypoints whose name starts with a prefix,
+     * nearest to a location.
+     *
+     * @param prefix Name prefix, case and accents are ignored
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @param count Maximum number of waypoints
+     * @return waypoint ids, sorted from nearest to furthest
+     */
+    public final synchronized int[] search(final String prefix,
+                                           final double latitude,
+                                           final double longitude,
+                                           final int count) {
+        return mNameIndex.search(prefix, latitude, longitude, count);
+    }
+
+    /**
+     * Spatial index of the waypoints,
+     * it should only be used on the thread that modifies the store.
+     *
+     * @return spatial index
+     */
+    public final WaypointIndex getIndex() {
+        return mIndex;
+    }
+
+    /**
+     * Error that stopped writing to the files.
+     * Mutations after the error are only applied in memory.
+     *
+     * @return first write error, null if all writes succeeded
+     */
+    public final IOException getWriteError() {
+        return mWriteError;
+    }
+
+    /**
+     * Sequence number of the last mutation.
+     *
+     * @return sequence number
+     */
+    public final synchronized long getSequence() {
+        return mSequence;
+    }
+
+    /**
+     * Number of compactions since the store was created.
+     *
+     * @return compaction count
+     */
+    public final long getCompactionCount() {
+        return mCompactionCount;
+    }
+
+    /**
+     * Adds a waypoint.
+     *
+     * @param name Waypoint name
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @param details Location with the waypoint details, can be null
+     * @return id of the new waypoint
+     */
+    private int add(final String name, final double latitude,
+                    final double longitude, final Location details) {
+        checkName(name);
+        if (!(Math.abs(latitude) <= FormatUtils.CIRCLE_1Q)
+                || !(Math.abs(longitude) <= FormatUtils.CIRCLE_HALF)) {
+            throw new IllegalArgumentException(
+                    "latitude or longitude is out of range");
+        }
+        checkOpen();
+
+        // store the fixed point value, so the waypoint is identical
+        // after it is restored from the log
+        int fixedLatitude = GreatCircle.toFixedPoint(latitude);
+        int fixedLongitude = GreatCircle.toFixedPoint(longitude);
+
+        // the details of the new id are not used until it is added
+        int id = mNextId;
+        ensureCapacity(id + 1);
+        setDetails(id, details);
+        byte[] record = encodeRecord(OP_ADD_DETAILS, id, fixedLatitude,
+                fixedLongitude, name);
+        applyAdd(id, fixedLatitude, fixedLongitude, name);
+        appendRecord(record);
+
+        return id;
+    }
+
+    /**
+     * Adds a waypoint to the in-memory state.
+     * The location details should be set before.
+     *
+     * @param id Waypoint id
+     * @param latitude Latitude in fixed point units
+     * @param longitude Longitude in fixed point units
+     * @param name Waypoint name
+     */
+    private void applyAdd(final int id, final int latitude,
+                          final int longitude, final String name) {
+        mIndex.add(id, GreatCircle.fromFixedPoint(latitude),
+                GreatCircle.fromFixedPoint(longitude));
+        mNameIndex.put(id, name);
+
+        mNextId = Math.max(mNextId, id + 1);
+    }
+
+    /**
+     * Sets the location details of a waypoint.
+     *
+     * @param id Waypoint id
+     * @param details Location with the details, null to clear them
+     */
+    private void setDetails(final int id, final Location details) {
+        if (details == null) {
+            mFlags[id] = 0;
+            mAltitudes[id] = 0;
+            mAccuracies[id] = 0;
+            mSpeeds[id] = 0;
+            mBearings[id] = 0;
+            mTimes[id] = 0;
+            mProviders[id] = "";
+            return;
+        }
+
+        int flags = 0;
+        if (details.hasAltitude()) {
+            flags |= HAS_ALTITUDE;
+        }
+        if (details.hasAccuracy()) {
+            flags |= HAS_ACCURACY;
+        }
+        if (details.hasSpeed()) {
+            flags |= HAS_SPEED;
+        }
+        if (details.hasBearing()) {
+            flags |= HAS_BEARING;
+        }
+        mFlags[id] = (byte) flags;
+        mAltitudes[id] = details.getAltitude();
+        mAccuracies[id] = details.getAccuracy();
+        mSpeeds[id] = details.getSpeed();
+        mBearings[id] = details.getBearing();
+        mTimes[id] = details.getTime();
+
+        String provider = details.getProvider();
+        if (provider == null || utfLength(provider) > MAX_PROVIDER_LENGTH) {
+            provider = "";
+        }
+        mProviders[id] = provider;
+    }
+
+    /**
+     * Writes the location details of a waypoint.
+     *
+     * @param out Output stream
+     * @param id Waypoint id
+     * @throws IOException if writing fails
+     */
+    private void writeDetails(final DataOutputStream out, final int id)
+            throws IOException {
+        out.writeByte(mFlags[id]);
+        out.writeDouble(mAltitudes[id]);
+        out.writeFloat(mAccuracies[id]);
+        out.writeFloat(mSpeeds[id]);
+        out.writeFloat(mBearings[id]);
+        out.writeLong(mTimes[id]);
+        out.writeUTF(mProviders[id]);
+    }
+
+    /**
+     * Reads the location details of a waypoint.
+     *
+     * @param in Input stream
+     * @param id Waypoint id
+     * @throws IOException if the details can't be decoded
+     */
+    private void readDetails(final DataInputStream in, final int id)
+            throws IOException {
+        ensureCapacity(checkId(id) + 1);
+        mFlags[id] = in.readByte();
+        mAltitudes[id] = in.readDouble();
+        mAccuracies[id] = in.readFloat();
+        mSpeeds[id] = in.readFloat();
+        mBearings[id] = in.readFloat();
+        mTimes[id] = in.readLong();
+        mProviders[id] = in.readUTF();
+    }
+
+    /**
+     * Reads the altitude of a waypoint, in the format without
+     * the other location details.
+     *
+     * @param in Input stream
+     * @param id Waypoint id
+     * @throws IOException if the altitude can't be decoded
+     */
+    private void readAltitude(final DataInputStream in, final int id)
+            throws IOException {
+        ensureCapacity(checkId(id) + 1);
+        setDetails(id, null);
+        if (in.readBoolean()) {
+            mFlags[id] = HAS_ALTITUDE;
+        }
+        mAltitudes[id] = in.readDouble();
+    }
+
+    /**
+     * Renames a waypoint in the in-memory state.
+     *
+     * @param id Waypoint id
+     * @param name New name
+     */
+    private void applyRename(final int id, final String name) {
+        if (mIndex.contains(id)) {
+            mNameIndex.put(id, name);
+        }
+    }
+
+    /**
+     * Deletes a waypoint from the in-memory state.
+     *
+     * @param id Waypoint id
+     */
+    private void applyDelete(final int id) {
+        mIndex.remove(id);
+        mNameIndex.remove(id);
+        if (mActiveId == id) {
+            mActiveId = NO_WAYPOINT;
+        }
+    }
+
+    /**
+     * Encodes the log record of the next mutation.
+     * Encoding is done before the mutation is applied,
+     * so the in-memory state is unchanged if it fails.
+     * Location details of an added waypoint are encoded from the details
+     * set for its id.
+     *
+     * @param op Operation
+     * @param id Waypoint id
+     * @param latitude Latitude in fixed point units
+     * @param longitude Longitude in fixed point units
+     * @param name Waypoint name
+     * @return framed record
+     */
+    private byte[] encodeRecord(final byte op, final int id,
+                                final int latitude, final int longitude,
+                                final String name) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream body = new DataOutputStream(bytes);
+            body.writeLong(mSequence + 1);
+            body.writeByte(op);
+            body.writeInt(id);
+            if (op == OP_ADD_DETAILS) {
+                body.writeInt(latitude);
+                body.writeInt(longitude);
+                writeDetails(body, id);
+            }
+            if (op == OP_ADD_DETAILS || op == OP_RENAME) {
+                body.writeUTF(name);
+            }
+            body.flush();
+            return frameRecord(bytes.toByteArray());
+        } catch (IOException e) {
+            // writing to a byte array doesn't fail, the name length
+            // is checked by checkName(), the provider length by setDetails()
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Queues the record of an applied mutation
+     * to be appended to the log.
+     *
+     * @param record Framed record, encoded by encodeRecord()
+     */
+    private void appendRecord(final byte[] record) {
+        mSequence++;
+
+        mWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                writeRecord(record);
+            }
+        });
+    }
+
+    /**
+     * Adds length and checksum to a record body.
+     *
+     * @param body Record body
+     * @return framed record
+     * @throws IOException if encoding fails
+     */
+    private static byte[] frameRecord(final byte[] body) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+
+        ByteArrayOutputStream bytes
+                = new ByteArrayOutputStream(body.length + 8);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(body.length);
+        out.write(body);
+        out.writeInt((int) crc.getValue());
+        out.flush();
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Appends a record to the log and syncs it to disk,
+     * starts compaction when the log is too large.
+     * Runs on the writer thread.
+     *
+     * @param record Framed record
+     */
+    private void writeRecord(final byte[] record) {
+        if (mWriteError != null) {
+            return;
+        }
+
+        try {
+            mLogStream.write(record);
+            mLogStream.getFD().sync();
+            mLogSize += record.length;
+        } catch (IOException e) {
+            mWriteError = e;
+            return;
+        }
+
+        if (mLogSize > mCompactionThreshold) {
+            writeSnapshot();
+        }
+    }
+
+    /**
+     * Writes the in-memory state to a new snapshot file
+     * and empties the log if the directory can be synced,
+     * else a new log is started.
+     * Runs on the writer thread.
+     *
+     * All records in the log were queued before the state is copied,
+     * so they are all included in the snapshot.
+     * Records queued later, but already applied to the copied state,
+     * have a sequence number that is not newer than the snapshot,
+     * they are skipped when the log is replayed.
+     */
+    private void writeSnapshot() {
+        if (mWriteError != null) {
+            return;
+        }
+
+        try {
+            byte[] snapshot;
+            synchronized (this) {
+                snapshot = encodeSnapshot();
+            }
+
+            File tmpFile = new File(mSnapshotFile.getPath() + TMP_SUFFIX);
+            FileOutputStream out = new FileOutputStream(tmpFile);
+            try {
+                out.write(snapshot);
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            if (!tmpFile.renameTo(mSnapshotFile)) {
+                throw new IOException("Can't rename " + tmpFile);
+            }
+            mCompactionCount++;
+
+            // the log can only be emptied after the rename is stored,
+            // else a crash could restore the old snapshot without the log
+            mLogStream.close();
+            if (!syncDirectory(mSnapshotFile.getParentFile())
+                    && !mLogFile.renameTo(mOldLogFile)) {
+                throw new IOException("Can't rename " + mLogFile);
+            }
+            mLogStream = new FileOutputStream(mLogFile, false);
+            mLogStream.getFD().sync();
+            mLogSize = 0;
+        } catch (IOException e) {
+            mWriteError = e;
+        }
+    }
+
+    /**
+     * Encodes the in-memory state.
+     *
+     * @return snapshot file contents
+     * @throws IOException if encoding fails
+     */
+    private byte[] encodeSnapshot() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(SNAPSHOT_VERSION);
+        out.writeLong(mSequence);
+        out.writeInt(mNextId);
+        out.writeInt(mActiveId);
+        out.writeInt(mIndex.getSize());
+        for (int id = 0; id < mNextId; id++) {
+            if (mIndex.contains(id)) {
+                out.writeInt(id);
+                out.writeInt(GreatCircle.toFixedPoint(mIndex.getLatitude(id)));
+                out.writeInt(
+                        GreatCircle.toFixedPoint(mIndex.getLongitude(id)));
+                writeDetails(out, id);
+                out.writeUTF(mNameIndex.getName(id));
+            }
+        }
+        out.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+        out.flush();
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Loads the snapshot file.
+     *
+     * @throws CorruptException if the snapshot is corrupt
+     * @throws IOException if the snapshot can't be read
+     */
+    private void readSnapshot() throws IOException {
+        byte[] snapshot = readFile(mSnapshotFile);
+        try {
+            decodeSnapshot(snapshot);
+        } catch (IOException e) {
+            // decoding a byte array only fails if the contents are invalid
+            throw new CorruptException(
+                    "Snapshot file is corrupt : " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decodes the snapshot file contents into the in-memory state.
+     *
+     * @param snapshot Snapshot file contents
+     * @throws IOException if the contents are invalid
+     */
+    private void decodeSnapshot(final byte[] snapshot) throws IOException {
+        if (snapshot.length < 4) {
+            throw new IOException("file is too short");
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(snapshot, 0, snapshot.length - 4);
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(snapshot));
+        in.skipBytes(snapshot.length - 4);
+        if (in.readInt() != (int) crc.getValue()) {
+            throw new IOException("checksum mismatch");
+        }
+
+        in = new DataInputStream(new ByteArrayInputStream(
+                snapshot, 0, snapshot.length - 4));
+        if (in.readInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("unknown file format");
+        }
+        int version = in.readInt();
+        if (version != SNAPSHOT_VERSION && version != SNAPSHOT_VERSION_1) {
+            throw new IOException("unknown file format version " + version);
+        }
+        mSequence = in.readLong();
+        mNextId = in.readInt();
+        int activeId = in.readInt();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int id = in.readInt();
+            int latitude = in.readInt();
+            int longitude = in.readInt();
+            if (version == SNAPSHOT_VERSION_1) {
+                readAltitude(in, id);
+            } else {
+                readDetails(in, id);
+            }
+            applyAdd(id, latitude, longitude, in.readUTF());
+        }
+        mActiveId = activeId;
+    }
+
+    /**
+     * Replays the log records that are newer than the snapshot,
+     * drops an incomplete or corrupt tail,
+     * and the records that are included in the snapshot.
+     *
+     * @param logFile Log file to replay
+     * @return log size in bytes after dropping the records
+     * @throws CorruptException if a valid record can't be applied
+     * @throws IOException if the log can't be read
+     */
+    private long replayLog(final File logFile) throws IOException {
+        long validSize = 0;
+        long staleSize = 0;
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(logFile)));
+
+        try {
+            while (true) {
+                int length = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                    break;
+                }
+                byte[] body = new byte[length];
+                in.readFully(body);
+                int checksum = in.readInt();
+
+                CRC32 crc = new CRC32();
+                crc.update(body, 0, length);
+                if (checksum != (int) crc.getValue()) {
+                    break;
+                }
+
+                boolean applied;
+                try {
+                    applied = applyRecord(body);
+                } catch (IOException e) {
+                    // the checksum is valid, so the record was written
+                    // like this : it can't be skipped safely
+                    throw new CorruptException(
+                            "Log file is corrupt : " + e.getMessage(), e);
+                }
+                validSize += length + 8;
+                if (!applied && staleSize == validSize - length - 8) {
+                    staleSize = validSize;
+                }
+            }
+        } catch (EOFException e) {
+            // incomplete record at the end of the log
+        } finally {
+            in.close();
+        }
+
+        if (validSize < logFile.length()) {
+            RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+            try {
+                file.setLength(validSize);
+                file.getFD().sync();
+            } finally {
+                file.close();
+            }
+        }
+
+        if (staleSize > 0) {
+            dropRecords(logFile, staleSize, validSize);
+        }
+
+        return validSize - staleSize;
+    }
+
+    /**
+     * Removes the records at the start of the log,
+     * that are included in the snapshot.
+     *
+     * The snapshot was stored in a previous session, so it is safe
+     * to remove the records. If the new log is lost in a crash,
+     * the old log is restored, its extra records are skipped on replay.
+     *
+     * @param logFile Log file
+     * @param start Log size in bytes of the records to remove
+     * @param end Log size in bytes of the valid records
+     * @throws IOException if the log can't be written
+     */
+    private static void dropRecords(final File logFile, final long start,
+                                    final long end) throws IOException {
+        byte[] log = readFile(logFile);
+
+        File tmpFile = new File(logFile.getPath() + TMP_SUFFIX);
+        FileOutputStream out = new FileOutputStream(tmpFile);
+        try {
+            out.write(log, (int) start, (int) (end - start));
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!tmpFile.renameTo(logFile)) {
+            throw new IOException("Can't rename " + tmpFile);
+        }
+        syncDirectory(logFile.getParentFile());
+    }
+
+    /**
+     * Applies a log record to the in-memory state,
+     * if it is newer than the current state.
+     *
+     * @param body Record body
+     * @return false if the record is not newer than the current state
+     * @throws IOException if the record can't be decoded
+     */
+    private boolean applyRecord(final byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(body));
+
+        long sequence = in.readLong();
+        if (sequence <= mSequence) {
+            return false;
+        }
+        mSequence = sequence;
+
+        byte op = in.readByte();
+        int id = in.readInt();
+        switch (op) {
+            case OP_ADD:
+            case OP_ADD_DETAILS:
+                int latitude = in.readInt();
+                int longitude = in.readInt();
+                if (op == OP_ADD) {
+                    readAltitude(in, id);
+                } else {
+                    readDetails(in, id);
+                }
+                applyAdd(id, latitude, longitude, in.readUTF());
+                break;
+            case OP_RENAME:
+                applyRename(id, in.readUTF());
+                break;
+            case OP_DELETE:
+                applyDelete(id);
+                break;
+            case OP_SET_ACTIVE:
+                if (id == NO_WAYPOINT || mIndex.contains(id)) {
+                    mActiveId = id;
+                }
+                break;
+            default:
+                throw new IOException("Unknown log record " + op);
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads a complete file.
+     *
+     * @param file File to read
+     * @return file contents
+     * @throws IOException if the file can't be read
+     */
+    private static byte[] readFile(final File file) throws IOException {
+        byte[] contents = new byte[(int) file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(contents);
+        } finally {
+            in.close();
+        }
+        return contents;
+    }
+
+    /**
+     * Syncs a directory to disk, so renamed files are stored.
+     * Directories can only be synced from Android 5.0.
+     *
+     * @param directory Directory to sync
+     * @return false if the directory can't be synced
+     */
+    private static boolean syncDirectory(final File directory) {
+        if (directory == null) {
+            return false;
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            return OsSync.syncDirectory(directory);
+        }
+
+        return false;
+    }
+
+    /**
+     * Renames a file, adding the corrupt suffix.
+     *
+     * @param file File to move aside
+     * @throws IOException if the file can't be renamed
+     */
+    private static void moveAside(final File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+
+        File corruptFile = new File(file.getPath() + CORRUPT_SUFFIX);
+        if (corruptFile.exists() && !corruptFile.delete()) {
+            throw new IOException("Can't delete " + corruptFile);
+        }
+        if (!file.renameTo(corruptFile)) {
+            throw new IOException("Can't rename " + file);
+        }
+    }
+
+    /**
+     * Closes the log output stream.
+     * Runs on the writer thread.
+     */
+    private void closeLog() {
+        try {
+            mLogStream.close();
+        } catch (IOException e) {
+            if (mWriteError == null) {
+                mWriteError = e;
+            }
+        }
+    }
+
+    /**
+     * Queues a task on the writer thread.
+     *
+     * @param task Task to run
+     * @return future of the task
+     * @throws IllegalStateException if the store is not opened
+     */
+    private synchronized Future<?> submit(final Runnable task) {
+        checkOpen();
+        return mWriter.submit(task);
+    }
+
+    /**
+     * Waits until a task on the writer thread is done.
+     *
+     * @param future Future of the task
+     * @throws IOException if waiting is interrupted
+     */
+    private static void waitFor(final Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing waypoints");
+        } catch (ExecutionException e) {
+            throw new IOException("Writing waypoints failed", e.getCause());
+        }
+    }
+
+    /**
+     * Throws the error that occurred on the writer thread.
+     *
+     * @throws IOException if writing to the files failed
+     */
+    private void checkWriteError() throws IOException {
+        IOException error = mWriteError;
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Checks if the store is opened.
+     *
+     * @throws IllegalStateException if the store is not opened
+     */
+    private void checkOpen() {
+        if (!mOpen) {
+            throw new IllegalStateException("Waypoint store is not opened");
+        }
+    }
+
+    /**
+     * Checks a waypoint name.
+     *
+     * @param name Waypoint name
+     * @throws IllegalArgumentException if name is null or too long
+     */
+    private static void checkName(final String name) {
+        if (name == null) {
+            throw new IllegalArgumentException(
+                    "Parameter name should not be null");
+        }
+
+        if (utfLength(name) > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException(
+                    "name should not be longer than " + MAX_NAME_LENGTH
+                            + " bytes");
+        }
+    }
+
+    /**
+     * Checks a decoded waypoint id.
+     *
+     * @param id Waypoint id
+     * @return waypoint id
+     * @throws IOException if the id is negative
+     */
+    private static int checkId(final int id) throws IOException {
+        if (id < 0) {
+            throw new IOException("invalid waypoint id " + id);
+        }
+        return id;
+    }
+
+    /**
+     * Length of a string in modified UTF-8,
+     * as written by DataOutput.writeUTF().
+     *
+     * @param value String
+     * @return length in bytes
+     */
+    private static long utfLength(final String value) {
+        long length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= '\u0001' && c <= '\u007f') {
+                length += 1;
+            } else if (c <= '\u07ff') {
+                length += 2;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Grows the location detail arrays.
+     *
+     * @param minCapacity Minimum required capacity
+     */
+    private void ensureCapacity(final int minCapacity) {
+        if (minCapacity <= mFlags.length) {
+            return;
+        }
+
+        int capacity = Math.max(minCapacity, mFlags.length * 2);
+        mFlags = Arrays.copyOf(mFlags, capacity);
+        mAltitudes = Arrays.copyOf(mAltitudes, capacity);
+        mAccuracies = Arrays.copyOf(mAccuracies, capacity);
+        mSpeeds = Arrays.copyOf(mSpeeds, capacity);
+        mBearings = Arrays.copyOf(mBearings, capacity);
+        mTimes = Arrays.copyOf(mTimes, capacity);
+        mProviders = Arrays.copyOf(mProviders, capacity);
+    }
+
+    /**
+     * Signals that the snapshot or log file contents are invalid,
+     * opening the store again will fail as well.
+     */
+    public static class CorruptException extends IOException {
+        /**
+         * Serial version.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructor.
+         *
+         * @param message Error message
+         * @param cause Decoding error
+         */
+        public CorruptException(final String message,
+                                final Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * Syncs directories using system calls.
+     * A separate class, so it is only loaded when the API is available.
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static final class OsSync {
+        /**
+         * Hidden constructor, to prevent instantiating.
+         */
+        private OsSync() {
+        }
+
+        /**
+         * Syncs a directory to disk.
+         *
+         * @param directory Directory to sync
+         * @return false if the directory can't be synced
+         */
+        static boolean syncDirectory(final File directory) {
+            try {
+                FileDescriptor fd = Os.open(directory.getPath(),
+                        OsConstants.O_RDONLY, 0);
+                try {
+                    Os.fsync(fd);
+                } finally {
+                    Os.close(fd);
+                }
+                return true;
+            } catch (ErrnoException e) {
+                return false;
+            }
+        }
+    }
+}
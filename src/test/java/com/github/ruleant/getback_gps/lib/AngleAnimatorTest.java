@@ -0,0 +1,200 @@
+/**
+ * Unit tests for AngleAnimator class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for AngleAnimator class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class AngleAnimatorTest {
+    /**
+     * Instance of the angle animator class.
+     */
+    private AngleAnimator animator;
+
+    /**
+     * Frame time of 60 Hz display, in nanoseconds.
+     */
+    private static final long FRAME = 16666667;
+
+    /**
+     * Maximum number of frames in a test.
+     */
+    private static final int MAX_FRAMES = 600;
+
+    /**
+     * Accuracy.
+     */
+    private static final double ACCURACY = 0.0001;
+
+    /**
+     * Sets up the test fixture.
+     * (Called before every test case method.)
+     */
+    @BeforeEach
+    public final void setUp() {
+        animator = new AngleAnimator();
+    }
+
+    /**
+     * Animates until the angle settles.
+     *
+     * @param step Time step in nanoseconds
+     * @return number of frames needed to settle
+     */
+    private int settle(final long step) {
+        int frames = 0;
+        while (animator.update(step)) {
+            frames++;
+            Assertions.assertTrue(frames < MAX_FRAMES, "doesn't settle");
+        }
+
+        return frames + 1;
+    }
+
+    /**
+     * Tests parameters and default values.
+     */
+    @Test
+    public final void testDefault() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new AngleAnimator(0);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new AngleAnimator(Double.NaN);
+        });
+
+        Assertions.assertTrue(animator.isSettled());
+        Assertions.assertEquals(0, animator.getValue(), ACCURACY);
+        // nothing to animate
+        Assertions.assertFalse(animator.update(FRAME));
+
+        // same target doesn't start an animation
+        animator.setTarget(360);
+        Assertions.assertTrue(animator.isSettled());
+    }
+
+    /**
+     * Tests the angle moves toward the target, without overshoot,
+     * and settles on the target.
+     */
+    @Test
+    public final void testSettle() {
+        animator.setTarget(90);
+        Assertions.assertFalse(animator.isSettled());
+
+        double previous = animator.getValue();
+        int frames = 0;
+        while (animator.update(FRAME)) {
+            frames++;
+            double value = animator.getValue();
+            Assertions.assertTrue(value >= previous, "overshoot or reverse");
+            Assertions.assertTrue(value < 90);
+            previous = value;
+        }
+
+        Assertions.assertTrue(animator.isSettled());
+        Assertions.assertEquals(90, animator.getValue(), 0);
+        Assertions.assertEquals(0, animator.getVelocity(), 0);
+        // settles within a second with the default frequency
+        Assertions.assertTrue(frames < 60, "frames " + frames);
+    }
+
+    /**
+     * Tests the shortest arc is followed across north.
+     */
+    @Test
+    public final void testShortestArc() {
+        animator.jumpTo(350);
+        animator.setTarget(10);
+
+        animator.update(FRAME);
+        double value = animator.getValue();
+        Assertions.assertTrue(value > 350 || value < 10, "value " + value);
+
+        settle(FRAME);
+        Assertions.assertEquals(10, animator.getValue(), 0);
+
+        animator.setTarget(-30);
+        animator.update(FRAME);
+        Assertions.assertTrue(animator.getValue() < 10);
+        settle(FRAME);
+        Assertions.assertEquals(330, animator.getValue(), 0);
+    }
+
+    /**
+     * Tests the result doesn't depend much on the frame rate,
+     * and long steps are stable.
+     */
+    @Test
+    public final void testFrameRate() {
+        animator.setTarget(120);
+        animator.update(FRAME * 2);
+        animator.update(FRAME * 2);
+        double at30Hz = animator.getValue();
+
+        animator.jumpTo(0);
+        animator.setTarget(120);
+        for (int i = 0; i < 4; i++) {
+            animator.update(FRAME);
+        }
+        Assertions.assertEquals(animator.getValue(), at30Hz, 0.001);
+
+        // a very long step (paused animation) doesn't overshoot
+        animator.jumpTo(0);
+        animator.setTarget(120);
+        animator.update(Long.MAX_VALUE);
+        Assertions.assertTrue(animator.getValue() <= 120);
+        Assertions.assertTrue(settle(Long.MAX_VALUE) < 20);
+
+        // negative steps don't move the angle
+        animator.setTarget(0);
+        animator.update(-FRAME);
+        Assertions.assertEquals(120, animator.getValue(), ACCURACY);
+    }
+
+    /**
+     * Tests changing the target while animating keeps the velocity.
+     */
+    @Test
+    public final void testRetarget() {
+        animator.setTarget(90);
+        animator.update(FRAME);
+        animator.update(FRAME);
+        double velocity = animator.getVelocity();
+        Assertions.assertTrue(velocity > 0);
+
+        animator.setTarget(100);
+        Assertions.assertEquals(velocity, animator.getVelocity(), 0);
+        settle(FRAME);
+        Assertions.assertEquals(100, animator.getValue(), 0);
+
+        animator.jumpTo(45);
+        Assertions.assertTrue(animator.isSettled());
+        Assertions.assertEquals(45, animator.getTarget(), 0);
+    }
+}
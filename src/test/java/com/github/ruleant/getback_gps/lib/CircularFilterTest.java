@@ -0,0 +1,97 @@
+/**
+ * Unit tests for CircularFilter class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for CircularFilter class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class CircularFilterTest {
+    /**
+     * Accuracy.
+     */
+    private static final double ACCURACY = 0.001;
+
+    /**
+     * Tests parameters.
+     */
+    @Test
+    public final void testParameters() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new CircularFilter(null);
+        });
+    }
+
+    /**
+     * Tests filtering angles, crossing 0°/360°.
+     */
+    @Test
+    public final void testFilter() {
+        CircularFilter filter = new CircularFilter(new MovingAverageFilter(2));
+
+        Assertions.assertEquals(350, filter.filter(350, 0), ACCURACY);
+        // average of 350° and 10° is 0°, not 180°
+        Assertions.assertEquals(0, filter.filter(10, 1), ACCURACY);
+        Assertions.assertEquals(20, filter.filter(30, 2), ACCURACY);
+        // and back
+        Assertions.assertEquals(0, filter.filter(330, 3), ACCURACY);
+        Assertions.assertEquals(320, filter.filter(310, 4), ACCURACY);
+
+        // angles out of range are normalized
+        filter.reset();
+        Assertions.assertEquals(10, filter.filter(370, 5), ACCURACY);
+        Assertions.assertEquals(5, filter.filter(-360, 6), ACCURACY);
+    }
+
+    /**
+     * Tests filtering several full rotations.
+     */
+    @Test
+    public final void testRotations() {
+        CircularFilter filter = new CircularFilter(new ExponentialFilter(1));
+
+        float angle = 0;
+        for (int i = 0; i < 100; i++) {
+            angle = (float) FormatUtils.normalizeAngle(angle + 100);
+            Assertions.assertEquals(angle, filter.filter(angle, i), 0.01);
+        }
+    }
+
+    /**
+     * Tests creating a new instance.
+     */
+    @Test
+    public final void testNewInstance() {
+        CircularFilter filter = new CircularFilter(new MovingAverageFilter(2));
+        filter.filter(350, 0);
+
+        SignalFilter instance = filter.newInstance();
+        Assertions.assertNotSame(filter, instance);
+        // no state
+        Assertions.assertEquals(10, instance.filter(10, 1), ACCURACY);
+        Assertions.assertEquals(15, instance.filter(20, 2), ACCURACY);
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * Unit tests for CircularStatistics class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+/**
+ * Unit tests for CircularStatistics class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class CircularStatisticsTest {
+    /**
+     * Instance of the statistics class.
+     */
+    private CircularStatistics statistics;
+
+    /**
+     * Window size.
+     */
+    private static final int WINDOW = 4;
+
+    /**
+     * Accuracy.
+     */
+    private static final double ACCURACY = 1e-9;
+
+    /**
+     * Sets up the test fixture.
+     * (Called before every test case method.)
+     */
+    @BeforeEach
+    public final void setUp() {
+        statistics = new CircularStatistics(WINDOW);
+    }
+
+    /**
+     * Tests parameters and an empty window.
+     */
+    @Test
+    public final void testEmpty() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new CircularStatistics(0);
+        });
+
+        Assertions.assertEquals(0, statistics.getCount());
+        Assertions.assertFalse(statistics.isFull());
+        Assertions.assertTrue(Double.isNaN(statistics.getMean()));
+        Assertions.assertEquals(0, statistics.getResultantLength(), 0.0);
+        Assertions.assertEquals(1, statistics.getVariance(), 0.0);
+    }
+
+    /**
+     * Tests the mean over north, where a linear mean is wrong.
+     */
+    @Test
+    public final void testMeanOverNorth() {
+        statistics.add(350);
+        statistics.add(10);
+        Assertions.assertEquals(0, FormatUtils.normalizeAngle(
+                statistics.getMean() + FormatUtils.CIRCLE_HALF)
+                - FormatUtils.CIRCLE_HALF, ACCURACY);
+        Assertions.assertEquals(Math.cos(Math.toRadians(10)),
+                statistics.getResultantLength(), ACCURACY);
+
+        statistics.add(340);
+        statistics.add(20);
+        Assertions.assertTrue(statistics.isFull());
+        Assertions.assertEquals(0, FormatUtils.normalizeAngle(
+                statistics.getMean() + FormatUtils.CIRCLE_HALF)
+                - FormatUtils.CIRCLE_HALF, ACCURACY);
+    }
+
+    /**
+     * Tests variance of equal, opposite and spread values.
+     */
+    @Test
+    public final void testVariance() {
+        for (int i = 0; i < WINDOW; i++) {
+            statistics.add(123);
+        }
+        Assertions.assertEquals(123, statistics.getMean(), ACCURACY);
+        Assertions.assertEquals(0, statistics.getVariance(), ACCURACY);
+
+        statistics.add(0);
+        statistics.add(90);
+        statistics.add(180);
+        statistics.add(270);
+        Assertions.assertEquals(1, statistics.getVariance(), ACCURACY);
+        Assertions.assertTrue(Double.isNaN(statistics.getMean()));
+
+        statistics.reset();
+        statistics.add(0);
+        statistics.add(180);
+        Assertions.assertEquals(2, statistics.getCount());
+        Assertions.assertEquals(1, statistics.getVariance(), ACCURACY);
+    }
+
+    /**
+     * Tests the oldest values leave the window.
+     */
+    @Test
+    public final void testWindow() {
+        statistics.add(180);
+        for (int i = 0; i < WINDOW; i++) {
+            statistics.add(90);
+        }
+        Assertions.assertEquals(WINDOW, statistics.getCount());
+        Assertions.assertEquals(90, statistics.getMean(), ACCURACY);
+        Assertions.assertEquals(0, statistics.getVariance(), ACCURACY);
+    }
+
+    /**
+     * Tests the running sums match a full recalculation
+     * after many values.
+     */
+    @Test
+    public final void testRunningSums() {
+        Random random = new Random(1);
+        double[] window = new double[WINDOW];
+        for (int i = 0; i < 100003; i++) {
+            window[i % WINDOW] = random.nextDouble() * 60;
+            statistics.add(window[i % WINDOW]);
+        }
+
+        double sumSin = 0;
+        double sumCos = 0;
+        for (double angle : window) {
+            sumSin += Math.sin(Math.toRadians(angle));
+            sumCos += Math.cos(Math.toRadians(angle));
+        }
+        Assertions.assertEquals(
+                Math.toDegrees(Math.atan2(sumSin, sumCos)),
+                statistics.getMean(), ACCURACY);
+        Assertions.assertEquals(
+                Math.sqrt(sumSin * sumSin + sumCos * sumCos) / WINDOW,
+                statistics.getResultantLength(), ACCURACY);
+    }
+}
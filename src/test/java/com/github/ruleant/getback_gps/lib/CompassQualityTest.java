@@ -0,0 +1,171 @@
+/**
+ * Unit tests for CompassQuality class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import android.hardware.SensorManager;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+/**
+ * Unit tests for CompassQuality class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class CompassQualityTest {
+    /**
+     * Instance of the compass quality class.
+     */
+    private CompassQuality quality;
+
+    /**
+     * Random generator for sensor noise, with a fixed seed.
+     */
+    private Random random;
+
+    /**
+     * Expected field strength in µT.
+     */
+    private static final double STRENGTH = 48;
+
+    /**
+     * Number of values added in a test.
+     */
+    private static final int VALUES = 100;
+
+    /**
+     * Accuracy.
+     */
+    private static final double ACCURACY = 0.001;
+
+    /**
+     * Sets up the test fixture.
+     * (Called before every test case method.)
+     */
+    @BeforeEach
+    public final void setUp() {
+        quality = new CompassQuality();
+        quality.setExpectedFieldStrength(STRENGTH);
+        random = new Random(1);
+    }
+
+    /**
+     * Adds magnetic field values with a magnitude and noise.
+     *
+     * @param magnitude Magnitude in µT
+     * @param noise Standard deviation of the noise per axis in µT
+     */
+    private void addValues(final double magnitude, final double noise) {
+        float[] values = new float[3];
+        for (int i = 0; i < VALUES; i++) {
+            // field pointing north and down
+            values[0] = (float) (random.nextGaussian() * noise);
+            values[1] = (float) (magnitude * 0.6
+                    + random.nextGaussian() * noise);
+            values[2] = (float) (magnitude * -0.8
+                    + random.nextGaussian() * noise);
+            quality.addMagneticField(values);
+        }
+    }
+
+    /**
+     * Tests parameters and default values.
+     */
+    @Test
+    public final void testDefault() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            quality.setExpectedFieldStrength(0);
+        });
+
+        quality = new CompassQuality();
+        Assertions.assertEquals(CompassQuality.DEFAULT_FIELD_STRENGTH,
+                quality.getExpectedFieldStrength(), ACCURACY);
+        Assertions.assertEquals(1, quality.getConfidence(), ACCURACY);
+        Assertions.assertFalse(quality.isDisturbed());
+    }
+
+    /**
+     * Tests an undisturbed compass.
+     */
+    @Test
+    public final void testClean() {
+        addValues(STRENGTH, 0.3);
+
+        Assertions.assertEquals(STRENGTH, quality.getMagnitude(), 0.5);
+        Assertions.assertTrue(quality.getMagnitudeDeviation() < 0.5);
+        Assertions.assertEquals(1, quality.getConfidence(), ACCURACY);
+        Assertions.assertFalse(quality.isDisturbed());
+    }
+
+    /**
+     * Tests a field stronger than expected, eg. near a magnet.
+     */
+    @Test
+    public final void testMagnitude() {
+        addValues(STRENGTH * 1.25, 0.3);
+        Assertions.assertEquals(0.5, quality.getConfidence(), 0.05);
+
+        addValues(STRENGTH * 1.5, 0.3);
+        Assertions.assertEquals(0, quality.getConfidence(), ACCURACY);
+        Assertions.assertTrue(quality.isDisturbed());
+
+        // back to normal
+        addValues(STRENGTH, 0.3);
+        Assertions.assertFalse(quality.isDisturbed());
+    }
+
+    /**
+     * Tests a varying field, eg. moving past metal.
+     */
+    @Test
+    public final void testVariation() {
+        addValues(STRENGTH, 8);
+
+        Assertions.assertTrue(quality.getMagnitudeDeviation() > 5);
+        Assertions.assertTrue(quality.isDisturbed());
+    }
+
+    /**
+     * Tests the sensor accuracy status.
+     */
+    @Test
+    public final void testAccuracy() {
+        quality.setAccuracy(SensorManager.SENSOR_STATUS_ACCURACY_MEDIUM);
+        Assertions.assertEquals(0.8, quality.getConfidence(), ACCURACY);
+        quality.setAccuracy(SensorManager.SENSOR_STATUS_ACCURACY_LOW);
+        Assertions.assertEquals(0.5, quality.getConfidence(), ACCURACY);
+        Assertions.assertFalse(quality.isDisturbed());
+
+        // needs calibration
+        quality.setAccuracy(SensorManager.SENSOR_STATUS_UNRELIABLE);
+        Assertions.assertTrue(quality.isDisturbed());
+        // no contact (API 20)
+        quality.setAccuracy(-1);
+        Assertions.assertTrue(quality.isDisturbed());
+
+        quality.reset();
+        Assertions.assertEquals(1, quality.getConfidence(), ACCURACY);
+    }
+}
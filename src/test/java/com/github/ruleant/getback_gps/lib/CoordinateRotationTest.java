@@ -265,4 +265,54 @@ public class CoordinateRotationTest {
         Assertions.assertEquals(CENTER_X - UNIT_30, converted.getCartesianX());
         Assertions.assertEquals(CENTER_Y, converted.getCartesianY());
     }
+
+    /**
+     * Tests converting a set of coordinates,
+     * compared to converting them one by one.
+     */
+    @Test
+    public final void testConvertCoordinates() {
+        double[] angles = {0, ANGLE_90, 33.3, 271};
+        double[][] polar = {{0, 0}, {UNIT_30, 45}, {UNIT_40, 200},
+            {UNIT_30, -10}};
+
+        rotationCenter.setCartesianCoordinate(CENTER_X, CENTER_Y);
+
+        for (double angle : angles) {
+            converter.setRotationAngle(angle);
+            converter.setScaleRadius(SCALE_HALF);
+
+            // first pair is not converted (offset 1)
+            double[] coordinates = new double[(polar.length + 1) * 2];
+            coordinates[0] = -1;
+            for (int i = 0; i < polar.length; i++) {
+                coordinates[(i + 1) * 2 + Coordinate.X]
+                        = Math.cos(Math.toRadians(polar[i][1])) * polar[i][0];
+                coordinates[(i + 1) * 2 + Coordinate.Y]
+                        = Math.sin(Math.toRadians(polar[i][1])) * polar[i][0];
+            }
+
+            converter.convertCoordinates(coordinates, 1, polar.length);
+
+            Assertions.assertEquals(-1, coordinates[0], 0);
+            for (int i = 0; i < polar.length; i++) {
+                Coordinate expected = converter.getConvertedCoordinate(
+                        new Coordinate(polar[i][0], polar[i][1]));
+                Assertions.assertEquals(expected.getCartesianX(),
+                        coordinates[(i + 1) * 2 + Coordinate.X], 1);
+                Assertions.assertEquals(expected.getCartesianY(),
+                        coordinates[(i + 1) * 2 + Coordinate.Y], 1);
+            }
+        }
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            converter.convertCoordinates(null, 0, 0);
+        });
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> {
+            converter.convertCoordinates(new double[2], 0, 2);
+        });
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> {
+            converter.convertCoordinates(new double[2], -1, 1);
+        });
+    }
 }
@@ -0,0 +1,131 @@
+/**
+ * Unit tests for DeclinationGrid class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for DeclinationGrid class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class DeclinationGridTest {
+    /**
+     * Declination model, linear in latitude and longitude,
+     * so bilinear interpolation is exact.
+     */
+    private static final DeclinationModel LINEAR
+            = (latitude, longitude) -> latitude * 0.1 + longitude * 0.05;
+
+    /**
+     * Accuracy.
+     */
+    private static final double ACCURACY = 1e-4;
+
+    /**
+     * Tests parameters.
+     */
+    @Test
+    public final void testParameters() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new DeclinationGrid(null);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new DeclinationGrid(LINEAR, 0);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new DeclinationGrid(LINEAR, 7);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new DeclinationGrid(LINEAR, 360);
+        });
+    }
+
+    /**
+     * Tests interpolation and caching of the grid nodes.
+     */
+    @Test
+    public final void testInterpolation() {
+        DeclinationGrid grid = new DeclinationGrid(LINEAR);
+        Assertions.assertEquals(0, grid.getEvaluations());
+
+        Assertions.assertEquals(LINEAR.getDeclination(50.85, 4.35),
+                grid.getDeclination(50.85, 4.35), ACCURACY);
+        Assertions.assertEquals(4, grid.getEvaluations());
+
+        // same cell, no evaluations
+        Assertions.assertEquals(LINEAR.getDeclination(51.2, 3.1),
+                grid.getDeclination(51.2, 3.1), ACCURACY);
+        // grid node
+        Assertions.assertEquals(LINEAR.getDeclination(50, 0),
+                grid.getDeclination(50, 0), ACCURACY);
+        Assertions.assertEquals(4, grid.getEvaluations());
+
+        // neighbouring cell, shares 2 nodes
+        Assertions.assertEquals(LINEAR.getDeclination(52, 6),
+                grid.getDeclination(52, 6), ACCURACY);
+        Assertions.assertEquals(6, grid.getEvaluations());
+
+        // back to the first cell, nodes are cached
+        grid.getDeclination(50.85, 4.35);
+        Assertions.assertEquals(6, grid.getEvaluations());
+    }
+
+    /**
+     * Tests the poles and the date line.
+     */
+    @Test
+    public final void testEdges() {
+        DeclinationGrid grid = new DeclinationGrid(LINEAR, 10);
+
+        Assertions.assertEquals(LINEAR.getDeclination(90, 15),
+                grid.getDeclination(90, 15), ACCURACY);
+        Assertions.assertEquals(LINEAR.getDeclination(-90, 15),
+                grid.getDeclination(-95, 15), ACCURACY);
+        Assertions.assertEquals(LINEAR.getDeclination(0, -180),
+                grid.getDeclination(0, 180), ACCURACY);
+        Assertions.assertEquals(LINEAR.getDeclination(0, 175),
+                grid.getDeclination(0, -185), ACCURACY);
+    }
+
+    /**
+     * Tests interpolating between declinations around ±180°,
+     * near a magnetic pole.
+     */
+    @Test
+    public final void testWrap() {
+        DeclinationModel model = (latitude, longitude) -> {
+            if (longitude < 0) {
+                return 170;
+            }
+            return -170;
+        };
+        DeclinationGrid grid = new DeclinationGrid(model);
+
+        // halfway between 170° and -170° (190°)
+        Assertions.assertEquals(180,
+                Math.abs(grid.getDeclination(0, -2.5)), ACCURACY);
+        Assertions.assertEquals(175, grid.getDeclination(0, -3.75),
+                ACCURACY);
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Unit tests for ExponentialFilter class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for ExponentialFilter class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class ExponentialFilterTest {
+    /**
+     * Value for alpha parameter.
+     */
+    private static final float ALPHA_VALUE = 0.6f;
+
+    /**
+     * Accuracy.
+     */
+    private static final double ACCURACY = 0.0001;
+
+    /**
+     * Tests parameters.
+     */
+    @Test
+    public final void testParameters() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new ExponentialFilter(-1);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new ExponentialFilter(2);
+        });
+    }
+
+    /**
+     * Tests filtering values.
+     */
+    @Test
+    public final void testFilter() {
+        ExponentialFilter filter = new ExponentialFilter(ALPHA_VALUE);
+
+        // first value is not filtered
+        Assertions.assertEquals(1, filter.filter(1, 0), ACCURACY);
+        Assertions.assertEquals(1 - ALPHA_VALUE, filter.filter(0, 1),
+                ACCURACY);
+        Assertions.assertEquals(
+                LowPassFilter.filterValue(1 - ALPHA_VALUE, 2, ALPHA_VALUE),
+                filter.filter(2, 2), ACCURACY);
+
+        filter.reset();
+        Assertions.assertEquals(-1, filter.filter(-1, 3), ACCURACY);
+    }
+
+    /**
+     * Tests creating a new instance.
+     */
+    @Test
+    public final void testNewInstance() {
+        ExponentialFilter filter = new ExponentialFilter(ALPHA_VALUE);
+        filter.filter(1, 0);
+
+        SignalFilter instance = filter.newInstance();
+        Assertions.assertNotSame(filter, instance);
+        Assertions.assertEquals(ALPHA_VALUE,
+                ((ExponentialFilter) instance).getAlpha(), ACCURACY);
+        // no state
+        Assertions.assertEquals(0, instance.filter(0, 1), ACCURACY);
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Unit tests for FieldStrengthGrid class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for FieldStrengthGrid class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class FieldStrengthGridTest {
+    /**
+     * Field strength model, linear in latitude and longitude,
+     * so bilinear interpolation is exact.
+     */
+    private static final FieldStrengthModel LINEAR
+            = (latitude, longitude) -> 45 + latitude * 0.1 + longitude * 0.05;
+
+    /**
+     * Accuracy.
+     */
+    private static final double ACCURACY = 1e-4;
+
+    /**
+     * Tests parameters.
+     */
+    @Test
+    public final void testParameters() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new FieldStrengthGrid(null);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new FieldStrengthGrid(LINEAR, 0);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new FieldStrengthGrid(LINEAR, 7);
+        });
+    }
+
+    /**
+     * Tests interpolation and caching of the grid nodes.
+     */
+    @Test
+    public final void testInterpolation() {
+        FieldStrengthGrid grid = new FieldStrengthGrid(LINEAR);
+        Assertions.assertEquals(0, grid.getEvaluations());
+
+        Assertions.assertEquals(LINEAR.getFieldStrength(50.85, 4.35),
+                grid.getFieldStrength(50.85, 4.35), ACCURACY);
+        Assertions.assertEquals(4, grid.getEvaluations());
+
+        // same cell, no evaluations
+        Assertions.assertEquals(LINEAR.getFieldStrength(51.2, 3.1),
+                grid.getFieldStrength(51.2, 3.1), ACCURACY);
+        Assertions.assertEquals(4, grid.getEvaluations());
+
+        // neighbouring cell, shares 2 nodes
+        Assertions.assertEquals(LINEAR.getFieldStrength(52, 6),
+                grid.getFieldStrength(52, 6), ACCURACY);
+        Assertions.assertEquals(6, grid.getEvaluations());
+    }
+
+    /**
+     * Tests the poles and the date line.
+     */
+    @Test
+    public final void testEdges() {
+        FieldStrengthGrid grid = new FieldStrengthGrid(LINEAR, 10);
+
+        Assertions.assertEquals(LINEAR.getFieldStrength(90, 15),
+                grid.getFieldStrength(90, 15), ACCURACY);
+        Assertions.assertEquals(LINEAR.getFieldStrength(-90, 15),
+                grid.getFieldStrength(-95, 15), ACCURACY);
+        Assertions.assertEquals(LINEAR.getFieldStrength(0, -180),
+                grid.getFieldStrength(0, 180), ACCURACY);
+    }
+}
@@ -0,0 +1,210 @@
+/**
+ * Unit tests for FrozenCoordinates class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import android.graphics.Path;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit tests for FrozenCoordinates class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class FrozenCoordinatesTest {
+    /**
+     * Instance of the Coordinates class.
+     */
+    private Coordinates coordinates;
+
+    /**
+     * Number of coordinates added in the concurrency test.
+     */
+    private static final int NUM_ADDED = 2000;
+
+    /**
+     * Sets up the test fixture.
+     * (Called before every test case method.)
+     */
+    @BeforeEach
+    public final void setUp() {
+        coordinates = new Coordinates();
+        coordinates.addCoordinate(0, 0);
+        coordinates.addCoordinate(0, CoordinateTest.UNIT_20);
+        coordinates.addCoordinate(CoordinateTest.UNIT_30,
+                CoordinateTest.UNIT_40);
+    }
+
+    /**
+     * Tests the frozen points and lines.
+     */
+    @Test
+    public final void testFreeze() {
+        FrozenCoordinates frozen = coordinates.freeze();
+
+        Assertions.assertEquals(CoordinatesTest.NUM_POINTS_3,
+                frozen.getSize());
+        Assertions.assertEquals(CoordinateTest.UNIT_30, frozen.getX(2), 0);
+        Assertions.assertEquals(CoordinateTest.UNIT_40, frozen.getY(2), 0);
+        Assertions.assertArrayEquals(coordinates.toLinesArray(),
+                frozen.toLinesArray(), 0);
+        Assertions.assertEquals(CoordinatesTest.NUM_POINTS_3
+                * Coordinates.NUM_COORD_LINE, frozen.getLinesLength());
+        Assertions.assertEquals(frozen, coordinates.freeze());
+        Assertions.assertEquals(frozen.hashCode(),
+                coordinates.freeze().hashCode());
+
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> {
+            frozen.getX(CoordinatesTest.NUM_POINTS_3);
+        });
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> {
+            frozen.getY(-1);
+        });
+    }
+
+    /**
+     * Tests freezing an open line and too few points.
+     */
+    @Test
+    public final void testFreezeOpenLine() {
+        coordinates.setCloseLine(false);
+        Assertions.assertEquals(2 * Coordinates.NUM_COORD_LINE,
+                coordinates.freeze().getLinesLength());
+
+        Coordinates single = new Coordinates();
+        Assertions.assertEquals(0, single.freeze().getLinesLength());
+        single.addCoordinate(1, 1);
+        Assertions.assertEquals(0, single.freeze().getLinesLength());
+    }
+
+    /**
+     * Tests that a frozen set doesn't change afterwards.
+     */
+    @Test
+    public final void testImmutable() {
+        FrozenCoordinates frozen = coordinates.freeze();
+        float[] lines = frozen.toLinesArray();
+
+        coordinates.addCoordinate(CoordinateTest.UNIT_40, 0);
+        coordinates.setCloseLine(false);
+        Assertions.assertEquals(CoordinatesTest.NUM_POINTS_3,
+                frozen.getSize());
+        Assertions.assertArrayEquals(lines, frozen.toLinesArray(), 0);
+
+        // returned array is a copy
+        lines[0] = -1;
+        Assertions.assertEquals(0, frozen.toLinesArray()[0], 0);
+    }
+
+    /**
+     * Tests copying the lines into a reused array.
+     */
+    @Test
+    public final void testCopyLinesTo() {
+        FrozenCoordinates frozen = coordinates.freeze();
+        float[] reuse = new float[frozen.getLinesLength() + 1];
+        reuse[frozen.getLinesLength()] = -1;
+
+        Assertions.assertSame(reuse, frozen.copyLinesTo(reuse));
+        Assertions.assertEquals(-1, reuse[frozen.getLinesLength()], 0);
+        Assertions.assertEquals(CoordinateTest.UNIT_30,
+                reuse[Coordinates.NUM_COORD_LINE + Coordinates.POS_END_X], 0);
+
+        float[] small = new float[1];
+        float[] copy = frozen.copyLinesTo(small);
+        Assertions.assertNotSame(small, copy);
+        Assertions.assertArrayEquals(frozen.toLinesArray(), copy, 0);
+        Assertions.assertArrayEquals(frozen.toLinesArray(),
+                frozen.copyLinesTo(null), 0);
+    }
+
+    /**
+     * Tests filling a Path.
+     */
+    @Test
+    public final void testToPath() {
+        FrozenCoordinates frozen = coordinates.freeze();
+        Path path = mock(Path.class);
+
+        frozen.toPath(path);
+        InOrder order = inOrder(path);
+        order.verify(path).rewind();
+        order.verify(path).moveTo(0, 0);
+        order.verify(path).lineTo(0, CoordinateTest.UNIT_20);
+        order.verify(path).lineTo(CoordinateTest.UNIT_30,
+                CoordinateTest.UNIT_40);
+        order.verify(path).close();
+
+        Path empty = mock(Path.class);
+        new Coordinates().freeze().toPath(empty);
+        verify(empty).rewind();
+        verify(empty, never()).moveTo(0, 0);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            frozen.toPath(null);
+        });
+    }
+
+    /**
+     * Tests freezing while coordinates are added on another thread.
+     *
+     * @throws InterruptedException if the thread is interrupted
+     */
+    @Test
+    public final void testConcurrentFreeze() throws InterruptedException {
+        final AtomicReference<Throwable> failure
+                = new AtomicReference<Throwable>();
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; i < NUM_ADDED; i++) {
+                    coordinates.addCoordinate(i, i);
+                }
+            } catch (Throwable throwable) {
+                failure.set(throwable);
+            }
+        });
+
+        writer.start();
+        while (writer.isAlive()) {
+            FrozenCoordinates frozen = coordinates.freeze();
+            int size = frozen.getSize();
+            int lines = size > 2 ? size : size - 1;
+            Assertions.assertEquals(lines * Coordinates.NUM_COORD_LINE,
+                    frozen.getLinesLength());
+        }
+        writer.join();
+
+        Assertions.assertNull(failure.get());
+        Assertions.assertEquals(CoordinatesTest.NUM_POINTS_3 + NUM_ADDED,
+                coordinates.freeze().getSize());
+    }
+}
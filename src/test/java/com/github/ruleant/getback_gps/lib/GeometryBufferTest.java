@@ -0,0 +1,221 @@
+/**
+ * Unit tests for GeometryBuffer class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import android.graphics.Path;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit tests for GeometryBuffer class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class GeometryBufferTest {
+    /**
+     * Instance of the geometry buffer class.
+     */
+    private GeometryBuffer buffer;
+
+    /**
+     * Center X coordinate.
+     */
+    private static final long CENTER_X = 100;
+
+    /**
+     * Center Y coordinate.
+     */
+    private static final long CENTER_Y = 200;
+
+    /**
+     * Scale.
+     */
+    private static final double SCALE = 50;
+
+    /**
+     * Accuracy, Coordinates rounds to whole units.
+     */
+    private static final double ACCURACY = 0.5;
+
+    /**
+     * Sets up the test fixture.
+     * (Called before every test case method.)
+     */
+    @BeforeEach
+    public final void setUp() {
+        buffer = new GeometryBuffer(1);
+    }
+
+    /**
+     * Tests parameters.
+     */
+    @Test
+    public final void testParameters() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new GeometryBuffer(-1);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            buffer.add((Coordinates) null);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            buffer.toPath(null, null);
+        });
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> {
+            buffer.getX(0);
+        });
+    }
+
+    /**
+     * Tests adding points, growing the array.
+     */
+    @Test
+    public final void testAdd() {
+        Assertions.assertEquals(0, buffer.getSize());
+        Assertions.assertEquals(0, buffer.add(1, 2));
+        Assertions.assertEquals(1, buffer.addPolar(2, 90));
+        Assertions.assertEquals(2, buffer.getSize());
+
+        Assertions.assertEquals(1, buffer.getX(0), 0);
+        Assertions.assertEquals(2, buffer.getY(0), 0);
+        Assertions.assertEquals(0, buffer.getX(1), 1e-9);
+        Assertions.assertEquals(2, buffer.getY(1), 1e-9);
+
+        buffer.clear();
+        Assertions.assertEquals(0, buffer.getSize());
+        buffer.trimToSize();
+        buffer.add(3, 4);
+        Assertions.assertEquals(3, buffer.getX(0), 0);
+    }
+
+    /**
+     * Tests the number of line values.
+     */
+    @Test
+    public final void testLinesLength() {
+        Assertions.assertEquals(0, buffer.getLinesLength());
+        buffer.add(0, 0);
+        Assertions.assertEquals(0, buffer.getLinesLength());
+        Assertions.assertEquals(0,
+                buffer.toLinesArray(null, null).length);
+        buffer.add(1, 0);
+        // 2 points are never closed
+        Assertions.assertEquals(4, buffer.getLinesLength());
+        buffer.add(1, 1);
+        Assertions.assertEquals(12, buffer.getLinesLength());
+        buffer.setCloseLine(false);
+        Assertions.assertEquals(8, buffer.getLinesLength());
+    }
+
+    /**
+     * Tests the conversion gives the same result as Coordinates,
+     * using CoordinateRotation.
+     */
+    @Test
+    public final void testToLinesArray() {
+        double[][] polar = {{0.95, 0}, {0, 0}, {0.25, 45},
+            {0.8, 215}, {0.4, -35}};
+        double[] angles = {0, 30, 90, 181.5, 270};
+
+        Coordinates coordinates = new Coordinates();
+        for (double[] point : polar) {
+            coordinates.addCoordinate(point[0], point[1]);
+            buffer.addPolar(point[0], point[1]);
+        }
+
+        for (boolean close : new boolean[] {true, false}) {
+            coordinates.setCloseLine(close);
+            buffer.setCloseLine(close);
+
+            for (double angle : angles) {
+                CoordinateRotation rotation = new CoordinateRotation(
+                        new Coordinate(CENTER_X, CENTER_Y), angle, SCALE);
+                coordinates.setCoordinateConverter(rotation);
+                float[] expected = coordinates.toLinesArray();
+                float[] actual = buffer.toLinesArray(null, rotation);
+
+                Assertions.assertEquals(expected.length, actual.length);
+                for (int i = 0; i < expected.length; i++) {
+                    Assertions.assertEquals(expected[i], actual[i],
+                            ACCURACY);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests reusing the lines array.
+     */
+    @Test
+    public final void testReuseLinesArray() {
+        buffer.add(0, 0);
+        buffer.add(1, 0);
+
+        float[] lines = new float[8];
+        lines[4] = -1;
+        Assertions.assertSame(lines, buffer.toLinesArray(lines,
+                new CoordinateRotation(new Coordinate(0, 0), 0, 1)));
+        // values after the lines length are untouched
+        Assertions.assertEquals(-1, lines[4], 0);
+        // north is up
+        Assertions.assertEquals(-1, lines[Coordinates.POS_END_Y], 0);
+
+        // without converter, points are unconverted
+        buffer.toLinesArray(lines, null);
+        Assertions.assertEquals(1, lines[Coordinates.POS_END_X], 0);
+        Assertions.assertEquals(0, lines[Coordinates.POS_END_Y], 0);
+
+        float[] small = new float[2];
+        Assertions.assertNotSame(small, buffer.toLinesArray(small, null));
+    }
+
+    /**
+     * Tests converting to a Path.
+     */
+    @Test
+    public final void testToPath() {
+        Path path = mock(Path.class);
+        buffer.add(0, 0);
+        buffer.toPath(path, null);
+        verify(path).rewind();
+        verify(path, never()).moveTo(0, 0);
+
+        buffer.add(1, 0);
+        buffer.add(0, 1);
+        path = mock(Path.class);
+        buffer.toPath(path, new CoordinateRotation(
+                new Coordinate(10, 10), 90, 2));
+        InOrder order = inOrder(path);
+        order.verify(path).rewind();
+        order.verify(path).moveTo(10, 10);
+        order.verify(path).lineTo(12, 10);
+        order.verify(path).lineTo(10, 12);
+        order.verify(path).close();
+    }
+}
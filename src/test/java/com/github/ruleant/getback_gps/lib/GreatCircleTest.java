@@ -0,0 +1,165 @@
+/**
+ * Unit tests for GreatCircle class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for GreatCircle class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class GreatCircleTest {
+    /**
+     * Distance accuracy in meters.
+     */
+    private static final double DIST_ACCURACY = 1.0;
+
+    /**
+     * Angle accuracy in degrees.
+     */
+    private static final double ANGLE_ACCURACY = 0.01;
+
+    /**
+     * Tests hidden constructor.
+     */
+    @Test
+    public final void testConstructor() {
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> {
+            new GreatCircle();
+        });
+    }
+
+    /**
+     * Tests distance between identical points.
+     */
+    @Test
+    public final void testDistanceZero() {
+        Assertions.assertEquals(
+                0.0, GreatCircle.distance(51.0, 4.0, 51.0, 4.0), 0.0);
+    }
+
+    /**
+     * Tests distance of one degree along a meridian and the equator.
+     */
+    @Test
+    public final void testDistanceOneDegree() {
+        Assertions.assertEquals(GreatCircle.METERS_PER_DEGREE,
+                GreatCircle.distance(0, 0, 1, 0), DIST_ACCURACY);
+        Assertions.assertEquals(GreatCircle.METERS_PER_DEGREE,
+                GreatCircle.distance(0, 0, 0, 1), DIST_ACCURACY);
+        Assertions.assertEquals(GreatCircle.METERS_PER_DEGREE,
+                GreatCircle.distance(0, 179.5, 0, -179.5), DIST_ACCURACY);
+    }
+
+    /**
+     * Tests distance between antipodal points.
+     */
+    @Test
+    public final void testDistanceAntipodal() {
+        Assertions.assertEquals(Math.PI * GreatCircle.EARTH_RADIUS,
+                GreatCircle.distance(90, 0, -90, 0), DIST_ACCURACY);
+        Assertions.assertEquals(Math.PI * GreatCircle.EARTH_RADIUS,
+                GreatCircle.distance(0, 0, 0, 180), DIST_ACCURACY);
+    }
+
+    /**
+     * Tests distance between two cities (Brussels - Paris).
+     */
+    @Test
+    public final void testDistanceCities() {
+        Assertions.assertEquals(264000,
+                GreatCircle.distance(50.8503, 4.3517, 48.8566, 2.3522),
+                1000);
+    }
+
+    /**
+     * Tests bearing in the main directions.
+     */
+    @Test
+    public final void testBearing() {
+        Assertions.assertEquals(0.0,
+                GreatCircle.bearing(0, 0, 1, 0), ANGLE_ACCURACY);
+        Assertions.assertEquals(FormatUtils.CIRCLE_1Q,
+                GreatCircle.bearing(0, 0, 0, 1), ANGLE_ACCURACY);
+        Assertions.assertEquals(FormatUtils.CIRCLE_HALF,
+                GreatCircle.bearing(0, 0, -1, 0), ANGLE_ACCURACY);
+        Assertions.assertEquals(FormatUtils.CIRCLE_3Q,
+                GreatCircle.bearing(0, 0, 0, -1), ANGLE_ACCURACY);
+        Assertions.assertEquals(FormatUtils.CIRCLE_1Q,
+                GreatCircle.bearing(0, 179.5, 0, -179.5), ANGLE_ACCURACY);
+    }
+
+    /**
+     * Tests conversion to and from fixed point values.
+     */
+    @Test
+    public final void testFixedPoint() {
+        Assertions.assertEquals(508500000, GreatCircle.toFixedPoint(50.85));
+        Assertions.assertEquals(-1800000000,
+                GreatCircle.toFixedPoint(-180));
+        Assertions.assertEquals(50.85,
+                GreatCircle.fromFixedPoint(508500000), 0.0);
+        Assertions.assertEquals(1e-7, GreatCircle.fromFixedPoint(1), 0.0);
+    }
+
+    /**
+     * Tests fixed point distance and bearing match
+     * the floating point calculation.
+     */
+    @Test
+    public final void testDistanceBearingFixedPoint() {
+        double[][] points = {
+            {50.8503, 4.3517, 48.8566, 2.3522},
+            {0, 179.5, 0, -179.5},
+            {-33.8688, 151.2093, 40.7128, -74.0060},
+            {89.99, 0, 89.99, 180},
+        };
+
+        for (double[] p : points) {
+            int lat1 = GreatCircle.toFixedPoint(p[0]);
+            int lon1 = GreatCircle.toFixedPoint(p[1]);
+            int lat2 = GreatCircle.toFixedPoint(p[2]);
+            int lon2 = GreatCircle.toFixedPoint(p[3]);
+
+            Assertions.assertEquals(
+                    GreatCircle.distance(p[0], p[1], p[2], p[3]),
+                    GreatCircle.distanceFixedPoint(lat1, lon1, lat2, lon2),
+                    DIST_ACCURACY);
+            Assertions.assertEquals(
+                    GreatCircle.bearing(p[0], p[1], p[2], p[3]),
+                    GreatCircle.bearingFixedPoint(lat1, lon1, lat2, lon2),
+                    ANGLE_ACCURACY);
+        }
+
+        // longitude difference doesn't overflow around the 180th meridian
+        Assertions.assertEquals(GreatCircle.METERS_PER_DEGREE,
+                GreatCircle.distanceFixedPoint(
+                        0, 1795000000, 0, -1795000000),
+                DIST_ACCURACY);
+        Assertions.assertEquals(FormatUtils.CIRCLE_3Q,
+                GreatCircle.bearingFixedPoint(
+                        0, -1795000000, 0, 1795000000),
+                ANGLE_ACCURACY);
+    }
+}
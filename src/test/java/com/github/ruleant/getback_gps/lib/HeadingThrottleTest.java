@@ -0,0 +1,193 @@
+/**
+ * Unit tests for HeadingThrottle class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+/**
+ * Unit tests for HeadingThrottle class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class HeadingThrottleTest {
+    /**
+     * Instance of the throttle.
+     */
+    private HeadingThrottle throttle;
+
+    /**
+     * Deadband in degrees.
+     */
+    private static final double DEADBAND = 1;
+
+    /**
+     * Milliseconds in nanoseconds.
+     */
+    private static final long MILLI = Tools.MILLI_IN_NANO;
+
+    /**
+     * Minimum interval in nanoseconds.
+     */
+    private static final long MIN_INTERVAL = 50 * MILLI;
+
+    /**
+     * Maximum interval in nanoseconds.
+     */
+    private static final long MAX_INTERVAL = 2000 * MILLI;
+
+    /**
+     * Time between heading updates : accelerometer and magnetic field
+     * sensor at 200 ms, 100 ms in nanoseconds.
+     */
+    private static final long UPDATE_INTERVAL = 100 * MILLI;
+
+    /**
+     * Heading updates in a minute.
+     */
+    private static final int UPDATES_MINUTE = 600;
+
+    /**
+     * Accuracy.
+     */
+    private static final double ACCURACY = 0.001;
+
+    /**
+     * Sets up the test fixture.
+     * (Called before every test case method.)
+     */
+    @BeforeEach
+    public final void setUp() {
+        throttle = new HeadingThrottle(DEADBAND, MIN_INTERVAL, MAX_INTERVAL);
+    }
+
+    /**
+     * Tests parameters.
+     */
+    @Test
+    public final void testParameters() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new HeadingThrottle(-1, MIN_INTERVAL, MAX_INTERVAL);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new HeadingThrottle(180, MIN_INTERVAL, MAX_INTERVAL);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new HeadingThrottle(DEADBAND, -1, MAX_INTERVAL);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new HeadingThrottle(DEADBAND, MAX_INTERVAL, MIN_INTERVAL);
+        });
+    }
+
+    /**
+     * Tests the deadband and the maximum interval.
+     */
+    @Test
+    public final void testDeadband() {
+        // first update is notified
+        Assertions.assertTrue(throttle.update(90, 0));
+
+        // small changes are not notified
+        Assertions.assertFalse(throttle.update(90.5, UPDATE_INTERVAL));
+        Assertions.assertFalse(throttle.update(89.5, 2 * UPDATE_INTERVAL));
+
+        // change larger than the deadband
+        Assertions.assertTrue(throttle.update(91.5, 3 * UPDATE_INTERVAL));
+
+        // unchanged, but notified after the maximum interval
+        Assertions.assertFalse(throttle.update(91.5,
+                3 * UPDATE_INTERVAL + MAX_INTERVAL - 1));
+        Assertions.assertTrue(throttle.update(91.5,
+                3 * UPDATE_INTERVAL + MAX_INTERVAL));
+
+        Assertions.assertEquals(6, throttle.getUpdates());
+        Assertions.assertEquals(3, throttle.getNotifications());
+    }
+
+    /**
+     * Tests coalescing changes within the minimum interval.
+     */
+    @Test
+    public final void testMinInterval() {
+        Assertions.assertTrue(throttle.update(0, 0));
+        Assertions.assertFalse(throttle.update(10, MIN_INTERVAL / 2));
+        Assertions.assertFalse(throttle.update(20, MIN_INTERVAL - 1));
+        Assertions.assertTrue(throttle.update(30, MIN_INTERVAL));
+    }
+
+    /**
+     * Tests heading changes over north.
+     */
+    @Test
+    public final void testOverNorth() {
+        Assertions.assertTrue(throttle.update(359.8, 0));
+        Assertions.assertFalse(throttle.update(0.5, UPDATE_INTERVAL));
+        Assertions.assertTrue(throttle.update(1, 2 * UPDATE_INTERVAL));
+    }
+
+    /**
+     * Tests resetting and timestamps going back.
+     */
+    @Test
+    public final void testReset() {
+        Assertions.assertTrue(throttle.update(0, UPDATE_INTERVAL));
+        Assertions.assertTrue(throttle.update(0, 0));
+        Assertions.assertFalse(throttle.update(0, UPDATE_INTERVAL));
+
+        throttle.reset();
+        Assertions.assertTrue(throttle.update(0, 2 * UPDATE_INTERVAL));
+    }
+
+    /**
+     * Tests notifications per minute of a stationary and a turning
+     * device, compared to notifying every update.
+     */
+    @Test
+    public final void testNotificationRate() {
+        Random random = new Random(1);
+
+        // stationary, filtered heading with ±0.3° noise
+        for (int i = 0; i <= UPDATES_MINUTE; i++) {
+            throttle.update(45 + (random.nextDouble() * 2 - 1) * 0.3,
+                    i * UPDATE_INTERVAL);
+        }
+        // updates span exactly one minute
+        Assertions.assertEquals(UPDATES_MINUTE + 1,
+                throttle.getUpdatesPerMinute(), ACCURACY);
+        Assertions.assertEquals(31, throttle.getNotifications());
+
+        // turning at 30°/s, 3° per update
+        throttle = new HeadingThrottle(DEADBAND, MIN_INTERVAL, MAX_INTERVAL);
+        for (int i = 0; i <= UPDATES_MINUTE; i++) {
+            throttle.update(i * 3, i * UPDATE_INTERVAL);
+        }
+        Assertions.assertEquals(UPDATES_MINUTE + 1,
+                throttle.getNotificationsPerMinute(), ACCURACY);
+        Assertions.assertEquals(
+                "notifications : 601 of 601 updates, 601/min of 601/min",
+                throttle.toString());
+    }
+}
@@ -0,0 +1,302 @@
+/**
+ * Unit tests for ListenerRegistry class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EventListener;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unit tests for ListenerRegistry class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class ListenerRegistryTest {
+    /**
+     * Instance of the registry.
+     */
+    private ListenerRegistry<TestListener> registry;
+
+    /**
+     * Delivers events to test listeners.
+     */
+    private final ListenerRegistry.Dispatcher<TestListener> dispatcher
+            = listener -> listener.onEvent();
+
+    /**
+     * Minimum interval in nanoseconds.
+     */
+    private static final long INTERVAL = 100;
+
+    /**
+     * Number of threads adding and removing listeners in stress test.
+     */
+    private static final int THREADS = 4;
+
+    /**
+     * Number of add and remove operations per thread in stress test.
+     */
+    private static final int OPERATIONS = 20000;
+
+    /**
+     * Event listener counting events.
+     */
+    private static class TestListener implements EventListener {
+        /**
+         * Number of received events.
+         */
+        private final AtomicInteger mEvents = new AtomicInteger();
+
+        /**
+         * Receives an event.
+         */
+        void onEvent() {
+            mEvents.incrementAndGet();
+        }
+
+        /**
+         * Gets the number of received events.
+         *
+         * @return number of events
+         */
+        int getEvents() {
+            return mEvents.get();
+        }
+    }
+
+    /**
+     * Sets up the test fixture.
+     * (Called before every test case method.)
+     */
+    @BeforeEach
+    public final void setUp() {
+        registry = new ListenerRegistry<TestListener>();
+    }
+
+    /**
+     * Tests parameters.
+     */
+    @Test
+    public final void testParameters() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            registry.add(null);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            registry.add(new TestListener(), -1);
+        });
+        Assertions.assertFalse(registry.remove(null));
+    }
+
+    /**
+     * Tests adding and removing listeners, suppressing duplicates.
+     */
+    @Test
+    public final void testAddRemove() {
+        TestListener first = new TestListener();
+        TestListener second = new TestListener();
+        Assertions.assertEquals(0, registry.size());
+        Assertions.assertEquals(0, registry.dispatch(0, dispatcher));
+
+        Assertions.assertTrue(registry.add(first));
+        Assertions.assertFalse(registry.add(first));
+        Assertions.assertFalse(registry.add(first, INTERVAL));
+        Assertions.assertTrue(registry.add(second));
+        Assertions.assertEquals(2, registry.size());
+        Assertions.assertTrue(registry.contains(first));
+
+        Assertions.assertEquals(2, registry.dispatch(0, dispatcher));
+        Assertions.assertEquals(1, first.getEvents());
+
+        Assertions.assertTrue(registry.remove(first));
+        Assertions.assertFalse(registry.remove(first));
+        Assertions.assertFalse(registry.contains(first));
+        Assertions.assertEquals(1, registry.dispatch(1, dispatcher));
+        Assertions.assertEquals(1, first.getEvents());
+        Assertions.assertEquals(2, second.getEvents());
+
+        Assertions.assertTrue(registry.remove(second));
+        Assertions.assertEquals(0, registry.size());
+    }
+
+    /**
+     * Tests the maximum delivery rate per listener.
+     */
+    @Test
+    public final void testRateLimit() {
+        TestListener fast = new TestListener();
+        TestListener slow = new TestListener();
+        registry.add(fast);
+        registry.add(slow, INTERVAL);
+
+        for (long timestamp = 0; timestamp < 10 * INTERVAL; timestamp += 10) {
+            registry.dispatch(timestamp, dispatcher);
+        }
+        Assertions.assertEquals(100, fast.getEvents());
+        Assertions.assertEquals(10, slow.getEvents());
+
+        // timestamp going back is delivered
+        registry.dispatch(0, dispatcher);
+        Assertions.assertEquals(11, slow.getEvents());
+    }
+
+    /**
+     * Tests the last event within the minimum interval
+     * is delivered when the interval expires.
+     */
+    @Test
+    public final void testPendingDelivery() {
+        TestListener fast = new TestListener();
+        TestListener slow = new TestListener();
+        registry.add(fast);
+        registry.add(slow, INTERVAL);
+        Assertions.assertEquals(ListenerRegistry.NO_PENDING,
+                registry.getPendingTime());
+
+        Assertions.assertEquals(2, registry.dispatch(0, dispatcher));
+        // last event, within the interval
+        Assertions.assertEquals(1, registry.dispatch(INTERVAL / 2,
+                dispatcher));
+        Assertions.assertEquals(1, slow.getEvents());
+        Assertions.assertEquals(INTERVAL, registry.getPendingTime());
+
+        // not delivered before the interval expires
+        Assertions.assertEquals(0, registry.dispatchPending(INTERVAL - 1,
+                dispatcher));
+        Assertions.assertEquals(1, slow.getEvents());
+
+        // delivered once when it expires, only to the slow listener
+        Assertions.assertEquals(1, registry.dispatchPending(INTERVAL,
+                dispatcher));
+        Assertions.assertEquals(2, slow.getEvents());
+        Assertions.assertEquals(2, fast.getEvents());
+        Assertions.assertEquals(ListenerRegistry.NO_PENDING,
+                registry.getPendingTime());
+        Assertions.assertEquals(0, registry.dispatchPending(3 * INTERVAL,
+                dispatcher));
+
+        // the pending delivery starts a new interval
+        registry.dispatch(INTERVAL + 1, dispatcher);
+        Assertions.assertEquals(2, slow.getEvents());
+        Assertions.assertEquals(2 * INTERVAL, registry.getPendingTime());
+    }
+
+    /**
+     * Tests removing a listener while dispatching,
+     * the snapshot being dispatched isn't affected.
+     */
+    @Test
+    public final void testRemoveWhileDispatching() {
+        final TestListener second = new TestListener();
+        TestListener first = new TestListener() {
+            @Override
+            void onEvent() {
+                super.onEvent();
+                registry.remove(this);
+                registry.remove(second);
+            }
+        };
+        registry.add(first);
+        registry.add(second);
+
+        Assertions.assertEquals(2, registry.dispatch(0, dispatcher));
+        Assertions.assertEquals(1, second.getEvents());
+        Assertions.assertEquals(0, registry.size());
+    }
+
+    /**
+     * Tests adding, removing and dispatching concurrently.
+     *
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public final void testConcurrent() throws InterruptedException {
+        final TestListener shared = new TestListener();
+        final TestListener permanent = new TestListener();
+        registry.add(permanent);
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicInteger sharedAdded = new AtomicInteger();
+        final AtomicReference<Throwable> error
+                = new AtomicReference<Throwable>();
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < THREADS; t++) {
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    TestListener own = new TestListener();
+                    for (int i = 0; i < OPERATIONS; i++) {
+                        Assertions.assertTrue(registry.add(own));
+                        if (registry.add(shared)) {
+                            sharedAdded.incrementAndGet();
+                        }
+                        Assertions.assertTrue(registry.remove(own));
+                    }
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                }
+            }));
+        }
+
+        Thread dispatching = new Thread(() -> {
+            try {
+                start.await();
+                long timestamp = 0;
+                while (running.get()) {
+                    int delivered = registry.dispatch(timestamp++, dispatcher);
+                    // permanent and at most every thread's own and shared
+                    Assertions.assertTrue(delivered >= 1
+                            && delivered <= THREADS + 2);
+                }
+            } catch (Throwable e) {
+                error.compareAndSet(null, e);
+            }
+        });
+
+        dispatching.start();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        running.set(false);
+        dispatching.join();
+
+        Assertions.assertNull(error.get());
+        // duplicates are suppressed, shared is only added once
+        Assertions.assertEquals(1, sharedAdded.get());
+        Assertions.assertEquals(2, registry.size());
+        Assertions.assertTrue(registry.contains(permanent));
+        Assertions.assertTrue(permanent.getEvents() > 0);
+    }
+}
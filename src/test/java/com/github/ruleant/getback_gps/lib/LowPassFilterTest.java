@@ -207,4 +207,42 @@ public class LowPassFilterTest {
         Assertions.assertEquals(ALPHA_VALUE, filteredArray[0], ACCURACY);
         Assertions.assertEquals(1 - ALPHA_VALUE, filteredArray[1], ACCURACY);
     }
+
+    /**
+     * Tests filterValueSet, storing the result in an existing array.
+     */
+    @Test
+    public final void testFilterValueSetResultArray() {
+        float[] newArray = {1, 0};
+        float[] resultArray = {0, 1};
+
+        // filter in place
+        float[] filteredArray = LowPassFilter.filterValueSet(
+                resultArray, newArray, ALPHA_VALUE, resultArray);
+
+        Assertions.assertSame(resultArray, filteredArray);
+        Assertions.assertEquals(ALPHA_VALUE, resultArray[0], ACCURACY);
+        Assertions.assertEquals(1 - ALPHA_VALUE, resultArray[1], ACCURACY);
+
+        // empty previousArray, new values are copied
+        filteredArray = LowPassFilter.filterValueSet(
+                null, newArray, ALPHA_VALUE, resultArray);
+
+        Assertions.assertSame(resultArray, filteredArray);
+        Assertions.assertNotSame(newArray, filteredArray);
+        Assertions.assertEquals(1, resultArray[0], ACCURACY);
+        Assertions.assertEquals(0, resultArray[1], ACCURACY);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            LowPassFilter.filterValueSet(null, newArray, 0f, null);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            LowPassFilter.filterValueSet(
+                    null, newArray, 0f, new float[1]);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            LowPassFilter.filterValueSet(
+                    new float[1], newArray, 0f, resultArray);
+        });
+    }
 }
@@ -0,0 +1,103 @@
+/**
+ * Unit tests for MedianFilter class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Unit tests for MedianFilter class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class MedianFilterTest {
+    /**
+     * Number of random values.
+     */
+    private static final int RANDOM_VALUES = 1000;
+
+    /**
+     * Accuracy.
+     */
+    private static final double ACCURACY = 0.0001;
+
+    /**
+     * Tests parameters.
+     */
+    @Test
+    public final void testParameters() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new MedianFilter(0);
+        });
+    }
+
+    /**
+     * Tests filtering values.
+     */
+    @Test
+    public final void testFilter() {
+        MedianFilter filter = new MedianFilter(3);
+
+        Assertions.assertEquals(1, filter.filter(1, 0), ACCURACY);
+        // even number of values : mean of middle values
+        Assertions.assertEquals(2, filter.filter(3, 1), ACCURACY);
+        Assertions.assertEquals(2, filter.filter(2, 2), ACCURACY);
+        // spike is removed
+        Assertions.assertEquals(3, filter.filter(100, 3), ACCURACY);
+        Assertions.assertEquals(3, filter.filter(3, 4), ACCURACY);
+        Assertions.assertEquals(3, filter.filter(2, 5), ACCURACY);
+
+        filter.reset();
+        Assertions.assertEquals(-1, filter.filter(-1, 6), ACCURACY);
+
+        SignalFilter instance = filter.newInstance();
+        Assertions.assertEquals(3, ((MedianFilter) instance).getSize());
+        Assertions.assertEquals(1, instance.filter(1, 0), ACCURACY);
+    }
+
+    /**
+     * Tests filtering random values, compared to sorting the window.
+     */
+    @Test
+    public final void testRandomValues() {
+        final int size = 5;
+        MedianFilter filter = new MedianFilter(size);
+        Random random = new Random(1);
+        float[] values = new float[RANDOM_VALUES];
+
+        for (int i = 0; i < RANDOM_VALUES; i++) {
+            // include duplicate values
+            values[i] = random.nextInt(20);
+            float median = filter.filter(values[i], i);
+
+            if (i >= size - 1) {
+                float[] window = Arrays.copyOfRange(values, i - size + 1,
+                        i + 1);
+                Arrays.sort(window);
+                Assertions.assertEquals(window[size / 2], median, ACCURACY);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Unit tests for MovingAverageFilter class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for MovingAverageFilter class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class MovingAverageFilterTest {
+    /**
+     * Accuracy.
+     */
+    private static final double ACCURACY = 0.0001;
+
+    /**
+     * Tests parameters.
+     */
+    @Test
+    public final void testParameters() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new MovingAverageFilter(0);
+        });
+    }
+
+    /**
+     * Tests filtering values.
+     */
+    @Test
+    public final void testFilter() {
+        MovingAverageFilter filter = new MovingAverageFilter(3);
+
+        // average of available values until buffer is full
+        Assertions.assertEquals(3, filter.filter(3, 0), ACCURACY);
+        Assertions.assertEquals(2, filter.filter(1, 1), ACCURACY);
+        Assertions.assertEquals(3, filter.filter(5, 2), ACCURACY);
+        // oldest value (3) is dropped
+        Assertions.assertEquals(4, filter.filter(6, 3), ACCURACY);
+        Assertions.assertEquals(6, filter.filter(7, 4), ACCURACY);
+
+        filter.reset();
+        Assertions.assertEquals(-1, filter.filter(-1, 5), ACCURACY);
+
+        SignalFilter instance = filter.newInstance();
+        Assertions.assertEquals(3,
+                ((MovingAverageFilter) instance).getSize());
+        Assertions.assertEquals(1, instance.filter(1, 0), ACCURACY);
+    }
+}
@@ -648,6 +648,7 @@ public class NavigatorTest {
 
         // mock : define orientation of sensor based orientation
         when(sensorOrientation.hasOrientation()).thenReturn(true);
+        when(sensorOrientation.isOrientationStable()).thenReturn(true);
         when(sensorOrientation.getOrientation()).thenReturn(BEARING_1);
 
         // mock : define bearing of location
@@ -712,6 +713,7 @@ public class NavigatorTest {
 
         // mock : define orientation of sensor based orientation
         when(sensorOrientation.hasOrientation()).thenReturn(true);
+        when(sensorOrientation.isOrientationStable()).thenReturn(true);
         when(sensorOrientation.getOrientation()).thenReturn(BEARING_1);
 
         // mock : define bearing of location
@@ -933,4 +935,136 @@ public class NavigatorTest {
         Assertions.assertTrue(navigator.isSensorBearingAccurate());
         Assertions.assertTrue(navigator.isBearingAccurate());
     }
+
+    /**
+     * Tests correcting sensor based bearing with the magnetic declination.
+     */
+    @Test
+    public final void testDeclination() {
+        final double declination = 2.5;
+        navigator = new Navigator(sensorOrientation);
+        when(sensorOrientation.hasOrientation()).thenReturn(true);
+        when(sensorOrientation.getOrientation()).thenReturn(BEARING_1);
+
+        // no location yet
+        navigator.setDeclinationModel(
+                (latitude, longitude) -> latitude * declination);
+        Assertions.assertEquals(0, navigator.getDeclination(),
+                ASSERT_ACCURACY);
+
+        when(loc1.getLatitude()).thenReturn(1.0);
+        navigator.setLocation(loc1);
+        Assertions.assertEquals(declination, navigator.getDeclination(),
+                ASSERT_ACCURACY);
+        Assertions.assertEquals(BEARING_1 + declination,
+                navigator.getCurrentBearing(), ASSERT_ACCURACY);
+
+        // correction disabled
+        navigator.setDeclinationModel(null);
+        Assertions.assertEquals(0, navigator.getDeclination(),
+                ASSERT_ACCURACY);
+        Assertions.assertEquals(BEARING_1,
+                navigator.getCurrentBearing(), ASSERT_ACCURACY);
+    }
+
+    /**
+     * Tests falling back to location based bearing,
+     * when the compass is disturbed.
+     */
+    @Test
+    public final void testCompassDisturbed() {
+        navigator = new Navigator(sensorOrientation);
+        when(sensorOrientation.hasOrientation()).thenReturn(true);
+        when(sensorOrientation.getOrientation()).thenReturn(BEARING_1);
+        initMockIsLocationBearingAccurate(loc2, loc1);
+
+        Assertions.assertTrue(navigator.isSensorBearingAccurate());
+        Assertions.assertEquals(BEARING_1, navigator.getCurrentBearing(),
+                ASSERT_ACCURACY);
+
+        when(sensorOrientation.isCompassDisturbed()).thenReturn(true);
+        Assertions.assertFalse(navigator.isSensorBearingAccurate());
+        Assertions.assertTrue(navigator.isBearingAccurate());
+        Assertions.assertEquals(DIR_LOC1_2, navigator.getCurrentBearing(),
+                ASSERT_ACCURACY);
+    }
+
+    /**
+     * Tests sensor based bearing stability.
+     */
+    @Test
+    public final void testIsSensorBearingStable() {
+        Assertions.assertFalse(navigator.isSensorBearingStable());
+
+        navigator = new Navigator(sensorOrientation);
+        when(sensorOrientation.isOrientationStable()).thenReturn(true);
+        Assertions.assertFalse(navigator.isSensorBearingStable());
+
+        when(sensorOrientation.hasOrientation()).thenReturn(true);
+        Assertions.assertTrue(navigator.isSensorBearingStable());
+
+        when(sensorOrientation.isOrientationStable()).thenReturn(false);
+        Assertions.assertFalse(navigator.isSensorBearingStable());
+    }
+
+    /**
+     * Tests the offset between location based and sensor based bearing
+     * isn't recalculated while the sensor based bearing is not stable.
+     */
+    @Test
+    public final void testOrientationOffsetUnstable() {
+        navigator = new Navigator(sensorOrientation);
+        when(sensorOrientation.hasOrientation()).thenReturn(true);
+        when(sensorOrientation.isOrientationStable()).thenReturn(true);
+        when(sensorOrientation.getOrientation()).thenReturn(BEARING_1);
+        initMockIsLocationBearingAccurate(loc2, loc1);
+        navigator.calculateSensorBearingOffset();
+
+        // swinging device, offset is kept
+        when(sensorOrientation.isOrientationStable()).thenReturn(false);
+        when(sensorOrientation.getOrientation())
+                .thenReturn(BEARING_1 + BEARING_VARIATION);
+        navigator.calculateSensorBearingOffset();
+        Assertions.assertEquals(
+                DIR_LOC1_2 + BEARING_VARIATION,
+                navigator.getCurrentBearing(),
+                ASSERT_ACCURACY);
+        Assertions.assertEquals(Navigator.TravelDirection.Forward,
+                navigator.getTravelDirection());
+    }
+
+    /**
+     * Tests nearest waypoints are updated when the location is set.
+     */
+    @Test
+    public final void testNearestWaypoints() {
+        Assertions.assertNull(navigator.getNearestWaypoints());
+
+        WaypointIndex index = new WaypointIndex();
+        index.add(1, 1, 0);
+        index.add(2, 2, 0);
+        NearestWaypoints nearestWaypoints = new NearestWaypoints(index);
+
+        // no location yet
+        navigator.setNearestWaypoints(nearestWaypoints);
+        Assertions.assertSame(nearestWaypoints,
+                navigator.getNearestWaypoints());
+        Assertions.assertEquals(0, nearestWaypoints.getSize());
+
+        when(loc1.getLatitude()).thenReturn(0.0);
+        when(loc1.getLongitude()).thenReturn(0.0);
+        navigator.setLocation(loc1);
+        Assertions.assertEquals(2, nearestWaypoints.getSize());
+        Assertions.assertEquals(1, nearestWaypoints.getId(0));
+
+        when(loc2.getLatitude()).thenReturn(3.0);
+        when(loc2.getLongitude()).thenReturn(0.0);
+        navigator.setLocation(loc2);
+        Assertions.assertEquals(2, nearestWaypoints.getId(0));
+
+        navigator.setNearestWaypoints(null);
+        Assertions.assertNull(navigator.getNearestWaypoints());
+        navigator.setLocation(loc1);
+        Assertions.assertEquals(2, nearestWaypoints.getId(0));
+    }
 }
@@ -0,0 +1,252 @@
+/**
+ * Unit tests for NearestWaypoints class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Unit tests for NearestWaypoints class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class NearestWaypointsTest {
+    /**
+     * Spatial index with test waypoints.
+     */
+    private WaypointIndex index;
+
+    /**
+     * Number of random waypoints.
+     */
+    private static final int RANDOM_POINTS = 2000;
+
+    /**
+     * Number of nearest waypoints.
+     */
+    private static final int COUNT = 5;
+
+    /**
+     * Requery distance in meters.
+     */
+    private static final double REQUERY_DISTANCE = 500;
+
+    /**
+     * Latitude of start point.
+     */
+    private static final double LATITUDE = 50.85;
+
+    /**
+     * Longitude of start point.
+     */
+    private static final double LONGITUDE = 4.35;
+
+    /**
+     * Step size of random walk in degrees (about 10 meter).
+     */
+    private static final double STEP = 0.0001;
+
+    /**
+     * Number of random walk steps.
+     */
+    private static final int STEPS = 2000;
+
+    /**
+     * Sets up the test fixture.
+     * (Called before every test case method.)
+     */
+    @BeforeEach
+    public final void setUp() {
+        index = new WaypointIndex();
+
+        Random random = new Random(1);
+        for (int i = 0; i < RANDOM_POINTS; i++) {
+            index.add(i, LATITUDE + random.nextGaussian() * 0.05,
+                    LONGITUDE + random.nextGaussian() * 0.05);
+        }
+    }
+
+    /**
+     * Tests constructor parameters.
+     */
+    @Test
+    public final void testConstructor() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new NearestWaypoints(null);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new NearestWaypoints(index, 0, REQUERY_DISTANCE);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new NearestWaypoints(index, COUNT, -1);
+        });
+    }
+
+    /**
+     * Tests less waypoints than requested.
+     */
+    @Test
+    public final void testFewWaypoints() {
+        WaypointIndex smallIndex = new WaypointIndex();
+        NearestWaypoints nearest = new NearestWaypoints(smallIndex);
+
+        Assertions.assertFalse(nearest.update(LATITUDE, LONGITUDE));
+        Assertions.assertEquals(0, nearest.getSize());
+        Assertions.assertEquals(0, nearest.getVersion());
+
+        smallIndex.add(1, LATITUDE + 1, LONGITUDE);
+        smallIndex.add(2, LATITUDE - 2, LONGITUDE);
+
+        Assertions.assertTrue(nearest.update(LATITUDE, LONGITUDE));
+        Assertions.assertEquals(2, nearest.getSize());
+        Assertions.assertEquals(1, nearest.getId(0));
+        Assertions.assertEquals(2, nearest.getId(1));
+        Assertions.assertEquals(GreatCircle.METERS_PER_DEGREE,
+                nearest.getDistance(0), 1.0);
+        Assertions.assertEquals(1, nearest.getVersion());
+
+        // moving further away doesn't change the order
+        Assertions.assertFalse(nearest.update(LATITUDE + 0.1, LONGITUDE));
+        Assertions.assertEquals(1, nearest.getVersion());
+
+        // moving closer to waypoint 2 changes the order
+        Assertions.assertTrue(nearest.update(LATITUDE - 1, LONGITUDE));
+        Assertions.assertEquals(2, nearest.getId(0));
+        Assertions.assertEquals(2, nearest.getVersion());
+
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> {
+            nearest.getId(2);
+        });
+    }
+
+    /**
+     * Compares the result with a linear scan while walking around,
+     * and checks the index is not queried on every update.
+     */
+    @Test
+    public final void testRandomWalk() {
+        NearestWaypoints nearest
+                = new NearestWaypoints(index, COUNT, REQUERY_DISTANCE);
+        Random random = new Random(2);
+        double latitude = LATITUDE;
+        double longitude = LONGITUDE;
+
+        for (int step = 0; step < STEPS; step++) {
+            latitude += (random.nextDouble() - 0.5) * STEP;
+            longitude += (random.nextDouble() - 0.5) * STEP;
+            long version = nearest.getVersion();
+            int[] previous = getIds(nearest);
+
+            boolean changed = nearest.update(latitude, longitude);
+
+            double[] distances = new double[RANDOM_POINTS];
+            for (int i = 0; i < RANDOM_POINTS; i++) {
+                distances[i] = index.distanceTo(i, latitude, longitude);
+            }
+            Arrays.sort(distances);
+
+            Assertions.assertEquals(COUNT, nearest.getSize());
+            for (int i = 0; i < COUNT; i++) {
+                Assertions.assertEquals(distances[i],
+                        nearest.getDistance(i), 0.0);
+            }
+
+            Assertions.assertEquals(
+                    !Arrays.equals(previous, getIds(nearest)), changed);
+            Assertions.assertEquals(changed,
+                    nearest.getVersion() != version);
+        }
+
+        Assertions.assertTrue(nearest.getQueryCount() < STEPS / 10);
+    }
+
+    /**
+     * Tests the index is queried again when it is modified.
+     */
+    @Test
+    public final void testIndexModified() {
+        NearestWaypoints nearest = new NearestWaypoints(index);
+        nearest.update(LATITUDE, LONGITUDE);
+        long queryCount = nearest.getQueryCount();
+
+        index.add(RANDOM_POINTS, LATITUDE, LONGITUDE);
+
+        Assertions.assertTrue(nearest.update(LATITUDE, LONGITUDE));
+        Assertions.assertEquals(queryCount + 1, nearest.getQueryCount());
+        Assertions.assertEquals(RANDOM_POINTS, nearest.getId(0));
+    }
+
+    /**
+     * Tests updates without querying the index don't allocate memory.
+     */
+    @Test
+    public final void testNoAllocation() {
+        java.lang.management.ThreadMXBean bean
+                = ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(
+                bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean
+                = (com.sun.management.ThreadMXBean) bean;
+        Assumptions.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        NearestWaypoints nearest
+                = new NearestWaypoints(index, COUNT, REQUERY_DISTANCE);
+        nearest.update(LATITUDE, LONGITUDE);
+        long queryCount = nearest.getQueryCount();
+
+        // warm up
+        for (int i = 0; i < STEPS; i++) {
+            nearest.update(LATITUDE + (i % 2) * STEP, LONGITUDE);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < STEPS; i++) {
+            nearest.update(LATITUDE + (i % 2) * STEP, LONGITUDE);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        Assertions.assertEquals(queryCount, nearest.getQueryCount());
+        Assertions.assertEquals(0, allocated);
+    }
+
+    /**
+     * Gets the ids of the nearest waypoints.
+     *
+     * @param nearest Nearest waypoints
+     * @return array with ids
+     */
+    private static int[] getIds(final NearestWaypoints nearest) {
+        int[] ids = new int[nearest.getSize()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = nearest.getId(i);
+        }
+        return ids;
+    }
+}
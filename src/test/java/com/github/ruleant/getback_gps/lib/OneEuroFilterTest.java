@@ -0,0 +1,215 @@
+/**
+ * Unit tests for OneEuroFilter class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+/**
+ * Unit tests for OneEuroFilter class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class OneEuroFilterTest {
+    /**
+     * Minimum cutoff frequency in Hz.
+     */
+    private static final double MIN_CUTOFF = 0.3;
+
+    /**
+     * Beta value.
+     */
+    private static final double BETA = 0.05;
+
+    /**
+     * Derivative cutoff frequency in Hz.
+     */
+    private static final double DERIVATIVE_CUTOFF = 1;
+
+    /**
+     * Sample period : 20 ms (50 Hz) in nanoseconds.
+     */
+    private static final long PERIOD = 20000000;
+
+    /**
+     * Heading at start of test signal.
+     */
+    private static final double START_HEADING = 100;
+
+    /**
+     * Heading change per sample while turning (90°/s).
+     */
+    private static final double TURN_RATE = 1.8;
+
+    /**
+     * Number of samples before turning.
+     */
+    private static final int TURN_START = 250;
+
+    /**
+     * Number of samples while turning.
+     */
+    private static final int TURN_SAMPLES = 50;
+
+    /**
+     * Total number of samples of test signal.
+     */
+    private static final int SAMPLES = 400;
+
+    /**
+     * Standard deviation of heading noise.
+     */
+    private static final double NOISE = 2;
+
+    /**
+     * Accuracy.
+     */
+    private static final double ACCURACY = 0.0001;
+
+    /**
+     * Tests parameters.
+     */
+    @Test
+    public final void testParameters() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new OneEuroFilter(0, BETA, DERIVATIVE_CUTOFF);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new OneEuroFilter(MIN_CUTOFF, -1, DERIVATIVE_CUTOFF);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new OneEuroFilter(MIN_CUTOFF, BETA, 0);
+        });
+    }
+
+    /**
+     * Tests filtering values.
+     */
+    @Test
+    public final void testFilter() {
+        OneEuroFilter filter
+                = new OneEuroFilter(MIN_CUTOFF, BETA, DERIVATIVE_CUTOFF);
+
+        // first value is not filtered
+        Assertions.assertEquals(10, filter.filter(10, PERIOD), ACCURACY);
+
+        // value is smoothed
+        float value = filter.filter(20, 2 * PERIOD);
+        Assertions.assertTrue(value > 10 && value < 20);
+
+        // value with an old timestamp is ignored
+        Assertions.assertEquals(value, filter.filter(100, 2 * PERIOD),
+                ACCURACY);
+        Assertions.assertEquals(value, filter.filter(100, PERIOD),
+                ACCURACY);
+
+        filter.reset();
+        Assertions.assertEquals(-1, filter.filter(-1, 0), ACCURACY);
+
+        SignalFilter instance = filter.newInstance();
+        Assertions.assertNotSame(filter, instance);
+        Assertions.assertEquals(5, instance.filter(5, 0), ACCURACY);
+    }
+
+    /**
+     * Tests a faster changing signal is followed more closely.
+     */
+    @Test
+    public final void testAdaptiveCutoff() {
+        OneEuroFilter slow
+                = new OneEuroFilter(MIN_CUTOFF, BETA, DERIVATIVE_CUTOFF);
+        OneEuroFilter fast
+                = new OneEuroFilter(MIN_CUTOFF, BETA, DERIVATIVE_CUTOFF);
+
+        slow.filter(0, 0);
+        fast.filter(0, 0);
+        float slowValue = 0;
+        float fastValue = 0;
+        for (int i = 1; i <= 10; i++) {
+            slowValue = slow.filter(i, i * PERIOD);
+            fastValue = fast.filter(i * 10, i * PERIOD);
+        }
+
+        // relative lag
+        Assertions.assertTrue((100 - fastValue) / 100 < (10 - slowValue) / 10);
+    }
+
+    /**
+     * Compares latency and jitter of filters on a heading signal :
+     * stationary with noise, a turn of 90° in one second, stationary.
+     *
+     * The One Euro filter has less lag than exponential filters
+     * with the same or less jitter.
+     */
+    @Test
+    public final void testLatencyJitter() {
+        double[] raw = measure(new ExponentialFilter(1));
+        double[] exponentialSlow = measure(new ExponentialFilter(0.05f));
+        double[] exponentialFast = measure(new ExponentialFilter(0.2f));
+        double[] oneEuro = measure(
+                new OneEuroFilter(MIN_CUTOFF, BETA, DERIVATIVE_CUTOFF));
+
+        // jitter
+        Assertions.assertTrue(oneEuro[0] < raw[0] / 3);
+        Assertions.assertTrue(oneEuro[0] < exponentialFast[0]);
+        Assertions.assertTrue(exponentialSlow[0] < oneEuro[0]);
+        // lag
+        Assertions.assertTrue(oneEuro[1] < raw[1]);
+        Assertions.assertTrue(oneEuro[1] < exponentialFast[1] / 2);
+        Assertions.assertTrue(oneEuro[1] < exponentialSlow[1] / 10);
+    }
+
+    /**
+     * Filters the test heading signal.
+     *
+     * @param filter Filter to apply, is wrapped in a CircularFilter
+     * @return jitter (RMS error before the turn)
+     *  and lag (mean absolute error during and after the turn)
+     */
+    private static double[] measure(final SignalFilter filter) {
+        CircularFilter circularFilter = new CircularFilter(filter);
+        Random random = new Random(1);
+        double jitter = 0;
+        double lag = 0;
+        final int jitterStart = TURN_START - TURN_SAMPLES * 2;
+
+        for (int i = 0; i < SAMPLES; i++) {
+            double heading = START_HEADING + TURN_RATE
+                    * Math.max(0, Math.min(i - TURN_START, TURN_SAMPLES));
+            float value = (float) (heading + random.nextGaussian() * NOISE);
+            double error = circularFilter.filter(value, i * PERIOD) - heading;
+
+            if (i >= jitterStart && i < TURN_START) {
+                jitter += error * error;
+            } else if (i >= TURN_START && i < TURN_START + TURN_SAMPLES * 2) {
+                lag += Math.abs(error);
+            }
+        }
+
+        return new double[] {
+            Math.sqrt(jitter / (TURN_START - jitterStart)),
+            lag / (TURN_SAMPLES * 2),
+        };
+    }
+}
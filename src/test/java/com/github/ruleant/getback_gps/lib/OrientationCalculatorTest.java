@@ -0,0 +1,351 @@
+/**
+ * Unit tests for OrientationCalculator class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Unit tests for OrientationCalculator class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class OrientationCalculatorTest {
+    /**
+     * Instance of the orientation calculator class.
+     */
+    private OrientationCalculator calculator;
+
+    /**
+     * Update rate in nanoseconds.
+     */
+    private static final long UPDATE_RATE = 1000;
+
+    /**
+     * Gravity of a device lying flat.
+     */
+    private static final float[] GRAVITY = {0, 0, 9.81f};
+
+    /**
+     * Magnetic field when the device points north.
+     */
+    private static final float[] FIELD_NORTH = {0, 20, -40};
+
+    /**
+     * Magnetic field when the device points east.
+     */
+    private static final float[] FIELD_EAST = {-20, 0, -40};
+
+    /**
+     * Acceleration of a device in free fall.
+     */
+    private static final float[] FREE_FALL = {0, 0, 0.5f};
+
+    /**
+     * Number of sensor events in allocation test.
+     */
+    private static final int EVENTS = 10000;
+
+    /**
+     * Number of warm up rounds in allocation test.
+     */
+    private static final int WARM_UP_ROUNDS = 5;
+
+    /**
+     * Accuracy.
+     */
+    private static final double ACCURACY = 0.001;
+
+    /**
+     * Sets up the test fixture.
+     * (Called before every test case method.)
+     */
+    @BeforeEach
+    public final void setUp() {
+        // no filtering
+        calculator = new OrientationCalculator(UPDATE_RATE, 1, 1);
+    }
+
+    /**
+     * Tests parameters.
+     */
+    @Test
+    public final void testParameters() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new OrientationCalculator(0, 1, 1);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new OrientationCalculator(UPDATE_RATE, 2, 1);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new OrientationCalculator(UPDATE_RATE, 1, -1);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new OrientationCalculator(UPDATE_RATE, new ExponentialFilter(1),
+                    new ExponentialFilter(1), null);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new OrientationCalculator(UPDATE_RATE, null,
+                    new ExponentialFilter(1), new ExponentialFilter(1));
+        });
+
+        Assertions.assertFalse(calculator.setAcceleration(null, 0));
+        Assertions.assertFalse(calculator.setMagneticField(new float[2], 0));
+    }
+
+    /**
+     * Tests calculating the azimuth.
+     */
+    @Test
+    public final void testGetAzimuth() {
+        Assertions.assertEquals(0,
+                OrientationCalculator.getAzimuth(GRAVITY, FIELD_NORTH),
+                ACCURACY);
+        Assertions.assertEquals(Math.PI / 2,
+                OrientationCalculator.getAzimuth(GRAVITY, FIELD_EAST),
+                ACCURACY);
+        Assertions.assertTrue(Double.isNaN(
+                OrientationCalculator.getAzimuth(FREE_FALL, FIELD_NORTH)));
+        Assertions.assertTrue(Double.isNaN(
+                OrientationCalculator.getAzimuth(GRAVITY, new float[3])));
+    }
+
+    /**
+     * Tests calculating the orientation from sensor values.
+     */
+    @Test
+    public final void testOrientation() {
+        // orientation is calculated when both sensor values are available
+        Assertions.assertTrue(calculator.setAcceleration(GRAVITY, 1));
+        Assertions.assertEquals(0, calculator.getOrientationTimestamp());
+        Assertions.assertTrue(calculator.setMagneticField(FIELD_EAST, 2));
+        Assertions.assertEquals(90, calculator.getOrientation(), ACCURACY);
+        Assertions.assertEquals(2, calculator.getOrientationTimestamp());
+
+        // free fall, orientation is not updated
+        Assertions.assertTrue(
+                calculator.setAcceleration(FREE_FALL, UPDATE_RATE + 2));
+        Assertions.assertEquals(90, calculator.getOrientation(), ACCURACY);
+        Assertions.assertEquals(2, calculator.getOrientationTimestamp());
+
+        // orientation sensor
+        Assertions.assertTrue(
+                calculator.setOrientation(45, UPDATE_RATE + 3));
+        Assertions.assertEquals(45, calculator.getOrientation(), ACCURACY);
+        Assertions.assertEquals(UPDATE_RATE + 3,
+                calculator.getOrientationTimestamp());
+    }
+
+    /**
+     * Tests deferring the calculation to the end of a batch,
+     * all sensor values of the batch are filtered.
+     */
+    @Test
+    public final void testDeferred() {
+        OrientationCalculator filtered
+                = new OrientationCalculator(UPDATE_RATE, 0.5f, 1);
+        OrientationCalculator batched
+                = new OrientationCalculator(UPDATE_RATE, 0.5f, 1);
+        batched.setDeferred(true);
+        Assertions.assertTrue(batched.isDeferred());
+        Assertions.assertFalse(batched.calculate());
+
+        long timestamp = 1;
+        for (int i = 0; i < 10; i++) {
+            float[] field = FIELD_NORTH;
+            if (i % 2 == 1) {
+                field = FIELD_EAST;
+            }
+            Assertions.assertTrue(batched.setAcceleration(GRAVITY, timestamp));
+            Assertions.assertTrue(batched.setMagneticField(field, timestamp));
+            filtered.setAcceleration(GRAVITY, timestamp);
+            filtered.setMagneticField(field, timestamp);
+            timestamp += UPDATE_RATE + 1;
+        }
+        Assertions.assertEquals(0, batched.getOrientationTimestamp());
+
+        // calculated once
+        Assertions.assertTrue(batched.calculate());
+        Assertions.assertFalse(batched.calculate());
+        Assertions.assertEquals(filtered.getOrientation(),
+                batched.getOrientation(), ACCURACY);
+        Assertions.assertEquals(filtered.getOrientationTimestamp(),
+                batched.getOrientationTimestamp());
+
+        // rotation vector, the last value is used
+        final float component = (float) Math.sqrt(0.5);
+        batched.setRotationVector(new float[] {0, 0, 0, 1}, timestamp);
+        batched.setRotationVector(new float[] {0, 0, -1 * component},
+                timestamp + UPDATE_RATE + 1);
+        Assertions.assertNotEquals(90, batched.getOrientation(), ACCURACY);
+        Assertions.assertTrue(batched.calculate());
+        Assertions.assertEquals(90, batched.getOrientation(), ACCURACY);
+
+        // pending values are calculated when no longer deferred
+        batched.setRotationVector(new float[] {0, 0, 0, 1},
+                timestamp + 2 * (UPDATE_RATE + 1));
+        batched.setDeferred(false);
+        Assertions.assertEquals(0, batched.getOrientation(), ACCURACY);
+    }
+
+    /**
+     * Tests rejecting values that arrive sooner than the update rate.
+     */
+    @Test
+    public final void testUpdateRate() {
+        Assertions.assertTrue(calculator.setAcceleration(GRAVITY, 1));
+        Assertions.assertTrue(calculator.setMagneticField(FIELD_NORTH, 1));
+        Assertions.assertEquals(0, calculator.getOrientation(), ACCURACY);
+
+        Assertions.assertFalse(
+                calculator.setMagneticField(FIELD_EAST, UPDATE_RATE));
+        Assertions.assertEquals(0, calculator.getOrientation(), ACCURACY);
+
+        Assertions.assertTrue(
+                calculator.setMagneticField(FIELD_EAST, UPDATE_RATE + 2));
+        Assertions.assertEquals(90, calculator.getOrientation(), ACCURACY);
+
+        Assertions.assertTrue(calculator.setOrientation(1, 1));
+        Assertions.assertFalse(calculator.setOrientation(2, UPDATE_RATE));
+        Assertions.assertEquals(1, calculator.getOrientation(), ACCURACY);
+    }
+
+    /**
+     * Tests calculating the orientation from a rotation vector.
+     */
+    @Test
+    public final void testRotationVector() {
+        // rotation of -90° around z axis : pointing east
+        final float component = (float) Math.sqrt(0.5);
+
+        Assertions.assertEquals(0,
+                OrientationCalculator.getAzimuth(1, 0, 0, 0), ACCURACY);
+        Assertions.assertEquals(Math.PI / 2, OrientationCalculator.getAzimuth(
+                component, 0, 0, -1 * component), ACCURACY);
+
+        Assertions.assertFalse(calculator.setRotationVector(null, 1));
+        Assertions.assertFalse(calculator.setRotationVector(new float[2], 1));
+
+        // w is calculated
+        Assertions.assertTrue(calculator.setRotationVector(
+                new float[] {0, 0, -1 * component}, 1));
+        Assertions.assertEquals(90, calculator.getOrientation(), ACCURACY);
+        Assertions.assertEquals(1, calculator.getOrientationTimestamp());
+
+        // too soon
+        Assertions.assertFalse(calculator.setRotationVector(
+                new float[] {0, 0, component, component, 0}, 2));
+        Assertions.assertEquals(90, calculator.getOrientation(), ACCURACY);
+
+        // w and accuracy
+        Assertions.assertTrue(calculator.setRotationVector(
+                new float[] {0, 0, component, component, 0},
+                UPDATE_RATE + 2));
+        Assertions.assertEquals(270, calculator.getOrientation(), ACCURACY);
+    }
+
+    /**
+     * Tests sensor fusion with gyroscope values.
+     */
+    @Test
+    public final void testFusion() {
+        final float[] rate = {0, 0, 0};
+
+        // fusion is disabled
+        Assertions.assertFalse(calculator.isFusionEnabled());
+        Assertions.assertFalse(calculator.setGyroscope(rate, 1));
+
+        calculator.setFusion(new OrientationFusion(1));
+        Assertions.assertTrue(calculator.isFusionEnabled());
+        Assertions.assertFalse(calculator.setGyroscope(null, 1));
+        // not initialised
+        Assertions.assertFalse(calculator.setGyroscope(rate, 1));
+
+        calculator.setAcceleration(GRAVITY, 1);
+        calculator.setMagneticField(FIELD_EAST, 2);
+        Assertions.assertEquals(90, calculator.getOrientation(), ACCURACY);
+
+        // updates are reported at the update rate
+        Assertions.assertTrue(calculator.setGyroscope(rate, 3));
+        Assertions.assertFalse(calculator.setGyroscope(rate, 4));
+        Assertions.assertTrue(calculator.setGyroscope(rate, UPDATE_RATE + 4));
+
+        calculator.setFusion(null);
+        Assertions.assertFalse(calculator.isFusionEnabled());
+    }
+
+    /**
+     * Tests processing sensor events doesn't allocate memory.
+     */
+    @Test
+    public final void testNoAllocation() {
+        java.lang.management.ThreadMXBean bean
+                = ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(
+                bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean
+                = (com.sun.management.ThreadMXBean) bean;
+        Assumptions.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        calculator = new OrientationCalculator(UPDATE_RATE,
+                new ExponentialFilter(0.5f),
+                new SignalFilterChain(
+                        new MedianFilter(3), new ExponentialFilter(0.5f)),
+                new CircularFilter(new OneEuroFilter(1, 1, 1)));
+
+        // warm up, until the methods are compiled
+        long timestamp = 0;
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            timestamp = sendEvents(timestamp);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        sendEvents(timestamp);
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        Assertions.assertEquals(0, allocated);
+    }
+
+    /**
+     * Sends alternating accelerometer and magnetic field events.
+     *
+     * @param startTimestamp Timestamp of first event
+     * @return timestamp of last event
+     */
+    private long sendEvents(final long startTimestamp) {
+        long timestamp = startTimestamp;
+        for (int i = 0; i < EVENTS; i++) {
+            timestamp += UPDATE_RATE + 1;
+            Assertions.assertTrue(
+                    calculator.setAcceleration(GRAVITY, timestamp));
+            Assertions.assertTrue(calculator.setMagneticField(
+                    i % 2 == 0 ? FIELD_NORTH : FIELD_EAST, timestamp));
+        }
+        return timestamp;
+    }
+}
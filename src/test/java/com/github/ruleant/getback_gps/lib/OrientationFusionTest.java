@@ -0,0 +1,291 @@
+/**
+ * Unit tests for OrientationFusion class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+/**
+ * Unit tests for OrientationFusion class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class OrientationFusionTest {
+    /**
+     * Instance of the orientation fusion class.
+     */
+    private OrientationFusion fusion;
+
+    /**
+     * Time constant of drift correction in seconds.
+     */
+    private static final double TIME_CONSTANT = 2;
+
+    /**
+     * Gravity of a device lying flat.
+     */
+    private static final float[] GRAVITY = {0, 0, 9.81f};
+
+    /**
+     * Magnetic field when the device points north.
+     */
+    private static final float[] FIELD_NORTH = {0, 20, -40};
+
+    /**
+     * Magnetic field when the device points east.
+     */
+    private static final float[] FIELD_EAST = {-20, 0, -40};
+
+    /**
+     * Gyroscope period : 10 ms in nanoseconds.
+     */
+    private static final long GYROSCOPE_PERIOD = 10000000;
+
+    /**
+     * Accelerometer and magnetic field update rate : 200 ms in nanoseconds.
+     */
+    private static final long UPDATE_RATE = 200000000;
+
+    /**
+     * Accelerometer and magnetic field period : 210 ms in nanoseconds.
+     */
+    private static final long SENSOR_PERIOD = 210000000;
+
+    /**
+     * Heading change of simulated turn.
+     */
+    private static final double TURN_ANGLE = 90;
+
+    /**
+     * Duration of simulated turn in nanoseconds.
+     */
+    private static final long TURN_DURATION = 500000000;
+
+    /**
+     * Start of simulated turn in nanoseconds.
+     */
+    private static final long TURN_START = 5000000000L;
+
+    /**
+     * Duration of simulation in nanoseconds.
+     */
+    private static final long SIMULATION_DURATION = 20000000000L;
+
+    /**
+     * Maximum heading error of a settled heading.
+     */
+    private static final double SETTLED_ERROR = 5;
+
+    /**
+     * Accuracy in degrees.
+     */
+    private static final double ACCURACY = 0.1;
+
+    /**
+     * Sets up the test fixture.
+     * (Called before every test case method.)
+     */
+    @BeforeEach
+    public final void setUp() {
+        fusion = new OrientationFusion(TIME_CONSTANT);
+    }
+
+    /**
+     * Tests parameters.
+     */
+    @Test
+    public final void testParameters() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new OrientationFusion(-1);
+        });
+    }
+
+    /**
+     * Tests initialising the orientation.
+     */
+    @Test
+    public final void testInitialize() {
+        // gyroscope values are ignored until initialised
+        fusion.rotate(new float[] {0, 0, 1}, GYROSCOPE_PERIOD);
+        fusion.rotate(new float[] {0, 0, 1}, 2 * GYROSCOPE_PERIOD);
+        Assertions.assertFalse(fusion.isInitialized());
+
+        // free fall
+        Assertions.assertFalse(
+                fusion.correct(new float[3], FIELD_NORTH, 1));
+        Assertions.assertFalse(fusion.isInitialized());
+
+        Assertions.assertTrue(fusion.correct(GRAVITY, FIELD_EAST, 1));
+        Assertions.assertTrue(fusion.isInitialized());
+        Assertions.assertEquals(TURN_ANGLE, fusion.getAzimuth(), ACCURACY);
+
+        fusion.reset();
+        Assertions.assertFalse(fusion.isInitialized());
+        Assertions.assertTrue(fusion.correct(GRAVITY, FIELD_NORTH, 1));
+        Assertions.assertEquals(0, fusion.getAzimuth(), ACCURACY);
+    }
+
+    /**
+     * Tests integrating gyroscope values.
+     */
+    @Test
+    public final void testRotate() {
+        fusion.correct(GRAVITY, FIELD_NORTH, 1);
+
+        // clockwise rotation of 90° in one second
+        float[] rate = {0, 0, (float) (-Math.PI / 2)};
+        for (long i = 0; i <= 100; i++) {
+            fusion.rotate(rate, (i + 1) * GYROSCOPE_PERIOD);
+        }
+        Assertions.assertEquals(TURN_ANGLE, fusion.getAzimuth(), ACCURACY);
+
+        // a gap in gyroscope values isn't integrated
+        fusion.rotate(rate, 200 * GYROSCOPE_PERIOD);
+        Assertions.assertEquals(TURN_ANGLE, fusion.getAzimuth(), ACCURACY);
+
+        // counter clockwise, crossing 0°
+        rate[2] = (float) Math.PI;
+        for (long i = 201; i <= 300; i++) {
+            fusion.rotate(rate, i * GYROSCOPE_PERIOD);
+        }
+        Assertions.assertEquals(FormatUtils.CIRCLE_FULL - TURN_ANGLE,
+                fusion.getAzimuth(), ACCURACY);
+    }
+
+    /**
+     * Tests correcting drift with accelerometer and magnetic field values.
+     */
+    @Test
+    public final void testCorrect() {
+        fusion.correct(GRAVITY, FIELD_NORTH, 1);
+
+        // correction after one time constant
+        long timestamp = 1 + (long) (TIME_CONSTANT * 1e9);
+        fusion.correct(GRAVITY, FIELD_EAST, timestamp);
+        Assertions.assertTrue(fusion.getAzimuth() > 0);
+        Assertions.assertTrue(fusion.getAzimuth() < TURN_ANGLE / 2 + 1);
+
+        // converges
+        for (int i = 0; i < 100; i++) {
+            timestamp += UPDATE_RATE;
+            fusion.correct(GRAVITY, FIELD_EAST, timestamp);
+        }
+        Assertions.assertEquals(TURN_ANGLE, fusion.getAzimuth(), ACCURACY);
+
+        // no time constant : no gyroscope
+        fusion = new OrientationFusion(0);
+        fusion.correct(GRAVITY, FIELD_NORTH, 1);
+        fusion.correct(GRAVITY, FIELD_EAST, 2);
+        Assertions.assertEquals(TURN_ANGLE, fusion.getAzimuth(), ACCURACY);
+    }
+
+    /**
+     * Compares the time a heading needs to settle after a turn,
+     * of the calculated orientation and the sensor fusion,
+     * on a simulated turn of 90° in 0.5 s, with sensor noise
+     * and gyroscope bias.
+     */
+    @Test
+    public final void testTurnLatency() {
+        OrientationCalculator calculated = createCalculator();
+        OrientationCalculator fused = createCalculator();
+        fused.setFusion(fusion);
+
+        double calculatedSettle = measureSettleTime(calculated);
+        double fusedSettle = measureSettleTime(fused);
+
+        // fused heading follows the turn, calculated heading lags
+        Assertions.assertTrue(fusedSettle < 0.2, "fused " + fusedSettle);
+        Assertions.assertTrue(calculatedSettle > 0.5,
+                "calculated " + calculatedSettle);
+    }
+
+    /**
+     * Creates an orientation calculator,
+     * with the same filters as SensorOrientation.
+     *
+     * @return orientation calculator
+     */
+    private static OrientationCalculator createCalculator() {
+        return new OrientationCalculator(UPDATE_RATE,
+                new ExponentialFilter(0.6f),
+                new SignalFilterChain(
+                        new MedianFilter(3), new ExponentialFilter(0.6f)),
+                new CircularFilter(new OneEuroFilter(0.3, 0.05, 1)));
+    }
+
+    /**
+     * Simulates a turn, and measures the time after the end of the turn
+     * until the heading error stays below SETTLED_ERROR.
+     *
+     * @param calculator Orientation calculator
+     * @return settle time in seconds
+     */
+    private static double measureSettleTime(
+            final OrientationCalculator calculator) {
+        Random random = new Random(1);
+        final float gyroscopeBias = 0.01f;
+        final double gyroscopeNoise = 0.02;
+        final double fieldNoise = 0.5;
+        final long turnEnd = TURN_START + TURN_DURATION;
+        float[] rate = new float[3];
+        float[] field = new float[3];
+        long lastError = 0;
+
+        for (long t = GYROSCOPE_PERIOD; t < SIMULATION_DURATION;
+             t += GYROSCOPE_PERIOD) {
+            double heading = TURN_ANGLE * Math.max(0,
+                    Math.min(1, (t - TURN_START) / (double) TURN_DURATION));
+
+            double turnRate = 0;
+            if (t > TURN_START && t <= turnEnd) {
+                turnRate = Math.toRadians(TURN_ANGLE) * 1e9 / TURN_DURATION;
+            }
+            rate[2] = (float) (-turnRate + gyroscopeBias
+                    + random.nextGaussian() * gyroscopeNoise);
+            calculator.setGyroscope(rate, t);
+
+            if (t % SENSOR_PERIOD < GYROSCOPE_PERIOD) {
+                double azimuth = Math.toRadians(heading);
+                field[0] = (float) (-20 * Math.sin(azimuth)
+                        + random.nextGaussian() * fieldNoise);
+                field[1] = (float) (20 * Math.cos(azimuth)
+                        + random.nextGaussian() * fieldNoise);
+                field[2] = -40;
+                calculator.setAcceleration(GRAVITY, t);
+                calculator.setMagneticField(field, t);
+            }
+
+            double error = Math.abs(FormatUtils.normalizeAngle(
+                    calculator.getOrientation() - heading
+                    + FormatUtils.CIRCLE_HALF) - FormatUtils.CIRCLE_HALF);
+            if (t > TURN_START && error > SETTLED_ERROR) {
+                lastError = t;
+            }
+        }
+
+        return Math.max(0, lastError - turnEnd) / 1e9;
+    }
+}
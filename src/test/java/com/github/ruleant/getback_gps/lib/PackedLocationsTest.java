@@ -0,0 +1,282 @@
+/**
+ * Unit tests for PackedLocations class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for PackedLocations class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class PackedLocationsTest {
+    /**
+     * Instance of the packed locations class.
+     */
+    private PackedLocations locations;
+
+    /**
+     * Mock location with all values set.
+     */
+    private AriadneLocation fullLocation;
+
+    /**
+     * Mock location with only latitude and longitude.
+     */
+    private AriadneLocation bareLocation;
+
+    /**
+     * Latitude of test location.
+     */
+    private static final double LATITUDE = 50.8503456;
+
+    /**
+     * Longitude of test location.
+     */
+    private static final double LONGITUDE = -4.3517891;
+
+    /**
+     * Altitude of test location.
+     */
+    private static final double ALTITUDE = 56.5;
+
+    /**
+     * Accuracy of test location.
+     */
+    private static final float ACCURACY = 12.5f;
+
+    /**
+     * Speed of test location.
+     */
+    private static final float SPEED = 1.25f;
+
+    /**
+     * Bearing of test location.
+     */
+    private static final float BEARING = 123.46f;
+
+    /**
+     * Timestamp of test location.
+     */
+    private static final long TIME = 1600000000000L;
+
+    /**
+     * Coordinate accuracy : 1e-7°.
+     */
+    private static final double COORDINATE_ACCURACY = 1e-7;
+
+    /**
+     * Bearing accuracy : 0.1°.
+     */
+    private static final double BEARING_ACCURACY = 0.05;
+
+    /**
+     * Sets up the test fixture.
+     * (Called before every test case method.)
+     */
+    @BeforeEach
+    public final void setUp() {
+        locations = new PackedLocations(1);
+
+        fullLocation = mock(AriadneLocation.class);
+        when(fullLocation.getLatitude()).thenReturn(LATITUDE);
+        when(fullLocation.getLongitude()).thenReturn(LONGITUDE);
+        when(fullLocation.getAltitude()).thenReturn(ALTITUDE);
+        when(fullLocation.getAccuracy()).thenReturn(ACCURACY);
+        when(fullLocation.getSpeed()).thenReturn(SPEED);
+        when(fullLocation.getBearing()).thenReturn(BEARING);
+        when(fullLocation.getTime()).thenReturn(TIME);
+        when(fullLocation.hasAltitude()).thenReturn(true);
+        when(fullLocation.hasAccuracy()).thenReturn(true);
+        when(fullLocation.hasSpeed()).thenReturn(true);
+        when(fullLocation.hasBearing()).thenReturn(true);
+        fullLocation.setName("Home");
+
+        bareLocation = mock(AriadneLocation.class);
+        when(bareLocation.getLatitude()).thenReturn(-1 * LATITUDE);
+        when(bareLocation.getLongitude()).thenReturn(-1 * LONGITUDE);
+        when(bareLocation.getTime()).thenReturn(TIME + 1);
+    }
+
+    /**
+     * Tests parameters.
+     */
+    @Test
+    public final void testParameters() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new PackedLocations(-1);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            locations.add(null);
+        });
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> {
+            locations.getLatitude(0);
+        });
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> {
+            locations.set(0, fullLocation);
+        });
+    }
+
+    /**
+     * Tests adding locations, growing the arrays.
+     */
+    @Test
+    public final void testAdd() {
+        Assertions.assertEquals(0, locations.getSize());
+
+        Assertions.assertEquals(0, locations.add(fullLocation));
+        Assertions.assertEquals(1, locations.add(bareLocation));
+        Assertions.assertEquals(2, locations.add(1, 2, TIME));
+        Assertions.assertEquals(3, locations.getSize());
+
+        // full location
+        Assertions.assertEquals(LATITUDE, locations.getLatitude(0),
+                COORDINATE_ACCURACY);
+        Assertions.assertEquals(LONGITUDE, locations.getLongitude(0),
+                COORDINATE_ACCURACY);
+        Assertions.assertEquals(ALTITUDE, locations.getAltitude(0), 0.0);
+        Assertions.assertEquals(ACCURACY, locations.getAccuracy(0), 0.0);
+        Assertions.assertEquals(SPEED, locations.getSpeed(0), 0.0);
+        Assertions.assertEquals(BEARING, locations.getBearing(0),
+                BEARING_ACCURACY);
+        Assertions.assertEquals(TIME, locations.getTime(0));
+        Assertions.assertEquals("Home", locations.getName(0));
+        Assertions.assertTrue(
+                locations.hasFlag(0, PackedLocations.HAS_ALTITUDE));
+        Assertions.assertTrue(
+                locations.hasFlag(0, PackedLocations.HAS_BEARING));
+
+        // bare location
+        Assertions.assertEquals(-1 * LATITUDE, locations.getLatitude(1),
+                COORDINATE_ACCURACY);
+        Assertions.assertFalse(
+                locations.hasFlag(1, PackedLocations.HAS_ALTITUDE));
+        Assertions.assertFalse(
+                locations.hasFlag(1, PackedLocations.HAS_ACCURACY));
+        Assertions.assertFalse(
+                locations.hasFlag(1, PackedLocations.HAS_SPEED));
+        Assertions.assertFalse(
+                locations.hasFlag(1, PackedLocations.HAS_BEARING));
+        Assertions.assertEquals(0, locations.getAltitude(1), 0.0);
+        Assertions.assertNull(locations.getName(1));
+
+        // fixed point location
+        Assertions.assertEquals(1, locations.getFixedPointLatitude(2));
+        Assertions.assertEquals(2, locations.getFixedPointLongitude(2));
+    }
+
+    /**
+     * Tests replacing a location, renaming and clearing.
+     */
+    @Test
+    public final void testSetClear() {
+        locations.add(fullLocation);
+        locations.set(0, bareLocation);
+        Assertions.assertEquals(1, locations.getSize());
+        Assertions.assertEquals(TIME + 1, locations.getTime(0));
+        Assertions.assertFalse(
+                locations.hasFlag(0, PackedLocations.HAS_ALTITUDE));
+        Assertions.assertNull(locations.getName(0));
+
+        locations.setName(0, "Car");
+        Assertions.assertEquals("Car", locations.getName(0));
+
+        locations.clear();
+        Assertions.assertEquals(0, locations.getSize());
+        locations.add(0, 0, 0);
+        Assertions.assertNull(locations.getName(0));
+
+        locations.trimToSize();
+        Assertions.assertEquals(1, locations.getSize());
+    }
+
+    /**
+     * Tests bearing rounding near a full circle.
+     */
+    @Test
+    public final void testBearingFullCircle() {
+        when(fullLocation.getBearing()).thenReturn(359.97f);
+        locations.add(fullLocation);
+
+        Assertions.assertEquals(0, locations.getBearing(0), 0.0);
+    }
+
+    /**
+     * Tests copying into a Location instance.
+     */
+    @Test
+    public final void testCopyTo() {
+        locations.add(fullLocation);
+        locations.add(bareLocation);
+
+        AriadneLocation target = mock(AriadneLocation.class);
+        locations.copyTo(0, target);
+        verify(target).setLatitude(locations.getLatitude(0));
+        verify(target).setLongitude(locations.getLongitude(0));
+        verify(target).setAltitude((float) ALTITUDE);
+        verify(target).setAccuracy(ACCURACY);
+        verify(target).setSpeed(SPEED);
+        verify(target).setBearing(locations.getBearing(0));
+        verify(target).setTime(TIME);
+        Assertions.assertEquals("Home", target.getName());
+        verify(target, never()).removeAltitude();
+
+        target = mock(AriadneLocation.class);
+        locations.copyTo(1, target);
+        verify(target).removeAltitude();
+        verify(target).removeAccuracy();
+        verify(target).removeSpeed();
+        verify(target).removeBearing();
+        Assertions.assertNull(target.getName());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            locations.copyTo(0, null);
+        });
+    }
+
+    /**
+     * Tests distance, bearing and path length.
+     */
+    @Test
+    public final void testDistance() {
+        locations.add(0, 0, TIME);
+        locations.add(GreatCircle.toFixedPoint(1), 0, TIME);
+        locations.add(GreatCircle.toFixedPoint(1),
+                GreatCircle.toFixedPoint(1), TIME);
+
+        Assertions.assertEquals(GreatCircle.METERS_PER_DEGREE,
+                locations.distance(0, 1), 1.0);
+        Assertions.assertEquals(0.0, locations.bearing(0, 1), 0.001);
+        Assertions.assertEquals(FormatUtils.CIRCLE_HALF,
+                locations.bearing(1, 0), 0.001);
+        Assertions.assertEquals(locations.distance(0, 1)
+                        + locations.distance(1, 2),
+                locations.getPathLength(), 0.001);
+    }
+}
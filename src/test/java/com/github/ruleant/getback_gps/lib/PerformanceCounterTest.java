@@ -0,0 +1,78 @@
+/**
+ * Unit tests for PerformanceCounter class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for PerformanceCounter class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class PerformanceCounterTest {
+    /**
+     * Accuracy.
+     */
+    private static final double ACCURACY = 0.0001;
+
+    /**
+     * Tests parameters.
+     */
+    @Test
+    public final void testParameters() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new PerformanceCounter(null);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new PerformanceCounter("");
+        });
+    }
+
+    /**
+     * Tests counting events.
+     */
+    @Test
+    public final void testAdd() {
+        PerformanceCounter counter = new PerformanceCounter("test");
+        Assertions.assertEquals("test", counter.getName());
+        Assertions.assertEquals(0, counter.getCount());
+        Assertions.assertEquals(0, counter.getAverageTime(), ACCURACY);
+
+        counter.add(1000);
+        counter.add(3000);
+        // ignored
+        counter.add(-1);
+
+        Assertions.assertEquals(2, counter.getCount());
+        Assertions.assertEquals(4000, counter.getTotalTime());
+        Assertions.assertEquals(3000, counter.getMaxTime());
+        Assertions.assertEquals(2000, counter.getAverageTime(), ACCURACY);
+        Assertions.assertEquals("test : 2 events, avg 2.0 µs, max 3.0 µs",
+                counter.toString());
+
+        counter.reset();
+        Assertions.assertEquals(0, counter.getCount());
+        Assertions.assertEquals(0, counter.getTotalTime());
+        Assertions.assertEquals(0, counter.getMaxTime());
+    }
+}
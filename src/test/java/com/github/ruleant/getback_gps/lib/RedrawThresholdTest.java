@@ -0,0 +1,139 @@
+/**
+ * Unit tests for RedrawThreshold class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for RedrawThreshold class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class RedrawThresholdTest {
+    /**
+     * Instance of the redraw threshold class.
+     */
+    private RedrawThreshold threshold;
+
+    /**
+     * Radius of the shape in pixels.
+     */
+    private static final double RADIUS = 200;
+
+    /**
+     * Second in nanoseconds.
+     */
+    private static final long SECOND = 1000000000L;
+
+    /**
+     * Accuracy.
+     */
+    private static final double ACCURACY = 0.0001;
+
+    /**
+     * Sets up the test fixture.
+     * (Called before every test case method.)
+     */
+    @BeforeEach
+    public final void setUp() {
+        threshold = new RedrawThreshold(0.5);
+    }
+
+    /**
+     * Tests parameters.
+     */
+    @Test
+    public final void testParameters() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new RedrawThreshold(-1);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new RedrawThreshold(Double.NaN);
+        });
+    }
+
+    /**
+     * Tests the displacement of a rotated point.
+     */
+    @Test
+    public final void testDisplacement() {
+        Assertions.assertEquals(0,
+                RedrawThreshold.getDisplacement(RADIUS, 10, 10), ACCURACY);
+        // half a turn : diameter
+        Assertions.assertEquals(2 * RADIUS,
+                RedrawThreshold.getDisplacement(RADIUS, 0, 180), ACCURACY);
+        // quarter turn
+        Assertions.assertEquals(Math.sqrt(2) * RADIUS,
+                RedrawThreshold.getDisplacement(RADIUS, 300, 30), ACCURACY);
+        // across north, both directions
+        Assertions.assertEquals(
+                RedrawThreshold.getDisplacement(RADIUS, 0, 2),
+                RedrawThreshold.getDisplacement(RADIUS, 359, 1), ACCURACY);
+        Assertions.assertEquals(
+                RedrawThreshold.getDisplacement(RADIUS, 1, 359),
+                RedrawThreshold.getDisplacement(RADIUS, 359, 1), ACCURACY);
+    }
+
+    /**
+     * Tests the visibility threshold.
+     */
+    @Test
+    public final void testVisible() {
+        // 0.1° at 200 px is about 0.35 px
+        Assertions.assertFalse(threshold.isVisible(RADIUS, 90, 90.1));
+        // 0.2° at 200 px is about 0.7 px
+        Assertions.assertTrue(threshold.isVisible(RADIUS, 90, 90.2));
+        // the same angle is visible on a larger shape
+        Assertions.assertTrue(threshold.isVisible(RADIUS * 2, 90, 90.1));
+        Assertions.assertTrue(threshold.isVisible(RADIUS, 359.9, 0.1));
+    }
+
+    /**
+     * Tests counting redraws avoided.
+     */
+    @Test
+    public final void testRecord() {
+        Assertions.assertEquals(0, threshold.getAvoidedPerMinute(), 0);
+
+        Assertions.assertTrue(threshold.record(true, SECOND));
+        Assertions.assertFalse(threshold.record(false, 2 * SECOND));
+        Assertions.assertFalse(threshold.record(false, 3 * SECOND));
+        Assertions.assertEquals(3, threshold.getRequests());
+        Assertions.assertEquals(2, threshold.getAvoided());
+
+        // 2 avoided in 2 seconds
+        Assertions.assertEquals(60, threshold.getAvoidedPerMinute(),
+                ACCURACY);
+        Assertions.assertEquals(90, threshold.getRequestsPerMinute(),
+                ACCURACY);
+        Assertions.assertEquals(
+                "redraws avoided : 2 of 3 requests, 60/min of 90/min",
+                threshold.toString());
+
+        threshold.reset();
+        Assertions.assertEquals(0, threshold.getRequests());
+        Assertions.assertEquals(0, threshold.getAvoided());
+        Assertions.assertEquals(0, threshold.getRequestsPerMinute(), 0);
+    }
+}
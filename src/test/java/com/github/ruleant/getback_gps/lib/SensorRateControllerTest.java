@@ -0,0 +1,263 @@
+/**
+ * Unit tests for SensorRateController class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+/**
+ * Unit tests for SensorRateController class.
+ *
+ * Scenarios are replayed at the rate chosen by the controller,
+ * counting the heading updates per minute.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class SensorRateControllerTest {
+    /**
+     * Instance of the rate controller.
+     */
+    private SensorRateController controller;
+
+    /**
+     * Random generator for sensor noise, with a fixed seed.
+     */
+    private Random random;
+
+    /**
+     * Seconds in a minute.
+     */
+    private static final int MINUTE = 60;
+
+    /**
+     * Seconds in nanoseconds.
+     */
+    private static final double SECOND_IN_NANO = 1e9;
+
+    /**
+     * Events per minute with the fixed rate of 200 ms.
+     */
+    private static final long FIXED_EVENTS = 300;
+
+    /**
+     * Noise on a stationary heading : ±1°.
+     */
+    private static final double NOISE = 1;
+
+    /**
+     * Scenario that yields a heading at a given time.
+     */
+    private interface Scenario {
+        /**
+         * Gets the heading at a given time.
+         *
+         * @param time Time in seconds
+         * @return heading in degrees
+         */
+        double heading(double time);
+    }
+
+    /**
+     * Sets up the test fixture.
+     * (Called before every test case method.)
+     */
+    @BeforeEach
+    public final void setUp() {
+        controller = new SensorRateController();
+        random = new Random(1);
+    }
+
+    /**
+     * Replays a scenario at the sampling rate chosen by the controller.
+     *
+     * @param scenario Scenario to replay
+     * @param start Start time in seconds
+     * @param duration Duration in seconds
+     * @return number of heading updates
+     */
+    private long replay(final Scenario scenario, final double start,
+                        final double duration) {
+        long events = 0;
+        double time = start;
+        while (time < start + duration) {
+            controller.update(FormatUtils.normalizeAngle(
+                    scenario.heading(time)),
+                    (long) (time * SECOND_IN_NANO));
+            events++;
+            time += controller.getRate() * Tools.MICRO_IN_NANO
+                    / SECOND_IN_NANO;
+        }
+        return events;
+    }
+
+    /**
+     * Gets a noise value.
+     *
+     * @return noise in degrees
+     */
+    private double noise() {
+        return (random.nextDouble() * 2 - 1) * NOISE;
+    }
+
+    /**
+     * Tests default values.
+     */
+    @Test
+    public final void testDefault() {
+        Assertions.assertEquals(SensorRateController.RATE_NORMAL,
+                controller.getRate());
+        Assertions.assertEquals(0, controller.getRotationSpeed(), 0.0);
+        Assertions.assertEquals(0, controller.getRateChanges());
+        Assertions.assertFalse(controller.update(0, 1));
+    }
+
+    /**
+     * Tests a device lying on a table, with sensor noise.
+     * The rate drops and doesn't thrash.
+     */
+    @Test
+    public final void testTable() {
+        long events = replay(new Scenario() {
+            @Override
+            public double heading(final double time) {
+                return 90 + noise();
+            }
+        }, 0, MINUTE);
+
+        Assertions.assertEquals(SensorRateController.RATE_SLOW,
+                controller.getRate());
+        Assertions.assertEquals(1, controller.getRateChanges());
+        Assertions.assertTrue(events < FIXED_EVENTS / 2,
+                "events per minute : " + events);
+    }
+
+    /**
+     * Tests walking with a swaying heading, keeping the normal rate.
+     */
+    @Test
+    public final void testWalk() {
+        long events = replay(new Scenario() {
+            @Override
+            public double heading(final double time) {
+                return 180 + 5 * Math.sin(time * Math.PI) + noise();
+            }
+        }, 0, MINUTE);
+
+        Assertions.assertEquals(SensorRateController.RATE_NORMAL,
+                controller.getRate());
+        Assertions.assertEquals(0, controller.getRateChanges());
+        Assertions.assertEquals(FIXED_EVENTS, events, 1);
+    }
+
+    /**
+     * Tests spinning around, raising the rate.
+     */
+    @Test
+    public final void testSpinning() {
+        long events = replay(new Scenario() {
+            @Override
+            public double heading(final double time) {
+                return 90 * time + noise();
+            }
+        }, 0, MINUTE);
+
+        Assertions.assertEquals(SensorRateController.RATE_FAST,
+                controller.getRate());
+        Assertions.assertEquals(1, controller.getRateChanges());
+        Assertions.assertTrue(events > FIXED_EVENTS * 3,
+                "events per minute : " + events);
+        Assertions.assertEquals(90, controller.getRotationSpeed(), 5);
+    }
+
+    /**
+     * Tests hysteresis : the fast rate is held after turning,
+     * the slow rate is only used after being stationary for a while.
+     */
+    @Test
+    public final void testHysteresis() {
+        Scenario turn = new Scenario() {
+            @Override
+            public double heading(final double time) {
+                return Math.min(time, 2) * 90 + noise();
+            }
+        };
+
+        // turning
+        replay(turn, 0, 2);
+        Assertions.assertEquals(SensorRateController.RATE_FAST,
+                controller.getRate());
+
+        // turn stopped, fast rate is held
+        replay(turn, 2, 2.5);
+        Assertions.assertEquals(SensorRateController.RATE_FAST,
+                controller.getRate());
+        replay(turn, 4.5, 2);
+        Assertions.assertEquals(SensorRateController.RATE_NORMAL,
+                controller.getRate());
+
+        // stationary, normal rate until the stationary time passed
+        replay(turn, 6.5, 8);
+        Assertions.assertEquals(SensorRateController.RATE_NORMAL,
+                controller.getRate());
+        replay(turn, 14.5, 4);
+        Assertions.assertEquals(SensorRateController.RATE_SLOW,
+                controller.getRate());
+
+        // a sudden turn raises the rate immediately
+        Assertions.assertTrue(controller.update(90,
+                (long) (19.5 * SECOND_IN_NANO)));
+        Assertions.assertEquals(SensorRateController.RATE_FAST,
+                controller.getRate());
+        Assertions.assertEquals(4, controller.getRateChanges());
+    }
+
+    /**
+     * Tests turning over north.
+     */
+    @Test
+    public final void testTurnOverNorth() {
+        controller.update(355, 0);
+        Assertions.assertFalse(controller.update(5,
+                (long) SECOND_IN_NANO));
+        Assertions.assertEquals(10, controller.getRotationSpeed(), 0.001);
+    }
+
+    /**
+     * Tests resetting.
+     */
+    @Test
+    public final void testReset() {
+        controller.update(0, 0);
+        controller.update(90, 1);
+        Assertions.assertEquals(SensorRateController.RATE_FAST,
+                controller.getRate());
+
+        controller.reset();
+        Assertions.assertEquals(SensorRateController.RATE_NORMAL,
+                controller.getRate());
+        Assertions.assertEquals(0, controller.getRotationSpeed(), 0.0);
+        Assertions.assertFalse(controller.update(90, 2));
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Unit tests for SensorRecorder class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import android.hardware.Sensor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Unit tests for SensorRecorder class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class SensorRecorderTest {
+    /**
+     * Temporary directory, removed after every test.
+     */
+    @TempDir
+    File tempDir;
+
+    /**
+     * Tests parameters.
+     */
+    @Test
+    public final void testParameters() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new SensorRecorder(null);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new SensorRecorder(new File(tempDir, "sensors.rec"), 4);
+        });
+    }
+
+    /**
+     * Tests the file format.
+     *
+     * @throws IOException if the file can't be written or read
+     */
+    @Test
+    public final void testFormat() throws IOException {
+        File file = new File(tempDir, "sensors.rec");
+        SensorRecorder recorder = new SensorRecorder(file);
+        recorder.record(Sensor.TYPE_ACCELEROMETER, 123456789L,
+                new float[] {1, 2, 3});
+        recorder.record(Sensor.TYPE_ORIENTATION, 123456790L,
+                new float[] {45});
+        Assertions.assertEquals(2, recorder.getEvents());
+        recorder.close();
+        recorder.close();
+
+        // header + 2 events
+        Assertions.assertEquals(5 + 22 + 14, file.length());
+
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            Assertions.assertEquals(SensorRecorder.MAGIC, in.readInt());
+            Assertions.assertEquals(SensorRecorder.VERSION, in.readByte());
+            Assertions.assertEquals(Sensor.TYPE_ACCELEROMETER, in.readByte());
+            Assertions.assertEquals(123456789L, in.readLong());
+            Assertions.assertEquals(3, in.readByte());
+            Assertions.assertEquals(1, in.readFloat(), 0.0);
+            Assertions.assertEquals(2, in.readFloat(), 0.0);
+            Assertions.assertEquals(3, in.readFloat(), 0.0);
+            Assertions.assertEquals(Sensor.TYPE_ORIENTATION, in.readByte());
+            Assertions.assertEquals(123456790L, in.readLong());
+            Assertions.assertEquals(1, in.readByte());
+            Assertions.assertEquals(45, in.readFloat(), 0.0);
+            Assertions.assertEquals(-1, in.read());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Tests recording after closing.
+     *
+     * @throws IOException if the file can't be written
+     */
+    @Test
+    public final void testClosed() throws IOException {
+        SensorRecorder recorder
+                = new SensorRecorder(new File(tempDir, "sensors.rec"));
+        recorder.close();
+
+        Assertions.assertThrows(IOException.class, () -> {
+            recorder.record(Sensor.TYPE_GYROSCOPE, 0, new float[3]);
+        });
+    }
+
+    /**
+     * Tests recording stops at the maximum file size.
+     *
+     * @throws IOException if the file can't be written
+     */
+    @Test
+    public final void testMaxSize() throws IOException {
+        File file = new File(tempDir, "sensors.rec");
+        // header + 2 events of 3 values + 1 event of 1 value
+        SensorRecorder recorder = new SensorRecorder(file, 5 + 2 * 22 + 14);
+
+        Assertions.assertTrue(recorder.record(Sensor.TYPE_ACCELEROMETER, 1,
+                new float[] {1, 2, 3}));
+        Assertions.assertTrue(recorder.record(Sensor.TYPE_ACCELEROMETER, 2,
+                new float[] {1, 2, 3}));
+        Assertions.assertFalse(recorder.isFull());
+
+        // doesn't fit anymore
+        Assertions.assertFalse(recorder.record(Sensor.TYPE_ACCELEROMETER, 3,
+                new float[] {1, 2, 3}));
+        Assertions.assertTrue(recorder.isFull());
+
+        // recording stays stopped, also for smaller events
+        Assertions.assertFalse(recorder.record(Sensor.TYPE_ORIENTATION, 4,
+                new float[] {45}));
+        Assertions.assertEquals(2, recorder.getEvents());
+
+        // recording stopped, also after closing
+        recorder.close();
+        Assertions.assertFalse(recorder.record(Sensor.TYPE_ORIENTATION, 5,
+                new float[] {45}));
+        Assertions.assertEquals(5 + 2 * 22, file.length());
+    }
+}
@@ -0,0 +1,312 @@
+/**
+ * Unit tests for SensorReplay class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import android.hardware.Sensor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Unit tests for SensorReplay class.
+ *
+ * A synthetic recording of a device lying flat, pointing north,
+ * that turns east halfway, is replayed through orientation calculators.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class SensorReplayTest {
+    /**
+     * Temporary directory, removed after every test.
+     */
+    @TempDir
+    File tempDir;
+
+    /**
+     * Recording file.
+     */
+    private File recording;
+
+    /**
+     * Time between events of a sensor : 20 ms in nanoseconds.
+     */
+    private static final long EVENT_INTERVAL = 20 * Tools.MILLI_IN_NANO;
+
+    /**
+     * Number of events per sensor.
+     */
+    private static final int EVENTS = 1000;
+
+    /**
+     * Timestamp of the turn east in nanoseconds.
+     */
+    private static final long TURN_TIMESTAMP = EVENTS / 2 * EVENT_INTERVAL;
+
+    /**
+     * Update rate of the calculators in nanoseconds.
+     */
+    private static final long UPDATE_RATE = EVENT_INTERVAL / 2;
+
+    /**
+     * Orientation after the turn in degrees.
+     */
+    private static final double EAST = 90;
+
+    /**
+     * Orientation within this range of the final orientation
+     * is considered settled, in degrees.
+     */
+    private static final double SETTLED = 2;
+
+    /**
+     * Seconds in nanoseconds.
+     */
+    private static final double SECOND_IN_NANO = 1e9;
+
+    /**
+     * Replayed orientation updates.
+     */
+    private static class Updates implements SensorReplay.Listener {
+        /**
+         * Timestamps in nanoseconds.
+         */
+        private final List<Long> mTimestamps = new ArrayList<Long>();
+
+        /**
+         * Orientations in degrees.
+         */
+        private final List<Double> mOrientations = new ArrayList<Double>();
+
+        @Override
+        public void onOrientationChanged(final long timestamp,
+                                         final double orientation) {
+            mTimestamps.add(timestamp);
+            mOrientations.add(orientation);
+        }
+
+        /**
+         * Gets the time after the turn until the orientation settled.
+         *
+         * @return latency in seconds, Double.MAX_VALUE if not settled
+         */
+        double getLatency() {
+            for (int i = 0; i < mTimestamps.size(); i++) {
+                if (mTimestamps.get(i) >= TURN_TIMESTAMP
+                        && Math.abs(mOrientations.get(i) - EAST) < SETTLED) {
+                    return (mTimestamps.get(i) - TURN_TIMESTAMP)
+                            / SECOND_IN_NANO;
+                }
+            }
+            return Double.MAX_VALUE;
+        }
+
+        /**
+         * Gets the standard deviation of the orientation,
+         * in the second half before the turn.
+         *
+         * @return jitter in degrees
+         */
+        double getJitter() {
+            double sum = 0;
+            double sumSquares = 0;
+            int count = 0;
+            for (int i = 0; i < mTimestamps.size(); i++) {
+                if (mTimestamps.get(i) >= TURN_TIMESTAMP / 2
+                        && mTimestamps.get(i) < TURN_TIMESTAMP) {
+                    // orientation around north, -180..180
+                    double orientation = FormatUtils.normalizeAngle(
+                            mOrientations.get(i) + FormatUtils.CIRCLE_HALF)
+                            - FormatUtils.CIRCLE_HALF;
+                    sum += orientation;
+                    sumSquares += orientation * orientation;
+                    count++;
+                }
+            }
+            final double mean = sum / count;
+            return Math.sqrt(sumSquares / count - mean * mean);
+        }
+    }
+
+    /**
+     * Sets up the test fixture, records a synthetic turn
+     * with sensor noise.
+     * (Called before every test case method.)
+     *
+     * @throws IOException if the recording can't be written
+     */
+    @BeforeEach
+    public final void setUp() throws IOException {
+        recording = new File(tempDir, "turn.rec");
+        Random random = new Random(1);
+        SensorRecorder recorder = new SensorRecorder(recording);
+        float[] gravity = new float[3];
+        float[] field = new float[3];
+        for (int i = 0; i < EVENTS; i++) {
+            final long timestamp = i * EVENT_INTERVAL;
+            gravity[0] = (float) random.nextGaussian() * 0.1f;
+            gravity[1] = (float) random.nextGaussian() * 0.1f;
+            gravity[2] = 9.81f + (float) random.nextGaussian() * 0.1f;
+            recorder.record(Sensor.TYPE_ACCELEROMETER, timestamp, gravity);
+
+            final double heading;
+            if (timestamp < TURN_TIMESTAMP) {
+                heading = 0;
+            } else {
+                heading = Math.toRadians(EAST);
+            }
+            field[0] = (float) (-20 * Math.sin(heading)
+                    + random.nextGaussian());
+            field[1] = (float) (20 * Math.cos(heading)
+                    + random.nextGaussian());
+            field[2] = (float) (-40 + random.nextGaussian());
+            recorder.record(Sensor.TYPE_MAGNETIC_FIELD,
+                    timestamp + EVENT_INTERVAL / 2, field);
+        }
+        recorder.close();
+    }
+
+    /**
+     * Tests parameters and invalid files.
+     *
+     * @throws IOException if the file can't be written
+     */
+    @Test
+    public final void testParameters() throws IOException {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new SensorReplay(null);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new SensorReplay(recording).replay(null, null);
+        });
+
+        File invalid = new File(tempDir, "invalid.rec");
+        DataOutputStream out
+                = new DataOutputStream(new FileOutputStream(invalid));
+        out.writeInt(SensorRecorder.MAGIC + 1);
+        out.writeByte(SensorRecorder.VERSION);
+        out.close();
+        Assertions.assertThrows(IOException.class, () -> {
+            new SensorReplay(invalid).replay(
+                    new OrientationCalculator(UPDATE_RATE, 1, 1), null);
+        });
+    }
+
+    /**
+     * Tests replaying the recording without filtering.
+     *
+     * @throws IOException if the recording can't be read
+     */
+    @Test
+    public final void testReplay() throws IOException {
+        OrientationCalculator calculator
+                = new OrientationCalculator(UPDATE_RATE, 1, 1);
+        Updates updates = new Updates();
+
+        Assertions.assertEquals(2 * EVENTS,
+                new SensorReplay(recording).replay(calculator, updates));
+        Assertions.assertEquals(2 * EVENTS, updates.mTimestamps.size());
+        Assertions.assertEquals(EAST, calculator.getOrientation(), 10);
+        // settles within a few events, depending on the sensor noise
+        Assertions.assertTrue(updates.getLatency() < 0.1);
+    }
+
+    /**
+     * Tests a truncated recording, the last event is ignored.
+     *
+     * @throws IOException if the recording can't be read
+     */
+    @Test
+    public final void testTruncated() throws IOException {
+        RandomAccessFile file = new RandomAccessFile(recording, "rw");
+        file.setLength(file.length() - 1);
+        file.close();
+
+        Assertions.assertEquals(2 * EVENTS - 1, new SensorReplay(recording)
+                .replay(new OrientationCalculator(UPDATE_RATE, 1, 1), null));
+    }
+
+    /**
+     * Tests replaying is deterministic, for regression tests.
+     *
+     * @throws IOException if the recording can't be read
+     */
+    @Test
+    public final void testDeterministic() throws IOException {
+        Updates first = new Updates();
+        Updates second = new Updates();
+        new SensorReplay(recording).replay(
+                new OrientationCalculator(UPDATE_RATE, 0.5f, 0.5f), first);
+        new SensorReplay(recording).replay(
+                new OrientationCalculator(UPDATE_RATE, 0.5f, 0.5f), second);
+
+        Assertions.assertEquals(first.mOrientations, second.mOrientations);
+    }
+
+    /**
+     * Compares the heading latency and jitter of filter variants.
+     *
+     * @throws IOException if the recording can't be read
+     */
+    @Test
+    public final void testFilterVariants() throws IOException {
+        Updates unfiltered = new Updates();
+        new SensorReplay(recording).replay(
+                new OrientationCalculator(UPDATE_RATE, 1, 1), unfiltered);
+
+        Updates exponential = new Updates();
+        new SensorReplay(recording).replay(new OrientationCalculator(
+                UPDATE_RATE, new ExponentialFilter(0.1f),
+                new ExponentialFilter(0.1f),
+                new CircularFilter(new ExponentialFilter(0.1f))),
+                exponential);
+
+        // configuration used by the app
+        Updates oneEuro = new Updates();
+        new SensorReplay(recording).replay(
+                SensorOrientation.createCalculator(UPDATE_RATE), oneEuro);
+
+        // filtering reduces jitter, at the cost of latency
+        Assertions.assertTrue(
+                exponential.getJitter() < unfiltered.getJitter() / 2);
+        Assertions.assertTrue(
+                oneEuro.getJitter() < unfiltered.getJitter() / 2);
+        Assertions.assertTrue(
+                exponential.getLatency() > unfiltered.getLatency());
+
+        // the adaptive filter follows the turn faster
+        Assertions.assertTrue(
+                oneEuro.getLatency() < exponential.getLatency(),
+                "one euro : " + oneEuro.getLatency()
+                + " s, exponential : " + exponential.getLatency() + " s");
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Unit tests for SignalFilterChain class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for SignalFilterChain class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class SignalFilterChainTest {
+    /**
+     * Accuracy.
+     */
+    private static final double ACCURACY = 0.0001;
+
+    /**
+     * Tests parameters.
+     */
+    @Test
+    public final void testParameters() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new SignalFilterChain();
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new SignalFilterChain(new MedianFilter(3), null);
+        });
+    }
+
+    /**
+     * Tests filtering values through the chain.
+     */
+    @Test
+    public final void testFilter() {
+        SignalFilterChain chain = new SignalFilterChain(
+                new MedianFilter(3), new MovingAverageFilter(2));
+        Assertions.assertEquals(2, chain.getSize());
+
+        // median : 2, 2.5, 3 ; average : 2, 2.25, 2.75
+        Assertions.assertEquals(2, chain.filter(2, 0), ACCURACY);
+        Assertions.assertEquals(2.25, chain.filter(3, 1), ACCURACY);
+        // spike is removed by the median filter
+        Assertions.assertEquals(2.75, chain.filter(100, 2), ACCURACY);
+
+        chain.reset();
+        Assertions.assertEquals(1, chain.filter(1, 3), ACCURACY);
+    }
+
+    /**
+     * Tests creating a new instance.
+     */
+    @Test
+    public final void testNewInstance() {
+        SignalFilterChain chain = new SignalFilterChain(
+                new MedianFilter(3), new MovingAverageFilter(2));
+        chain.filter(2, 0);
+
+        SignalFilter instance = chain.newInstance();
+        Assertions.assertNotSame(chain, instance);
+        Assertions.assertEquals(2,
+                ((SignalFilterChain) instance).getSize());
+        // no state
+        Assertions.assertEquals(5, instance.filter(5, 1), ACCURACY);
+        // state of original chain is unchanged
+        Assertions.assertEquals(2.25, chain.filter(3, 1), ACCURACY);
+    }
+}
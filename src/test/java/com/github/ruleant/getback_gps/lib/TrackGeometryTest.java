@@ -0,0 +1,273 @@
+/**
+ * Unit tests for TrackGeometry class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for TrackGeometry class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class TrackGeometryTest {
+    /**
+     * Instance of the track geometry class.
+     */
+    private TrackGeometry track;
+
+    /**
+     * Latitude of the origin.
+     */
+    private static final double LATITUDE = 50.85;
+
+    /**
+     * Longitude of the origin.
+     */
+    private static final double LONGITUDE = 4.35;
+
+    /**
+     * View center.
+     */
+    private static final long CENTER = 500;
+
+    /**
+     * View radius.
+     */
+    private static final double VIEW_RADIUS = 700;
+
+    /**
+     * Accuracy in meters.
+     */
+    private static final double ACCURACY = 0.01;
+
+    /**
+     * Sets up the test fixture.
+     * (Called before every test case method.)
+     */
+    @BeforeEach
+    public final void setUp() {
+        track = new TrackGeometry(LATITUDE, LONGITUDE);
+    }
+
+    /**
+     * Converts a distance north of the origin to a latitude.
+     *
+     * @param north Distance in meters
+     * @return latitude in degrees
+     */
+    private static double latitude(final double north) {
+        return LATITUDE + north / GreatCircle.METERS_PER_DEGREE;
+    }
+
+    /**
+     * Converts a distance east of the origin to a longitude.
+     *
+     * @param east Distance in meters
+     * @return longitude in degrees
+     */
+    private static double longitude(final double east) {
+        return LONGITUDE + east / (GreatCircle.METERS_PER_DEGREE
+                * Math.cos(Math.toRadians(LATITUDE)));
+    }
+
+    /**
+     * Adds a straight track to the north.
+     *
+     * @param points Number of points
+     * @param step Distance between points in meters
+     */
+    private void addTrackNorth(final int points, final double step) {
+        for (int i = 0; i < points; i++) {
+            track.add(latitude(i * step), LONGITUDE);
+        }
+    }
+
+    /**
+     * Tests parameters.
+     */
+    @Test
+    public final void testParameters() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new TrackGeometry(null);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new TrackGeometry(new PackedLocations());
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            track.toLines(LATITUDE, LONGITUDE, 0, 0, 0, 0, 1);
+        });
+        Assertions.assertEquals(0,
+                track.toLines(LATITUDE, LONGITUDE, 0, 1, 0, 0, 1));
+    }
+
+    /**
+     * Tests the projection.
+     */
+    @Test
+    public final void testProjection() {
+        Assertions.assertEquals(100, track.toNorth(latitude(100)),
+                ACCURACY);
+        Assertions.assertEquals(-50, track.toEast(longitude(-50)),
+                ACCURACY);
+
+        // across the date line
+        track = new TrackGeometry(0, 179.9999);
+        Assertions.assertEquals(GreatCircle.METERS_PER_DEGREE * 0.0002,
+                track.toEast(-179.9999), ACCURACY);
+    }
+
+    /**
+     * Tests creating the track from recorded locations.
+     */
+    @Test
+    public final void testPackedLocations() {
+        PackedLocations locations = new PackedLocations();
+        locations.add(GreatCircle.toFixedPoint(LATITUDE),
+                GreatCircle.toFixedPoint(LONGITUDE), 0);
+        locations.add(GreatCircle.toFixedPoint(latitude(10)),
+                GreatCircle.toFixedPoint(LONGITUDE), 1);
+
+        track = new TrackGeometry(locations);
+        Assertions.assertEquals(2, track.getSize(0));
+        Assertions.assertEquals(10,
+                track.toNorth(locations.getLatitude(1)), ACCURACY);
+    }
+
+    /**
+     * Tests levels of detail.
+     */
+    @Test
+    public final void testLevels() {
+        addTrackNorth(1000, 0.8);
+
+        Assertions.assertEquals(1000, track.getSize(0));
+        // 0.5 m tolerance
+        Assertions.assertEquals(1000, track.getSize(1));
+        // 1 m tolerance, keeps every other point
+        Assertions.assertEquals(500, track.getSize(2));
+        for (int i = 2; i < TrackGeometry.LEVELS; i++) {
+            Assertions.assertTrue(track.getSize(i) <= track.getSize(i - 1));
+        }
+
+        // tolerance of the selected level is at most 1 pixel
+        Assertions.assertEquals(0, track.getLevel(10));
+        Assertions.assertEquals(1, track.getLevel(2));
+        Assertions.assertEquals(2, track.getLevel(1));
+        Assertions.assertEquals(3, track.getLevel(0.5));
+        Assertions.assertEquals(TrackGeometry.LEVELS - 1,
+                track.getLevel(1e-9));
+    }
+
+    /**
+     * Tests converting to lines, rotated to the heading.
+     */
+    @Test
+    public final void testToLines() {
+        addTrackNorth(3, 10);
+
+        // at the origin, heading north : track goes up
+        int count = track.toLines(LATITUDE, LONGITUDE, 0, 10,
+                CENTER, CENTER, VIEW_RADIUS);
+        float[] lines = track.getLines();
+        Assertions.assertEquals(2 * Coordinates.NUM_COORD_LINE, count);
+        Assertions.assertEquals(CENTER, lines[0], ACCURACY);
+        Assertions.assertEquals(CENTER, lines[1], ACCURACY);
+        Assertions.assertEquals(CENTER, lines[2], ACCURACY);
+        Assertions.assertEquals(CENTER - 100, lines[3], ACCURACY);
+        Assertions.assertEquals(CENTER - 200, lines[7], ACCURACY);
+
+        // heading east : track goes to the left
+        track.toLines(LATITUDE, LONGITUDE, 90, 10,
+                CENTER, CENTER, VIEW_RADIUS);
+        Assertions.assertEquals(CENTER - 100, lines[2], ACCURACY);
+        Assertions.assertEquals(CENTER, lines[3], ACCURACY);
+
+        // current location at the end of the track, heading back south :
+        // the start of the track is ahead
+        track.toLines(latitude(20), LONGITUDE, 180, 10,
+                CENTER, CENTER, VIEW_RADIUS);
+        Assertions.assertEquals(CENTER, lines[0], ACCURACY);
+        Assertions.assertEquals(CENTER - 200, lines[1], ACCURACY);
+
+        // the lines array is reused
+        Assertions.assertSame(lines, track.getLines());
+    }
+
+    /**
+     * Tests culling chunks outside the viewport.
+     */
+    @Test
+    public final void testCulling() {
+        // 10 km to the north, 1 m steps
+        addTrackNorth(10001, 1);
+
+        // 1 px/m, level 2 (1 m tolerance), about every other point
+        int count = track.toLines(latitude(5000), LONGITUDE, 0, 1,
+                CENTER, CENTER, VIEW_RADIUS);
+        Assertions.assertEquals(2, track.getLastLevel());
+        // only the chunks within 700 m are converted
+        Assertions.assertTrue(track.getLastPoints() < 1400 / 2
+                + 2 * TrackGeometry.CHUNK_SIZE);
+        Assertions.assertTrue(track.getLastPoints() >= 1400 / 2);
+        Assertions.assertEquals((track.getLastPoints() - 1)
+                * Coordinates.NUM_COORD_LINE, count);
+
+        // lines are continuous, no gaps between chunks
+        float[] lines = track.getLines();
+        for (int i = Coordinates.NUM_COORD_LINE; i < count;
+                i += Coordinates.NUM_COORD_LINE) {
+            Assertions.assertEquals(lines[i - 2], lines[i], ACCURACY);
+            Assertions.assertEquals(lines[i - 1], lines[i + 1], ACCURACY);
+        }
+
+        // far away, nothing is visible
+        Assertions.assertEquals(0, track.toLines(latitude(-5000), LONGITUDE,
+                0, 1, CENTER, CENTER, VIEW_RADIUS));
+
+        // zoomed out, the whole track is visible at a coarse level
+        count = track.toLines(latitude(5000), LONGITUDE, 0, 0.05,
+                CENTER, CENTER, VIEW_RADIUS);
+        Assertions.assertEquals(6, track.getLastLevel());
+        Assertions.assertEquals(track.getSize(6), track.getLastPoints());
+    }
+
+    /**
+     * Tests a line crossing the viewport, with both points outside.
+     */
+    @Test
+    public final void testChunkBoundary() {
+        // chunk 0 : points 0-64, chunk 1 : points 64-128
+        for (int i = 0; i <= TrackGeometry.CHUNK_SIZE; i++) {
+            track.add(latitude(i), LONGITUDE);
+        }
+        // jump far east, crossing the viewport
+        track.add(latitude(TrackGeometry.CHUNK_SIZE), longitude(10000));
+
+        // viewport halfway the last line, 1 m radius, all points (level 0)
+        track.toLines(latitude(TrackGeometry.CHUNK_SIZE), longitude(5000),
+                0, 10, CENTER, CENTER, 10);
+        Assertions.assertEquals(0, track.getLastLevel());
+        Assertions.assertEquals(2, track.getLastPoints());
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Unit tests for VectorFilter class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for VectorFilter class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class VectorFilterTest {
+    /**
+     * Accuracy.
+     */
+    private static final double ACCURACY = 0.0001;
+
+    /**
+     * Tests parameters.
+     */
+    @Test
+    public final void testParameters() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new VectorFilter(null, 3);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new VectorFilter(new MedianFilter(3), 0);
+        });
+
+        VectorFilter filter = new VectorFilter(new MedianFilter(3), 3);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            filter.filter(new float[2], 0, new float[3]);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            filter.filter(new float[3], 0, null);
+        });
+    }
+
+    /**
+     * Tests filtering every component with its own filter.
+     */
+    @Test
+    public final void testFilter() {
+        VectorFilter filter = new VectorFilter(new MovingAverageFilter(2), 2);
+        Assertions.assertEquals(2, filter.getSize());
+
+        float[] result = new float[2];
+        Assertions.assertSame(result,
+                filter.filter(new float[] {1, 10}, 0, result));
+        Assertions.assertEquals(1, result[0], ACCURACY);
+        Assertions.assertEquals(10, result[1], ACCURACY);
+
+        // filter in place
+        float[] values = {3, 20};
+        filter.filter(values, 1, values);
+        Assertions.assertEquals(2, values[0], ACCURACY);
+        Assertions.assertEquals(15, values[1], ACCURACY);
+
+        filter.reset();
+        filter.filter(new float[] {5, 6}, 2, result);
+        Assertions.assertEquals(5, result[0], ACCURACY);
+        Assertions.assertEquals(6, result[1], ACCURACY);
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * Unit tests for WaypointIndex class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Unit tests for WaypointIndex class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class WaypointIndexTest {
+    /**
+     * Instance of the waypoint index class.
+     */
+    private WaypointIndex index;
+
+    /**
+     * Number of random waypoints.
+     */
+    private static final int RANDOM_POINTS = 5000;
+
+    /**
+     * Number of random queries.
+     */
+    private static final int RANDOM_QUERIES = 50;
+
+    /**
+     * Latitude of test point.
+     */
+    private static final double LATITUDE = 50.85;
+
+    /**
+     * Longitude of test point.
+     */
+    private static final double LONGITUDE = 4.35;
+
+    /**
+     * Sets up the test fixture.
+     * (Called before every test case method.)
+     */
+    @BeforeEach
+    public final void setUp() {
+        index = new WaypointIndex();
+    }
+
+    /**
+     * Tests empty index.
+     */
+    @Test
+    public final void testEmpty() {
+        Assertions.assertEquals(0, index.getSize());
+        Assertions.assertFalse(index.contains(0));
+        Assertions.assertEquals(WaypointIndex.NO_WAYPOINT,
+                index.findNearest(LATITUDE, LONGITUDE));
+        Assertions.assertEquals(0,
+                index.findNearest(LATITUDE, LONGITUDE, 3).length);
+        Assertions.assertEquals(0,
+                index.findWithinRadius(LATITUDE, LONGITUDE, 1000).length);
+    }
+
+    /**
+     * Tests adding, moving and removing waypoints.
+     */
+    @Test
+    public final void testAddRemove() {
+        long modifications = index.getModificationCount();
+
+        index.add(0, LATITUDE, LONGITUDE);
+        index.add(100, -1 * LATITUDE, -1 * LONGITUDE);
+        Assertions.assertEquals(2, index.getSize());
+        Assertions.assertTrue(index.contains(100));
+        Assertions.assertEquals(LATITUDE, index.getLatitude(0), 0.0);
+        Assertions.assertEquals(LONGITUDE, index.getLongitude(0), 0.0);
+        Assertions.assertTrue(index.getModificationCount() > modifications);
+
+        // move waypoint
+        index.add(0, 1, 2);
+        Assertions.assertEquals(2, index.getSize());
+        Assertions.assertEquals(1, index.getLatitude(0), 0.0);
+        Assertions.assertEquals(0, index.findNearest(1, 2));
+
+        Assertions.assertTrue(index.remove(0));
+        Assertions.assertFalse(index.remove(0));
+        Assertions.assertEquals(1, index.getSize());
+        Assertions.assertEquals(100, index.findNearest(1, 2));
+
+        index.clear();
+        Assertions.assertEquals(0, index.getSize());
+        Assertions.assertFalse(index.contains(100));
+    }
+
+    /**
+     * Tests out of range parameters.
+     */
+    @Test
+    public final void testOutOfRange() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            index.add(-1, 0, 0);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            index.add(0, 91, 0);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            index.add(0, 0, -181);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            index.getLatitude(0);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            index.findWithinRadius(0, 0, -1);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new WaypointIndex(0);
+        });
+    }
+
+    /**
+     * Tests radius query around the 180th meridian.
+     */
+    @Test
+    public final void testRadiusCrossingMeridian() {
+        index.add(1, 0, 179.999);
+        index.add(2, 0, -179.999);
+        index.add(3, 0, 179.9);
+
+        int[] ids = index.findWithinRadius(0, 180, 500);
+        Arrays.sort(ids);
+        Assertions.assertArrayEquals(new int[] {1, 2}, ids);
+    }
+
+    /**
+     * Tests nearest waypoint near a pole.
+     */
+    @Test
+    public final void testNearestPole() {
+        index.add(1, 89.99, 0);
+        index.add(2, 89.99, 180);
+        index.add(3, 80, 90);
+
+        Assertions.assertEquals(2, index.findNearest(89.995, 170));
+        int[] ids = index.findWithinRadius(90, 0, 2000);
+        Arrays.sort(ids);
+        Assertions.assertArrayEquals(new int[] {1, 2}, ids);
+    }
+
+    /**
+     * Compares radius and nearest queries with a linear scan
+     * of randomly distributed waypoints.
+     */
+    @Test
+    public final void testCompareLinearScan() {
+        Random random = new Random(1);
+        double[] latitudes = new double[RANDOM_POINTS];
+        double[] longitudes = new double[RANDOM_POINTS];
+
+        for (int i = 0; i < RANDOM_POINTS; i++) {
+            latitudes[i] = LATITUDE + random.nextGaussian();
+            longitudes[i] = LONGITUDE + random.nextGaussian();
+            index.add(i, latitudes[i], longitudes[i]);
+        }
+
+        for (int q = 0; q < RANDOM_QUERIES; q++) {
+            double latitude = LATITUDE + 2 * random.nextGaussian();
+            double longitude = LONGITUDE + 2 * random.nextGaussian();
+            double radius = random.nextInt(20000);
+
+            // linear scan
+            double[] distances = new double[RANDOM_POINTS];
+            int inRadius = 0;
+            for (int i = 0; i < RANDOM_POINTS; i++) {
+                distances[i] = GreatCircle.distance(latitude, longitude,
+                        latitudes[i], longitudes[i]);
+                if (distances[i] <= radius) {
+                    inRadius++;
+                }
+            }
+            double[] sorted = distances.clone();
+            Arrays.sort(sorted);
+
+            int[] ids = index.findWithinRadius(latitude, longitude, radius);
+            Assertions.assertEquals(inRadius, ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                Assertions.assertEquals(sorted[i], distances[ids[i]], 0.0);
+            }
+
+            int[] nearest = index.findNearest(latitude, longitude, 10);
+            Assertions.assertEquals(10, nearest.length);
+            for (int i = 0; i < nearest.length; i++) {
+                Assertions.assertEquals(
+                        sorted[i], distances[nearest[i]], 0.0);
+            }
+        }
+    }
+}
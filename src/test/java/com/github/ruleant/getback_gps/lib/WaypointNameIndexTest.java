@@ -0,0 +1,289 @@
+/**
+ * Unit tests for WaypointNameIndex class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Unit tests for WaypointNameIndex class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class WaypointNameIndexTest {
+    /**
+     * Spatial index with waypoint locations.
+     */
+    private WaypointIndex locations;
+
+    /**
+     * Instance of the waypoint name index class.
+     */
+    private WaypointNameIndex index;
+
+    /**
+     * Number of random waypoints.
+     */
+    private static final int RANDOM_POINTS = 5000;
+
+    /**
+     * Number of random queries.
+     */
+    private static final int RANDOM_QUERIES = 50;
+
+    /**
+     * Number of random modifications.
+     */
+    private static final int RANDOM_MODIFICATIONS = 5000;
+
+    /**
+     * Number of waypoints to search.
+     */
+    private static final int COUNT = 10;
+
+    /**
+     * Latitude of test point.
+     */
+    private static final double LATITUDE = 50.85;
+
+    /**
+     * Longitude of test point.
+     */
+    private static final double LONGITUDE = 4.35;
+
+    /**
+     * Sets up the test fixture.
+     * (Called before every test case method.)
+     */
+    @BeforeEach
+    public final void setUp() {
+        locations = new WaypointIndex();
+        index = new WaypointNameIndex(locations);
+    }
+
+    /**
+     * Tests constructor and parameters.
+     */
+    @Test
+    public final void testParameters() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new WaypointNameIndex(null);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            index.put(-1, "name");
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            index.put(0, null);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            index.search(null, LATITUDE, LONGITUDE, COUNT);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            index.search("a", LATITUDE, LONGITUDE, 0);
+        });
+    }
+
+    /**
+     * Tests normalizing names.
+     */
+    @Test
+    public final void testNormalize() {
+        Assertions.assertEquals("cafe", WaypointNameIndex.normalize("Café"));
+        Assertions.assertEquals("sao paulo",
+                WaypointNameIndex.normalize(" São Paulo "));
+        Assertions.assertEquals("zurich",
+                WaypointNameIndex.normalize("ZÜRICH"));
+        Assertions.assertEquals("", WaypointNameIndex.normalize(""));
+    }
+
+    /**
+     * Tests adding, renaming and removing names.
+     */
+    @Test
+    public final void testPutRemove() {
+        Assertions.assertEquals(0, index.getSize());
+        Assertions.assertEquals(0,
+                index.search("", LATITUDE, LONGITUDE, COUNT).length);
+
+        index.put(1, "Home");
+        index.put(2, "Hotel");
+        Assertions.assertEquals(2, index.getSize());
+        Assertions.assertEquals("Home", index.getName(1));
+        Assertions.assertEquals(2, index.count("ho"));
+        Assertions.assertEquals(1, index.count("hom"));
+
+        // rename
+        index.put(1, "Car");
+        Assertions.assertEquals(2, index.getSize());
+        Assertions.assertEquals(1, index.count("ho"));
+        Assertions.assertEquals(1, index.count("CA"));
+
+        Assertions.assertTrue(index.remove(2));
+        Assertions.assertFalse(index.remove(2));
+        Assertions.assertNull(index.getName(2));
+        Assertions.assertEquals(0, index.count("ho"));
+        Assertions.assertEquals(1, index.count(""));
+
+        index.clear();
+        Assertions.assertEquals(0, index.getSize());
+        Assertions.assertFalse(index.contains(1));
+    }
+
+    /**
+     * Tests case and accent insensitive prefix search.
+     */
+    @Test
+    public final void testSearchAccents() {
+        index.put(1, "Café de Paris");
+        index.put(2, "cafeteria");
+        index.put(3, "Caffè Nero");
+        index.put(4, "Cab");
+
+        Assertions.assertEquals(2, index.count("CAFE"));
+        Assertions.assertEquals(2, index.count("café"));
+        Assertions.assertEquals(1, index.count("caffe"));
+        Assertions.assertEquals(4, index.count("ca"));
+        Assertions.assertEquals(0, index.count("cafes"));
+    }
+
+    /**
+     * Tests matches are ranked by distance,
+     * waypoints without location last.
+     */
+    @Test
+    public final void testSearchRanking() {
+        index.put(1, "Parking far");
+        locations.add(1, LATITUDE + 1, LONGITUDE);
+        index.put(2, "Parking near");
+        locations.add(2, LATITUDE + 0.01, LONGITUDE);
+        index.put(3, "Parking unknown");
+        index.put(4, "Park");
+        locations.add(4, LATITUDE + 0.1, LONGITUDE);
+        index.put(5, "Restaurant");
+        locations.add(5, LATITUDE, LONGITUDE);
+
+        Assertions.assertArrayEquals(new int[] {2, 1, 3},
+                index.search("parking", LATITUDE, LONGITUDE, COUNT));
+        Assertions.assertArrayEquals(new int[] {2, 4},
+                index.search("park", LATITUDE, LONGITUDE, 2));
+        Assertions.assertArrayEquals(new int[] {5, 2},
+                index.search("", LATITUDE, LONGITUDE, 2));
+        Assertions.assertArrayEquals(new int[0],
+                index.search("hotel", LATITUDE, LONGITUDE, COUNT));
+    }
+
+    /**
+     * Compares searches with a linear scan of random names.
+     */
+    @Test
+    public final void testCompareLinearScan() {
+        Random random = new Random(1);
+        String[] names = new String[RANDOM_POINTS];
+        double[] distances = new double[RANDOM_POINTS];
+
+        for (int i = 0; i < RANDOM_POINTS; i++) {
+            names[i] = randomName(random);
+            double latitude = LATITUDE + random.nextGaussian();
+            double longitude = LONGITUDE + random.nextGaussian();
+            index.put(i, names[i]);
+            locations.add(i, latitude, longitude);
+            distances[i] = GreatCircle.distance(
+                    LATITUDE, LONGITUDE, latitude, longitude);
+        }
+
+        for (int q = 0; q < RANDOM_QUERIES; q++) {
+            String prefix = names[random.nextInt(RANDOM_POINTS)]
+                    .substring(0, 1 + random.nextInt(2));
+
+            // linear scan : count matches and find the nth nearest
+            int matches = 0;
+            double[] matchDistances = new double[RANDOM_POINTS];
+            for (int i = 0; i < RANDOM_POINTS; i++) {
+                if (names[i].startsWith(prefix)) {
+                    matchDistances[matches++] = distances[i];
+                }
+            }
+            Arrays.sort(matchDistances, 0, matches);
+
+            Assertions.assertEquals(matches, index.count(prefix));
+
+            int[] ids = index.search(prefix, LATITUDE, LONGITUDE, COUNT);
+            Assertions.assertEquals(Math.min(COUNT, matches), ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                Assertions.assertTrue(names[ids[i]].startsWith(prefix));
+                Assertions.assertEquals(
+                        matchDistances[i], distances[ids[i]], 0.0);
+            }
+        }
+    }
+
+    /**
+     * Compares counts with a linear scan after random renames and removals,
+     * so the sorted names are kept up to date on every modification.
+     */
+    @Test
+    public final void testModifySorted() {
+        Random random = new Random(2);
+        // few ids, so most modifications rename or remove a waypoint
+        String[] names = new String[COUNT];
+
+        for (int q = 0; q < RANDOM_MODIFICATIONS; q++) {
+            int id = random.nextInt(COUNT);
+            if (random.nextInt(4) == 0) {
+                Assertions.assertEquals(names[id] != null, index.remove(id));
+                names[id] = null;
+            } else {
+                // short names, so some waypoints have the same name
+                names[id] = randomName(random).substring(0, 3);
+                index.put(id, names[id]);
+            }
+
+            String prefix = randomName(random).substring(0, 1);
+            int matches = 0;
+            for (String name : names) {
+                if (name != null && name.startsWith(prefix)) {
+                    matches++;
+                }
+            }
+            Assertions.assertEquals(matches, index.count(prefix));
+        }
+    }
+
+    /**
+     * Generates a random lower case name.
+     *
+     * @param random Random generator
+     * @return random name
+     */
+    private static String randomName(final Random random) {
+        int length = 3 + random.nextInt(8);
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + random.nextInt(8)));
+        }
+        return builder.toString();
+    }
+}
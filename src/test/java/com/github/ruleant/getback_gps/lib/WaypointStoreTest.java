@@ -0,0 +1,776 @@
+/**
+ * Unit tests for WaypointStore class
+ *
+ * Copyright (C) 2021 Dieter Adriaenssens
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package com.github.ruleant.getback_gps
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+package com.github.ruleant.getback_gps.lib;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for WaypointStore class.
+ *
+ * @author  Dieter Adriaenssens <ruleant@users.sourceforge.net>
+ */
+public class WaypointStoreTest {
+    /**
+     * Directory for the store files.
+     */
+    @TempDir
+    File directory;
+
+    /**
+     * Instance of the waypoint store class.
+     */
+    private WaypointStore store;
+
+    /**
+     * Latitude of test point.
+     */
+    private static final double LATITUDE = 50.8503456;
+
+    /**
+     * Longitude of test point.
+     */
+    private static final double LONGITUDE = 4.3517891;
+
+    /**
+     * Altitude of test point.
+     */
+    private static final double ALTITUDE = 56.5;
+
+    /**
+     * Coordinate accuracy : 1e-7°.
+     */
+    private static final double COORDINATE_ACCURACY = 1e-7;
+
+    /**
+     * Small compaction threshold in bytes.
+     */
+    private static final long SMALL_THRESHOLD = 512;
+
+    /**
+     * Sets up the test fixture.
+     * (Called before every test case method.)
+     *
+     * @throws IOException if the store can't be opened
+     */
+    @BeforeEach
+    public final void setUp() throws IOException {
+        store = new WaypointStore(directory);
+        store.open();
+    }
+
+    /**
+     * Closes the store.
+     * (Called after every test case method.)
+     *
+     * @throws IOException if the store can't be closed
+     */
+    @AfterEach
+    public final void tearDown() throws IOException {
+        store.close();
+    }
+
+    /**
+     * Reopens the store, without closing the current instance,
+     * as if the app was killed after all writes were done.
+     *
+     * @param compactionThreshold Compaction threshold
+     * @return reopened store
+     * @throws IOException if the store can't be opened
+     */
+    private WaypointStore reopen(final long compactionThreshold)
+            throws IOException {
+        store.flush();
+        WaypointStore reopened
+                = new WaypointStore(directory, compactionThreshold);
+        reopened.open();
+        return reopened;
+    }
+
+    /**
+     * Tests parameters.
+     */
+    @Test
+    public final void testParameters() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new WaypointStore(null);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new WaypointStore(directory, 0);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            store.add(null, LATITUDE, LONGITUDE);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            store.add("name", 91, LONGITUDE);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            store.add("name", Double.NaN, LONGITUDE);
+        });
+        Assertions.assertThrows(IllegalStateException.class, () -> {
+            new WaypointStore(directory).add("name", LATITUDE, LONGITUDE);
+        });
+    }
+
+    /**
+     * Tests mutations on an open store.
+     */
+    @Test
+    public final void testMutations() {
+        Assertions.assertEquals(0, store.getSize());
+        Assertions.assertEquals(WaypointStore.NO_WAYPOINT, store.getActive());
+
+        int home = store.add("Home", LATITUDE, LONGITUDE);
+        int car = store.add("Car", -1 * LATITUDE, LONGITUDE);
+        Assertions.assertNotEquals(home, car);
+        Assertions.assertEquals(2, store.getSize());
+        Assertions.assertEquals("Home", store.getName(home));
+        Assertions.assertEquals(LATITUDE, store.getLatitude(home),
+                COORDINATE_ACCURACY);
+        Assertions.assertFalse(store.hasAltitude(home));
+
+        Assertions.assertTrue(store.setActive(car));
+        Assertions.assertEquals(car, store.getActive());
+        Assertions.assertFalse(store.setActive(100));
+
+        Assertions.assertTrue(store.rename(car, "My car"));
+        Assertions.assertEquals("My car", store.getName(car));
+        Assertions.assertFalse(store.rename(100, "Nothing"));
+
+        Assertions.assertArrayEquals(new int[] {car},
+                store.search("my", LATITUDE, LONGITUDE, 5));
+        Assertions.assertArrayEquals(new int[] {home, car},
+                store.findNearest(LATITUDE, LONGITUDE, 5));
+
+        // deleting the active waypoint clears the active waypoint
+        Assertions.assertTrue(store.delete(car));
+        Assertions.assertFalse(store.delete(car));
+        Assertions.assertFalse(store.contains(car));
+        Assertions.assertEquals(WaypointStore.NO_WAYPOINT, store.getActive());
+        Assertions.assertNull(store.getName(car));
+
+        // ids are not reused
+        Assertions.assertTrue(store.add("Hotel", 0, 0) > car);
+    }
+
+    /**
+     * Tests names that are too long to store are refused,
+     * without changing the store.
+     *
+     * @throws IOException if the store can't be opened
+     */
+    @Test
+    public final void testLongName() throws IOException {
+        char[] ascii = new char[WaypointStore.MAX_NAME_LENGTH];
+        Arrays.fill(ascii, 'a');
+        String longest = new String(ascii);
+        // 3 bytes per character in UTF-8
+        char[] euro = new char[WaypointStore.MAX_NAME_LENGTH / 3 + 1];
+        Arrays.fill(euro, '\u20ac');
+        String tooLong = new String(euro);
+
+        int home = store.add(longest, LATITUDE, LONGITUDE);
+        long sequence = store.getSequence();
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            store.add(tooLong, LATITUDE, LONGITUDE);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            store.rename(home, tooLong);
+        });
+        Assertions.assertEquals(1, store.getSize());
+        Assertions.assertEquals(longest, store.getName(home));
+        Assertions.assertEquals(sequence, store.getSequence());
+
+        WaypointStore reopened
+                = reopen(WaypointStore.DEFAULT_COMPACTION_THRESHOLD);
+        try {
+            Assertions.assertEquals(longest, reopened.getName(home));
+            reopened.compact();
+        } finally {
+            reopened.close();
+        }
+    }
+
+    /**
+     * Tests adding a waypoint from a Location.
+     */
+    @Test
+    public final void testAddLocation() {
+        AriadneLocation location = mock(AriadneLocation.class);
+        when(location.getLatitude()).thenReturn(LATITUDE);
+        when(location.getLongitude()).thenReturn(LONGITUDE);
+        when(location.getAltitude()).thenReturn(ALTITUDE);
+        when(location.hasAltitude()).thenReturn(true);
+
+        int id = store.add("Home", location);
+        Assertions.assertTrue(store.hasAltitude(id));
+        Assertions.assertEquals(ALTITUDE, store.getAltitude(id), 0.0);
+        Assertions.assertEquals(LONGITUDE, store.getLongitude(id),
+                COORDINATE_ACCURACY);
+    }
+
+    /**
+     * Tests the location details are restored from the log
+     * and the snapshot.
+     *
+     * @throws IOException if the store can't be opened
+     */
+    @Test
+    public final void testRestoreLocationDetails() throws IOException {
+        AriadneLocation location = mock(AriadneLocation.class);
+        when(location.getLatitude()).thenReturn(LATITUDE);
+        when(location.getLongitude()).thenReturn(LONGITUDE);
+        when(location.getAltitude()).thenReturn(ALTITUDE);
+        when(location.hasAltitude()).thenReturn(true);
+        when(location.getAccuracy()).thenReturn(5f);
+        when(location.hasAccuracy()).thenReturn(true);
+        when(location.getTime()).thenReturn(1234567890L);
+        when(location.getProvider()).thenReturn("gps");
+
+        int home = store.add("Home", location);
+        int car = store.add("Car", 0, 0);
+
+        WaypointStore reopened
+                = reopen(WaypointStore.DEFAULT_COMPACTION_THRESHOLD);
+        try {
+            Assertions.assertTrue(reopened.hasAltitude(home));
+            Assertions.assertEquals(ALTITUDE, reopened.getAltitude(home),
+                    0.0);
+            Assertions.assertFalse(reopened.hasAltitude(car));
+            reopened.compact();
+        } finally {
+            reopened.close();
+        }
+
+        store.close();
+        store = new WaypointStore(directory);
+        store.open();
+        Assertions.assertTrue(store.hasAltitude(home));
+        Assertions.assertEquals(ALTITUDE, store.getAltitude(home), 0.0);
+        Assertions.assertEquals("Car", store.getName(car));
+    }
+
+    /**
+     * Tests files written by the previous format version,
+     * without location details, are read.
+     *
+     * @throws IOException if the test files can't be written
+     */
+    @Test
+    public final void testReadVersion1() throws IOException {
+        store.close();
+
+        // version 1 snapshot with one waypoint
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream snapshot = new DataOutputStream(bytes);
+        snapshot.writeInt(0x47425750);
+        snapshot.writeInt(1);
+        snapshot.writeLong(1);
+        snapshot.writeInt(1);
+        snapshot.writeInt(WaypointStore.NO_WAYPOINT);
+        snapshot.writeInt(1);
+        snapshot.writeInt(0);
+        snapshot.writeInt(GreatCircle.toFixedPoint(LATITUDE));
+        snapshot.writeInt(GreatCircle.toFixedPoint(LONGITUDE));
+        snapshot.writeBoolean(true);
+        snapshot.writeDouble(ALTITUDE);
+        snapshot.writeUTF("Home");
+        snapshot.flush();
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        snapshot.writeInt((int) crc.getValue());
+        snapshot.close();
+        Files.write(new File(directory, WaypointStore.SNAPSHOT_FILE_NAME)
+                .toPath(), bytes.toByteArray());
+
+        // version 1 add record
+        bytes = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream(bytes);
+        body.writeLong(2);
+        body.writeByte(1);
+        body.writeInt(1);
+        body.writeInt(0);
+        body.writeInt(0);
+        body.writeBoolean(false);
+        body.writeDouble(0);
+        body.writeUTF("Car");
+        body.close();
+        byte[] record = bytes.toByteArray();
+        crc = new CRC32();
+        crc.update(record);
+
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(
+                new File(directory, WaypointStore.LOG_FILE_NAME)));
+        out.writeInt(record.length);
+        out.write(record);
+        out.writeInt((int) crc.getValue());
+        out.close();
+
+        store = new WaypointStore(directory);
+        store.open();
+        Assertions.assertEquals(2, store.getSize());
+        Assertions.assertEquals("Home", store.getName(0));
+        Assertions.assertTrue(store.hasAltitude(0));
+        Assertions.assertEquals(ALTITUDE, store.getAltitude(0), 0.0);
+        Assertions.assertEquals("Car", store.getName(1));
+        Assertions.assertFalse(store.hasAltitude(1));
+    }
+
+    /**
+     * Tests recovery by replaying the log.
+     *
+     * @throws IOException if the store can't be opened
+     */
+    @Test
+    public final void testReplayLog() throws IOException {
+        int home = store.add("Home", LATITUDE, LONGITUDE);
+        int car = store.add("Car", 0, 0);
+        int hotel = store.add("Hotel", 1, 1);
+        store.rename(car, "My car");
+        store.delete(hotel);
+        store.setActive(car);
+
+        WaypointStore reopened
+                = reopen(WaypointStore.DEFAULT_COMPACTION_THRESHOLD);
+        try {
+            Assertions.assertEquals(0, reopened.getCompactionCount());
+            Assertions.assertEquals(store.getSequence(),
+                    reopened.getSequence());
+            Assertions.assertEquals(2, reopened.getSize());
+            Assertions.assertEquals("Home", reopened.getName(home));
+            Assertions.assertEquals(store.getLatitude(home),
+                    reopened.getLatitude(home), 0.0);
+            Assertions.assertEquals("My car", reopened.getName(car));
+            Assertions.assertFalse(reopened.contains(hotel));
+            Assertions.assertEquals(car, reopened.getActive());
+
+            // new ids continue after the deleted waypoint
+            Assertions.assertTrue(reopened.add("Park", 2, 2) > hotel);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    /**
+     * Tests an incomplete record at the end of the log is dropped.
+     *
+     * @throws IOException if the store can't be opened
+     */
+    @Test
+    public final void testTornWrite() throws IOException {
+        int home = store.add("Home", LATITUDE, LONGITUDE);
+        store.flush();
+        File logFile = new File(directory, WaypointStore.LOG_FILE_NAME);
+        long validLength = logFile.length();
+
+        store.add("Car", 0, 0);
+        store.flush();
+
+        // cut the last record in half
+        RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+        file.setLength(validLength + (file.length() - validLength) / 2);
+        file.close();
+
+        WaypointStore reopened
+                = reopen(WaypointStore.DEFAULT_COMPACTION_THRESHOLD);
+        try {
+            Assertions.assertEquals(1, reopened.getSize());
+            Assertions.assertEquals("Home", reopened.getName(home));
+            Assertions.assertEquals(validLength, logFile.length());
+
+            // appending after the dropped tail works
+            int park = reopened.add("Park", 1, 1);
+            reopened.flush();
+            WaypointStore again = new WaypointStore(directory);
+            again.open();
+            Assertions.assertEquals("Park", again.getName(park));
+            again.close();
+        } finally {
+            reopened.close();
+        }
+    }
+
+    /**
+     * Tests a record with a wrong checksum stops the replay.
+     *
+     * @throws IOException if the store can't be opened
+     */
+    @Test
+    public final void testCorruptRecord() throws IOException {
+        int home = store.add("Home", LATITUDE, LONGITUDE);
+        store.flush();
+        File logFile = new File(directory, WaypointStore.LOG_FILE_NAME);
+        long validLength = logFile.length();
+        store.add("Car", 0, 0);
+        store.add("Hotel", 1, 1);
+        store.flush();
+
+        // flip a byte in the name of the second record
+        RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+        file.seek(validLength + 30);
+        int value = file.read();
+        file.seek(validLength + 30);
+        file.write(value ^ 0xff);
+        file.close();
+
+        WaypointStore reopened
+                = reopen(WaypointStore.DEFAULT_COMPACTION_THRESHOLD);
+        try {
+            Assertions.assertEquals(1, reopened.getSize());
+            Assertions.assertTrue(reopened.contains(home));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    /**
+     * Tests compaction when the log exceeds the threshold.
+     *
+     * @throws IOException if the store can't be opened
+     */
+    @Test
+    public final void testCompaction() throws IOException {
+        store.close();
+        store = new WaypointStore(directory, SMALL_THRESHOLD);
+        store.open();
+
+        for (int i = 0; i < 100; i++) {
+            store.add("Waypoint " + i, i * 0.1, i * 0.2);
+        }
+        store.delete(50);
+        store.setActive(10);
+        store.flush();
+
+        File logFile = new File(directory, WaypointStore.LOG_FILE_NAME);
+        File snapshotFile
+                = new File(directory, WaypointStore.SNAPSHOT_FILE_NAME);
+        Assertions.assertTrue(store.getCompactionCount() > 0);
+        Assertions.assertTrue(snapshotFile.exists());
+        Assertions.assertTrue(logFile.length() <= SMALL_THRESHOLD);
+
+        WaypointStore reopened = reopen(SMALL_THRESHOLD);
+        try {
+            Assertions.assertEquals(99, reopened.getSize());
+            Assertions.assertFalse(reopened.contains(50));
+            Assertions.assertEquals("Waypoint 99", reopened.getName(99));
+            Assertions.assertEquals(10, reopened.getActive());
+            Assertions.assertEquals(store.getSequence(),
+                    reopened.getSequence());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    /**
+     * Tests the log is renamed to the old log on compaction
+     * when the directory can't be synced, as on the JVM,
+     * and the old log is deleted when the store is opened again.
+     *
+     * @throws IOException if the store can't be opened
+     */
+    @Test
+    public final void testRotateLog() throws IOException {
+        int home = store.add("Home", LATITUDE, LONGITUDE);
+        store.compact();
+        int car = store.add("Car", 0, 0);
+        store.close();
+
+        File oldLogFile = new File(directory,
+                WaypointStore.LOG_FILE_NAME + WaypointStore.OLD_SUFFIX);
+        Assertions.assertTrue(oldLogFile.exists());
+
+        store = new WaypointStore(directory);
+        store.open();
+        Assertions.assertFalse(oldLogFile.exists());
+        Assertions.assertEquals("Home", store.getName(home));
+        Assertions.assertEquals("Car", store.getName(car));
+    }
+
+    /**
+     * Tests the old log is replayed and kept
+     * when the snapshot that replaced it is lost in a crash.
+     *
+     * @throws IOException if the store can't be opened
+     */
+    @Test
+    public final void testLostSnapshot() throws IOException {
+        int home = store.add("Home", LATITUDE, LONGITUDE);
+        store.compact();
+        int car = store.add("Car", 0, 0);
+        store.close();
+
+        File snapshotFile
+                = new File(directory, WaypointStore.SNAPSHOT_FILE_NAME);
+        File oldLogFile = new File(directory,
+                WaypointStore.LOG_FILE_NAME + WaypointStore.OLD_SUFFIX);
+        Assertions.assertTrue(snapshotFile.delete());
+
+        store = new WaypointStore(directory);
+        store.open();
+        Assertions.assertTrue(oldLogFile.exists());
+        Assertions.assertEquals(2, store.getSize());
+        Assertions.assertEquals("Home", store.getName(home));
+        Assertions.assertEquals("Car", store.getName(car));
+    }
+
+    /**
+     * Tests log records already included in the snapshot are skipped,
+     * as after a crash between writing the snapshot and emptying the log.
+     *
+     * @throws IOException if the store can't be opened
+     */
+    @Test
+    public final void testStaleLogRecords() throws IOException {
+        int home = store.add("Home", LATITUDE, LONGITUDE);
+        int car = store.add("Car", 0, 0);
+        store.flush();
+
+        File logFile = new File(directory, WaypointStore.LOG_FILE_NAME);
+        File oldLog = new File(directory, "old.log");
+        Files.copy(logFile.toPath(), oldLog.toPath());
+
+        store.delete(car);
+        store.rename(home, "House");
+        store.compact();
+        Assertions.assertEquals(0, logFile.length());
+        store.close();
+
+        // put back the log as it was before the snapshot
+        Files.copy(oldLog.toPath(), logFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+
+        store = new WaypointStore(directory);
+        store.open();
+        Assertions.assertEquals(1, store.getSize());
+        Assertions.assertFalse(store.contains(car));
+        Assertions.assertEquals("House", store.getName(home));
+    }
+
+    /**
+     * Tests log records included in the snapshot are removed
+     * when the store is opened, as when the directory couldn't be synced
+     * after writing the snapshot.
+     *
+     * @throws IOException if the store can't be opened
+     */
+    @Test
+    public final void testDropStaleRecords() throws IOException {
+        int home = store.add("Home", LATITUDE, LONGITUDE);
+        int car = store.add("Car", 0, 0);
+        store.flush();
+
+        File logFile = new File(directory, WaypointStore.LOG_FILE_NAME);
+        byte[] staleRecords = Files.readAllBytes(logFile.toPath());
+
+        store.compact();
+        store.rename(home, "House");
+        store.close();
+        byte[] newRecords = Files.readAllBytes(logFile.toPath());
+
+        // stale records followed by the records after the snapshot
+        FileOutputStream out = new FileOutputStream(logFile);
+        out.write(staleRecords);
+        out.write(newRecords);
+        out.close();
+
+        store = new WaypointStore(directory);
+        store.open();
+        Assertions.assertEquals(newRecords.length, logFile.length());
+        Assertions.assertEquals("House", store.getName(home));
+        Assertions.assertTrue(store.contains(car));
+
+        // appending after the removed records works
+        store.delete(car);
+        WaypointStore reopened
+                = reopen(WaypointStore.DEFAULT_COMPACTION_THRESHOLD);
+        try {
+            Assertions.assertEquals(1, reopened.getSize());
+            Assertions.assertEquals("House", reopened.getName(home));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    /**
+     * Tests a write error is reported and stops writing.
+     *
+     * @throws IOException if the store can't be opened
+     */
+    @Test
+    public final void testWriteError() throws IOException {
+        int home = store.add("Home", LATITUDE, LONGITUDE);
+        store.flush();
+        Assertions.assertNull(store.getWriteError());
+
+        // the temporary snapshot file can't be created
+        File tmpFile = new File(directory,
+                WaypointStore.SNAPSHOT_FILE_NAME + ".tmp");
+        Assertions.assertTrue(tmpFile.mkdir());
+        Assertions.assertThrows(IOException.class, store::compact);
+        Assertions.assertNotNull(store.getWriteError());
+
+        // later mutations are only applied in memory
+        int car = store.add("Car", 0, 0);
+        Assertions.assertTrue(store.contains(car));
+        Assertions.assertThrows(IOException.class, store::flush);
+
+        WaypointStore reopened = new WaypointStore(directory);
+        reopened.open();
+        try {
+            Assertions.assertNull(reopened.getWriteError());
+            Assertions.assertTrue(reopened.contains(home));
+            Assertions.assertFalse(reopened.contains(car));
+        } finally {
+            reopened.close();
+        }
+
+        Assertions.assertThrows(IOException.class, store::close);
+    }
+
+    /**
+     * Tests a corrupt snapshot is reported.
+     *
+     * @throws IOException if the test files can't be written
+     */
+    @Test
+    public final void testCorruptSnapshot() throws IOException {
+        store.add("Home", LATITUDE, LONGITUDE);
+        store.compact();
+
+        File snapshotFile
+                = new File(directory, WaypointStore.SNAPSHOT_FILE_NAME);
+        FileOutputStream out = new FileOutputStream(snapshotFile, true);
+        out.write(1);
+        out.close();
+
+        Assertions.assertThrows(IOException.class, () -> {
+            new WaypointStore(directory).open();
+        });
+    }
+
+    /**
+     * Tests opening an empty store over a corrupt snapshot,
+     * after moving the corrupt files aside.
+     *
+     * @throws IOException if the test files can't be written
+     */
+    @Test
+    public final void testRecoverCorruptSnapshot() throws IOException {
+        store.add("Home", LATITUDE, LONGITUDE);
+        store.compact();
+        store.add("Car", 0, 0);
+        Assertions.assertThrows(IllegalStateException.class,
+                store::moveFilesAside);
+        store.close();
+
+        File snapshotFile
+                = new File(directory, WaypointStore.SNAPSHOT_FILE_NAME);
+        RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw");
+        file.seek(file.length() / 2);
+        file.write(0xff);
+        file.close();
+
+        WaypointStore corrupt = new WaypointStore(directory);
+        Assertions.assertThrows(WaypointStore.CorruptException.class,
+                corrupt::open);
+        corrupt.moveFilesAside();
+        Assertions.assertFalse(snapshotFile.exists());
+        Assertions.assertTrue(new File(directory,
+                WaypointStore.SNAPSHOT_FILE_NAME
+                        + WaypointStore.CORRUPT_SUFFIX).exists());
+        Assertions.assertTrue(new File(directory,
+                WaypointStore.LOG_FILE_NAME
+                        + WaypointStore.CORRUPT_SUFFIX).exists());
+
+        store = new WaypointStore(directory);
+        store.open();
+        Assertions.assertEquals(0, store.getSize());
+        Assertions.assertEquals(0, store.getSequence());
+
+        // the recovered store can be used and reopened
+        int park = store.add("Park", 1, 1);
+        WaypointStore reopened
+                = reopen(WaypointStore.DEFAULT_COMPACTION_THRESHOLD);
+        try {
+            Assertions.assertEquals("Park", reopened.getName(park));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    /**
+     * Tests a log record with a valid checksum,
+     * that can't be applied, is reported as corrupt.
+     *
+     * @throws IOException if the test files can't be written
+     */
+    @Test
+    public final void testCorruptLog() throws IOException {
+        store.add("Home", LATITUDE, LONGITUDE);
+        store.close();
+
+        // append a record with an unknown operation
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream(bytes);
+        body.writeLong(2);
+        body.writeByte(99);
+        body.writeInt(0);
+        body.close();
+        byte[] record = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(record);
+
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(
+                new File(directory, WaypointStore.LOG_FILE_NAME), true));
+        out.writeInt(record.length);
+        out.write(record);
+        out.writeInt((int) crc.getValue());
+        out.close();
+
+        WaypointStore corrupt = new WaypointStore(directory);
+        Assertions.assertThrows(WaypointStore.CorruptException.class,
+                corrupt::open);
+        corrupt.moveFilesAside();
+
+        store = new WaypointStore(directory);
+        store.open();
+        Assertions.assertEquals(0, store.getSize());
+    }
+}